@@ -16,6 +16,14 @@ class CoroutineAndWorkManagerScheduler(foregroundContext: CoroutineContext, back
 
     constructor(workManager: WorkManager) : this(Dispatchers.Main, Dispatchers.IO, workManager) // Needed for Java construction
 
+    override fun deferred(tag: String, spec: TaskSpec) {
+        val workRequest = OneTimeWorkRequest.Builder(spec.getWorkManagerAdapter())
+            .addTag(tag)
+            .build()
+
+        workManager.beginUniqueWork(tag, ExistingWorkPolicy.APPEND_OR_REPLACE, workRequest).enqueue()
+    }
+
     override fun networkDeferred(tag: String, spec: TaskSpec) {
         val constraints = Constraints.Builder()
             .setRequiredNetworkType(NetworkType.CONNECTED)
@@ -37,6 +37,10 @@ open class CoroutineScheduler(private val foregroundContext: CoroutineContext, p
         return ScopeCancellable(repeatScope)
     }
 
+    override fun deferred(tag: String, spec: TaskSpec) {
+        throw UnsupportedOperationException()
+    }
+
     override fun networkDeferred(tag: String, spec: TaskSpec) {
         throw UnsupportedOperationException()
     }
@@ -26,6 +26,15 @@ interface Scheduler {
      */
     fun immediate(foreground: Runnable)
 
+    /**
+     * Schedule a task to run in the background even if the app isn't running. If a task with
+     * the same tag is already scheduled or running, this one will be run after it.
+     *
+     * @param tag used to identify this task in future
+     * @param spec defines the task to be run
+     */
+    fun deferred(tag: String, spec: TaskSpec)
+
     /**
      * Schedule a task to run in the background even if the app isn't running. The task
      * will only be run when the network is available.
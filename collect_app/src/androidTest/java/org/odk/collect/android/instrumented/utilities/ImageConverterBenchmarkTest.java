@@ -0,0 +1,129 @@
+package org.odk.collect.android.instrumented.utilities;
+
+import android.Manifest;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Debug;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.rule.GrantPermissionRule;
+
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.RuleChain;
+import org.junit.runner.RunWith;
+import org.odk.collect.android.storage.StoragePathProvider;
+import org.odk.collect.android.storage.StorageSubdirectory;
+import org.odk.collect.android.support.ResetStateRule;
+import org.odk.collect.android.utilities.FileUtils;
+import org.odk.collect.android.utilities.ImageConverter;
+
+import java.io.File;
+
+/**
+ * Compares the peak memory and the time per megapixel of scaling camera sized images down with
+ * {@link ImageConverter} and with decoding them at full resolution first.
+ */
+@Ignore("Writes and decodes 48 MP images so it takes a while. Run manually when changing ImageConverter.")
+@RunWith(AndroidJUnit4.class)
+public class ImageConverterBenchmarkTest {
+    private static final String TEST_IMAGE_PATH = new StoragePathProvider().getDirPath(StorageSubdirectory.INSTANCES) + File.separator + "benchmark" + File.separator + "benchmarkImage.jpg";
+
+    private static final int[][] SIZES = {{4000, 3000}, {5760, 4320}, {8000, 6000}};
+    private static final int MAX_PIXELS = 2048;
+
+    @Rule
+    public RuleChain copyFormChain = RuleChain
+            .outerRule(GrantPermissionRule.grant(
+                    Manifest.permission.READ_EXTERNAL_STORAGE,
+                    Manifest.permission.WRITE_EXTERNAL_STORAGE)
+            )
+            .around(new ResetStateRule());
+
+    @Before
+    public void setUp() {
+        new File(TEST_IMAGE_PATH).getParentFile().mkdirs();
+    }
+
+    @Test
+    public void compareSubsampledAndFullResolutionDecoding() throws InterruptedException {
+        for (int[] size : SIZES) {
+            double megapixels = size[0] * size[1] / 1e6;
+
+            saveTestBitmap(size[0], size[1]);
+            MemoryMonitor monitor = new MemoryMonitor();
+            long start = System.nanoTime();
+            scaleDownAtFullResolution(MAX_PIXELS);
+            long fullTime = System.nanoTime() - start;
+            long fullPeak = monitor.stop();
+
+            saveTestBitmap(size[0], size[1]);
+            monitor = new MemoryMonitor();
+            start = System.nanoTime();
+            ImageConverter.scaleDownAndRotateImage(TEST_IMAGE_PATH, MAX_PIXELS, ImageConverter.DEFAULT_QUALITY);
+            long subsampledTime = System.nanoTime() - start;
+            long subsampledPeak = monitor.stop();
+
+            System.out.printf("%.1f MP: full resolution %.1f ms/MP, peak %d MB; subsampled %.1f ms/MP, peak %d MB%n", megapixels,
+                    fullTime / 1e6 / megapixels, fullPeak / (1024 * 1024),
+                    subsampledTime / 1e6 / megapixels, subsampledPeak / (1024 * 1024));
+        }
+    }
+
+    /**
+     * How images used to be scaled down.
+     */
+    private static void scaleDownAtFullResolution(int maxPixels) {
+        Bitmap image = FileUtils.getBitmap(TEST_IMAGE_PATH, new BitmapFactory.Options());
+        int newHeight = (int) (image.getHeight() / ((double) image.getWidth() / maxPixels));
+        Bitmap scaled = Bitmap.createScaledBitmap(image, maxPixels, newHeight, false);
+        FileUtils.saveBitmapToFile(scaled, TEST_IMAGE_PATH);
+        image.recycle();
+        scaled.recycle();
+    }
+
+    private static void saveTestBitmap(int width, int height) {
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.RGB_565);
+        FileUtils.saveBitmapToFile(bitmap, TEST_IMAGE_PATH);
+        bitmap.recycle();
+        Runtime.getRuntime().gc();
+    }
+
+    /**
+     * Samples the Java and native heap (where bitmap pixels live on newer Android versions) in
+     * the background and keeps the highest value above what was in use when it was started.
+     */
+    private static class MemoryMonitor {
+        private final long baseline = getUsedMemory();
+        private volatile boolean running = true;
+        private volatile long peak;
+        private final Thread thread;
+
+        MemoryMonitor() {
+            thread = new Thread(() -> {
+                while (running) {
+                    peak = Math.max(peak, getUsedMemory() - baseline);
+                    try {
+                        Thread.sleep(2);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            });
+            thread.start();
+        }
+
+        long stop() throws InterruptedException {
+            running = false;
+            thread.join();
+            return peak;
+        }
+
+        private static long getUsedMemory() {
+            Runtime runtime = Runtime.getRuntime();
+            return runtime.totalMemory() - runtime.freeMemory() + Debug.getNativeHeapAllocatedSize();
+        }
+    }
+}
@@ -375,6 +375,30 @@ public class ImageConverterTest {
         assertEquals(1500, image.getHeight());
     }
 
+    @Test
+    public void rotateImage_resetsOrientation() throws IOException {
+        Map<String, String> attributes = new HashMap<>();
+        attributes.put(ExifInterface.TAG_ORIENTATION, String.valueOf(ExifInterface.ORIENTATION_ROTATE_90));
+
+        GeneralSharedPreferences.getInstance().save("image_size", "original_image_size");
+        saveTestBitmap(3000, 4000, attributes);
+        ImageConverter.execute(TEST_IMAGE_PATH, getTestImageWidget(), Collect.getInstance());
+
+        ExifInterface exif = new ExifInterface(TEST_IMAGE_PATH);
+        assertThat(exif.getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_UNDEFINED), is(ExifInterface.ORIENTATION_NORMAL));
+    }
+
+    @Test
+    public void scaleImageDown_whenImageIsMuchBiggerThanMaxPixels() {
+        GeneralSharedPreferences.getInstance().save("image_size", "original_image_size");
+        saveTestBitmap(6000, 4500);
+        ImageConverter.execute(TEST_IMAGE_PATH, getTestImageWidget(XML_OPENROSA_NAMESPACE, "max-pixels", "1000"), Collect.getInstance());
+
+        Bitmap image = FileUtils.getBitmap(TEST_IMAGE_PATH, new BitmapFactory.Options());
+        assertEquals(1000, image.getWidth());
+        assertEquals(750, image.getHeight());
+    }
+
     @Test
     public void scaleImageToNewWidthTest() {
         saveTestBitmap(2000, 1000);
@@ -61,6 +61,11 @@ public class TestScheduler implements Scheduler {
         });
     }
 
+    @Override
+    public void deferred(@NotNull String tag, @NotNull TaskSpec spec) {
+        // Background housekeeping (such as cache pre-warming) isn't run in tests
+    }
+
     @Override
     public void networkDeferred(@NotNull String tag, @NotNull TaskSpec spec) {
         deferredTasks.add(new DeferredTask(tag, spec, null));
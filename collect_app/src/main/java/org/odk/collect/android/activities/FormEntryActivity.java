@@ -84,6 +84,7 @@ import org.odk.collect.android.dao.helpers.InstancesDaoHelper;
 import org.odk.collect.android.events.ReadPhoneStatePermissionRxEvent;
 import org.odk.collect.android.events.RxEventBus;
 import org.odk.collect.android.exception.JavaRosaException;
+import org.odk.collect.android.formentry.FieldListSnapshot;
 import org.odk.collect.android.formentry.FormEntryMenuDelegate;
 import org.odk.collect.android.formentry.FormEntryViewModel;
 import org.odk.collect.android.formentry.FormIndexAnimationHandler;
@@ -146,13 +147,16 @@ import org.odk.collect.android.utilities.ApplicationConstants;
 import org.odk.collect.android.utilities.DestroyableLifecyleOwner;
 import org.odk.collect.android.utilities.DialogUtils;
 import org.odk.collect.android.utilities.ExternalAppIntentProvider;
+import org.odk.collect.android.utilities.FileUtils;
 import org.odk.collect.android.utilities.FormNameUtils;
+import org.odk.collect.android.utilities.ImageConverter;
 import org.odk.collect.android.utilities.MultiClickGuard;
 import org.odk.collect.android.utilities.PlayServicesChecker;
 import org.odk.collect.android.utilities.ScreenContext;
 import org.odk.collect.android.utilities.SnackbarUtils;
 import org.odk.collect.android.utilities.SoftKeyboardController;
 import org.odk.collect.android.utilities.ToastUtils;
+import org.odk.collect.android.widgets.BaseImageWidget;
 import org.odk.collect.android.widgets.DateTimeWidget;
 import org.odk.collect.android.widgets.QuestionWidget;
 import org.odk.collect.android.widgets.RangePickerDecimalWidget;
@@ -169,11 +173,12 @@ import org.odk.collect.audiorecorder.recorder.Output;
 import org.odk.collect.audiorecorder.recording.AudioRecorder;
 
 import java.io.File;
-import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 
 import javax.inject.Inject;
 
@@ -282,6 +287,8 @@ public class FormEntryActivity extends CollectAbstractActivity implements Animat
     private TextView backButton;
 
     private ODKView odkView;
+    private FieldListSnapshot fieldListSnapshot;
+    private ODKView fieldListSnapshotView;
     private final DestroyableLifecyleOwner odkViewLifecycle = new DestroyableLifecyleOwner();
 
     private String instancePath;
@@ -886,6 +893,13 @@ public class FormEntryActivity extends CollectAbstractActivity implements Animat
         permissionsProvider.requestReadUriPermission(this, uri, getContentResolver(), new PermissionListener() {
             @Override
             public void granted() {
+                QuestionWidget widget = getWidgetWaitingForBinaryData();
+                File instanceFile = getFormController().getInstanceFile();
+                if (widget instanceof BaseImageWidget && instanceFile != null) {
+                    loadImageFile(uri, widget, instanceFile);
+                    return;
+                }
+
                 ProgressDialogFragment progressDialog = new ProgressDialogFragment();
                 progressDialog.setMessage(getString(R.string.please_wait));
                 progressDialog.show(getSupportFragmentManager(), ProgressDialogFragment.COLLECT_PROGRESS_DIALOG_TAG);
@@ -900,15 +914,31 @@ public class FormEntryActivity extends CollectAbstractActivity implements Animat
         });
     }
 
+    /**
+     * Gives the widget its answer file straight away and lets the copying, rotating and scaling
+     * happen in the background instead of blocking with a progress dialog.
+     */
+    private void loadImageFile(Uri uri, QuestionWidget widget, File instanceFile) {
+        String extension = ContentResolverHelper.getFileExtensionFromUri(uri);
+        File answerFile = FileUtils.createDestinationMediaFile(instanceFile.getParent(), extension);
+        Integer maxPixels = ImageConverter.getMaxPixels(widget, this);
+
+        // The temporary image is reused by the next capture so it's moved out of the way now
+        File tmpImage = new File(storagePathProvider.getTmpImageFilePath());
+        if (uri.equals(Uri.fromFile(tmpImage)) && tmpImage.renameTo(answerFile)) {
+            formSaveViewModel.processImageAnswerFile(answerFile, null, maxPixels);
+        } else {
+            formSaveViewModel.processImageAnswerFile(answerFile, uri, maxPixels);
+        }
+
+        setWidgetData(answerFile);
+    }
+
     public QuestionWidget getWidgetWaitingForBinaryData() {
         ODKView odkView = getCurrentViewIfODKView();
 
         if (odkView != null) {
-            for (QuestionWidget qw : odkView.getWidgets()) {
-                if (waitingForDataRegistry.isWaitingForData(qw.getFormEntryPrompt().getIndex())) {
-                    return qw;
-                }
-            }
+            return odkView.getWidgetWaitingForData();
         } else {
             Timber.e("currentView returned null.");
         }
@@ -919,25 +949,17 @@ public class FormEntryActivity extends CollectAbstractActivity implements Animat
         ODKView currentViewIfODKView = getCurrentViewIfODKView();
 
         if (currentViewIfODKView != null) {
-            boolean set = false;
-            for (QuestionWidget widget : currentViewIfODKView.getWidgets()) {
-                if (widget instanceof WidgetDataReceiver) {
-                    if (waitingForDataRegistry.isWaitingForData(widget.getFormEntryPrompt().getIndex())) {
-                        try {
-                            ((WidgetDataReceiver) widget).setData(data);
-                            waitingForDataRegistry.cancelWaitingForData();
-                        } catch (Exception e) {
-                            Timber.e(e);
-                            ToastUtils.showLongToast(currentViewIfODKView.getContext().getString(R.string.error_attaching_binary_file,
-                                    e.getMessage()));
-                        }
-                        set = true;
-                        break;
-                    }
+            QuestionWidget widget = currentViewIfODKView.getWidgetWaitingForData();
+            if (widget instanceof WidgetDataReceiver) {
+                try {
+                    ((WidgetDataReceiver) widget).setData(data);
+                    waitingForDataRegistry.cancelWaitingForData();
+                } catch (Exception e) {
+                    Timber.e(e);
+                    ToastUtils.showLongToast(currentViewIfODKView.getContext().getString(R.string.error_attaching_binary_file,
+                            e.getMessage()));
                 }
-            }
-
-            if (!set) {
+            } else {
                 Timber.e("Attempting to return data to a widget or set of widgets not looking for data");
             }
         }
@@ -990,6 +1012,8 @@ public class FormEntryActivity extends CollectAbstractActivity implements Animat
      */
     private boolean saveAnswersForCurrentScreen(boolean evaluateConstraints) {
         FormController formController = getFormController();
+        fieldListSnapshot = null;
+
         // only try to save if the current event is a question or a field-list group
         // and current view is an ODKView (occasionally we show blank views that do not have any
         // controls to save data from)
@@ -1026,8 +1050,11 @@ public class FormEntryActivity extends CollectAbstractActivity implements Animat
 
         int index = 0;
         for (Map.Entry<FormIndex, IAnswerData> answer : currentView.getAnswers().entrySet()) {
-            // Questions with calculates will have their answers updated as the questions they depend on are saved
-            if (!isQuestionRecalculated(mutableQuestionsBeforeSave[index], immutableQuestionsBeforeSave.get(index))) {
+            // Questions with calculates will have their answers updated as the questions they depend
+            // on are saved. Saving an answer the form already has would only re-evaluate everything
+            // that depends on it for nothing.
+            if (!isQuestionRecalculated(mutableQuestionsBeforeSave[index], immutableQuestionsBeforeSave.get(index))
+                    && !isSameAnswer(answer.getValue(), mutableQuestionsBeforeSave[index].getAnswerValue())) {
                 try {
                     formController.saveOneScreenAnswer(answer.getKey(), answer.getValue(), false);
                 } catch (JavaRosaException e) {
@@ -2618,61 +2645,70 @@ public class FormEntryActivity extends CollectAbstractActivity implements Animat
      * - removes and rebuilds widgets corresponding to questions that have changed in some way. For
      * example, the question text or hint may have updated due to a value they refer to changing.
      * <p>
+     * Only answers that differ from the ones in the form are saved so that JavaRosa only
+     * re-evaluates the triggerables that depend on what the user actually changed. The snapshot
+     * taken after the update is kept as the starting point of the next one.
+     * <p>
      * The widget corresponding to the {@param lastChangedIndex} is never changed.
      */
     private void updateFieldListQuestions(FormIndex lastChangedIndex) throws FormDesignException {
-        // Save the user-visible state for all questions in this field-list
-        FormEntryPrompt[] questionsBeforeSave = getFormController().getQuestionPrompts();
-        List<ImmutableDisplayableQuestion> immutableQuestionsBeforeSave = new ArrayList<>();
-        for (FormEntryPrompt questionBeforeSave : questionsBeforeSave) {
-            immutableQuestionsBeforeSave.add(new ImmutableDisplayableQuestion(questionBeforeSave));
-        }
-
-        saveAnswersForCurrentScreen(questionsBeforeSave, immutableQuestionsBeforeSave);
-
-        FormEntryPrompt[] questionsAfterSave = getFormController().getQuestionPrompts();
-
-        Map<FormIndex, FormEntryPrompt> questionsAfterSaveByIndex = new HashMap<>();
-        for (FormEntryPrompt question : questionsAfterSave) {
-            questionsAfterSaveByIndex.put(question.getIndex(), question);
-        }
-
-        // Identify widgets to remove or rebuild (by removing and re-adding). We'd like to do the
-        // identification and removal in the same pass but removal has to be done in a loop that
-        // starts from the end and itemset-based select choices will only be correctly recomputed
-        // if accessed from beginning to end because the call on sameAs is what calls
-        // populateDynamicChoices. See https://github.com/getodk/javarosa/issues/436
-        List<FormEntryPrompt> questionsThatHaveNotChanged = new ArrayList<>();
-        List<FormIndex> formIndexesToRemove = new ArrayList<>();
-        for (ImmutableDisplayableQuestion questionBeforeSave : immutableQuestionsBeforeSave) {
-            FormEntryPrompt questionAtSameFormIndex = questionsAfterSaveByIndex.get(questionBeforeSave.getFormIndex());
-
-            // Always rebuild questions that use database-driven external data features since they
-            // bypass SelectChoices stored in ImmutableDisplayableQuestion
-            if (questionBeforeSave.sameAs(questionAtSameFormIndex)
-                    && !getFormController().usesDatabaseExternalDataFeature(questionBeforeSave.getFormIndex())) {
-                questionsThatHaveNotChanged.add(questionAtSameFormIndex);
-            } else if (!lastChangedIndex.equals(questionBeforeSave.getFormIndex())) {
-                formIndexesToRemove.add(questionBeforeSave.getFormIndex());
-            }
+        // Save the user-visible state for all questions in this field-list unless it is already
+        // known from the last update of the same view
+        FieldListSnapshot snapshotBeforeSave = fieldListSnapshot;
+        if (snapshotBeforeSave == null || fieldListSnapshotView != odkView) {
+            snapshotBeforeSave = FieldListSnapshot.take(getFormController());
         }
 
-        for (int i = immutableQuestionsBeforeSave.size() - 1; i >= 0; i--) {
-            ImmutableDisplayableQuestion questionBeforeSave = immutableQuestionsBeforeSave.get(i);
+        saveAnswersForCurrentScreen(snapshotBeforeSave.getQuestions(), snapshotBeforeSave.getImmutableQuestions());
+
+        // Itemset-based select choices will only be correctly recomputed if accessed from
+        // beginning to end which the snapshot does. See https://github.com/getodk/javarosa/issues/436
+        FieldListSnapshot snapshotAfterSave = FieldListSnapshot.take(getFormController());
+        fieldListSnapshot = snapshotAfterSave;
+        fieldListSnapshotView = odkView;
+
+        Set<FormIndex> changedQuestions = snapshotBeforeSave.getQuestionsChangedIn(snapshotAfterSave);
 
-            if (formIndexesToRemove.contains(questionBeforeSave.getFormIndex())) {
+        // Remove widgets that changed or are no longer relevant. This has to be done in a loop that
+        // starts from the end.
+        List<ImmutableDisplayableQuestion> questionsBeforeSave = snapshotBeforeSave.getImmutableQuestions();
+        for (int i = questionsBeforeSave.size() - 1; i >= 0; i--) {
+            FormIndex index = questionsBeforeSave.get(i).getFormIndex();
+            if (changedQuestions.contains(index) && !index.equals(lastChangedIndex)) {
                 odkView.removeWidgetAt(i);
             }
         }
 
+        Set<FormIndex> questionsThatHaveNotChanged = new HashSet<>();
+        for (ImmutableDisplayableQuestion question : questionsBeforeSave) {
+            if (!changedQuestions.contains(question.getFormIndex())) {
+                questionsThatHaveNotChanged.add(question.getFormIndex());
+            }
+        }
+
+        int rebuiltWidgets = 0;
+        FormEntryPrompt[] questionsAfterSave = snapshotAfterSave.getQuestions();
         for (int i = 0; i < questionsAfterSave.length; i++) {
-            if (!questionsThatHaveNotChanged.contains(questionsAfterSave[i])
-                    && !questionsAfterSave[i].getIndex().equals(lastChangedIndex)) {
+            FormIndex index = questionsAfterSave[i].getIndex();
+            if (!questionsThatHaveNotChanged.contains(index) && !index.equals(lastChangedIndex)) {
                 // The values of widgets in intent groups are set by the view so widgetValueChanged
                 // is never called. This means readOnlyOverride can always be set to false.
                 odkView.addWidgetForQuestion(questionsAfterSave[i], i);
+                rebuiltWidgets++;
             }
         }
+
+        Timber.i("Rebuilt %d of %d widgets after %s changed", rebuiltWidgets, questionsAfterSave.length,
+                lastChangedIndex.getReference());
+    }
+
+    private static boolean isSameAnswer(IAnswerData answer, IAnswerData savedAnswer) {
+        if (answer == null || savedAnswer == null) {
+            return answer == savedAnswer;
+        }
+
+        return answer.getClass().equals(savedAnswer.getClass())
+                && Objects.equals(answer.uncast().getString(), savedAnswer.uncast().getString());
     }
 
     // If an answer has changed after saving one of previous answers that means it has been recalculated automatically
@@ -22,9 +22,9 @@ import android.view.View;
 import android.widget.Button;
 import android.widget.TextView;
 
+import androidx.annotation.NonNull;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.widget.Toolbar;
-import androidx.core.content.ContextCompat;
 import androidx.lifecycle.ViewModelProvider;
 import androidx.recyclerview.widget.DividerItemDecoration;
 import androidx.recyclerview.widget.LinearLayoutManager;
@@ -37,7 +37,6 @@ import org.javarosa.core.model.instance.TreeReference;
 import org.javarosa.form.api.FormEntryCaption;
 import org.javarosa.form.api.FormEntryController;
 import org.javarosa.form.api.FormEntryModel;
-import org.javarosa.form.api.FormEntryPrompt;
 import org.odk.collect.android.R;
 import org.odk.collect.android.adapters.HierarchyListAdapter;
 import org.odk.collect.android.application.Collect;
@@ -47,8 +46,8 @@ import org.odk.collect.android.formentry.ODKView;
 import org.odk.collect.android.formentry.repeats.DeleteRepeatDialogFragment;
 import org.odk.collect.android.javarosawrapper.FormController;
 import org.odk.collect.android.logic.HierarchyElement;
+import org.odk.collect.android.logic.HierarchySnapshot;
 import org.odk.collect.android.utilities.DialogUtils;
-import org.odk.collect.android.utilities.FormEntryPromptUtils;
 import org.odk.collect.android.utilities.MultiClickGuard;
 
 import java.util.ArrayList;
@@ -64,11 +63,21 @@ public class FormHierarchyActivity extends CollectAbstractActivity implements De
 
     public static final int RESULT_ADD_REPEAT = 2;
     /**
-     * The questions and repeats at the current level.
-     * Recreated every time {@link #refreshView()} is called.
+     * The questions and repeats of the current level that have been read so far.
+     * Replaced every time {@link #refreshView()} is called.
      */
     private List<HierarchyElement> elementsToDisplay;
 
+    /**
+     * The snapshot {@link #elementsToDisplay} belongs to. More elements are read from it as the
+     * list is scrolled.
+     */
+    private HierarchySnapshot snapshot;
+
+    /**
+     * Elements whose answer text is being computed in the background.
+     */
+
     /**
      * The label shown at the top of a hierarchy screen for a repeat instance. Set by
      * {@link #getCurrentPath()}.
@@ -130,6 +139,15 @@ public class FormHierarchyActivity extends CollectAbstractActivity implements De
         recyclerView.setHasFixedSize(true);
         recyclerView.setLayoutManager(new LinearLayoutManager(this));
         recyclerView.addItemDecoration(new DividerItemDecoration(this, DividerItemDecoration.VERTICAL));
+        recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                int lastVisible = ((LinearLayoutManager) recyclerView.getLayoutManager()).findLastVisibleItemPosition();
+                if (snapshot != null && lastVisible >= elementsToDisplay.size() - HierarchySnapshot.PAGE_SIZE / 2) {
+                    recyclerView.post(() -> loadNextPage());
+                }
+            }
+        });
 
         TextView emptyView = findViewById(android.R.id.empty);
         Toolbar toolbar = findViewById(R.id.toolbar);
@@ -162,19 +180,26 @@ public class FormHierarchyActivity extends CollectAbstractActivity implements De
         refreshView();
 
         // Scroll to the last question the user was looking at
-        // TODO: avoid another iteration through all displayed elements
         if (recyclerView != null && recyclerView.getAdapter() != null && recyclerView.getAdapter().getItemCount() > 0) {
             emptyView.setVisibility(View.GONE);
             recyclerView.post(() -> {
-                int position = 0;
-                // Iterate over all the elements currently displayed looking for a match with the
-                // startIndex which can either represent a question or a field list.
-                for (HierarchyElement hierarchyElement : elementsToDisplay) {
-                    FormIndex indexToCheck = hierarchyElement.getFormIndex();
-                    if (startIndex.equals(indexToCheck)
-                            || (formController.indexIsInFieldList(startIndex) && indexToCheck.toString().startsWith(startIndex.toString()))) {
-                        position = elementsToDisplay.indexOf(hierarchyElement);
-                        break;
+                // Look for a match with the startIndex which can either represent a question or a
+                // field list, reading more of the screen until it is found.
+                int position = -1;
+                int checked = 0;
+                boolean startIndexInFieldList = formController.indexIsInFieldList(startIndex);
+                while (position == -1) {
+                    for (; checked < elementsToDisplay.size(); checked++) {
+                        FormIndex indexToCheck = elementsToDisplay.get(checked).getFormIndex();
+                        if (startIndex.equals(indexToCheck)
+                                || (startIndexInFieldList && indexToCheck.toString().startsWith(startIndex.toString()))) {
+                            position = checked;
+                            break;
+                        }
+                    }
+
+                    if (position == -1 && !loadNextPage()) {
+                        position = 0;
                     }
                 }
                 ((LinearLayoutManager) recyclerView.getLayoutManager()).scrollToPositionWithOffset(position, 0);
@@ -491,8 +516,6 @@ public class FormHierarchyActivity extends CollectAbstractActivity implements De
             // in the event of an error.
             currentIndex = formController.getFormIndex();
 
-            elementsToDisplay = new ArrayList<>();
-
             jumpToHierarchyStartIndex();
             updateOptionsMenu();
 
@@ -506,152 +529,13 @@ public class FormHierarchyActivity extends CollectAbstractActivity implements De
                 groupPathTextView.setText(getCurrentPath());
             }
 
-            // Refresh the current event in case we did step forward.
-            event = formController.getEvent();
-
-            // Ref to the parent group that's currently being displayed.
-            //
-            // Because of the guard conditions below, we will skip
-            // everything until we exit this group.
-            TreeReference visibleGroupRef = null;
-
-            while (event != FormEntryController.EVENT_END_OF_FORM) {
-                // get the ref to this element
-                TreeReference currentRef = formController.getFormIndex().getReference();
-
-                // retrieve the current group
-                TreeReference curGroup = (visibleGroupRef == null) ? contextGroupRef : visibleGroupRef;
-
-                if (curGroup != null && !curGroup.isParentOf(currentRef, false)) {
-                    // We have left the current group
-                    if (visibleGroupRef == null) {
-                        // We are done.
-                        break;
-                    } else {
-                        // exit the inner group
-                        visibleGroupRef = null;
-                    }
-                }
-
-                if (visibleGroupRef != null) {
-                    // We're in a group within the one we want to list
-                    // skip this question/group/repeat and move to the next index.
-                    event =
-                            formController.stepToNextEvent(FormController.STEP_INTO_GROUP);
-                    continue;
-                }
-
-                switch (event) {
-                    case FormEntryController.EVENT_QUESTION: {
-                        // Nothing but repeat group instances should show up in the picker.
-                        if (shouldShowRepeatGroupPicker()) {
-                            break;
-                        }
-
-                        FormEntryPrompt fp = formController.getQuestionPrompt();
-                        String label = fp.getShortText();
-                        String answerDisplay = FormEntryPromptUtils.getAnswerText(fp, this, formController);
-                        elementsToDisplay.add(
-                                new HierarchyElement(FormEntryPromptUtils.markQuestionIfIsRequired(label, fp.isRequired()), answerDisplay, null,
-                                        HierarchyElement.Type.QUESTION, fp.getIndex()));
-                        break;
-                    }
-                    case FormEntryController.EVENT_GROUP: {
-                        if (!formController.isGroupRelevant()) {
-                            break;
-                        }
-                        // Nothing but repeat group instances should show up in the picker.
-                        if (shouldShowRepeatGroupPicker()) {
-                            break;
-                        }
-
-                        FormIndex index = formController.getFormIndex();
-
-                        // Only display groups with a specific appearance attribute.
-                        if (!formController.isDisplayableGroup(index)) {
-                            break;
-                        }
-
-                        // Don't render other groups' children.
-                        if (contextGroupRef != null && !contextGroupRef.isParentOf(currentRef, false)) {
-                            break;
-                        }
-
-                        visibleGroupRef = currentRef;
-
-                        FormEntryCaption caption = formController.getCaptionPrompt();
-                        HierarchyElement groupElement = new HierarchyElement(
-                                caption.getShortText(), getString(R.string.group_label),
-                                ContextCompat.getDrawable(this, R.drawable.ic_folder_open),
-                                HierarchyElement.Type.VISIBLE_GROUP, caption.getIndex());
-                        elementsToDisplay.add(groupElement);
-
-                        // Skip to the next item outside the group.
-                        event = formController.stepOverGroup();
-                        continue;
-                    }
-                    case FormEntryController.EVENT_PROMPT_NEW_REPEAT: {
-                        // this would display the 'add new repeat' dialog
-                        // ignore it.
-                        break;
-                    }
-                    case FormEntryController.EVENT_REPEAT: {
-                        if (!formController.isGroupRelevant()) {
-                            break;
-                        }
-
-                        visibleGroupRef = currentRef;
-
-                        FormEntryCaption fc = formController.getCaptionPrompt();
-
-                        // Don't render other groups' children.
-                        if (contextGroupRef != null && !contextGroupRef.isParentOf(currentRef, false)) {
-                            break;
-                        }
-
-                        if (shouldShowRepeatGroupPicker()) {
-                            // Don't render other groups' instances.
-                            String repeatGroupPickerRef = repeatGroupPickerIndex.getReference().toString(false);
-                            if (!currentRef.toString(false).equals(repeatGroupPickerRef)) {
-                                break;
-                            }
-
-                            int itemNumber = fc.getMultiplicity() + 1;
-
-                            // e.g. `friends > 1`
-                            String repeatLabel = fc.getShortText() + " > " + itemNumber;
-
-                            // If the child of the group has a more descriptive label, use that instead.
-                            if (fc.getFormElement().getChildren().size() == 1 && fc.getFormElement().getChild(0) instanceof GroupDef) {
-                                formController.stepToNextEvent(FormController.STEP_INTO_GROUP);
-                                String itemLabel = formController.getCaptionPrompt().getShortText();
-                                if (itemLabel != null) {
-                                    // e.g. `1. Alice`
-                                    repeatLabel = itemNumber + ".\u200E " + itemLabel;
-                                }
-                            }
-
-                            HierarchyElement instance = new HierarchyElement(
-                                    repeatLabel, null,
-                                    null, HierarchyElement.Type.REPEAT_INSTANCE, fc.getIndex());
-                            elementsToDisplay.add(instance);
-                        } else if (fc.getMultiplicity() == 0) {
-                            // Display the repeat header for the group.
-                            HierarchyElement group = new HierarchyElement(
-                                    fc.getShortText(), getString(R.string.repeatable_group_label),
-                                    ContextCompat.getDrawable(this, R.drawable.ic_repeat),
-                                    HierarchyElement.Type.REPEATABLE_GROUP, fc.getIndex());
-                            elementsToDisplay.add(group);
-                        }
-
-                        break;
-                    }
-                }
-
-                event = formController.stepToNextEvent(FormController.STEP_INTO_GROUP);
+            snapshot = HierarchySnapshot.get(formController, contextGroupRef, repeatGroupPickerIndex);
+            if (snapshot.getElements().isEmpty()) {
+                snapshot.loadNextPage(this, formController);
             }
 
-            recyclerView.setAdapter(new HierarchyListAdapter(elementsToDisplay, this::onElementClick));
+            elementsToDisplay = snapshot.getElements();
+            recyclerView.setAdapter(new HierarchyListAdapter(elementsToDisplay, this::onElementClick, this::onElementBind));
 
             formController.jumpToIndex(currentIndex);
 
@@ -678,10 +562,39 @@ public class FormHierarchyActivity extends CollectAbstractActivity implements De
      * Groups like this are often used to display a label in the hierarchy path.
      */
     private boolean isDisplayingSingleGroup() {
-        return elementsToDisplay.size() == 1
+        return snapshot.isComplete() && elementsToDisplay.size() == 1
                 && elementsToDisplay.get(0).getType() == HierarchyElement.Type.VISIBLE_GROUP;
     }
 
+    /**
+     * Reads the next page of the screen into the list.
+     *
+     * @return false if the whole screen had already been read
+     */
+    private boolean loadNextPage() {
+        if (snapshot == null || snapshot.isComplete()) {
+            return false;
+        }
+
+        int positionStart = elementsToDisplay.size();
+        int added = snapshot.loadNextPage(this, Collect.getInstance().getFormController());
+        if (added > 0 && recyclerView.getAdapter() != null) {
+            recyclerView.getAdapter().notifyItemRangeInserted(positionStart, added);
+        }
+
+        return true;
+    }
+
+    /**
+     * Computes the answer text of questions as they are about to be displayed. This has to happen
+     * on the UI thread as it can evaluate XPath (e.g. for dynamic choices) on the FormController.
+     */
+    private void onElementBind(HierarchyElement element, int position) {
+        if (snapshot.needsAnswerText(element)) {
+            snapshot.loadAnswerText(element, this, Collect.getInstance().getFormController());
+        }
+    }
+
     /**
      * Handles clicks on a specific row in the hierarchy view.
      */
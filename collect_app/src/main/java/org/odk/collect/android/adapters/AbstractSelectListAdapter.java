@@ -49,7 +49,6 @@ import org.odk.collect.audioclips.Clip;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Locale;
 
 import timber.log.Timber;
 
@@ -64,6 +63,12 @@ public abstract class AbstractSelectListAdapter extends RecyclerView.Adapter<Abs
     protected Context context;
     protected List<SelectChoice> items;
     protected List<SelectChoice> filteredItems;
+
+    /**
+     * The positions in {@link #items} of {@link #filteredItems} or null if nothing is filtered out.
+     */
+    private int[] filteredPositions;
+    private SelectChoiceSearchIndex searchIndex;
     protected final FormEntryPrompt prompt;
     protected final ReferenceManager referenceManager;
     protected AudioHelper audioHelper;
@@ -95,24 +100,26 @@ public abstract class AbstractSelectListAdapter extends RecyclerView.Adapter<Abs
         return filteredItems.size();
     }
 
+    /**
+     * Filters on a background thread (see {@link Filter}) using an index of the choice labels that
+     * is built the first time the choices are filtered.
+     */
     @Override
     public Filter getFilter() {
         return new Filter() {
             @Override
             protected FilterResults performFiltering(CharSequence charSequence) {
-                String searchStr = charSequence.toString().toLowerCase(Locale.US);
                 FilterResults filterResults = new FilterResults();
-                if (searchStr.isEmpty()) {
-                    filterResults.values = items;
+                if (charSequence.length() == 0) {
+                    filterResults.values = new FilteredChoices(items, null);
                     filterResults.count = items.size();
                 } else {
-                    List<SelectChoice> filteredList = new ArrayList<>();
-                    for (SelectChoice item : items) {
-                        if (prompt.getSelectChoiceText(item).toLowerCase(Locale.US).contains(searchStr)) {
-                            filteredList.add(item);
-                        }
+                    int[] positions = getSearchIndex().search(charSequence.toString());
+                    List<SelectChoice> filteredList = new ArrayList<>(positions.length);
+                    for (int position : positions) {
+                        filteredList.add(items.get(position));
                     }
-                    filterResults.values = filteredList;
+                    filterResults.values = new FilteredChoices(filteredList, positions);
                     filterResults.count = filteredList.size();
                 }
 
@@ -121,18 +128,40 @@ public abstract class AbstractSelectListAdapter extends RecyclerView.Adapter<Abs
 
             @Override
             protected void publishResults(CharSequence charSequence, FilterResults filterResults) {
-                filteredItems = (List<SelectChoice>) filterResults.values;
+                FilteredChoices filteredChoices = (FilteredChoices) filterResults.values;
+                filteredItems = filteredChoices.items;
+                filteredPositions = filteredChoices.positions;
                 notifyDataSetChanged();
             }
         };
     }
 
+    private synchronized SelectChoiceSearchIndex getSearchIndex() {
+        if (searchIndex == null) {
+            List<String> labels = new ArrayList<>(items.size());
+            for (SelectChoice item : items) {
+                labels.add(prompt.getSelectChoiceText(item));
+            }
+            searchIndex = new SelectChoiceSearchIndex(labels);
+        }
+
+        return searchIndex;
+    }
+
+    /**
+     * @return the position in {@link #items} of the item at the given position in
+     * {@link #filteredItems}
+     */
+    int getItemPosition(int filteredIndex) {
+        return filteredPositions == null ? filteredIndex : filteredPositions[filteredIndex];
+    }
+
     abstract CompoundButton createButton(int index, ViewGroup parent);
 
     void setUpButton(TextView button, int index) {
         button.setTextSize(TypedValue.COMPLEX_UNIT_DIP, QuestionFontSizeUtils.getQuestionFontSize());
         button.setText(StringUtils.textToHtml(prompt.getSelectChoiceText(filteredItems.get(index))));
-        button.setTag(items.indexOf(filteredItems.get(index)));
+        button.setTag(getItemPosition(index));
         button.setGravity(isRTL() ? Gravity.END : Gravity.START);
         button.setTextAlignment(isRTL() ? View.TEXT_ALIGNMENT_TEXT_END : View.TEXT_ALIGNMENT_TEXT_START);
     }
@@ -166,6 +195,16 @@ public abstract class AbstractSelectListAdapter extends RecyclerView.Adapter<Abs
         this.audioHelper = audioHelper;
     }
 
+    private static class FilteredChoices {
+        final List<SelectChoice> items;
+        final int[] positions;
+
+        FilteredChoices(List<SelectChoice> items, int[] positions) {
+            this.items = items;
+            this.positions = positions;
+        }
+    }
+
     abstract class ViewHolder extends RecyclerView.ViewHolder {
         AudioVideoImageTextLabel audioVideoImageTextLabel;
         NoButtonsItem noButtonsItem;
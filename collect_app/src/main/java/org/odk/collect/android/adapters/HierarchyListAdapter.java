@@ -17,7 +17,11 @@
 package org.odk.collect.android.adapters;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.core.content.ContextCompat;
 import androidx.recyclerview.widget.RecyclerView;
+import android.content.Context;
+import android.graphics.drawable.Drawable;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -33,12 +37,19 @@ import java.util.List;
 public class HierarchyListAdapter extends RecyclerView.Adapter<HierarchyListAdapter.ViewHolder> {
 
     private final OnElementClickListener listener;
+    private final OnElementBindListener bindListener;
 
     private final List<HierarchyElement> hierarchyElements;
 
     public HierarchyListAdapter(List<HierarchyElement> listElements, OnElementClickListener listener) {
+        this(listElements, listener, null);
+    }
+
+    public HierarchyListAdapter(List<HierarchyElement> listElements, OnElementClickListener listener,
+                                @Nullable OnElementBindListener bindListener) {
         this.hierarchyElements = listElements;
         this.listener = listener;
+        this.bindListener = bindListener;
     }
 
     @Override
@@ -49,9 +60,14 @@ public class HierarchyListAdapter extends RecyclerView.Adapter<HierarchyListAdap
     @Override
     public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
         holder.bind(hierarchyElements.get(position), listener);
-        if (hierarchyElements.get(position).getIcon() != null) {
+        if (bindListener != null) {
+            bindListener.onElementBind(hierarchyElements.get(position), position);
+        }
+
+        Drawable icon = getIcon(hierarchyElements.get(position), holder.itemView.getContext());
+        if (icon != null) {
             holder.icon.setVisibility(View.VISIBLE);
-            holder.icon.setImageDrawable(hierarchyElements.get(position).getIcon());
+            holder.icon.setImageDrawable(icon);
         } else {
             holder.icon.setVisibility(View.GONE);
         }
@@ -64,6 +80,26 @@ public class HierarchyListAdapter extends RecyclerView.Adapter<HierarchyListAdap
         }
     }
 
+    /**
+     * Groups and repeats get their icon from their type so that elements can be kept without
+     * holding on to drawables.
+     */
+    @Nullable
+    private static Drawable getIcon(HierarchyElement element, Context context) {
+        if (element.getIcon() != null) {
+            return element.getIcon();
+        }
+
+        switch (element.getType()) {
+            case VISIBLE_GROUP:
+                return ContextCompat.getDrawable(context, R.drawable.ic_folder_open);
+            case REPEATABLE_GROUP:
+                return ContextCompat.getDrawable(context, R.drawable.ic_repeat);
+            default:
+                return null;
+        }
+    }
+
     @Override
     public int getItemCount() {
         return hierarchyElements.size();
@@ -89,4 +125,8 @@ public class HierarchyListAdapter extends RecyclerView.Adapter<HierarchyListAdap
     public interface OnElementClickListener {
         void onElementClick(HierarchyElement element);
     }
+
+    public interface OnElementBindListener {
+        void onElementBind(HierarchyElement element, int position);
+    }
 }
\ No newline at end of file
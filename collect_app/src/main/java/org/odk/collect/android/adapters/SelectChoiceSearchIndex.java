@@ -0,0 +1,96 @@
+package org.odk.collect.android.adapters;
+
+import java.text.Normalizer;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Labels of a select's choices normalized once (lowercased and with accents removed) so that
+ * filtering the choices as the user types doesn't have to render and lowercase every label on
+ * every keystroke. A choice matches if its label contains the query.
+ *
+ * Queries usually grow one character at a time so when a query extends the previous one only the
+ * previous matches are searched again.
+ */
+public class SelectChoiceSearchIndex {
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+
+    private final String[] labels;
+
+    private String lastQuery;
+    private int[] lastMatches;
+
+    public SelectChoiceSearchIndex(List<String> labels) {
+        this.labels = new String[labels.size()];
+        for (int i = 0; i < this.labels.length; i++) {
+            this.labels[i] = normalize(labels.get(i));
+        }
+    }
+
+    /**
+     * @return the positions of the choices whose label contains the query, in ascending order
+     */
+    public synchronized int[] search(String query) {
+        String normalizedQuery = normalize(query);
+
+        int[] matches;
+        if (lastQuery != null && normalizedQuery.startsWith(lastQuery)) {
+            matches = search(normalizedQuery, lastMatches, lastMatches.length);
+        } else {
+            matches = search(normalizedQuery, null, labels.length);
+        }
+
+        lastQuery = normalizedQuery;
+        lastMatches = matches;
+        return matches;
+    }
+
+    public int size() {
+        return labels.length;
+    }
+
+    private int[] search(String normalizedQuery, int[] candidates, int candidateCount) {
+        int[] matches = new int[candidateCount];
+        int count = 0;
+
+        for (int i = 0; i < candidateCount; i++) {
+            int position = candidates == null ? i : candidates[i];
+            if (labels[position].contains(normalizedQuery)) {
+                matches[count++] = position;
+            }
+        }
+
+        if (count == matches.length) {
+            return matches;
+        }
+
+        int[] trimmed = new int[count];
+        System.arraycopy(matches, 0, trimmed, 0, count);
+        return trimmed;
+    }
+
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+
+        if (isAscii(text)) {
+            return text.toLowerCase(Locale.US);
+        }
+
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        return COMBINING_MARKS.matcher(decomposed).replaceAll("").toLowerCase(Locale.US);
+    }
+
+    private static boolean isAscii(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
@@ -31,9 +31,11 @@ import org.odk.collect.android.external.ExternalDataManager;
 import org.odk.collect.android.injection.config.AppDependencyComponent;
 import org.odk.collect.android.injection.config.DaggerAppDependencyComponent;
 import org.odk.collect.android.javarosawrapper.FormController;
+import org.odk.collect.android.logic.HierarchySnapshot;
 import org.odk.collect.android.preferences.PreferencesProvider;
 import org.odk.collect.android.storage.StoragePathProvider;
 import org.odk.collect.android.utilities.FileUtils;
+import org.odk.collect.android.utilities.FormDefMemoryCache;
 import org.odk.collect.android.utilities.LocaleHelper;
 import org.odk.collect.strings.LocalizedApplication;
 
@@ -60,6 +62,9 @@ public class Collect extends Application implements LocalizedApplication {
     @Inject
     PreferencesProvider preferencesProvider;
 
+    @Inject
+    FormDefMemoryCache formDefMemoryCache;
+
     public static Collect getInstance() {
         return singleton;
     }
@@ -92,6 +97,10 @@ public class Collect extends Application implements LocalizedApplication {
     }
 
     public void setFormController(@Nullable FormController controller) {
+        if (controller != formController) {
+            HierarchySnapshot.clearCache();
+        }
+
         formController = controller;
     }
 
@@ -120,6 +129,7 @@ public class Collect extends Application implements LocalizedApplication {
 
         setupDagger();
         applicationInitializer.initialize();
+        registerComponentCallbacks(formDefMemoryCache);
         
         fixGoogleBug154855417();
 
@@ -93,7 +93,8 @@ public class AutoSendTaskSpec implements TaskSpec {
      * - the network type that toggled on is not the desired type AND no form specifies auto-send
      * <p>
      * If the network type doesn't match the auto-send settings, retry next time a connection is
-     * available.
+     * available. If an instance failed to upload, retry with a backoff until it has used up its
+     * retries (see {@link org.odk.collect.android.upload.SubmissionUploadState}).
      */
     @NotNull
     @Override
@@ -116,8 +117,9 @@ public class AutoSendTaskSpec implements TaskSpec {
 
             return changeLock.withLock(acquiredLock -> {
                 if (acquiredLock) {
+                    InstanceSubmitter instanceSubmitter = new InstanceSubmitter(analytics, formsRepository, instancesRepository, googleAccountsManager, googleApiProvider, permissionsProvider);
                     try {
-                        Pair<Boolean, String> results = new InstanceSubmitter(analytics, formsRepository, instancesRepository, googleAccountsManager, googleApiProvider, permissionsProvider).submitUnsubmittedInstances();
+                        Pair<Boolean, String> results = instanceSubmitter.submitUnsubmittedInstances();
                         notifier.onSubmission(results.first, results.second);
                     } catch (SubmitException e) {
                         switch (e.getType()) {
@@ -132,7 +134,9 @@ public class AutoSendTaskSpec implements TaskSpec {
                         }
                     }
 
-                    return true;
+                    // Asking to be retried lets WorkManager's exponential backoff bring us back
+                    // for instances that failed while they are also backing off themselves
+                    return !instanceSubmitter.shouldRetryAutoSend();
                 } else {
                     return false;
                 }
@@ -0,0 +1,6 @@
+package org.odk.collect.android.backgroundwork;
+
+public interface FormPrewarmManager {
+
+    void schedulePrewarm();
+}
@@ -0,0 +1,125 @@
+package org.odk.collect.android.backgroundwork;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import timber.log.Timber;
+
+/**
+ * Remembers the size and modification time of the external data files (CSVs and zips of CSVs)
+ * in a form's media folder when they were last imported, in the same way the itemsets table does
+ * for itemsets.csv. The folder's own modification time can't be used for this as it changes
+ * whenever the import databases are written and not when a file is replaced in place.
+ *
+ * The state is kept in a hidden file in the media folder so it is deleted along with the form.
+ */
+final class ImportedMediaState {
+
+    static final String STATE_FILE_NAME = ".imported-media";
+
+    private static final int VERSION = 1;
+
+    private ImportedMediaState() {
+    }
+
+    /**
+     * @return true if there is nothing to import in the media folder or every file to import is
+     * the same as when it was last imported
+     */
+    static boolean isImported(File mediaDir) {
+        Map<String, FileInfo> current = getImportableFiles(mediaDir);
+        return current.isEmpty() || current.equals(read(mediaDir));
+    }
+
+    static void onImported(File mediaDir) {
+        write(mediaDir, getImportableFiles(mediaDir));
+    }
+
+    private static Map<String, FileInfo> getImportableFiles(File mediaDir) {
+        Map<String, FileInfo> files = new HashMap<>();
+
+        File[] mediaFiles = mediaDir.listFiles(file -> {
+            String lowerCaseName = file.getName().toLowerCase(Locale.US);
+            return lowerCaseName.endsWith(".csv") || lowerCaseName.endsWith(".zip");
+        });
+
+        if (mediaFiles != null) {
+            for (File file : mediaFiles) {
+                files.put(file.getName(), new FileInfo(file.length(), file.lastModified()));
+            }
+        }
+
+        return files;
+    }
+
+    private static Map<String, FileInfo> read(File mediaDir) {
+        Map<String, FileInfo> files = new HashMap<>();
+        File stateFile = new File(mediaDir, STATE_FILE_NAME);
+        if (!stateFile.exists()) {
+            return files;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(stateFile)))) {
+            if (in.readInt() != VERSION) {
+                return files;
+            }
+
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                files.put(in.readUTF(), new FileInfo(in.readLong(), in.readLong()));
+            }
+        } catch (IOException e) {
+            Timber.w(e, "Ignoring unreadable media state %s", stateFile.getAbsolutePath());
+            files.clear();
+        }
+
+        return files;
+    }
+
+    private static void write(File mediaDir, Map<String, FileInfo> files) {
+        File stateFile = new File(mediaDir, STATE_FILE_NAME);
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(stateFile)))) {
+            out.writeInt(VERSION);
+            out.writeInt(files.size());
+            for (Map.Entry<String, FileInfo> entry : files.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeLong(entry.getValue().size);
+                out.writeLong(entry.getValue().lastModified);
+            }
+        } catch (IOException e) {
+            Timber.w(e, "Could not write media state %s", stateFile.getAbsolutePath());
+        }
+    }
+
+    private static class FileInfo {
+        final long size;
+        final long lastModified;
+
+        FileInfo(long size, long lastModified) {
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof FileInfo
+                    && size == ((FileInfo) other).size
+                    && lastModified == ((FileInfo) other).lastModified;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.valueOf(size).hashCode() * 31 + Long.valueOf(lastModified).hashCode();
+        }
+    }
+}
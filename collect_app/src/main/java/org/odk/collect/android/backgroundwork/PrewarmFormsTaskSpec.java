@@ -0,0 +1,190 @@
+package org.odk.collect.android.backgroundwork;
+
+import android.content.Context;
+
+import androidx.work.WorkerParameters;
+
+import org.javarosa.core.model.FormDef;
+import org.javarosa.core.reference.ReferenceManager;
+import org.javarosa.xform.util.XFormUtils;
+import org.jetbrains.annotations.NotNull;
+import org.odk.collect.android.external.ExternalDataImporter;
+import org.odk.collect.android.forms.Form;
+import org.odk.collect.android.forms.FormMediaLock;
+import org.odk.collect.android.forms.FormsRepository;
+import org.odk.collect.android.injection.DaggerUtils;
+import org.odk.collect.android.storage.StoragePathProvider;
+import org.odk.collect.android.storage.migration.StorageMigrationRepository;
+import org.odk.collect.android.utilities.FileUtils;
+import org.odk.collect.android.utilities.FormDefCache;
+import org.odk.collect.async.TaskSpec;
+import org.odk.collect.async.WorkerAdapter;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import timber.log.Timber;
+
+import static org.odk.collect.android.forms.FormUtils.setupReferenceManagerForForm;
+
+/**
+ * Parses and caches the FormDef of every form that doesn't have a cached FormDef yet and
+ * imports the external data in its media folder if it has changed since it was last imported
+ * ({@link ImportedMediaState}), so that the first time the form is opened it loads as fast as
+ * any later time. If a form is being loaded to be filled in
+ * ({@link FormMediaLock}) the task stops and is retried later.
+ */
+public class PrewarmFormsTaskSpec implements TaskSpec {
+
+    private static final Map<String, Long> FAILED_FORMS = new ConcurrentHashMap<>();
+
+    @Inject
+    FormsRepository formsRepository;
+
+    @Inject
+    StoragePathProvider storagePathProvider;
+
+    @Inject
+    StorageMigrationRepository storageMigrationRepository;
+
+    @Inject
+    @Named("FORMS")
+    ChangeLock changeLock;
+
+    @Inject
+    FormMediaLock formMediaLock;
+
+    @NotNull
+    @Override
+    public Supplier<Boolean> getTask(@NotNull Context context) {
+        DaggerUtils.getComponent(context).inject(this);
+
+        return () -> {
+            if (storageMigrationRepository.isMigrationBeingPerformed()) {
+                return false;
+            }
+
+            return changeLock.withLock(acquiredLock -> {
+                if (!acquiredLock) {
+                    return false;
+                }
+
+                for (Form form : formsRepository.getAll()) {
+                    if (!form.isDeleted() && !prewarmIfNeeded(form)) {
+                        return false;
+                    }
+                }
+
+                return true;
+            });
+        };
+    }
+
+    /**
+     * @return false if the form needed pre-warming but another form was being loaded so it
+     * couldn't be done right now
+     */
+    private boolean prewarmIfNeeded(Form form) {
+        File formFile = new File(storagePathProvider.getAbsoluteFormFilePath(form.getFormFilePath()));
+        if (!formFile.exists() || form.getJrCacheFilePath() == null) {
+            return true;
+        }
+
+        File mediaDir = FileUtils.getFormMediaDir(formFile);
+        File cacheFile = new File(storagePathProvider.getAbsoluteCacheFilePath(form.getJrCacheFilePath()));
+
+        boolean formDefCached = cacheFile.exists();
+        boolean mediaImported = !mediaDir.exists() || ImportedMediaState.isImported(mediaDir);
+        if (formDefCached && mediaImported) {
+            return true;
+        }
+
+        if (!formDefCached && hasFailedBefore(formFile)) {
+            return true;
+        }
+
+        // Loading a form points the ReferenceManager at its media folder and imports its
+        // external data so we don't want to do either at the same time
+        if (!formMediaLock.tryLock()) {
+            return false;
+        }
+
+        try {
+            prewarm(formFile, mediaDir, formDefCached, mediaImported);
+        } finally {
+            formMediaLock.restoreReferenceManagerForFormEntry();
+            formMediaLock.unlock();
+        }
+
+        return true;
+    }
+
+    private void prewarm(File formFile, File mediaDir, boolean formDefCached, boolean mediaImported) {
+        Timber.i("Pre-warming %s", formFile.getName());
+        final long start = System.currentTimeMillis();
+
+        try {
+            setupReferenceManagerForForm(ReferenceManager.instance(), mediaDir);
+
+            if (!formDefCached) {
+                String lastSavedSrc = FileUtils.getOrCreateLastSavedSrc(formFile);
+                FormDef formDef = XFormUtils.getFormFromFormXml(formFile.getAbsolutePath(), lastSavedSrc);
+                if (formDef == null) {
+                    FAILED_FORMS.put(formFile.getAbsolutePath(), formFile.lastModified());
+                    return;
+                }
+
+                FormDefCache.writeCache(formDef, formFile.getAbsolutePath());
+            }
+
+            if (!mediaImported) {
+                ExternalDataImporter externalDataImporter = new ExternalDataImporter(null);
+                externalDataImporter.importExternalData(mediaDir);
+
+                String itemsetsWarning = externalDataImporter.importItemsets(mediaDir);
+                if (itemsetsWarning != null) {
+                    Timber.w(itemsetsWarning);
+                } else {
+                    ImportedMediaState.onImported(mediaDir);
+                }
+            }
+
+            Timber.i("Pre-warmed %s in %.3f seconds.", formFile.getName(), (System.currentTimeMillis() - start) / 1000F);
+        } catch (IOException | RuntimeException e) {
+            // The form will be loaded the regular way when it's opened
+            Timber.w(e);
+            FAILED_FORMS.put(formFile.getAbsolutePath(), formFile.lastModified());
+        } catch (StackOverflowError e) {
+            Timber.w("%s is too complex to pre-warm", formFile.getName());
+            FAILED_FORMS.put(formFile.getAbsolutePath(), formFile.lastModified());
+        }
+    }
+
+    /**
+     * Forms that can't be parsed or cached (and so never get a cached FormDef) would otherwise be
+     * parsed and have their media imported again every time pre-warming runs
+     */
+    private static boolean hasFailedBefore(File formFile) {
+        Long lastModified = FAILED_FORMS.get(formFile.getAbsolutePath());
+        return lastModified != null && lastModified == formFile.lastModified();
+    }
+
+    @NotNull
+    @Override
+    public Class<? extends WorkerAdapter> getWorkManagerAdapter() {
+        return Adapter.class;
+    }
+
+    public static class Adapter extends WorkerAdapter {
+
+        public Adapter(@NotNull Context context, @NotNull WorkerParameters workerParams) {
+            super(new PrewarmFormsTaskSpec(), context, workerParams);
+        }
+    }
+}
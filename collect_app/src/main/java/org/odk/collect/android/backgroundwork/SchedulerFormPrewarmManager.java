@@ -0,0 +1,19 @@
+package org.odk.collect.android.backgroundwork;
+
+import org.odk.collect.async.Scheduler;
+
+public class SchedulerFormPrewarmManager implements FormPrewarmManager {
+
+    private static final String PREWARM_TAG = "prewarmForms";
+
+    private final Scheduler scheduler;
+
+    public SchedulerFormPrewarmManager(Scheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public void schedulePrewarm() {
+        scheduler.deferred(PREWARM_TAG, new PrewarmFormsTaskSpec());
+    }
+}
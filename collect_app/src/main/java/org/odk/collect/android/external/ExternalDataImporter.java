@@ -0,0 +1,208 @@
+package org.odk.collect.android.external;
+
+import android.database.Cursor;
+import android.database.SQLException;
+
+import androidx.annotation.Nullable;
+
+import org.odk.collect.android.R;
+import org.odk.collect.android.application.Collect;
+import org.odk.collect.android.fastexternalitemset.ItemsetDbAdapter;
+import org.odk.collect.android.tasks.FormLoaderTask;
+import org.odk.collect.android.utilities.FileUtils;
+import org.odk.collect.android.utilities.ZipUtils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import au.com.bytecode.opencsv.CSVReader;
+import timber.log.Timber;
+
+/**
+ * Imports the data files in a form's media folder (external data CSVs used by pulldata() and
+ * search(), and itemsets.csv used by fast external itemsets) into their SQLite databases.
+ * Used when loading a form and when pre-warming forms in the background.
+ */
+public class ExternalDataImporter {
+
+    public static final String ITEMSETS_CSV = "itemsets.csv";
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    @Nullable
+    private final FormLoaderTask formLoaderTask;
+
+    public ExternalDataImporter(@Nullable FormLoaderTask formLoaderTask) {
+        this.formLoaderTask = formLoaderTask;
+    }
+
+    public void importExternalData(File mediaFolder) {
+        // SCTO-594
+        File[] zipFiles = mediaFolder.listFiles(file -> file.getName().toLowerCase(Locale.US).endsWith(".zip"));
+
+        if (zipFiles != null) {
+            ZipUtils.unzip(zipFiles);
+            for (File zipFile : zipFiles) {
+                boolean deleted = zipFile.delete();
+                if (!deleted) {
+                    Timber.w("Cannot delete %s. It will be re-unzipped next time. :(", zipFile.toString());
+                }
+            }
+        }
+
+        File[] csvFiles = mediaFolder.listFiles(file -> {
+            String lowerCaseName = file.getName().toLowerCase(Locale.US);
+            return lowerCaseName.endsWith(".csv") && !lowerCaseName.equalsIgnoreCase(ITEMSETS_CSV);
+        });
+
+        Map<String, File> externalDataMap = new HashMap<>();
+
+        if (csvFiles != null) {
+
+            for (File csvFile : csvFiles) {
+                String dataSetName = csvFile.getName().substring(0,
+                        csvFile.getName().lastIndexOf("."));
+                externalDataMap.put(dataSetName, csvFile);
+            }
+
+            if (!externalDataMap.isEmpty()) {
+                if (formLoaderTask != null) {
+                    formLoaderTask.publishExternalDataLoadingProgress(Collect.getInstance()
+                            .getString(R.string.survey_loading_reading_csv_message));
+                }
+
+                ExternalDataReader externalDataReader = new ExternalDataReaderImpl(formLoaderTask);
+                externalDataReader.doImport(externalDataMap);
+            }
+        }
+    }
+
+    /**
+     * Imports itemsets.csv from the media folder if it is new or has changed since the last
+     * import. A file with the same size and modification time as the last import is assumed to
+     * be unchanged so it doesn't need to be read at all.
+     *
+     * @return a warning message if the import failed, or null
+     */
+    @Nullable
+    public String importItemsets(File mediaFolder) {
+        final File csv = new File(mediaFolder.getAbsolutePath() + "/" + ITEMSETS_CSV);
+        if (!csv.exists()) {
+            return null;
+        }
+
+        final long size = csv.length();
+        final long lastModified = csv.lastModified();
+        final String pathHash = ItemsetDbAdapter.getMd5FromString(csv.getAbsolutePath());
+
+        final ItemsetDbAdapter ida = new ItemsetDbAdapter();
+        ida.open();
+        try {
+            // get the database entry (if exists) for this itemsets.csv, based
+            // on the path
+            final Cursor c = ida.getItemsets(csv.getAbsolutePath());
+            if (c != null) {
+                try {
+                    if (c.getCount() == 1) {
+                        c.moveToFirst(); // should be only one, ever, if any
+                        if (isUnchanged(ida, c, csv, size, lastModified)) {
+                            return null;
+                        }
+
+                        // the csv has been updated, delete the old entries
+                        ida.dropTable(pathHash, csv.getAbsolutePath());
+                    }
+                } finally {
+                    c.close();
+                }
+            }
+
+            return readCSV(ida, csv, pathHash, size, lastModified);
+        } finally {
+            ida.close();
+        }
+    }
+
+    /**
+     * Checks the size and modification time recorded at the last import first. The file is
+     * only hashed if they can't tell: when it has been touched without changing size or when
+     * they weren't recorded.
+     */
+    private boolean isUnchanged(ItemsetDbAdapter ida, Cursor itemset, File csv, long size, long lastModified) {
+        int sizeColumn = itemset.getColumnIndex(ItemsetDbAdapter.KEY_SIZE);
+        int lastModifiedColumn = itemset.getColumnIndex(ItemsetDbAdapter.KEY_LAST_MODIFIED);
+        boolean hasFileInfo = !itemset.isNull(sizeColumn) && !itemset.isNull(lastModifiedColumn);
+
+        if (hasFileInfo && itemset.getLong(sizeColumn) != size) {
+            return false;
+        }
+
+        if (hasFileInfo && itemset.getLong(lastModifiedColumn) == lastModified) {
+            return true;
+        }
+
+        final String oldmd5 = itemset.getString(itemset.getColumnIndex(ItemsetDbAdapter.KEY_ITEMSET_HASH));
+        if (oldmd5 != null && oldmd5.equals(FileUtils.getMd5Hash(csv))) {
+            ida.updateFileInfo(csv.getAbsolutePath(), size, lastModified);
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Creates and populates the itemset table in a single transaction, hashing the file as it's
+     * read so it's only read once.
+     */
+    @Nullable
+    private String readCSV(ItemsetDbAdapter ida, File csv, String pathHash, long size, long lastModified) {
+        final long start = System.currentTimeMillis();
+        final MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            return e.getMessage();
+        }
+
+        int rowCount = 0;
+        ida.beginTransaction();
+        try (CSVReader reader = new CSVReader(new BufferedReader(new InputStreamReader(
+                new DigestInputStream(new FileInputStream(csv), md), "UTF-8"), READ_BUFFER_SIZE))) {
+            // first line of csv is column headers
+            String[] columnHeaders = reader.readNext();
+            if (columnHeaders == null) {
+                return null;
+            }
+            ida.createTable(pathHash, columnHeaders);
+
+            // add the rest of the lines to the specified database
+            try (ItemsetDbAdapter.RowInserter rowInserter = ida.getRowInserter(pathHash, columnHeaders)) {
+                String[] nextLine;
+                while ((nextLine = reader.readNext()) != null) {
+                    rowInserter.addRow(nextLine);
+                    rowCount++;
+                }
+            }
+
+            ida.addItemset(FileUtils.toMd5Hash(md.digest()), csv.getAbsolutePath(), size, lastModified);
+            ida.setTransactionSuccessful();
+        } catch (IOException | SQLException e) {
+            return e.getMessage();
+        } finally {
+            ida.endTransaction();
+        }
+
+        Timber.i("Imported %d itemsets from %s in %.3f seconds.", rowCount, csv.getName(),
+                (System.currentTimeMillis() - start) / 1000F);
+        return null;
+    }
+}
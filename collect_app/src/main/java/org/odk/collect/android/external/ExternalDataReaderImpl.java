@@ -21,11 +21,19 @@ package org.odk.collect.android.external;
 import android.database.sqlite.SQLiteDatabase;
 
 import org.apache.commons.io.FileUtils;
+import org.odk.collect.android.exception.ExternalDataException;
 import org.odk.collect.android.tasks.FormLoaderTask;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import timber.log.Timber;
 
@@ -36,6 +44,12 @@ import timber.log.Timber;
  */
 public class ExternalDataReaderImpl implements ExternalDataReader {
 
+    /**
+     * Imports are mostly disk bound so there's little to gain from more threads than this even
+     * on devices with many cores.
+     */
+    private static final int MAX_IMPORT_THREADS = 4;
+
     private final FormLoaderTask formLoaderTask;
 
     public ExternalDataReaderImpl(FormLoaderTask formLoaderTask) {
@@ -44,15 +58,79 @@ public class ExternalDataReaderImpl implements ExternalDataReader {
 
     @Override
     public void doImport(Map<String, File> externalDataMap) {
+        List<Map.Entry<String, File>> dataSets = new ArrayList<>();
         for (Map.Entry<String, File> stringFileEntry : externalDataMap.entrySet()) {
-            String dataSetName = stringFileEntry.getKey();
-            File dataSetFile = stringFileEntry.getValue();
-            if (!dataSetFile.exists()) {
-                continue;
+            if (stringFileEntry.getValue().exists()) {
+                dataSets.add(stringFileEntry);
+            }
+        }
+
+        if (dataSets.isEmpty()) {
+            return;
+        }
+
+        // each data set is imported into its own database so they can be imported concurrently
+        int threads = Math.min(dataSets.size(), Math.min(MAX_IMPORT_THREADS, Runtime.getRuntime().availableProcessors()));
+        if (threads <= 1) {
+            for (Map.Entry<String, File> dataSet : dataSets) {
+                if (!doImportDataSetAndContinue(dataSet.getKey(), dataSet.getValue())) {
+                    return; // halt if import was cancelled
+                }
+            }
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> imports = new ArrayList<>();
+            for (Map.Entry<String, File> dataSet : dataSets) {
+                imports.add(executor.submit(() -> {
+                    // don't start any more imports once the form load has been cancelled
+                    if (!isCancelled()) {
+                        doImportDataSetAndContinue(dataSet.getKey(), dataSet.getValue());
+                    }
+                }));
             }
-            if (!doImportDataSetAndContinue(dataSetName, dataSetFile)) {
-                return; // halt if import was cancelled
+
+            for (Future<?> dataSetImport : imports) {
+                try {
+                    dataSetImport.get();
+                } catch (ExecutionException e) {
+                    // stop the imports that haven't started yet and report the first failure
+                    executor.shutdownNow();
+                    awaitTermination(executor);
+
+                    Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    } else if (cause instanceof Error) {
+                        throw (Error) cause;
+                    } else {
+                        throw new ExternalDataException(cause.getMessage(), cause);
+                    }
+                }
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            executor.shutdownNow();
+            awaitTermination(executor);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private boolean isCancelled() {
+        return formLoaderTask != null && formLoaderTask.isCancelled();
+    }
+
+    /**
+     * Waits for imports that are already running so their databases aren't left open.
+     */
+    private static void awaitTermination(ExecutorService executor) {
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 
@@ -74,9 +152,17 @@ public class ExternalDataReaderImpl implements ExternalDataReader {
         }
         ExternalSQLiteOpenHelper externalSQLiteOpenHelper = new ExternalSQLiteOpenHelper(
                 dbFile);
-        externalSQLiteOpenHelper.importFromCSV(dataSetFile, this, formLoaderTask);
+        try {
+            externalSQLiteOpenHelper.importFromCSV(dataSetFile, this, formLoaderTask);
+        } catch (RuntimeException e) {
+            // the database might have been created without any data. It will be re-created next time.
+            Timber.w("Import of %s failed so deleting %s", dataSetFile.getName(), dbFile.getName());
+            externalSQLiteOpenHelper.close();
+            deleteDatabase(dbFile);
+            throw e;
+        }
 
-        if (formLoaderTask != null && formLoaderTask.isCancelled()) {
+        if (isCancelled()) {
             Timber.w(
                     "The import was cancelled, so we need to rollback.");
 
@@ -90,12 +176,7 @@ public class ExternalDataReaderImpl implements ExternalDataReader {
             db.close();
 
             // the physically delete the db.
-            try {
-                FileUtils.forceDelete(dbFile);
-                Timber.w("Deleted %s", dbFile.getName());
-            } catch (IOException e) {
-                Timber.e(e);
-            }
+            deleteDatabase(dbFile);
 
             // then just exit and do not process any other CSVs.
             return false;
@@ -104,4 +185,16 @@ public class ExternalDataReaderImpl implements ExternalDataReader {
         return true;
     }
 
+    private static void deleteDatabase(File dbFile) {
+        if (!dbFile.exists()) {
+            return;
+        }
+
+        try {
+            FileUtils.forceDelete(dbFile);
+            Timber.w("Deleted %s", dbFile.getName());
+        } catch (IOException e) {
+            Timber.e(e);
+        }
+    }
 }
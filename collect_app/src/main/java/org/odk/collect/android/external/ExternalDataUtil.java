@@ -60,6 +60,12 @@ public final class ExternalDataUtil {
 
     public static final String EXTERNAL_DATA_TABLE_NAME = "externalData";
     public static final String EXTERNAL_METADATA_TABLE_NAME = "externalMetadata";
+    public static final String EXTERNAL_DATA_FULL_TEXT_TABLE_NAME = "externalData_fts";
+    /**
+     * Columns whose names end with this are added to a full-text index so that contains and
+     * startsWith searches on them don't need to scan the whole table.
+     */
+    public static final String FULL_TEXT_COLUMN_SUFFIX = "_search";
     public static final String SORT_COLUMN_NAME = "c_sortby";
     public static final String COLUMN_DATASET_FILENAME = "dataSetFilename";
     public static final String COLUMN_MD5_HASH = "md5Hash";
@@ -22,6 +22,7 @@ import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 
 import org.odk.collect.android.R;
 import org.odk.collect.android.application.Collect;
@@ -34,6 +35,7 @@ import org.odk.collect.android.utilities.FileUtils;
 import org.odk.collect.android.utilities.SQLiteUtils;
 import org.odk.collect.android.utilities.TranslationHandler;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -57,13 +59,23 @@ public class ExternalSQLiteOpenHelper extends SQLiteOpenHelper {
     private static final char DELIMITING_CHAR = ",".charAt(0);
     private static final char QUOTE_CHAR = "\"".charAt(0);
     private static final char ESCAPE_CHAR = "\0".charAt(0);
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
 
+    private final File dbFile;
     private File dataSetFile;
     private ExternalDataReader externalDataReader;
     private FormLoaderTask formLoaderTask;
 
     ExternalSQLiteOpenHelper(File dbFile) {
         super(new DatabaseContext(dbFile.getParentFile().getAbsolutePath()), dbFile.getName(), null, VERSION);
+        this.dbFile = dbFile;
+    }
+
+    /**
+     * @return a value that changes whenever the database is rebuilt from its data set
+     */
+    public long getDatabaseVersion() {
+        return dbFile.lastModified();
     }
 
     void importFromCSV(File dataSetFile, ExternalDataReader externalDataReader,
@@ -112,7 +124,7 @@ public class ExternalSQLiteOpenHelper extends SQLiteOpenHelper {
 
         CSVReader reader = null;
         try {
-            reader = new CSVReader(new InputStreamReader(new FileInputStream(dataSetFile), "UTF-8"),
+            reader = new CSVReader(new BufferedReader(new InputStreamReader(new FileInputStream(dataSetFile), "UTF-8"), READ_BUFFER_SIZE),
                     DELIMITING_CHAR, QUOTE_CHAR, ESCAPE_CHAR);
             String[] headerRow = reader.readNext();
 
@@ -135,29 +147,43 @@ public class ExternalSQLiteOpenHelper extends SQLiteOpenHelper {
                                 conflictingColumns));
             }
 
+            // work out which CSV columns are imported and their safe names once, rather than
+            // for every cell
             Map<String, String> columnNamesCache = new HashMap<>();
+            List<Integer> columnIndexes = new ArrayList<>();
+            List<String> safeColumnNames = new ArrayList<>();
+            List<String> fullTextColumnNames = new ArrayList<>();
+            int sortColumnIndex = -1;
 
-            StringBuilder sb = new StringBuilder();
-
-            boolean sortColumnAlreadyPresent = false;
+            for (int i = 0; i < headerRow.length; i++) {
+                String columnName = headerRow[i].trim();
+                if (columnName.length() == 0) {
+                    continue;
+                }
+                String safeColumnName = ExternalDataUtil.toSafeColumnName(columnName,
+                        columnNamesCache);
+                if (safeColumnName.equals(ExternalDataUtil.SORT_COLUMN_NAME)) {
+                    sortColumnIndex = i;
+                } else if (safeColumnName.endsWith(ExternalDataUtil.FULL_TEXT_COLUMN_SUFFIX)) {
+                    fullTextColumnNames.add(safeColumnName);
+                }
+                columnIndexes.add(i);
+                safeColumnNames.add(safeColumnName);
+            }
+            boolean sortColumnAlreadyPresent = sortColumnIndex != -1;
 
+            StringBuilder sb = new StringBuilder();
             sb
                     .append("CREATE TABLE IF NOT EXISTS ")
                     .append(tableName)
                     .append(" ( ");
 
-            for (int i = 0; i < headerRow.length; i++) {
-                String columnName = headerRow[i].trim();
-                if (columnName.length() == 0) {
-                    continue;
-                }
+            for (int i = 0; i < safeColumnNames.size(); i++) {
                 if (i != 0) {
                     sb.append(", ");
                 }
-                String safeColumnName = ExternalDataUtil.toSafeColumnName(columnName,
-                        columnNamesCache);
+                String safeColumnName = safeColumnNames.get(i);
                 if (safeColumnName.equals(ExternalDataUtil.SORT_COLUMN_NAME)) {
-                    sortColumnAlreadyPresent = true;
                     sb.append(safeColumnName).append(" real ");
                 } else {
                     sb.append(safeColumnName).append(" text collate nocase ");
@@ -187,56 +213,65 @@ public class ExternalSQLiteOpenHelper extends SQLiteOpenHelper {
                 }
             }
 
-            // populate the database
+            // populate the database with a single compiled statement. onCreate already runs
+            // inside the helper's transaction so rows are only written to disk once at the end.
+            SQLiteStatement insertStatement = db.compileStatement(
+                    buildInsertSql(tableName, safeColumnNames, sortColumnAlreadyPresent));
+            final long start = System.currentTimeMillis();
             String[] row = reader.readNext();
             int rowCount = 0;
-            while (row != null && !isCancelled()) {
-                // SCTO-894 - first we should make sure that this is not an empty line
-                if (!ExternalDataUtil.containsAnyData(row)) {
-                    // yes, that is an empty row, ignore it
-                    row = reader.readNext();
-                    continue;
-                }
-
-                // SCTO-894 - then check if the row contains less values than the header
-                // we should not ignore the existing values in the row,
-                // we will just fill up the rest with empty strings
-                if (row.length < headerRow.length) {
-                    row = ExternalDataUtil.fillUpNullValues(row, headerRow);
-                }
-
-                ContentValues values = new ContentValues();
-                if (!sortColumnAlreadyPresent) {
-                    values.put(ExternalDataUtil.SORT_COLUMN_NAME, rowCount + 1);
-                }
-
-                for (int i = 0; i < row.length && i < headerRow.length; i++) {
-                    String columnName = headerRow[i].trim();
-                    String columnValue = row[i];
-                    if (columnName.length() == 0) {
+            try {
+                while (row != null && !isCancelled()) {
+                    // SCTO-894 - first we should make sure that this is not an empty line
+                    if (!ExternalDataUtil.containsAnyData(row)) {
+                        // yes, that is an empty row, ignore it
+                        row = reader.readNext();
                         continue;
                     }
-                    String safeColumnName = ExternalDataUtil.toSafeColumnName(columnName,
-                            columnNamesCache);
-                    if (safeColumnName.equals(ExternalDataUtil.SORT_COLUMN_NAME)) {
-                        try {
-                            values.put(safeColumnName, Double.parseDouble(columnValue));
-                        } catch (NumberFormatException e) {
-                            throw new ExternalDataException(TranslationHandler.getString(Collect.getInstance(), R.string.ext_sortBy_numeric_error, columnValue));
+
+                    // SCTO-894 - then check if the row contains less values than the header
+                    // we should not ignore the existing values in the row,
+                    // we will just fill up the rest with empty strings
+                    if (row.length < headerRow.length) {
+                        row = ExternalDataUtil.fillUpNullValues(row, headerRow);
+                    }
+
+                    insertStatement.clearBindings();
+                    for (int i = 0; i < columnIndexes.size(); i++) {
+                        int columnIndex = columnIndexes.get(i);
+                        String columnValue = row[columnIndex];
+                        if (columnIndex == sortColumnIndex) {
+                            try {
+                                insertStatement.bindDouble(i + 1, Double.parseDouble(columnValue));
+                            } catch (NumberFormatException e) {
+                                throw new ExternalDataException(TranslationHandler.getString(Collect.getInstance(), R.string.ext_sortBy_numeric_error, columnValue));
+                            }
+                        } else if (columnValue == null) {
+                            insertStatement.bindNull(i + 1);
+                        } else {
+                            insertStatement.bindString(i + 1, columnValue);
                         }
-                    } else {
-                        values.put(safeColumnName, columnValue);
+                    }
+                    if (!sortColumnAlreadyPresent) {
+                        insertStatement.bindLong(columnIndexes.size() + 1, rowCount + 1);
+                    }
+                    insertStatement.executeInsert();
+
+                    row = reader.readNext();
+                    rowCount++;
+                    if (rowCount % 100 == 0) {
+                        onProgress(TranslationHandler.getString(Collect.getInstance(), R.string.ext_import_progress_message,
+                                dataSetFile.getName(), " (" + rowCount + " records so far)"));
                     }
                 }
-                db.insertOrThrow(tableName, null, values);
-                row = reader.readNext();
-                rowCount++;
-                if (rowCount % 100 == 0) {
-                    onProgress(TranslationHandler.getString(Collect.getInstance(), R.string.ext_import_progress_message,
-                            dataSetFile.getName(), " (" + rowCount + " records so far)"));
-                }
+            } finally {
+                insertStatement.close();
             }
 
+            long elapsed = Math.max(1, System.currentTimeMillis() - start);
+            Timber.i("Inserted %d rows from %s in %.3f seconds (%d rows/second).", rowCount,
+                    dataSetFile.getName(), elapsed / 1000F, rowCount * 1000L / elapsed);
+
             if (isCancelled()) {
                 Timber.w("User canceled reading data from %s", dataSetFile.toString());
                 onProgress(TranslationHandler.getString(Collect.getInstance(), R.string.ext_import_cancelled_message));
@@ -250,6 +285,10 @@ public class ExternalSQLiteOpenHelper extends SQLiteOpenHelper {
                     db.execSQL(createIndexCommand);
                 }
 
+                if (!fullTextColumnNames.isEmpty()) {
+                    createFullTextIndex(db, tableName, fullTextColumnNames);
+                }
+
                 Timber.w("Read all data from %s", dataSetFile.toString());
                 onProgress(TranslationHandler.getString(Collect.getInstance(), R.string.ext_import_completed_message));
             }
@@ -264,6 +303,56 @@ public class ExternalSQLiteOpenHelper extends SQLiteOpenHelper {
         }
     }
 
+    /**
+     * Creates an FTS4 table over the given columns that reads its content from the data table
+     * and populates it from the rows that have just been imported. Search handlers can then
+     * look up rows by the words in those columns instead of with LIKE over every row.
+     */
+    private static void createFullTextIndex(SQLiteDatabase db, String tableName, List<String> columnNames) {
+        final long start = System.currentTimeMillis();
+        String fullTextTableName = ExternalDataUtil.EXTERNAL_DATA_FULL_TEXT_TABLE_NAME;
+
+        StringBuilder sb = new StringBuilder()
+                .append("CREATE VIRTUAL TABLE ")
+                .append(fullTextTableName)
+                .append(" USING fts4(content=\"")
+                .append(tableName)
+                .append('"');
+        for (String columnName : columnNames) {
+            sb.append(", ").append(columnName);
+        }
+        sb.append(");");
+
+        Timber.w(sb.toString());
+        db.execSQL(sb.toString());
+        db.execSQL("INSERT INTO " + fullTextTableName + "(" + fullTextTableName + ") VALUES('rebuild');");
+
+        Timber.i("Built full-text index on %s in %.3f seconds.", columnNames,
+                (System.currentTimeMillis() - start) / 1000F);
+    }
+
+    private static String buildInsertSql(String tableName, List<String> columnNames, boolean sortColumnAlreadyPresent) {
+        StringBuilder columns = new StringBuilder();
+        StringBuilder placeholders = new StringBuilder();
+        for (String columnName : columnNames) {
+            if (columns.length() > 0) {
+                columns.append(", ");
+                placeholders.append(", ");
+            }
+            columns.append(columnName);
+            placeholders.append('?');
+        }
+        if (!sortColumnAlreadyPresent) {
+            if (columns.length() > 0) {
+                columns.append(", ");
+                placeholders.append(", ");
+            }
+            columns.append(ExternalDataUtil.SORT_COLUMN_NAME);
+            placeholders.append('?');
+        }
+        return "INSERT INTO " + tableName + " (" + columns + ") VALUES (" + placeholders + ");";
+    }
+
     protected boolean isCancelled() {
         return formLoaderTask != null && formLoaderTask.isCancelled();
     }
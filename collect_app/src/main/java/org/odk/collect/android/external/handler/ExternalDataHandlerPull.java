@@ -42,10 +42,20 @@ public class ExternalDataHandlerPull extends ExternalDataHandlerBase {
 
     public static final String HANDLER_NAME = "pulldata";
 
+    private final ExternalDataQueryCache queryCache = new ExternalDataQueryCache();
+
     public ExternalDataHandlerPull(ExternalDataManager externalDataManager) {
         super(externalDataManager);
     }
 
+    public int getCacheHitCount() {
+        return queryCache.getHitCount();
+    }
+
+    public int getCacheMissCount() {
+        return queryCache.getMissCount();
+    }
+
     @Override
     public String getName() {
         return HANDLER_NAME;
@@ -90,6 +100,12 @@ public class ExternalDataHandlerPull extends ExternalDataHandlerBase {
                 return "";
             }
 
+            long dataSetVersion = sqLiteOpenHelper.getDatabaseVersion();
+            String cachedResult = queryCache.get(dataSetName, dataSetVersion, queriedColumn, referenceColumn, referenceValue);
+            if (cachedResult != null) {
+                return cachedResult;
+            }
+
             SQLiteDatabase db = sqLiteOpenHelper.getReadableDatabase();
             String[] columns = {ExternalDataUtil.toSafeColumnName(queriedColumn)};
             String selection = ExternalDataUtil.toSafeColumnName(referenceColumn) + "=?";
@@ -97,14 +113,18 @@ public class ExternalDataHandlerPull extends ExternalDataHandlerBase {
 
             c = db.query(ExternalDataUtil.EXTERNAL_DATA_TABLE_NAME, columns, selection,
                     selectionArgs, null, null, null);
+            String result;
             if (c.getCount() > 0) {
                 c.moveToFirst();
-                return ExternalDataUtil.nullSafe(c.getString(0));
+                result = ExternalDataUtil.nullSafe(c.getString(0));
             } else {
                 Timber.i("Could not find a value in %s where the column %s has the value %s",
                         queriedColumn, referenceColumn, referenceValue);
-                return "";
+                result = "";
             }
+
+            queryCache.put(dataSetName, dataSetVersion, queriedColumn, referenceColumn, referenceValue, result);
+            return result;
         } catch (SQLiteException e) {
             Timber.i(e);
             return "";
@@ -31,6 +31,7 @@ import org.odk.collect.android.external.ExternalDataManager;
 import org.odk.collect.android.external.ExternalDataUtil;
 import org.odk.collect.android.external.ExternalSQLiteOpenHelper;
 import org.odk.collect.android.external.ExternalSelectChoice;
+import org.odk.collect.android.utilities.SQLiteUtils;
 import org.odk.collect.android.utilities.TranslationHandler;
 
 import java.util.ArrayList;
@@ -158,18 +159,31 @@ public class ExternalDataHandlerSearch extends ExternalDataHandlerBase {
             String selection;
             String[] selectionArgs;
 
+            String searchSelection = null;
+            String[] searchArgs = null;
+            if (searchRows) {
+                String fullTextQuery = hasFullTextIndex(db, queriedColumns)
+                        ? externalDataSearchType.constructFullTextQuery(queriedValue, queriedColumns)
+                        : null;
+                if (fullTextQuery != null) {
+                    searchSelection = createFullTextExpression();
+                    searchArgs = new String[]{fullTextQuery};
+                } else {
+                    searchSelection = createLikeExpression(queriedColumns);
+                    searchArgs = externalDataSearchType.constructLikeArguments(queriedValue,
+                            queriedColumns.size());
+                }
+            }
+
             if (searchRows && useFilter) {
-                selection = "( " + createLikeExpression(queriedColumns) + " ) AND "
+                selection = "( " + searchSelection + " ) AND "
                         + ExternalDataUtil.toSafeColumnName(filterColumn) + "=? ";
-                String[] likeArgs = externalDataSearchType.constructLikeArguments(queriedValue,
-                        queriedColumns.size());
-                selectionArgs = new String[likeArgs.length + 1];
-                System.arraycopy(likeArgs, 0, selectionArgs, 0, likeArgs.length);
+                selectionArgs = new String[searchArgs.length + 1];
+                System.arraycopy(searchArgs, 0, selectionArgs, 0, searchArgs.length);
                 selectionArgs[selectionArgs.length - 1] = filterValue;
             } else if (searchRows) {
-                selection = createLikeExpression(queriedColumns);
-                selectionArgs = externalDataSearchType.constructLikeArguments(queriedValue,
-                        queriedColumns.size());
+                selection = searchSelection;
+                selectionArgs = searchArgs;
             } else if (useFilter) {
                 selection = ExternalDataUtil.toSafeColumnName(filterColumn) + "=? ";
                 selectionArgs = new String[]{filterValue};
@@ -240,6 +254,20 @@ public class ExternalDataHandlerSearch extends ExternalDataHandlerBase {
         return selectChoices;
     }
 
+    /**
+     * @return true if the data set was imported with a full-text index covering all the queried
+     * columns
+     */
+    protected boolean hasFullTextIndex(SQLiteDatabase db, List<String> queriedColumns) {
+        return SQLiteUtils.doesTableExist(db, ExternalDataUtil.EXTERNAL_DATA_FULL_TEXT_TABLE_NAME)
+                && SQLiteUtils.getColumnNames(db, ExternalDataUtil.EXTERNAL_DATA_FULL_TEXT_TABLE_NAME).containsAll(queriedColumns);
+    }
+
+    protected String createFullTextExpression() {
+        return "rowid IN (SELECT docid FROM " + ExternalDataUtil.EXTERNAL_DATA_FULL_TEXT_TABLE_NAME
+                + " WHERE " + ExternalDataUtil.EXTERNAL_DATA_FULL_TEXT_TABLE_NAME + " MATCH ?) ";
+    }
+
     protected String createLikeExpression(List<String> queriedColumns) {
         StringBuilder sb = new StringBuilder();
         for (String queriedColumn : queriedColumns) {
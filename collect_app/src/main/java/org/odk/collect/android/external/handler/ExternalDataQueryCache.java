@@ -0,0 +1,116 @@
+package org.odk.collect.android.external.handler;
+
+import androidx.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers the results of external data lookups for as long as a form is open. JavaRosa
+ * re-evaluates calculations many times while a form is filled in so the same lookups are
+ * repeated over and over.
+ *
+ * Results are grouped by data set and each group is tied to a version of the data set's
+ * database (its modification time). When the database is rebuilt the group is discarded.
+ */
+class ExternalDataQueryCache {
+
+    /** Most results kept for each data set, least recently used ones are dropped first. */
+    private static final int MAX_ENTRIES_PER_DATA_SET = 1000;
+
+    private final Map<String, DataSetResults> dataSets = new HashMap<>();
+
+    private int hitCount;
+    private int missCount;
+
+    /**
+     * @return the cached result of the lookup or null if it hasn't been cached for the given
+     * version of the data set
+     */
+    @Nullable
+    synchronized String get(String dataSetName, long dataSetVersion, String queriedColumn, String referenceColumn, String referenceValue) {
+        DataSetResults results = dataSets.get(dataSetName);
+        if (results != null && results.version != dataSetVersion) {
+            dataSets.remove(dataSetName);
+            results = null;
+        }
+
+        String result = results != null ? results.get(new Key(queriedColumn, referenceColumn, referenceValue)) : null;
+        if (result != null) {
+            hitCount++;
+        } else {
+            missCount++;
+        }
+        return result;
+    }
+
+    synchronized void put(String dataSetName, long dataSetVersion, String queriedColumn, String referenceColumn, String referenceValue, String result) {
+        DataSetResults results = dataSets.get(dataSetName);
+        if (results == null || results.version != dataSetVersion) {
+            results = new DataSetResults(dataSetVersion);
+            dataSets.put(dataSetName, results);
+        }
+        results.put(new Key(queriedColumn, referenceColumn, referenceValue), result);
+    }
+
+    synchronized void clear() {
+        dataSets.clear();
+    }
+
+    synchronized int getHitCount() {
+        return hitCount;
+    }
+
+    synchronized int getMissCount() {
+        return missCount;
+    }
+
+    private static class DataSetResults extends LinkedHashMap<Key, String> {
+        final long version;
+
+        DataSetResults(long version) {
+            super(16, 0.75f, true);
+            this.version = version;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, String> eldest) {
+            return size() > MAX_ENTRIES_PER_DATA_SET;
+        }
+    }
+
+    private static class Key {
+        final String queriedColumn;
+        final String referenceColumn;
+        final String referenceValue;
+
+        Key(String queriedColumn, String referenceColumn, String referenceValue) {
+            this.queriedColumn = queriedColumn;
+            this.referenceColumn = referenceColumn;
+            this.referenceValue = referenceValue;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return queriedColumn.equals(key.queriedColumn)
+                    && referenceColumn.equals(key.referenceColumn)
+                    && referenceValue.equals(key.referenceValue);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = queriedColumn.hashCode();
+            result = 31 * result + referenceColumn.hashCode();
+            result = 31 * result + referenceValue.hashCode();
+            return result;
+        }
+    }
+}
@@ -18,6 +18,9 @@
 
 package org.odk.collect.android.external.handler;
 
+import java.util.List;
+import java.util.regex.Pattern;
+
 /**
  * Author: Meletis Margaritis
  * Date: 20/05/13
@@ -30,6 +33,11 @@ enum ExternalDataSearchType {
         protected String getSingleLikeArgument(String queriedValue) {
             return '%' + queriedValue + '%';
         }
+
+        @Override
+        protected String getSingleFullTextTerm(String column, String queriedValue) {
+            return column + ':' + queriedValue + '*';
+        }
     },
 
     MATCHES("matches") {
@@ -44,6 +52,11 @@ enum ExternalDataSearchType {
         protected String getSingleLikeArgument(String queriedValue) {
             return queriedValue + '%';
         }
+
+        @Override
+        protected String getSingleFullTextTerm(String column, String queriedValue) {
+            return column + ":^" + queriedValue + '*';
+        }
     },
 
     ENDS("endsWith") {
@@ -53,6 +66,12 @@ enum ExternalDataSearchType {
         }
     };
 
+    /**
+     * A single word as split by SQLite's default full-text tokenizer. Anything else would be
+     * treated as FTS query syntax so it's searched with LIKE instead.
+     */
+    private static final Pattern FULL_TEXT_TOKEN = Pattern.compile("[A-Za-z0-9\\u0080-\\uFFFF]+");
+
     private final String keyword;
 
     ExternalDataSearchType(String keyword) {
@@ -85,5 +104,35 @@ enum ExternalDataSearchType {
         return args;
     }
 
+    /**
+     * Builds the FTS MATCH expression for this search over the given columns. With a full-text
+     * index "contains" finds rows where any word in the column starts with the queried value,
+     * rather than the value appearing anywhere in the column.
+     *
+     * @return the MATCH expression or null if this search can't be done with the index
+     */
+    public String constructFullTextQuery(String queriedValue, List<String> columns) {
+        if (queriedValue == null || !FULL_TEXT_TOKEN.matcher(queriedValue).matches()) {
+            return null;
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (String column : columns) {
+            String term = getSingleFullTextTerm(column, queriedValue);
+            if (term == null) {
+                return null;
+            }
+            if (sb.length() > 0) {
+                sb.append(" OR ");
+            }
+            sb.append(term);
+        }
+        return sb.toString();
+    }
+
     protected abstract String getSingleLikeArgument(String queriedValue);
+
+    protected String getSingleFullTextTerm(String column, String queriedValue) {
+        return null;
+    }
 }
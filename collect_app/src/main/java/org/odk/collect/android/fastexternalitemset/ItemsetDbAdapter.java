@@ -5,11 +5,13 @@ import android.database.Cursor;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 
 import org.odk.collect.android.database.DatabaseContext;
 import org.odk.collect.android.storage.StoragePathProvider;
 import org.odk.collect.android.storage.StorageSubdirectory;
 
+import java.io.Closeable;
 import java.math.BigInteger;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
@@ -25,16 +27,20 @@ public class ItemsetDbAdapter {
 
     public static final String DATABASE_NAME = "itemsets.db";
     private static final String DATABASE_TABLE = "itemset_";
-    private static final int DATABASE_VERSION = 2;
+    private static final int DATABASE_VERSION = 3;
 
     private static final String ITEMSET_TABLE = "itemsets";
     public static final String KEY_ITEMSET_HASH = "hash";
     public static final String KEY_PATH = "path";
+    public static final String KEY_SIZE = "size";
+    public static final String KEY_LAST_MODIFIED = "last_modified";
 
     private static final String CREATE_ITEMSET_TABLE =
             "CREATE TABLE IF NOT EXISTS " + ITEMSET_TABLE + " (_id integer primary key autoincrement, "
                     + KEY_ITEMSET_HASH + " text, "
-                    + KEY_PATH + " text "
+                    + KEY_PATH + " text, "
+                    + KEY_SIZE + " integer, "
+                    + KEY_LAST_MODIFIED + " integer "
                     + ");";
 
     /**
@@ -54,6 +60,14 @@ public class ItemsetDbAdapter {
 
         @Override
         public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+            if (oldVersion == 2) {
+                // version 3 only records the size and modification time of each itemsets.csv.
+                // Existing entries get them after their next hash check.
+                db.execSQL("ALTER TABLE " + ITEMSET_TABLE + " ADD COLUMN " + KEY_SIZE + " integer");
+                db.execSQL("ALTER TABLE " + ITEMSET_TABLE + " ADD COLUMN " + KEY_LAST_MODIFIED + " integer");
+                return;
+            }
+
             Timber.w("Upgrading database from version %d to %d, which will destroy all old data", oldVersion, newVersion);
             // first drop all of our generated itemset tables
             Cursor c = db.query(ITEMSET_TABLE, null, null, null, null, null, null);
@@ -91,7 +105,7 @@ public class ItemsetDbAdapter {
         dbHelper.close();
     }
 
-    public boolean createTable(String formHash, String pathHash, String[] columns, String path) {
+    public boolean createTable(String pathHash, String[] columns) {
         StringBuilder sb = new StringBuilder();
 
         // get md5 of the path to itemset.csv, which is unique per form
@@ -118,34 +132,47 @@ public class ItemsetDbAdapter {
         Timber.i("create string: %s", tableCreate);
         db.execSQL(tableCreate);
 
+        return true;
+    }
+
+    /**
+     * Records that the itemset table for the given itemsets.csv has been populated. The size and
+     * modification time let later imports tell that the file hasn't changed without hashing it.
+     */
+    public void addItemset(String fileHash, String path, long size, long lastModified) {
         ContentValues cv = new ContentValues();
-        cv.put(KEY_ITEMSET_HASH, formHash);
+        cv.put(KEY_ITEMSET_HASH, fileHash);
         cv.put(KEY_PATH, new StoragePathProvider().getFormDbPath(path));
+        cv.put(KEY_SIZE, size);
+        cv.put(KEY_LAST_MODIFIED, lastModified);
         db.insert(ITEMSET_TABLE, null, cv);
-
-        return true;
     }
 
-    public boolean addRow(String tableName, String[] columns, String[] newRow) {
+    public void updateFileInfo(String path, long size, long lastModified) {
         ContentValues cv = new ContentValues();
+        cv.put(KEY_SIZE, size);
+        cv.put(KEY_LAST_MODIFIED, lastModified);
+        update(cv, KEY_PATH + "=?", new String[]{new StoragePathProvider().getFormDbPath(path)});
+    }
 
-        // rows don't necessarily use all the columns
-        // but a column is guaranteed to exist for a row (or else blow up)
-        for (int i = 0; i < newRow.length; i++) {
-            if (!columns[i].isEmpty()) {
-                cv.put("\"" + columns[i] + "\"", newRow[i]);
-            }
-        }
-        db.insert(DATABASE_TABLE + tableName, null, cv);
-        return true;
+    /**
+     * @return an inserter that adds rows to the itemset table created by
+     * {@link #createTable(String, String[])} through a single compiled statement
+     */
+    public RowInserter getRowInserter(String pathHash, String[] columns) {
+        return new RowInserter(db, DATABASE_TABLE + pathHash, columns);
     }
 
     public void beginTransaction() {
-        db.execSQL("BEGIN");
+        db.beginTransaction();
     }
 
-    public void commit() {
-        db.execSQL("COMMIT");
+    public void setTransactionSuccessful() {
+        db.setTransactionSuccessful();
+    }
+
+    public void endTransaction() {
+        db.endTransaction();
     }
 
     public Cursor query(String hash, String selection, String[] selectionArgs) throws SQLException {
@@ -214,4 +241,50 @@ public class ItemsetDbAdapter {
         BigInteger bigInt = new BigInteger(1, digest);
         return bigInt.toString(16);
     }
+
+    public static class RowInserter implements Closeable {
+        private final SQLiteStatement statement;
+        private final int[] parameterIndexes;
+
+        RowInserter(SQLiteDatabase db, String tableName, String[] columns) {
+            StringBuilder columnList = new StringBuilder();
+            StringBuilder placeholders = new StringBuilder();
+            parameterIndexes = new int[columns.length];
+
+            int parameterCount = 0;
+            for (int i = 0; i < columns.length; i++) {
+                if (!columns[i].isEmpty()) {
+                    if (parameterCount > 0) {
+                        columnList.append(", ");
+                        placeholders.append(", ");
+                    }
+                    columnList.append('"').append(columns[i]).append('"');
+                    placeholders.append('?');
+                    parameterIndexes[i] = ++parameterCount;
+                }
+            }
+
+            statement = db.compileStatement(parameterCount == 0
+                    ? "INSERT INTO " + tableName + " DEFAULT VALUES;"
+                    : "INSERT INTO " + tableName + " (" + columnList + ") VALUES (" + placeholders + ");");
+        }
+
+        public void addRow(String[] newRow) {
+            statement.clearBindings();
+
+            // rows don't necessarily use all the columns
+            // but a column is guaranteed to exist for a row (or else blow up)
+            for (int i = 0; i < newRow.length; i++) {
+                if (parameterIndexes[i] != 0 && newRow[i] != null) {
+                    statement.bindString(parameterIndexes[i], newRow[i]);
+                }
+            }
+            statement.executeInsert();
+        }
+
+        @Override
+        public void close() {
+            statement.close();
+        }
+    }
 }
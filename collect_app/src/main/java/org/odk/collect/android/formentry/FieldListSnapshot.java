@@ -0,0 +1,98 @@
+package org.odk.collect.android.formentry;
+
+import androidx.annotation.NonNull;
+
+import org.javarosa.core.model.FormIndex;
+import org.javarosa.form.api.FormEntryPrompt;
+import org.odk.collect.android.forms.FormDesignException;
+import org.odk.collect.android.javarosawrapper.FormController;
+import org.odk.collect.android.logic.ImmutableDisplayableQuestion;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The questions of a field-list as they were displayed at a particular time.
+ */
+public class FieldListSnapshot {
+
+    private final FormEntryPrompt[] questions;
+    private final List<ImmutableDisplayableQuestion> immutableQuestions = new ArrayList<>();
+    private final Map<FormIndex, String> externalDataDependencyValues;
+
+    /**
+     * @param externalDataDependencyValues the values that questions using database-driven external
+     *                                     data depend on as returned by
+     *                                     {@link FormController#getExternalDataDependencyValues(FormIndex)}
+     */
+    FieldListSnapshot(FormEntryPrompt[] questions, Map<FormIndex, String> externalDataDependencyValues) {
+        this.questions = questions;
+        this.externalDataDependencyValues = externalDataDependencyValues;
+
+        for (FormEntryPrompt question : questions) {
+            immutableQuestions.add(new ImmutableDisplayableQuestion(question));
+        }
+    }
+
+    public static FieldListSnapshot take(@NonNull FormController formController) throws FormDesignException {
+        FormEntryPrompt[] questions = formController.getQuestionPrompts();
+
+        Map<FormIndex, String> externalDataDependencyValues = new HashMap<>();
+        for (FormEntryPrompt question : questions) {
+            if (formController.usesDatabaseExternalDataFeature(question.getIndex())) {
+                externalDataDependencyValues.put(question.getIndex(),
+                        formController.getExternalDataDependencyValues(question.getIndex()));
+            }
+        }
+
+        return new FieldListSnapshot(questions, externalDataDependencyValues);
+    }
+
+    public FormEntryPrompt[] getQuestions() {
+        return questions;
+    }
+
+    public List<ImmutableDisplayableQuestion> getImmutableQuestions() {
+        return immutableQuestions;
+    }
+
+    /**
+     * Returns the indexes of the questions in this snapshot that are displayed differently or
+     * are no longer displayed in the given later snapshot. Questions that use database-driven
+     * external data bypass the SelectChoices stored in {@link ImmutableDisplayableQuestion} so
+     * are also compared on the values they depend on. A question whose values can't be worked
+     * out is treated as changed.
+     */
+    public Set<FormIndex> getQuestionsChangedIn(@NonNull FieldListSnapshot later) {
+        Set<FormIndex> changed = new HashSet<>();
+
+        Map<FormIndex, ImmutableDisplayableQuestion> laterQuestionsByIndex = new HashMap<>();
+        for (ImmutableDisplayableQuestion question : later.immutableQuestions) {
+            laterQuestionsByIndex.put(question.getFormIndex(), question);
+        }
+
+        for (ImmutableDisplayableQuestion question : immutableQuestions) {
+            FormIndex index = question.getFormIndex();
+
+            if (!question.sameAs(laterQuestionsByIndex.get(index))
+                    || !hasSameExternalDataAs(later, index)) {
+                changed.add(index);
+            }
+        }
+
+        return changed;
+    }
+
+    private boolean hasSameExternalDataAs(FieldListSnapshot other, FormIndex index) {
+        if (!externalDataDependencyValues.containsKey(index)) {
+            return true;
+        }
+
+        String values = externalDataDependencyValues.get(index);
+        return values != null && values.equals(other.externalDataDependencyValues.get(index));
+    }
+}
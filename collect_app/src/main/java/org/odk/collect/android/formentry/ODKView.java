@@ -38,6 +38,7 @@ import android.widget.Toast;
 import androidx.activity.ComponentActivity;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.core.widget.NestedScrollView;
 import androidx.lifecycle.LifecycleOwner;
 
 import com.google.android.material.button.MaterialButton;
@@ -109,14 +110,29 @@ import static org.odk.collect.android.utilities.ApplicationConstants.RequestCode
  * Contains either one {@link QuestionWidget} if the current form element is a question or
  * multiple {@link QuestionWidget}s if the current form element is a group with the
  * {@code field-list} appearance.
+ * <p>
+ * Large field-lists are virtualized: every question gets a slot straight away but its widget is
+ * only built once the slot scrolls near the screen. Until then the slot is an empty placeholder
+ * and the answer for it is the one already in the form.
  */
 @SuppressLint("ViewConstructor")
 public class ODKView extends FrameLayout implements OnLongClickListener, WidgetValueChangedListener {
 
+    /** Field-lists with more questions than this build their widgets as they are scrolled to. */
+    static final int VIRTUALIZATION_THRESHOLD = 20;
+
+    private static final int INITIAL_WIDGETS = 6;
+    private static final int PLACEHOLDER_HEIGHT_DP = 96;
+
     private final LinearLayout widgetsList;
+    private final NestedScrollView scrollView;
     private final LinearLayout.LayoutParams layout;
-    private final ArrayList<QuestionWidget> widgets;
+    private final List<WidgetSlot> slots;
     private final AudioHelper audioHelper;
+    private final boolean virtualized;
+
+    @Nullable
+    private OnFocusChangeListener widgetFocusChangeListener;
 
     private WidgetValueChangedListener widgetValueChangedListener;
 
@@ -139,6 +155,7 @@ public class ODKView extends FrameLayout implements OnLongClickListener, WidgetV
     private final LifecycleOwner viewLifecycle;
     private final AudioRecorder audioRecorder;
     private final FormEntryViewModel formEntryViewModel;
+    private final WaitingForDataRegistry waitingForDataRegistry;
 
     /**
      * Builds the view for a specified question or field-list of questions.
@@ -154,6 +171,7 @@ public class ODKView extends FrameLayout implements OnLongClickListener, WidgetV
         viewLifecycle = ((ScreenContext) context).getViewLifecycle();
         this.audioRecorder = audioRecorder;
         this.formEntryViewModel = formEntryViewModel;
+        this.waitingForDataRegistry = waitingForDataRegistry;
 
         getComponent(context).inject(this);
         this.audioHelper = audioHelperFactory.create(context);
@@ -190,22 +208,36 @@ public class ODKView extends FrameLayout implements OnLongClickListener, WidgetV
                 viewLifecycle
         );
 
-        widgets = new ArrayList<>();
+        slots = new ArrayList<>();
         widgetsList = findViewById(R.id.widgets);
+        scrollView = findViewById(R.id.odk_view_container);
 
         layout = new LinearLayout.LayoutParams(LinearLayout.LayoutParams.MATCH_PARENT,
                 LinearLayout.LayoutParams.WRAP_CONTENT);
         // display which group you are in as well as the question
         setGroupText(groups);
 
+        // Intent groups set values on all of their widgets so they are always built up front
+        virtualized = !readOnlyOverride && questionPrompts.length > VIRTUALIZATION_THRESHOLD;
+
         for (FormEntryPrompt question : questionPrompts) {
             addWidgetForQuestion(question);
         }
 
+        if (virtualized) {
+            for (int i = 0; i < Math.min(INITIAL_WIDGETS, slots.size()); i++) {
+                bindWidgetAt(i);
+            }
+
+            scrollView.setOnScrollChangeListener((NestedScrollView.OnScrollChangeListener) (v, scrollX, scrollY, oldScrollX, oldScrollY) -> bindWidgetsNearScreen());
+
+            // Built widgets push the placeholders after them down so check again once they've
+            // been laid out. Posted because adding views during layout isn't allowed.
+            widgetsList.addOnLayoutChangeListener((v, left, top, right, bottom, oldLeft, oldTop, oldRight, oldBottom) -> post(this::bindWidgetsNearScreen));
+        }
+
         setupAudioErrors();
         autoplayIfNeeded(advancingPage);
-
-        logAnalyticsForWidgets();
     }
 
     private void setupAudioErrors() {
@@ -227,8 +259,8 @@ public class ODKView extends FrameLayout implements OnLongClickListener, WidgetV
 
         // see if there is an autoplay option.
         // Only execute it during forward swipes through the form
-        if (advancingPage && widgets.size() == 1) {
-            FormEntryPrompt firstPrompt = widgets.get(0).getFormEntryPrompt();
+        if (advancingPage && slots.size() == 1) {
+            FormEntryPrompt firstPrompt = slots.get(0).prompt;
             Boolean autoplayedAudio = autoplayAudio(firstPrompt);
 
             if (!autoplayedAudio) {
@@ -255,26 +287,30 @@ public class ODKView extends FrameLayout implements OnLongClickListener, WidgetV
         if (autoplayOption != null) {
             if (autoplayOption.equalsIgnoreCase("video")) {
                 new Handler().postDelayed(() -> {
-                    widgets.get(0).getAudioVideoImageTextLabel().playVideo();
+                    slots.get(0).widget.getAudioVideoImageTextLabel().playVideo();
                 }, 150);
             }
         }
     }
 
     /**
-     * Creates a {@link QuestionWidget} for the given {@link FormEntryPrompt}, sets its listeners,
-     * and adds it to the end of the view. If this widget is not the first one, add a divider above
-     * it.
+     * Adds a slot for the given {@link FormEntryPrompt} to the end of the view and creates its
+     * {@link QuestionWidget} unless the view is virtualized. If this widget is not the first one,
+     * add a divider above it.
      */
     private void addWidgetForQuestion(FormEntryPrompt question) {
-        QuestionWidget qw = configureWidgetForQuestion(question);
+        WidgetSlot slot = createSlot(question);
 
-        widgets.add(qw);
+        slots.add(slot);
 
-        if (widgets.size() > 1) {
+        if (slots.size() > 1) {
             widgetsList.addView(getDividerView());
         }
-        widgetsList.addView(qw, layout);
+        widgetsList.addView(slot.container, layout);
+
+        if (!virtualized) {
+            bindWidgetAt(slots.size() - 1);
+        }
     }
 
     /**
@@ -284,21 +320,85 @@ public class ODKView extends FrameLayout implements OnLongClickListener, WidgetV
      * add it to the end.
      */
     public void addWidgetForQuestion(FormEntryPrompt question, int index) {
-        if (index > widgets.size() - 1) {
+        if (index > slots.size() - 1) {
             addWidgetForQuestion(question);
             return;
         }
 
-        QuestionWidget qw = configureWidgetForQuestion(question);
+        WidgetSlot slot = createSlot(question);
 
-        widgets.add(index, qw);
+        slots.add(index, slot);
 
         int indexAccountingForDividers = index * 2;
         if (index > 0) {
             widgetsList.addView(getDividerView(), indexAccountingForDividers - 1);
         }
 
-        widgetsList.addView(qw, indexAccountingForDividers, layout);
+        widgetsList.addView(slot.container, indexAccountingForDividers, layout);
+
+        // A question that replaces one further up than what has been scrolled to is on or above
+        // the screen so it is built straight away
+        if (!virtualized || isAnyWidgetBoundFrom(index + 1)) {
+            bindWidgetAt(index);
+        }
+    }
+
+    private WidgetSlot createSlot(FormEntryPrompt question) {
+        FrameLayout container = new FrameLayout(getContext());
+        if (virtualized) {
+            container.setMinimumHeight((int) TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP,
+                    PLACEHOLDER_HEIGHT_DP, getResources().getDisplayMetrics()));
+        }
+
+        return new WidgetSlot(question, container);
+    }
+
+    /**
+     * Creates the {@link QuestionWidget} for the slot at {@code index} if it hasn't been yet.
+     */
+    private QuestionWidget bindWidgetAt(int index) {
+        WidgetSlot slot = slots.get(index);
+        if (slot.widget == null) {
+            slot.widget = configureWidgetForQuestion(slot.prompt);
+            slot.container.setMinimumHeight(0);
+            slot.container.addView(slot.widget, new FrameLayout.LayoutParams(LayoutParams.MATCH_PARENT, LayoutParams.WRAP_CONTENT));
+
+            if (slot.widget instanceof UrlWidget) {
+                formEntryViewModel.logFormEvent(AnalyticsEvents.URL_QUESTION);
+            }
+        }
+
+        return slot.widget;
+    }
+
+    private boolean isAnyWidgetBoundFrom(int index) {
+        for (int i = index; i < slots.size(); i++) {
+            if (slots.get(i).widget != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Creates the widgets for slots that are on the screen or within a screen's height of it.
+     */
+    private void bindWidgetsNearScreen() {
+        int screenHeight = scrollView.getHeight();
+        if (screenHeight == 0) {
+            return;
+        }
+
+        int screenTop = scrollView.getScrollY() - widgetsList.getTop();
+        int top = screenTop - screenHeight;
+        int bottom = screenTop + 2 * screenHeight;
+
+        for (int i = 0; i < slots.size(); i++) {
+            WidgetSlot slot = slots.get(i);
+            if (slot.widget == null && slot.container.getBottom() >= top && slot.container.getTop() <= bottom) {
+                bindWidgetAt(i);
+            }
+        }
     }
 
     /**
@@ -310,6 +410,9 @@ public class ODKView extends FrameLayout implements OnLongClickListener, WidgetV
         QuestionWidget qw = widgetFactory.createWidgetFromPrompt(question, permissionsProvider);
         qw.setOnLongClickListener(this);
         qw.setValueChangedListener(this);
+        if (widgetFocusChangeListener != null) {
+            qw.setOnFocusChangeListener(widgetFocusChangeListener);
+        }
 
         return qw;
     }
@@ -323,17 +426,17 @@ public class ODKView extends FrameLayout implements OnLongClickListener, WidgetV
     }
 
     /**
-     * @return a HashMap of answers entered by the user for this set of widgets
+     * @return a HashMap of answers entered by the user for this set of widgets. Questions whose
+     * widget hasn't been built yet can't have been changed so their current answer is used.
      */
     public HashMap<FormIndex, IAnswerData> getAnswers() {
         HashMap<FormIndex, IAnswerData> answers = new LinkedHashMap<>();
-        for (QuestionWidget q : widgets) {
+        for (WidgetSlot slot : slots) {
             /*
              * The FormEntryPrompt has the FormIndex, which is where the answer gets stored. The
              * QuestionWidget has the answer the user has entered.
              */
-            FormEntryPrompt p = q.getFormEntryPrompt();
-            answers.put(p.getIndex(), q.getAnswer());
+            answers.put(slot.prompt.getIndex(), slot.widget != null ? slot.widget.getAnswer() : slot.prompt.getAnswerValue());
         }
 
         return answers;
@@ -468,8 +571,8 @@ public class ODKView extends FrameLayout implements OnLongClickListener, WidgetV
     }
 
     public void setFocus(Context context) {
-        if (!widgets.isEmpty()) {
-            widgets.get(0).setFocus(context);
+        if (!slots.isEmpty()) {
+            bindWidgetAt(0).setFocus(context);
         }
     }
 
@@ -483,8 +586,8 @@ public class ODKView extends FrameLayout implements OnLongClickListener, WidgetV
     }
 
     public void scrollTo(@Nullable QuestionWidget qw) {
-        if (qw != null && widgets.contains(qw)) {
-            findViewById(R.id.odk_view_container).scrollTo(0, qw.getTop());
+        if (qw != null && getWidgets().contains(qw)) {
+            scrollView.scrollTo(0, ((View) qw.getParent()).getTop());
         }
     }
 
@@ -504,7 +607,7 @@ public class ODKView extends FrameLayout implements OnLongClickListener, WidgetV
                 if (answer == null) {
                     continue;
                 }
-                for (QuestionWidget questionWidget : widgets) {
+                for (QuestionWidget questionWidget : getWidgets()) {
                     FormEntryPrompt prompt = questionWidget.getFormEntryPrompt();
                     TreeReference treeReference =
                             (TreeReference) prompt.getFormElement().getBind().getReference();
@@ -574,7 +677,7 @@ public class ODKView extends FrameLayout implements OnLongClickListener, WidgetV
 
     public boolean suppressFlingGesture(MotionEvent e1, MotionEvent e2, float velocityX,
                                         float velocityY) {
-        for (QuestionWidget q : widgets) {
+        for (QuestionWidget q : getWidgets()) {
             if (q.suppressFlingGesture(e1, e2, velocityX, velocityY)) {
                 return true;
             }
@@ -588,22 +691,33 @@ public class ODKView extends FrameLayout implements OnLongClickListener, WidgetV
     public boolean clearAnswer() {
         // If there's only one widget, clear the answer.
         // If there are more, then force a long-press to clear the answer.
-        if (widgets.size() == 1 && !widgets.get(0).getFormEntryPrompt().isReadOnly()) {
-            widgets.get(0).clearAnswer();
+        if (slots.size() == 1 && !slots.get(0).prompt.isReadOnly()) {
+            bindWidgetAt(0).clearAnswer();
             return true;
         } else {
             return false;
         }
     }
 
+    /**
+     * @return the widgets that have been built so far. For a virtualized field-list this won't
+     * include questions that haven't been scrolled to yet.
+     */
     public ArrayList<QuestionWidget> getWidgets() {
+        ArrayList<QuestionWidget> widgets = new ArrayList<>();
+        for (WidgetSlot slot : slots) {
+            if (slot.widget != null) {
+                widgets.add(slot.widget);
+            }
+        }
+
         return widgets;
     }
 
     @Override
     public void setOnFocusChangeListener(OnFocusChangeListener l) {
-        for (int i = 0; i < widgets.size(); i++) {
-            QuestionWidget qw = widgets.get(i);
+        widgetFocusChangeListener = l;
+        for (QuestionWidget qw : getWidgets()) {
             qw.setOnFocusChangeListener(l);
         }
     }
@@ -616,7 +730,7 @@ public class ODKView extends FrameLayout implements OnLongClickListener, WidgetV
     @Override
     public void cancelLongPress() {
         super.cancelLongPress();
-        for (QuestionWidget qw : widgets) {
+        for (QuestionWidget qw : getWidgets()) {
             qw.cancelLongPress();
         }
     }
@@ -645,10 +759,30 @@ public class ODKView extends FrameLayout implements OnLongClickListener, WidgetV
         }
     }
 
+    /**
+     * Returns the widget for the question at the given {@link FormIndex}, building it if the
+     * question hasn't been scrolled to yet.
+     */
     private QuestionWidget getQuestionWidget(FormIndex formIndex) {
-        for (QuestionWidget qw : widgets) {
-            if (formIndex.equals(qw.getFormEntryPrompt().getIndex())) {
-                return qw;
+        for (int i = 0; i < slots.size(); i++) {
+            if (formIndex.equals(slots.get(i).prompt.getIndex())) {
+                return bindWidgetAt(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the widget for the question that is waiting for data (from another app for
+     * instance), building it if it hasn't been scrolled to yet. The view may have been recreated
+     * since the request was made so the widget can't be assumed to exist already.
+     */
+    @Nullable
+    public QuestionWidget getWidgetWaitingForData() {
+        for (WidgetSlot slot : slots) {
+            FormIndex index = slot.prompt.getIndex();
+            if (waitingForDataRegistry.isWaitingForData(index)) {
+                return getQuestionWidget(index);
             }
         }
         return null;
@@ -660,17 +794,13 @@ public class ODKView extends FrameLayout implements OnLongClickListener, WidgetV
     public void removeWidgetAt(int index) {
         int indexAccountingForDividers = index * 2;
 
-        // There may be a first TextView to display the group path. See addGroupText(FormEntryCaption[])
-        if (widgetsList.getChildCount() > 0 && widgetsList.getChildAt(0) instanceof TextView) {
-            indexAccountingForDividers += 1;
-        }
         widgetsList.removeViewAt(indexAccountingForDividers);
 
         if (index > 0) {
             widgetsList.removeViewAt(indexAccountingForDividers - 1);
         }
 
-        widgets.remove(index);
+        slots.remove(index);
     }
 
     public void setWidgetValueChangedListener(WidgetValueChangedListener listener) {
@@ -688,11 +818,16 @@ public class ODKView extends FrameLayout implements OnLongClickListener, WidgetV
 
     }
 
-    private void logAnalyticsForWidgets() {
-        for (QuestionWidget widget : widgets) {
-            if (widget instanceof UrlWidget) {
-                formEntryViewModel.logFormEvent(AnalyticsEvents.URL_QUESTION);
-            }
+    private static class WidgetSlot {
+        final FormEntryPrompt prompt;
+        final FrameLayout container;
+
+        @Nullable
+        QuestionWidget widget;
+
+        WidgetSlot(FormEntryPrompt prompt, FrameLayout container) {
+            this.prompt = prompt;
+            this.container = container;
         }
     }
 }
@@ -93,7 +93,7 @@ public class AuditEventLogger {
          * Write the event unless it is an interval event in which case we need to wait for the end of that event
          */
         if (writeImmediatelyToDisk && !newAuditEvent.isIntervalAuditEventType()) {
-            writeEvents();
+            writeEvents(false);
         }
     }
 
@@ -103,7 +103,17 @@ public class AuditEventLogger {
     public void flush() {
         if (isAuditEnabled()) {
             finalizeEvents();
-            writeEvents();
+            writeEvents(true);
+        }
+    }
+
+    /**
+     * Blocks until every event that has been flushed is in the audit file. Has to be called
+     * before the audit file is saved or encrypted.
+     */
+    public void waitForWrites() throws InterruptedException {
+        if (isAuditEnabled()) {
+            writer.waitForWrites();
         }
     }
 
@@ -208,8 +218,8 @@ public class AuditEventLogger {
         return true;
     }
 
-    private void writeEvents() {
-        if (!writer.isWriting()) {
+    private void writeEvents(boolean force) {
+        if (force || !writer.isWriting()) {
             writer.writeEvents(auditEvents);
             auditEvents = new ArrayList<>();
         } else {
@@ -304,5 +314,7 @@ public class AuditEventLogger {
         void writeEvents(List<AuditEvent> auditEvents);
 
         boolean isWriting();
+
+        void waitForWrites() throws InterruptedException;
     }
 }
\ No newline at end of file
@@ -0,0 +1,315 @@
+package org.odk.collect.android.formentry.audit;
+
+import androidx.annotation.NonNull;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import timber.log.Timber;
+
+import static org.odk.collect.android.formentry.audit.AuditEventCSVLine.toCSVLine;
+
+/**
+ * Appends audit events to the audit log of a form session from a single background thread. The
+ * file is kept open between writes and synced to disk at most {@link #SYNC_INTERVAL_MILLIS} after
+ * events are written. After {@link #IDLE_TIMEOUT_MILLIS} without events the file is closed and the
+ * thread finishes until more events are written.
+ *
+ * Events are written in the order they are passed in. {@link #writeEvents(List)} only hands them
+ * to the writer thread so it never blocks the caller. If {@link #MAX_QUEUED_BATCHES} are already
+ * waiting to be written {@link #isWriting()} returns true so that {@link AuditEventLogger} holds on
+ * to new events that don't have to be written straight away. A batch that can't be written is
+ * retried {@link #MAX_WRITE_ATTEMPTS} times before it is logged as lost.
+ *
+ * Anything that reads, moves or deletes the file (saving and encrypting the instance) has to call
+ * {@link #waitForWrites()} first.
+ */
+public class BufferedAuditEventWriter implements AuditEventLogger.AuditEventWriter {
+
+    static final int MAX_QUEUED_BATCHES = 64;
+    static final long SYNC_INTERVAL_MILLIS = 5000;
+    static final long IDLE_TIMEOUT_MILLIS = 30_000;
+    static final int MAX_WRITE_ATTEMPTS = 3;
+
+    private static final String DEFAULT_COLUMNS = "event,node,start,end";
+    private static final String LOCATION_COORDINATES_COLUMNS = ",latitude,longitude,accuracy";
+    private static final String ANSWER_VALUES_COLUMNS = ",old-value,new-value";
+    private static final String USER_COLUMNS = ",user";
+    private static final String CHANGE_REASON_COLUMNS = ",change-reason";
+
+    private final @NonNull
+    File file;
+    private final boolean isLocationEnabled;
+    private final boolean isTrackingChangesEnabled;
+    private final boolean isUserRequired;
+    private final boolean isTrackChangesReasonEnabled;
+
+    private final BlockingQueue<List<AuditEvent>> queue = new LinkedBlockingQueue<>();
+
+    // Guarded by this
+    private Thread writerThread;
+    private long batchesQueued;
+    private long batchesWritten;
+
+    // Guards the file and everything below
+    private final Object fileLock = new Object();
+    private FileOutputStream outputStream;
+    private Writer writer;
+    private boolean headerChecked;
+    private long lastSyncTime;
+    private boolean unsynced;
+
+    public BufferedAuditEventWriter(@NonNull File file, boolean isLocationEnabled, boolean isTrackingChangesEnabled, boolean isUserRequired, boolean isTrackChangesReasonEnabled) {
+        this.file = file;
+        this.isLocationEnabled = isLocationEnabled;
+        this.isTrackingChangesEnabled = isTrackingChangesEnabled;
+        this.isUserRequired = isUserRequired;
+        this.isTrackChangesReasonEnabled = isTrackChangesReasonEnabled;
+    }
+
+    @Override
+    public void writeEvents(List<AuditEvent> auditEvents) {
+        List<AuditEvent> batch = new ArrayList<>(auditEvents);
+
+        synchronized (this) {
+            batchesQueued++;
+            startWriterThreadIfNeeded();
+            queue.add(batch);
+        }
+    }
+
+    @Override
+    public boolean isWriting() {
+        return queue.size() >= MAX_QUEUED_BATCHES;
+    }
+
+    /**
+     * Blocks until every event passed to {@link #writeEvents(List)} so far has been written to the
+     * file and then closes it. Events written after this reopen the file (and recreate it if it
+     * has been deleted in the meantime).
+     */
+    @Override
+    public void waitForWrites() throws InterruptedException {
+        synchronized (this) {
+            while (batchesWritten < batchesQueued) {
+                wait();
+            }
+        }
+
+        synchronized (fileLock) {
+            close();
+        }
+    }
+
+    private void startWriterThreadIfNeeded() {
+        if (writerThread == null) {
+            writerThread = new Thread(this::writeQueuedEvents, "AuditEventWriter");
+            writerThread.start();
+        }
+    }
+
+    private void writeQueuedEvents() {
+        long idleSince = System.currentTimeMillis();
+
+        while (true) {
+            List<AuditEvent> batch;
+            try {
+                batch = queue.poll(SYNC_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                batch = null;
+            }
+
+            if (batch == null) {
+                synchronized (fileLock) {
+                    syncIfNeeded();
+                }
+
+                if (System.currentTimeMillis() - idleSince >= IDLE_TIMEOUT_MILLIS) {
+                    synchronized (this) {
+                        if (queue.isEmpty()) {
+                            synchronized (fileLock) {
+                                close();
+                            }
+                            writerThread = null;
+                            return;
+                        }
+                    }
+                }
+
+                continue;
+            }
+
+            synchronized (fileLock) {
+                appendWithRetries(batch);
+            }
+            idleSince = System.currentTimeMillis();
+
+            synchronized (this) {
+                batchesWritten++;
+                notifyAll();
+            }
+        }
+    }
+
+    private void appendWithRetries(List<AuditEvent> batch) {
+        StringBuilder lines = new StringBuilder();
+        for (AuditEvent aev : batch) {
+            String csvLine = toCSVLine(aev, isLocationEnabled, isTrackingChangesEnabled, isTrackChangesReasonEnabled);
+            lines.append(csvLine).append('\n');
+            Timber.i("Log audit event: %s", csvLine);
+        }
+
+        for (int attempt = 1; attempt <= MAX_WRITE_ATTEMPTS; attempt++) {
+            try {
+                append(lines.toString());
+                return;
+            } catch (IOException e) {
+                Timber.w(e, "Could not write audit events to %s (attempt %d)", file.getAbsolutePath(), attempt);
+                close();
+            }
+        }
+
+        Timber.e(new IOException("Lost " + batch.size() + " audit events that could not be written to " + file.getAbsolutePath()));
+    }
+
+    private void append(String lines) throws IOException {
+        if (writer == null) {
+            open();
+        }
+
+        writer.write(lines);
+
+        // Make the events visible to anything reading the file as soon as there's nothing else
+        // to write
+        if (queue.isEmpty()) {
+            writer.flush();
+        }
+
+        unsynced = true;
+        if (System.currentTimeMillis() - lastSyncTime >= SYNC_INTERVAL_MILLIS) {
+            sync();
+        }
+    }
+
+    private void open() throws IOException {
+        boolean newFile = !file.exists() || file.length() == 0;
+
+        if (!newFile && !headerChecked) {
+            updateHeaderIfNeeded();
+        }
+        headerChecked = true;
+
+        outputStream = new FileOutputStream(file, true);
+        writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        lastSyncTime = System.currentTimeMillis();
+
+        if (newFile) {
+            writer.write(getHeader() + "\n");
+        }
+    }
+
+    private void syncIfNeeded() {
+        if (writer != null && unsynced) {
+            try {
+                sync();
+            } catch (IOException e) {
+                Timber.e(e);
+                close();
+            }
+        }
+    }
+
+    private void sync() throws IOException {
+        writer.flush();
+        outputStream.getFD().sync();
+        lastSyncTime = System.currentTimeMillis();
+        unsynced = false;
+    }
+
+    private void close() {
+        if (writer == null) {
+            return;
+        }
+
+        try {
+            sync();
+        } catch (IOException e) {
+            Timber.e(e);
+        }
+
+        try {
+            writer.close();
+        } catch (IOException e) {
+            Timber.e(e);
+        }
+
+        writer = null;
+        outputStream = null;
+    }
+
+    /**
+     * Rewrites the file with the current header if columns have been enabled since it was
+     * written. Only done once per session before the file is first appended to.
+     */
+    private void updateHeaderIfNeeded() throws IOException {
+        File temporaryFile = new File(file.getParentFile(), "temporaryAudit.csv");
+
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            if (!shouldHeaderBeUpdated(br.readLine())) {
+                return;
+            }
+
+            try (FileOutputStream tfos = new FileOutputStream(temporaryFile)) {
+                Writer tfw = new BufferedWriter(new OutputStreamWriter(tfos, StandardCharsets.UTF_8));
+                tfw.write(getHeader() + "\n");
+                String line;
+                while ((line = br.readLine()) != null) {
+                    tfw.write(line + "\n");
+                }
+                tfw.flush();
+                tfos.getFD().sync();
+            }
+        }
+
+        if (!temporaryFile.renameTo(file)) {
+            Timber.e("Could not replace %s with updated header", file.getAbsolutePath());
+        }
+    }
+
+    private boolean shouldHeaderBeUpdated(String header) {
+        return header == null
+                || (isLocationEnabled && !header.contains(LOCATION_COORDINATES_COLUMNS))
+                || (isTrackingChangesEnabled && !header.contains(ANSWER_VALUES_COLUMNS))
+                || (isUserRequired && !header.contains(USER_COLUMNS));
+    }
+
+    private String getHeader() {
+        String header = DEFAULT_COLUMNS;
+        if (isLocationEnabled) {
+            header += LOCATION_COORDINATES_COLUMNS;
+        }
+        if (isTrackingChangesEnabled) {
+            header += ANSWER_VALUES_COLUMNS;
+        }
+        if (isUserRequired) {
+            header += USER_COLUMNS;
+        }
+        if (isTrackChangesReasonEnabled) {
+            header += CHANGE_REASON_COLUMNS;
+        }
+        return header;
+    }
+}
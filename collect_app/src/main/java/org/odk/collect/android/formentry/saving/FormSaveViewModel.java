@@ -31,6 +31,7 @@ import org.odk.collect.android.javarosawrapper.FormController;
 import org.odk.collect.android.tasks.SaveFormToDisk;
 import org.odk.collect.android.tasks.SaveToDiskResult;
 import org.odk.collect.android.utilities.FileUtils;
+import org.odk.collect.android.utilities.ImageConverter;
 import org.odk.collect.android.utilities.MediaUtils;
 import org.odk.collect.android.utilities.QuestionMediaManager;
 import org.odk.collect.async.Scheduler;
@@ -45,7 +46,10 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import timber.log.Timber;
 
@@ -72,6 +76,9 @@ public class FormSaveViewModel extends ViewModel implements ProgressDialogFragme
     private final MutableLiveData<Boolean> isSavingAnswerFile = new MutableLiveData<>(false);
     private final MutableLiveData<String> answerFileError = new MutableLiveData<>(null);
 
+    // Paths of answer files that are still being processed in the background
+    private final Set<String> pendingAnswerFiles = new HashSet<>();
+    private final Map<String, List<Runnable>> answerFileListeners = new HashMap<>();
 
     @Nullable
     private FormController formController;
@@ -214,7 +221,7 @@ public class FormSaveViewModel extends ViewModel implements ProgressDialogFragme
 
     private void saveToDisk(SaveRequest saveRequest) {
 
-        saveTask = new SaveTask(saveRequest, formSaver, formController, mediaUtils, new SaveTask.Listener() {
+        saveTask = new SaveTask(saveRequest, formSaver, formController, mediaUtils, this::waitForPendingAnswerFiles, new SaveTask.Listener() {
             @Override
             public void onProgressPublished(String progress) {
                 saveResult.setValue(new SaveResult(SaveResult.State.SAVING, saveRequest, progress));
@@ -376,6 +383,92 @@ public class FormSaveViewModel extends ViewModel implements ProgressDialogFragme
         }
     }
 
+    /**
+     * Copies the image from source (if it isn't null) to answerFile and then rotates and scales
+     * it down in the background. Several images can be processed at the same time and the form
+     * can be navigated in the mean time. The file can be used as an answer straight away and is
+     * pending (see {@link #isAnswerFilePending}) until it's ready. Saving the form waits for all
+     * pending files. If the file can't be copied it's deleted and {@link #getAnswerFileError()} is
+     * set. Listeners are notified either way and can check whether the file exists.
+     */
+    public void processImageAnswerFile(File answerFile, @Nullable Uri source, @Nullable Integer maxPixels) {
+        String path = answerFile.getAbsolutePath();
+        synchronized (pendingAnswerFiles) {
+            pendingAnswerFiles.add(path);
+        }
+
+        scheduler.immediate(() -> {
+            try {
+                if (source != null && !FileUtils.saveAnswerFileFromUri(source, answerFile, Collect.getInstance())) {
+                    answerFile.delete();
+                    return false;
+                }
+
+                if (!answerFile.exists()) {
+                    return false;
+                }
+
+                ImageConverter.scaleDownAndRotateImage(path, maxPixels, ImageConverter.DEFAULT_QUALITY);
+                return true;
+            } catch (RuntimeException e) {
+                Timber.e(e);
+                answerFile.delete();
+                return false;
+            } finally {
+                synchronized (pendingAnswerFiles) {
+                    pendingAnswerFiles.remove(path);
+                    pendingAnswerFiles.notifyAll();
+                }
+            }
+        }, processed -> {
+            if (!processed) {
+                answerFileError.setValue(path);
+            }
+
+            List<Runnable> listeners = answerFileListeners.remove(path);
+            if (listeners != null) {
+                for (Runnable listener : listeners) {
+                    listener.run();
+                }
+            }
+        });
+    }
+
+    @Override
+    public boolean isAnswerFilePending(File file) {
+        synchronized (pendingAnswerFiles) {
+            return pendingAnswerFiles.contains(file.getAbsolutePath());
+        }
+    }
+
+    @Override
+    public void whenAnswerFileReady(File file, Runnable onReady) {
+        if (!isAnswerFilePending(file)) {
+            onReady.run();
+            return;
+        }
+
+        List<Runnable> listeners = answerFileListeners.get(file.getAbsolutePath());
+        if (listeners == null) {
+            listeners = new ArrayList<>();
+            answerFileListeners.put(file.getAbsolutePath(), listeners);
+        }
+        listeners.add(onReady);
+    }
+
+    private void waitForPendingAnswerFiles() {
+        synchronized (pendingAnswerFiles) {
+            while (!pendingAnswerFiles.isEmpty()) {
+                try {
+                    pendingAnswerFiles.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
     public LiveData<Boolean> isSavingAnswerFile() {
         return isSavingAnswerFile;
     }
@@ -459,15 +552,17 @@ public class FormSaveViewModel extends ViewModel implements ProgressDialogFragme
         private final FormSaver formSaver;
 
         private final Listener listener;
+        private final Runnable waitForAnswerFiles;
         private final FormController formController;
         private final MediaUtils mediaUtils;
         private final Analytics analytics;
         private final ArrayList<String> tempFiles;
 
         SaveTask(SaveRequest saveRequest, FormSaver formSaver, FormController formController, MediaUtils mediaUtils,
-                 Listener listener, Analytics analytics, ArrayList<String> tempFiles) {
+                 Runnable waitForAnswerFiles, Listener listener, Analytics analytics, ArrayList<String> tempFiles) {
             this.saveRequest = saveRequest;
             this.formSaver = formSaver;
+            this.waitForAnswerFiles = waitForAnswerFiles;
             this.listener = listener;
             this.formController = formController;
             this.mediaUtils = mediaUtils;
@@ -477,6 +572,11 @@ public class FormSaveViewModel extends ViewModel implements ProgressDialogFragme
 
         @Override
         protected SaveToDiskResult doInBackground(Void... voids) {
+            // answer files and audit events have to be complete before they're saved (and maybe
+            // encrypted)
+            waitForAnswerFiles.run();
+            waitForAuditEvents();
+
             return formSaver.save(saveRequest.uri, formController,
                     mediaUtils, saveRequest.shouldFinalize,
                     saveRequest.viewExiting, saveRequest.updatedSaveName,
@@ -484,6 +584,14 @@ public class FormSaveViewModel extends ViewModel implements ProgressDialogFragme
             );
         }
 
+        private void waitForAuditEvents() {
+            try {
+                formController.getAuditEventLogger().waitForWrites();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
         @Override
         protected void onProgressUpdate(String... values) {
             listener.onProgressPublished(values[0]);
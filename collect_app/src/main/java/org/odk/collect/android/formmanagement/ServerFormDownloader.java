@@ -6,6 +6,7 @@ import org.jetbrains.annotations.NotNull;
 import org.odk.collect.android.R;
 import org.odk.collect.android.analytics.Analytics;
 import org.odk.collect.android.application.Collect;
+import org.odk.collect.android.backgroundwork.FormPrewarmManager;
 import org.odk.collect.android.forms.Form;
 import org.odk.collect.android.forms.FormSource;
 import org.odk.collect.android.forms.FormSourceException;
@@ -26,6 +27,13 @@ import java.io.OutputStream;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Supplier;
 
 import javax.annotation.Nullable;
@@ -38,6 +46,9 @@ import static org.odk.collect.utilities.PathUtils.getAbsoluteFilePath;
 
 public class ServerFormDownloader implements FormDownloader {
 
+    private static final int MAX_CONCURRENT_MEDIA_DOWNLOADS = 4;
+    private static final int DOWNLOAD_BUFFER_SIZE = 64 * 1024;
+
     private final FormsRepository formsRepository;
     private final FormSource formSource;
     private final File cacheDir;
@@ -45,8 +56,9 @@ public class ServerFormDownloader implements FormDownloader {
     private final FormMetadataParser formMetadataParser;
 
     private final Analytics analytics;
+    private final FormPrewarmManager formPrewarmManager;
 
-    public ServerFormDownloader(FormSource formSource, FormsRepository formsRepository, File cacheDir, String formsDirPath, FormMetadataParser formMetadataParser, Analytics analytics) {
+    public ServerFormDownloader(FormSource formSource, FormsRepository formsRepository, File cacheDir, String formsDirPath, FormMetadataParser formMetadataParser, Analytics analytics, FormPrewarmManager formPrewarmManager) {
         this.formSource = formSource;
         this.cacheDir = cacheDir;
         this.formsDirPath = formsDirPath;
@@ -54,6 +66,7 @@ public class ServerFormDownloader implements FormDownloader {
         this.formMetadataParser = formMetadataParser;
 
         this.analytics = analytics;
+        this.formPrewarmManager = formPrewarmManager;
     }
 
     @Override
@@ -82,6 +95,8 @@ public class ServerFormDownloader implements FormDownloader {
             if (!result) {
                 throw new FormDownloadException();
             }
+
+            formPrewarmManager.schedulePrewarm();
         } finally {
             try {
                 deleteDirectory(tempDir);
@@ -312,7 +327,7 @@ public class ServerFormDownloader implements FormDownloader {
                 is = inputStream;
                 os = new FileOutputStream(tempFile);
 
-                byte[] buf = new byte[4096];
+                byte[] buf = new byte[DOWNLOAD_BUFFER_SIZE];
                 int len;
                 while ((len = is.read(buf)) > 0 && (stateListener == null || !stateListener.isTaskCancelled())) {
                     os.write(buf, 0, len);
@@ -378,43 +393,104 @@ public class ServerFormDownloader implements FormDownloader {
         }
     }
 
+    /**
+     * Downloads a form's media files, several at once so that forms with many attachments
+     * don't wait on a round trip per file. Progress is reported from the calling thread as each
+     * file finishes. If one of the downloads fails the others are abandoned.
+     */
     private void downloadMediaFiles(String tempMediaPath, FormDownloaderListener stateListener, List<MediaFile> files, File tempDir, String formFileName) throws FormSourceException, IOException, InterruptedException {
         File tempMediaDir = new File(tempMediaPath);
         FileUtils.checkMediaPath(tempMediaDir);
 
-        for (int i = 0; i < files.size(); i++) {
-            if (stateListener != null) {
-                stateListener.progressUpdate("", String.valueOf(i + 1), "");
+        String finalMediaPath = FileUtils.constructMediaPath(formsDirPath + File.separator + formFileName);
+
+        AtomicBoolean aborted = new AtomicBoolean();
+        FormDownloaderListener mediaFileListener = new FormDownloaderListener() {
+            @Override
+            public void progressUpdate(String currentFile, String progress, String total) {
+                // progress is reported per file below
+            }
+
+            @Override
+            public boolean isTaskCancelled() {
+                return aborted.get() || (stateListener != null && stateListener.isTaskCancelled());
+            }
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(files.size(), MAX_CONCURRENT_MEDIA_DOWNLOADS));
+        try {
+            CompletionService<Void> completionService = new ExecutorCompletionService<>(executor);
+            for (MediaFile toDownload : files) {
+                completionService.submit(() -> {
+                    downloadMediaFile(toDownload, tempMediaDir, new File(finalMediaPath, toDownload.getFilename()), tempDir, mediaFileListener);
+                    return null;
+                });
+            }
+
+            for (int i = 0; i < files.size(); i++) {
+                try {
+                    completionService.take().get();
+                } catch (ExecutionException e) {
+                    aborted.set(true);
+                    rethrowDownloadFailure(e.getCause());
+                }
+
+                if (stateListener != null) {
+                    stateListener.progressUpdate("", String.valueOf(i + 1), "");
+                }
             }
+        } finally {
+            aborted.set(true);
+            executor.shutdownNow();
 
-            MediaFile toDownload = files.get(i);
+            // Downloads still in progress write into the temp dir so wait for them before it's
+            // cleaned up
+            while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                Timber.d("Waiting for media file downloads to stop");
+            }
+        }
+    }
 
-            File tempMediaFile = new File(tempMediaDir, toDownload.getFilename());
-            String finalMediaPath = FileUtils.constructMediaPath(formsDirPath + File.separator + formFileName);
-            File finalMediaFile = new File(finalMediaPath, toDownload.getFilename());
+    private void downloadMediaFile(MediaFile toDownload, File tempMediaDir, File finalMediaFile, File tempDir, FormDownloaderListener stateListener) throws FormSourceException, IOException, InterruptedException {
+        File tempMediaFile = new File(tempMediaDir, toDownload.getFilename());
 
-            if (!finalMediaFile.exists()) {
+        if (!finalMediaFile.exists()) {
+            InputStream mediaFile = formSource.fetchMediaFile(toDownload.getDownloadUrl());
+            writeFile(mediaFile, tempMediaFile, tempDir, stateListener);
+        } else {
+            String currentFileHash = FileUtils.getMd5Hash(finalMediaFile);
+            String downloadFileHash = getMd5HashWithoutPrefix(toDownload.getHash());
+
+            if (currentFileHash != null && downloadFileHash != null && !currentFileHash.contentEquals(downloadFileHash)) {
+                // if the hashes match, it's the same file
+                // otherwise delete our current one and replace it with the new one
+                FileUtils.deleteAndReport(finalMediaFile);
                 InputStream mediaFile = formSource.fetchMediaFile(toDownload.getDownloadUrl());
                 writeFile(mediaFile, tempMediaFile, tempDir, stateListener);
             } else {
-                String currentFileHash = FileUtils.getMd5Hash(finalMediaFile);
-                String downloadFileHash = getMd5HashWithoutPrefix(toDownload.getHash());
-
-                if (currentFileHash != null && downloadFileHash != null && !currentFileHash.contentEquals(downloadFileHash)) {
-                    // if the hashes match, it's the same file
-                    // otherwise delete our current one and replace it with the new one
-                    FileUtils.deleteAndReport(finalMediaFile);
-                    InputStream mediaFile = formSource.fetchMediaFile(toDownload.getDownloadUrl());
-                    writeFile(mediaFile, tempMediaFile, tempDir, stateListener);
-                } else {
-                    // exists, and the hash is the same
-                    // no need to download it again
-                    Timber.i("Skipping media file fetch -- file hashes identical: %s", finalMediaFile.getAbsolutePath());
-                }
+                // exists, and the hash is the same
+                // no need to download it again
+                Timber.i("Skipping media file fetch -- file hashes identical: %s", finalMediaFile.getAbsolutePath());
             }
         }
     }
 
+    private static void rethrowDownloadFailure(Throwable cause) throws FormSourceException, IOException, InterruptedException {
+        if (cause instanceof FormSourceException) {
+            throw (FormSourceException) cause;
+        } else if (cause instanceof IOException) {
+            throw (IOException) cause;
+        } else if (cause instanceof InterruptedException) {
+            throw (InterruptedException) cause;
+        } else if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        } else if (cause instanceof Error) {
+            throw (Error) cause;
+        } else {
+            throw new IOException(cause);
+        }
+    }
+
     @NotNull
     private static String getFormFileName(String formName, String formsDirPath) {
         String formattedFormName = FormNameUtils.formatFilenameFromFormName(formName);
@@ -0,0 +1,61 @@
+package org.odk.collect.android.forms;
+
+import org.javarosa.core.reference.ReferenceManager;
+
+import java.io.File;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.odk.collect.android.forms.FormUtils.setupReferenceManagerForForm;
+
+/**
+ * Has to be held while pointing the global {@link ReferenceManager} at a form's media folder and
+ * importing the external data in it. Loading a form to fill it in and pre-warming forms in the
+ * background both do that so they can't run at the same time.
+ *
+ * Loading a form records its media folder so that background work can point the
+ * {@link ReferenceManager} back at it once it's done.
+ */
+public class FormMediaLock {
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // Guarded by lock
+    private File formEntryMediaDir;
+
+    /**
+     * Blocks until the lock is free. Used when loading a form as that can't be skipped.
+     */
+    public void lock() {
+        lock.lock();
+    }
+
+    /**
+     * @return true if the lock was free and is now held
+     */
+    public boolean tryLock() {
+        return lock.tryLock();
+    }
+
+    public void unlock() {
+        lock.unlock();
+    }
+
+    /**
+     * Points the {@link ReferenceManager} at the media folder of a form that is being loaded to
+     * be filled in. Has to be called with the lock held.
+     */
+    public void setupReferenceManagerForFormEntry(File mediaDir) {
+        formEntryMediaDir = mediaDir;
+        setupReferenceManagerForForm(ReferenceManager.instance(), mediaDir);
+    }
+
+    /**
+     * Points the {@link ReferenceManager} back at the media folder of the last form loaded to be
+     * filled in (if there is one). Has to be called with the lock held.
+     */
+    public void restoreReferenceManagerForFormEntry() {
+        if (formEntryMediaDir != null) {
+            setupReferenceManagerForForm(ReferenceManager.instance(), formEntryMediaDir);
+        }
+    }
+}
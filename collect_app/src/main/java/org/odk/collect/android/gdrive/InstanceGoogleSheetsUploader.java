@@ -61,6 +61,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -85,13 +86,41 @@ public class InstanceGoogleSheetsUploader extends InstanceUploader {
 
     private Spreadsheet spreadsheet;
 
+    private final SheetHeaderCache sheetHeaders;
+    private final Map<String, CachedForm> formsByPath = new HashMap<>();
+
+    private final SheetRowsBatch batch = new SheetRowsBatch();
+
     public InstanceGoogleSheetsUploader(DriveApi driveApi, SheetsApi sheetsApi) {
         driveHelper = new DriveHelper(driveApi);
         sheetsHelper = new SheetsHelper(sheetsApi);
+        sheetHeaders = new SheetHeaderCache(sheetsHelper);
     }
 
     @Override
     public String uploadOneSubmission(Instance instance, String spreadsheetUrl) throws UploadException {
+        addSubmissionToBatch(instance, spreadsheetUrl);
+
+        UploadException failure = uploadBatch().get(instance.getId());
+        if (failure != null) {
+            throw failure;
+        }
+
+        // Google Sheets can't provide a custom success message
+        return null;
+    }
+
+    /**
+     * Prepares the rows for the given instance (uploading its media files) and holds on to them
+     * until {@link #uploadBatch()} is called so that the rows of several instances can be
+     * appended to the spreadsheet together. All instances in a batch must be sent to the same
+     * spreadsheet.
+     */
+    public void addSubmissionToBatch(Instance instance, String spreadsheetUrl) throws UploadException {
+        if (!batch.isEmpty() && !spreadsheetUrl.equals(spreadsheet.getSpreadsheetUrl())) {
+            throw new IllegalStateException("The batch has to be uploaded before sending to another spreadsheet");
+        }
+
         if (new FormsDao().isFormEncrypted(instance.getJrFormId(), instance.getJrVersion())) {
             saveFailedStatusToDatabase(instance);
             throw new UploadException(TranslationHandler.getString(Collect.getInstance(), R.string.google_sheets_encrypted_message));
@@ -123,7 +152,11 @@ public class InstanceGoogleSheetsUploader extends InstanceUploader {
             if (key == null) {
                 key = PropertyUtils.genUUID();
             }
-            insertRows(instance, instanceElement, null, key, instanceFile, spreadsheet.getSheets().get(0).getProperties().getTitle());
+
+            // only add this instance's rows to the batch once all of them are ready
+            Map<String, List<List<Object>>> rows = new LinkedHashMap<>();
+            insertRows(instance, instanceElement, null, key, instanceFile, spreadsheet.getSheets().get(0).getProperties().getTitle(), rows);
+            batch.add(instance, rows, SheetsUploadState.forInstanceFile(instanceFile, spreadsheet.getSpreadsheetId()));
         } catch (UploadException e) {
             saveFailedStatusToDatabase(instance);
             throw e;
@@ -131,10 +164,59 @@ public class InstanceGoogleSheetsUploader extends InstanceUploader {
             saveFailedStatusToDatabase(instance);
             throw new UploadException(getErrorMessageFromGoogleJsonResponseException(e));
         }
+    }
 
-        saveSuccessStatusToDatabase(instance);
-        // Google Sheets can't provide a custom success message
-        return null;
+    /**
+     * Appends the rows of every instance added with {@link #addSubmissionToBatch} with one
+     * request per sheet. Instances with rows in a sheet that couldn't be appended to are marked
+     * as failed and the rest as submitted. A failed instance's rows in the sheets that were
+     * appended to are skipped when it's retried (see {@link SheetsUploadState}) so they aren't
+     * duplicated.
+     *
+     * @return the error for each instance that failed by instance id
+     */
+    public Map<Long, UploadException> uploadBatch() {
+        Map<Long, UploadException> failures = new HashMap<>();
+        if (batch.isEmpty()) {
+            return failures;
+        }
+
+        try {
+            Map<String, IOException> sheetFailures = batch.append(sheetsHelper, spreadsheet.getSpreadsheetId());
+            for (Map.Entry<String, IOException> sheetFailure : sheetFailures.entrySet()) {
+                Timber.i(sheetFailure.getValue());
+
+                // the sheet might have been changed since its header was read
+                sheetHeaders.remove(sheetFailure.getKey());
+
+                UploadException exception = getUploadException(sheetFailure.getValue());
+                for (Instance instance : batch.getInstancesInSheet(sheetFailure.getKey())) {
+                    if (!failures.containsKey(instance.getId())) {
+                        failures.put(instance.getId(), exception);
+                    }
+                }
+            }
+
+            for (Instance instance : batch.getInstances()) {
+                if (failures.containsKey(instance.getId())) {
+                    saveFailedStatusToDatabase(instance);
+                } else {
+                    saveSuccessStatusToDatabase(instance);
+                }
+            }
+        } finally {
+            batch.clear();
+        }
+
+        return failures;
+    }
+
+    private UploadException getUploadException(IOException e) {
+        if (e instanceof GoogleJsonResponseException) {
+            return new UploadException(getErrorMessageFromGoogleJsonResponseException((GoogleJsonResponseException) e));
+        } else {
+            return new UploadException(e);
+        }
     }
 
     private String getErrorMessageFromGoogleJsonResponseException(GoogleJsonResponseException e) {
@@ -163,14 +245,14 @@ public class InstanceGoogleSheetsUploader extends InstanceUploader {
                 : urlString;
     }
 
-    private void insertRows(Instance instance, TreeElement element, String parentKey, String key, File instanceFile, String sheetTitle)
-            throws UploadException {
-        insertRow(instance, element, parentKey, key, instanceFile, StringUtils.ellipsizeBeginning(sheetTitle));
+    private void insertRows(Instance instance, TreeElement element, String parentKey, String key, File instanceFile, String sheetTitle,
+                            Map<String, List<List<Object>>> rows) throws UploadException {
+        insertRow(instance, element, parentKey, key, instanceFile, StringUtils.ellipsizeBeginning(sheetTitle), rows);
 
         int repeatIndex = 0;
         for (TreeElement child : getChildElements(element, true)) {
             if (child.isRepeatable() && child.getMultiplicity() != TreeReference.INDEX_TEMPLATE) {
-                insertRows(instance, child, key, getKeyBasedOnParentKey(key, child.getName(), repeatIndex++), instanceFile, getElementTitle(child));
+                insertRows(instance, child, key, getKeyBasedOnParentKey(key, child.getName(), repeatIndex++), instanceFile, getElementTitle(child), rows);
             }
             if (child.getMultiplicity() == TreeReference.INDEX_TEMPLATE) {
                 repeatIndex = 0;
@@ -185,23 +267,28 @@ public class InstanceGoogleSheetsUploader extends InstanceUploader {
                 + "[" + (repeatIndex + 1) + "]";
     }
 
-    private void insertRow(Instance instance, TreeElement element, String parentKey, String key, File instanceFile, String sheetTitle)
-            throws UploadException {
+    /**
+     * Prepares the row for the given element and adds it to the rows for its sheet. The header
+     * row is written straight away if the sheet doesn't have one yet.
+     */
+    private void insertRow(Instance instance, TreeElement element, String parentKey, String key, File instanceFile, String sheetTitle,
+                           Map<String, List<List<Object>>> rows) throws UploadException {
         try {
-            List<List<Object>> sheetCells = getSheetCells(sheetTitle);
-            boolean newSheet = sheetCells == null || sheetCells.isEmpty();
+            List<Object> sheetHeader = sheetHeaders.get(spreadsheet.getSpreadsheetId(), sheetTitle);
+            boolean newSheet = sheetHeader.isEmpty();
             List<Object> columnTitles = getColumnTitles(element, newSheet);
             ensureNumberOfColumnsIsValid(columnTitles.size());
 
             if (!newSheet) { // we are editing an existed sheet
-                if (isAnyColumnHeaderEmpty(sheetCells.get(0))) {
+                if (isAnyColumnHeaderEmpty(sheetHeader)) {
                     // Insert a header row again to fill empty headers
                     sheetsHelper.updateRow(spreadsheet.getSpreadsheetId(), sheetTitle + "!A1",
                             new ValueRange().setValues(Collections.singletonList(columnTitles)));
-                    sheetCells = getSheetCells(sheetTitle); // read sheet cells again to update
+                    sheetHeaders.remove(sheetTitle);
+                    sheetHeader = sheetHeaders.get(spreadsheet.getSpreadsheetId(), sheetTitle); // read the header again to update
                 }
-                disallowMissingColumns(sheetCells.get(0), columnTitles);
-                addAltitudeAndAccuracyTitles(sheetCells.get(0), columnTitles);
+                disallowMissingColumns(sheetHeader, columnTitles);
+                addAltitudeAndAccuracyTitles(sheetHeader, columnTitles);
                 ensureNumberOfColumnsIsValid(columnTitles.size());  // Call again to ensure valid number of columns
 
             } else { // new sheet
@@ -211,14 +298,19 @@ public class InstanceGoogleSheetsUploader extends InstanceUploader {
                 }
                 sheetsHelper.insertRow(spreadsheet.getSpreadsheetId(), sheetTitle,
                         new ValueRange().setValues(Collections.singletonList(columnTitles)));
-                sheetCells = getSheetCells(sheetTitle); // read sheet cells again to update
+                sheetHeader = new ArrayList<>(columnTitles);
+                sheetHeaders.put(sheetTitle, sheetHeader);
             }
 
             HashMap<String, String> answers = getAnswers(instance, element, columnTitles, instanceFile, parentKey, key);
 
             if (shouldRowBeInserted(answers)) {
-                sheetsHelper.insertRow(spreadsheet.getSpreadsheetId(), sheetTitle,
-                        new ValueRange().setValues(Collections.singletonList(prepareListOfValues(sheetCells.get(0), columnTitles, answers))));
+                List<List<Object>> sheetRows = rows.get(sheetTitle);
+                if (sheetRows == null) {
+                    sheetRows = new ArrayList<>();
+                    rows.put(sheetTitle, sheetRows);
+                }
+                sheetRows.add(prepareListOfValues(sheetHeader, columnTitles, answers));
             }
         } catch (GoogleJsonResponseException e) {
             throw new UploadException(getErrorMessageFromGoogleJsonResponseException(e));
@@ -294,18 +386,25 @@ public class InstanceGoogleSheetsUploader extends InstanceUploader {
     }
 
     private TreeElement getInstanceElement(String formFilePath, File instanceFile) throws UploadException {
-        FormDef formDef;
-
-        File formXml = new File(formFilePath);
-        String lastSavedSrc = FileUtils.getOrCreateLastSavedSrc(formXml);
-
         try {
-            formDef = XFormUtils.getFormFromFormXml(formFilePath, lastSavedSrc);
+            // parsing the form is slow so it's only done once for all the instances of a form
+            FormDef formDef;
+            CachedForm cachedForm = formsByPath.get(formFilePath);
+            File formXml = new File(formFilePath);
+            if (cachedForm != null && cachedForm.lastModified == formXml.lastModified()) {
+                formDef = cachedForm.formDef;
+                formDef.getMainInstance().setRoot(cachedForm.blankRoot.deepCopy(true));
+            } else {
+                String lastSavedSrc = FileUtils.getOrCreateLastSavedSrc(formXml);
+                formDef = XFormUtils.getFormFromFormXml(formFilePath, lastSavedSrc);
+                formsByPath.put(formFilePath, new CachedForm(formDef, formXml.lastModified()));
+            }
+
             FormLoaderTask.importData(instanceFile, new FormEntryController(new FormEntryModel(formDef)));
+            return formDef.getMainInstance().getRoot();
         } catch (IOException | RuntimeException e) {
             throw new UploadException(e);
         }
-        return formDef.getMainInstance().getRoot();
     }
 
     private boolean hasRepeatableGroups(TreeElement element) {
@@ -544,10 +643,6 @@ public class InstanceGoogleSheetsUploader extends InstanceUploader {
         return list;
     }
 
-    private List<List<Object>> getSheetCells(String sheetTitle) throws IOException {
-        return sheetsHelper.getSheetCells(spreadsheet.getSpreadsheetId(), sheetTitle);
-    }
-
     private boolean isAnyColumnHeaderEmpty(List<Object> columnHeaders) {
         for (Object columnHeader : columnHeaders) {
             if (columnHeader.toString().isEmpty()) {
@@ -562,6 +657,7 @@ public class InstanceGoogleSheetsUploader extends InstanceUploader {
             try {
                 spreadsheet = sheetsHelper.getSpreadsheet(UrlUtils.getSpreadsheetID(urlString));
                 spreadsheet.setSpreadsheetUrl(urlString);
+                sheetHeaders.clear();
             } catch (GoogleJsonResponseException e) {
                 Timber.i(e);
                 throw e;
@@ -605,4 +701,16 @@ public class InstanceGoogleSheetsUploader extends InstanceUploader {
                 .matcher(answer)
                 .matches();
     }
+
+    private static class CachedForm {
+        final FormDef formDef;
+        final TreeElement blankRoot;
+        final long lastModified;
+
+        CachedForm(FormDef formDef, long lastModified) {
+            this.formDef = formDef;
+            this.blankRoot = formDef.getMainInstance().getRoot().deepCopy(true);
+            this.lastModified = lastModified;
+        }
+    }
 }
@@ -29,7 +29,9 @@ import org.odk.collect.android.upload.UploadException;
 import org.odk.collect.android.utilities.InstanceUploaderUtils;
 import org.odk.collect.android.utilities.TranslationHandler;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import timber.log.Timber;
 
@@ -39,6 +41,12 @@ import static org.odk.collect.android.utilities.InstanceUploaderUtils.SPREADSHEE
 
 public class InstanceGoogleSheetsUploaderTask extends InstanceUploaderTask {
 
+    /**
+     * The rows of up to this many instances are appended to a spreadsheet with one request per
+     * sheet. Keeps a failed append from affecting too many instances.
+     */
+    private static final int MAX_BATCH_SIZE = 50;
+
     private final GoogleApiProvider googleApiProvider;
     private final Analytics analytics;
     private final PreferencesProvider preferencesProvider;
@@ -59,11 +67,15 @@ public class InstanceGoogleSheetsUploaderTask extends InstanceUploaderTask {
         final Outcome outcome = new Outcome();
 
         List<Instance> instancesToUpload = uploader.getInstancesFromIds(instanceIdsToUpload);
+        List<Instance> batch = new ArrayList<>();
+        String batchUrl = null;
 
         for (int i = 0; i < instancesToUpload.size(); i++) {
             Instance instance = instancesToUpload.get(i);
 
             if (isCancelled()) {
+                // media files for the batch have already been uploaded so finish it off
+                uploadBatch(uploader, batch, outcome);
                 outcome.messagesByInstanceId.put(instance.getId().toString(),
                         TranslationHandler.getString(Collect.getInstance(), R.string.instance_upload_cancelled));
                 return outcome;
@@ -83,10 +95,17 @@ public class InstanceGoogleSheetsUploaderTask extends InstanceUploaderTask {
                 try {
                     String destinationUrl = uploader.getUrlToSubmitTo(instance, null, null);
                     if (InstanceUploaderUtils.doesUrlRefersToGoogleSheetsFile(destinationUrl)) {
-                        uploader.uploadOneSubmission(instance, destinationUrl);
-                        outcome.messagesByInstanceId.put(instance.getId().toString(), DEFAULT_SUCCESSFUL_TEXT);
+                        if (batchUrl != null && !batchUrl.equals(destinationUrl)) {
+                            uploadBatch(uploader, batch, outcome);
+                        }
+
+                        batchUrl = destinationUrl;
+                        uploader.addSubmissionToBatch(instance, destinationUrl);
+                        batch.add(instance);
 
-                        analytics.logEvent(SUBMISSION, "HTTP-Sheets", Collect.getFormIdentifierHash(instance.getJrFormId(), instance.getJrVersion()));
+                        if (batch.size() >= MAX_BATCH_SIZE) {
+                            uploadBatch(uploader, batch, outcome);
+                        }
                     } else {
                         outcome.messagesByInstanceId.put(instance.getId().toString(), SPREADSHEET_UPLOADED_TO_GOOGLE_DRIVE);
                     }
@@ -97,6 +116,30 @@ public class InstanceGoogleSheetsUploaderTask extends InstanceUploaderTask {
                 }
             }
         }
+
+        uploadBatch(uploader, batch, outcome);
         return outcome;
     }
+
+    private void uploadBatch(InstanceGoogleSheetsUploader uploader, List<Instance> batch, Outcome outcome) {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        Map<Long, UploadException> failures = uploader.uploadBatch();
+        for (Instance instance : batch) {
+            UploadException failure = failures.get(instance.getId());
+            if (failure == null) {
+                outcome.messagesByInstanceId.put(instance.getId().toString(), DEFAULT_SUCCESSFUL_TEXT);
+
+                analytics.logEvent(SUBMISSION, "HTTP-Sheets", Collect.getFormIdentifierHash(instance.getJrFormId(), instance.getJrVersion()));
+            } else {
+                Timber.d(failure);
+                outcome.messagesByInstanceId.put(instance.getId().toString(),
+                        failure.getDisplayMessage());
+            }
+        }
+
+        batch.clear();
+    }
 }
\ No newline at end of file
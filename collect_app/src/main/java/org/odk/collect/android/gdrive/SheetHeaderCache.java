@@ -0,0 +1,57 @@
+package org.odk.collect.android.gdrive;
+
+import org.odk.collect.android.gdrive.sheets.SheetsHelper;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Remembers the header row of each sheet in a spreadsheet so that it is only read once per
+ * upload rather than once per instance.
+ */
+class SheetHeaderCache {
+
+    private final SheetsHelper sheetsHelper;
+    private final Map<String, List<Object>> headers = new HashMap<>();
+
+    SheetHeaderCache(SheetsHelper sheetsHelper) {
+        this.sheetsHelper = sheetsHelper;
+    }
+
+    /**
+     * Reads only the first row of the sheet the first time it's asked for.
+     *
+     * @return the header row of the sheet or an empty list if the sheet is empty
+     */
+    List<Object> get(String spreadsheetId, String sheetTitle) throws IOException {
+        List<Object> header = headers.get(sheetTitle);
+        if (header == null) {
+            String headerRange = "'" + sheetTitle.replace("'", "''") + "'!1:1";
+            List<List<Object>> cells = sheetsHelper.getSheetCells(spreadsheetId, headerRange);
+            header = cells == null || cells.isEmpty() ? new ArrayList<>() : cells.get(0);
+            headers.put(sheetTitle, header);
+        }
+        return header;
+    }
+
+    void put(String sheetTitle, List<Object> header) {
+        headers.put(sheetTitle, header);
+    }
+
+    /**
+     * Makes the next {@link #get} read the header of the sheet again.
+     */
+    void remove(String sheetTitle) {
+        headers.remove(sheetTitle);
+    }
+
+    /**
+     * Forgets every header. Has to be called when switching to another spreadsheet.
+     */
+    void clear() {
+        headers.clear();
+    }
+}
@@ -0,0 +1,114 @@
+package org.odk.collect.android.gdrive;
+
+import com.google.api.services.sheets.v4.model.ValueRange;
+
+import org.odk.collect.android.gdrive.sheets.SheetsHelper;
+import org.odk.collect.android.instances.Instance;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The rows of several instances waiting to be appended to a spreadsheet with one request per
+ * sheet. Keeps track of which instances have rows in each sheet so that a failed request only
+ * fails the instances that had rows in it. Which sheets each instance's rows went in is recorded
+ * in its {@link SheetsUploadState} so that they're skipped when the instance is retried.
+ */
+class SheetRowsBatch {
+
+    private final List<Instance> instances = new ArrayList<>();
+    private final Map<String, List<List<Object>>> rowsBySheet = new LinkedHashMap<>();
+    private final Map<String, Set<Instance>> instancesBySheet = new HashMap<>();
+    private final Map<Instance, Set<String>> sheetsByInstance = new HashMap<>();
+    private final Map<Instance, SheetsUploadState> uploadStates = new HashMap<>();
+
+    /**
+     * @param rows        the rows for the instance grouped by the title of the sheet they go in
+     * @param uploadState the sheets the instance's rows have already been appended to which are
+     *                    skipped
+     */
+    void add(Instance instance, Map<String, List<List<Object>>> rows, SheetsUploadState uploadState) {
+        Set<String> instanceSheets = new LinkedHashSet<>();
+        for (Map.Entry<String, List<List<Object>>> sheetRows : rows.entrySet()) {
+            String sheetTitle = sheetRows.getKey();
+            if (uploadState.getAppendedSheets().contains(sheetTitle)) {
+                continue;
+            }
+
+            List<List<Object>> batchSheetRows = rowsBySheet.get(sheetTitle);
+            if (batchSheetRows == null) {
+                batchSheetRows = new ArrayList<>();
+                rowsBySheet.put(sheetTitle, batchSheetRows);
+                instancesBySheet.put(sheetTitle, new LinkedHashSet<>());
+            }
+            batchSheetRows.addAll(sheetRows.getValue());
+            instancesBySheet.get(sheetTitle).add(instance);
+            instanceSheets.add(sheetTitle);
+        }
+
+        instances.add(instance);
+        sheetsByInstance.put(instance, instanceSheets);
+        uploadStates.put(instance, uploadState);
+    }
+
+    boolean isEmpty() {
+        return instances.isEmpty();
+    }
+
+    List<Instance> getInstances() {
+        return new ArrayList<>(instances);
+    }
+
+    /**
+     * Appends the rows to each sheet. A failed request doesn't stop the rows for the other sheets
+     * from being appended as those requests don't depend on each other. The sheets that were
+     * appended to are recorded in the upload state of each instance that had rows in a failed one.
+     *
+     * @return the error for each sheet that couldn't be appended to by sheet title
+     */
+    Map<String, IOException> append(SheetsHelper sheetsHelper, String spreadsheetId) {
+        Map<String, IOException> failures = new LinkedHashMap<>();
+        for (Map.Entry<String, List<List<Object>>> sheetRows : rowsBySheet.entrySet()) {
+            try {
+                sheetsHelper.insertRow(spreadsheetId, sheetRows.getKey(), new ValueRange().setValues(sheetRows.getValue()));
+            } catch (IOException e) {
+                failures.put(sheetRows.getKey(), e);
+            }
+        }
+
+        for (Instance instance : instances) {
+            Set<String> appendedSheets = new LinkedHashSet<>(sheetsByInstance.get(instance));
+            appendedSheets.removeAll(failures.keySet());
+
+            if (appendedSheets.size() == sheetsByInstance.get(instance).size()) {
+                uploadStates.get(instance).onSuccess();
+            } else {
+                uploadStates.get(instance).onSheetsAppended(appendedSheets);
+            }
+        }
+
+        return failures;
+    }
+
+    /**
+     * @return the instances with rows in the given sheet
+     */
+    Set<Instance> getInstancesInSheet(String sheetTitle) {
+        Set<Instance> sheetInstances = instancesBySheet.get(sheetTitle);
+        return sheetInstances != null ? sheetInstances : new LinkedHashSet<>();
+    }
+
+    void clear() {
+        instances.clear();
+        rowsBySheet.clear();
+        instancesBySheet.clear();
+        sheetsByInstance.clear();
+        uploadStates.clear();
+    }
+}
@@ -0,0 +1,126 @@
+package org.odk.collect.android.gdrive;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import timber.log.Timber;
+
+/**
+ * Remembers which sheets of a spreadsheet an instance's rows have already been appended to so
+ * that retrying an instance whose rows only failed to go in some of the sheets doesn't append the
+ * rows in the other sheets again.
+ *
+ * The state is kept in a hidden file in the instance directory like
+ * {@link org.odk.collect.android.upload.SubmissionUploadState} and only applies while the
+ * spreadsheet and the instance file stay the same.
+ */
+class SheetsUploadState {
+
+    static final String STATE_FILE_NAME = ".sheets-upload-state";
+
+    private static final int VERSION = 1;
+
+    private final File stateFile;
+    private final String spreadsheetId;
+    private final long instanceLength;
+    private final long instanceLastModified;
+    private final Set<String> appendedSheets = new HashSet<>();
+
+    SheetsUploadState(File stateFile, File instanceFile, String spreadsheetId) {
+        this.stateFile = stateFile;
+        this.spreadsheetId = spreadsheetId;
+        this.instanceLength = instanceFile.length();
+        this.instanceLastModified = instanceFile.lastModified();
+        read();
+    }
+
+    static SheetsUploadState forInstanceFile(File instanceFile, String spreadsheetId) {
+        return new SheetsUploadState(new File(instanceFile.getParentFile(), STATE_FILE_NAME), instanceFile, spreadsheetId);
+    }
+
+    /**
+     * @return the titles of the sheets the instance's rows have already been appended to
+     */
+    Set<String> getAppendedSheets() {
+        return Collections.unmodifiableSet(appendedSheets);
+    }
+
+    void onSheetsAppended(Set<String> sheetTitles) {
+        if (appendedSheets.addAll(sheetTitles)) {
+            write();
+        }
+    }
+
+    /**
+     * Forgets the state once the rows for every sheet have been appended.
+     */
+    void onSuccess() {
+        appendedSheets.clear();
+        if (stateFile.exists() && !stateFile.delete()) {
+            Timber.w("Could not delete upload state %s", stateFile.getAbsolutePath());
+        }
+    }
+
+    private void read() {
+        if (!stateFile.exists()) {
+            return;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(stateFile)))) {
+            if (in.readInt() != VERSION
+                    || !in.readUTF().equals(spreadsheetId)
+                    || in.readLong() != instanceLength
+                    || in.readLong() != instanceLastModified) {
+                return;
+            }
+
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                appendedSheets.add(in.readUTF());
+            }
+        } catch (IOException e) {
+            Timber.w(e, "Ignoring unreadable upload state %s", stateFile.getAbsolutePath());
+            appendedSheets.clear();
+        }
+    }
+
+    /**
+     * Writes to a temporary file first so that a crash while writing never leaves a state that
+     * claims rows were appended when they weren't.
+     */
+    private void write() {
+        File tempFile = new File(stateFile.getParentFile(), stateFile.getName() + ".tmp");
+
+        try (FileOutputStream fout = new FileOutputStream(tempFile)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fout));
+            out.writeInt(VERSION);
+            out.writeUTF(spreadsheetId);
+            out.writeLong(instanceLength);
+            out.writeLong(instanceLastModified);
+
+            out.writeInt(appendedSheets.size());
+            for (String sheetTitle : appendedSheets) {
+                out.writeUTF(sheetTitle);
+            }
+
+            out.flush();
+            fout.getFD().sync();
+        } catch (IOException e) {
+            Timber.w(e, "Could not write upload state %s", stateFile.getAbsolutePath());
+            return;
+        }
+
+        if (!tempFile.renameTo(stateFile)) {
+            Timber.w("Could not replace upload state %s", stateFile.getAbsolutePath());
+        }
+    }
+}
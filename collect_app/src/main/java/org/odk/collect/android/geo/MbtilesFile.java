@@ -2,6 +2,8 @@ package org.odk.collect.android.geo;
 
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
+import android.database.sqlite.SQLiteStatement;
 
 import androidx.annotation.NonNull;
 
@@ -30,19 +32,39 @@ import static android.database.sqlite.SQLiteDatabase.OPEN_READONLY;
 class MbtilesFile implements Closeable, TileSource {
     public enum LayerType { RASTER, VECTOR }
 
-    private final File file;
+    // The coordinates are bound as strings (see getTileBlob) so they are cast
+    // back to integers to match the columns and use the index on them.
+    private static final String TILE_WHERE_CLAUSE =
+        "zoom_level = CAST(? AS INTEGER) and tile_column = CAST(? AS INTEGER) and tile_row = CAST(? AS INTEGER)";
+    private static final String TILE_LENGTH_QUERY =
+        "SELECT length(tile_data) FROM tiles WHERE " + TILE_WHERE_CLAUSE + " LIMIT 1";
+    private static final String TILE_DATA_QUERY =
+        "SELECT tile_data FROM tiles WHERE " + TILE_WHERE_CLAUSE + " LIMIT 1";
+    private static final String TILE_CHUNK_QUERY =
+        "SELECT substr(tile_data, CAST(? AS INTEGER), CAST(? AS INTEGER)) FROM tiles WHERE " + TILE_WHERE_CLAUSE + " LIMIT 1";
+
+    // In Android, the SQLite cursor can handle at most 2 MB in one row;
+    // exceeding 2 MB in an .mbtiles file is rare, but it can happen.
+    // Tiles bigger than this are read in pieces of this size.
+    // See https://stackoverflow.com/questions/20094421/cursor-window-window-is-full
+    private static final int MAX_BLOB_READ_SIZE = 1024 * 1024;
+
     private final LayerType layerType;
     private final String contentType;
     private final String contentEncoding;
-    private SQLiteDatabase db;  // see getTileBlob for why this is not final
+    private final SQLiteDatabase db;
+
+    // Compiled once and reused for every tile; guarded by synchronizing on it
+    // because tiles are requested from several threads.
+    private final SQLiteStatement tileLengthStatement;
 
     MbtilesFile(File file) throws MbtilesException {
         this(file, detectContentType(file));
     }
 
     private MbtilesFile(File file, String contentType) throws MbtilesException {
-        this.file = file;
         this.db = openSqliteReadOnly(file);
+        this.tileLengthStatement = db.compileStatement(TILE_LENGTH_QUERY);
         this.contentType = contentType;
         switch (contentType) {
             case "application/protobuf":
@@ -76,6 +98,9 @@ class MbtilesFile implements Closeable, TileSource {
     }
 
     public void close() {
+        synchronized (tileLengthStatement) {
+            tileLengthStatement.close();
+        }
         db.close();
     }
 
@@ -87,37 +112,68 @@ class MbtilesFile implements Closeable, TileSource {
         // TMS coordinates are used in .mbtiles files, so Y needs to be flipped.
         y = (1 << zoom) - 1 - y;
 
-        // We have to use String.format because the templating mechanism in
-        // SQLiteDatabase.query is written for a strange alternate universe
-        // in which numbers don't exist -- it only supports strings!
-        String selection = String.format(
-            Locale.US,
-            "zoom_level = %d and tile_column = %d and tile_row = %d",
-            zoom, x, y
-        );
-
-        try (Cursor results = db.query("tiles", new String[] {"tile_data"},
-            selection, null, null, null, null)) {
-            if (results.moveToFirst()) {
-                try {
-                    return results.getBlob(0);
-                } catch (IllegalStateException e) {
-                    Timber.w(e, "Could not select tile data at zoom=%d, x=%d, y=%d", zoom, x, y);
-                    // In Android, the SQLite cursor can handle at most 2 MB in one row;
-                    // exceeding 2 MB in an .mbtiles file is rare, but it can happen.
-                    // When an attempt to fetch a large row fails, the database ends up
-                    // in an unusable state, so we need to close it and reopen it.
-                    // See https://stackoverflow.com/questions/20094421/cursor-window-window-is-full
-                    db.close();
-                    db = openSqliteReadOnly(file);
+        // The templating mechanism in SQLiteDatabase.query is written for a
+        // strange alternate universe in which numbers don't exist -- it only
+        // supports strings! The SQL stays the same for every tile though, so
+        // its compiled statement is reused, unlike with a formatted selection.
+        String[] coordinates = {Integer.toString(zoom), Integer.toString(x), Integer.toString(y)};
+
+        try {
+            // Looking up the length first only touches the index and the row
+            // header, which makes requests for missing tiles cheap.
+            long length = queryTileLength(zoom, x, y);
+            if (length < 0) {
+                return null;
+            }
+            if (length <= MAX_BLOB_READ_SIZE) {
+                try (Cursor results = db.rawQuery(TILE_DATA_QUERY, coordinates)) {
+                    return results.moveToFirst() ? results.getBlob(0) : null;
                 }
             }
+            return queryTileInChunks(coordinates, (int) length);
         } catch (Throwable e) {
-            Timber.w(e);
+            Timber.w(e, "Could not select tile data at zoom=%d, x=%d, y=%d", zoom, x, y);
         }
         return null;
     }
 
+    /** Returns the size of the tile's data, or -1 if there is no such tile. */
+    private long queryTileLength(int zoom, int x, int y) {
+        synchronized (tileLengthStatement) {
+            tileLengthStatement.bindString(1, Integer.toString(zoom));
+            tileLengthStatement.bindString(2, Integer.toString(x));
+            tileLengthStatement.bindString(3, Integer.toString(y));
+            try {
+                return tileLengthStatement.simpleQueryForLong();
+            } catch (SQLiteDoneException e) {
+                return -1;
+            } finally {
+                tileLengthStatement.clearBindings();
+            }
+        }
+    }
+
+    /** Reads a tile that is too big for a cursor window piece by piece. */
+    @SuppressWarnings("PMD.ReturnEmptyArrayRatherThanNull")
+    private byte[] queryTileInChunks(String[] coordinates, int length) {
+        byte[] data = new byte[length];
+        String[] args = new String[coordinates.length + 2];
+        System.arraycopy(coordinates, 0, args, 2, coordinates.length);
+        args[1] = Integer.toString(MAX_BLOB_READ_SIZE);
+
+        for (int offset = 0; offset < length; offset += MAX_BLOB_READ_SIZE) {
+            args[0] = Integer.toString(offset + 1);  // substr() counts from 1
+            try (Cursor results = db.rawQuery(TILE_CHUNK_QUERY, args)) {
+                if (!results.moveToFirst()) {
+                    return null;  // the tile has gone away
+                }
+                byte[] chunk = results.getBlob(0);
+                System.arraycopy(chunk, 0, data, offset, Math.min(chunk.length, length - offset));
+            }
+        }
+        return data;
+    }
+
     /** Returns information about the vector layers available in the tiles. */
     List<VectorLayer> getVectorLayers() {
         List<VectorLayer> layers = new ArrayList<>();
@@ -1,5 +1,6 @@
 package org.odk.collect.android.geo;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.Closeable;
 import java.io.IOException;
@@ -9,21 +10,61 @@ import java.io.UnsupportedEncodingException;
 import java.net.BindException;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
 import java.net.URLDecoder;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import timber.log.Timber;
 
-/** A minimal HTTP server that serves tiles from a set of TileSources. */
+/**
+ * A minimal HTTP/1.1 server that serves tiles from a set of TileSources. Connections are
+ * kept alive (and pipelined requests answered in order) by a bounded pool of workers, and
+ * recently served tiles are kept in memory so panning back and forth doesn't hit the database.
+ * A kept-alive connection gives up its worker as soon as another connection is waiting for one.
+ */
 class TileHttpServer {
     private static final int PORT_MIN = 8000;
     private static final int PORT_MAX = 8999;
 
-    private final Map<String, TileSource> sources = new HashMap<>();
+    /**
+     * The number of connections served at the same time. Map clients open at most a handful of
+     * connections per host (OkHttp defaults to 5) so this is usually enough for all of them.
+     */
+    static final int MAX_WORKERS = 8;
+
+    /** Idle keep-alive connections are closed after this so they don't hold on to a worker. */
+    private static final int KEEP_ALIVE_TIMEOUT_MS = 3000;
+
+    /** How often an idle keep-alive connection checks whether a connection is waiting for its worker. */
+    private static final int IDLE_POLL_MS = 100;
+
+    /** The maximum size of the recently served tiles kept for each TileSource. */
+    private static final int CACHE_BYTES_PER_SOURCE = 4 * 1024 * 1024;
+
+    private final Map<String, TileSource> sources = new ConcurrentHashMap<>();
+    private final Map<String, TileCache> caches = new ConcurrentHashMap<>();
     private final ServerThread server;
     private final ServerSocket socket;
+    private final ExecutorService workers = Executors.newFixedThreadPool(MAX_WORKERS);
+    private final Set<Socket> connections = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private final AtomicInteger queuedConnections = new AtomicInteger();
+
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong cacheHitCount = new AtomicLong();
+    private final AtomicLong servedBytes = new AtomicLong();
+    private final AtomicLong totalLatencyNanos = new AtomicLong();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
 
     TileHttpServer() throws IOException {
         socket = createBoundSocket(PORT_MIN, PORT_MAX);
@@ -53,6 +94,7 @@ class TileHttpServer {
      */
     public void addSource(String key, TileSource source) {
         sources.put(key, source);
+        caches.put(key, new TileCache(CACHE_BYTES_PER_SOURCE));
     }
 
     /** Permanently closes all sockets and closeable TileSources. */
@@ -61,6 +103,12 @@ class TileHttpServer {
             socket.close();
         } catch (IOException e) { /* ignore */ }
         server.interrupt();
+        workers.shutdownNow();
+        for (Socket connection : connections) {
+            try {
+                connection.close();
+            } catch (IOException e) { /* ignore */ }
+        }
         for (TileSource source : sources.values()) {
             if (source instanceof Closeable) {
                 try {
@@ -68,6 +116,35 @@ class TileHttpServer {
                 } catch (IOException e) { /* ignore */ }
             }
         }
+        Timber.i("Served %d requests (%d from cache), %d bytes, average latency %.2f ms, max %.2f ms",
+            getRequestCount(), getCacheHitCount(), getServedBytes(),
+            getAverageLatencyMillis(), maxLatencyNanos.get() / 1e6);
+    }
+
+    /** Returns the number of tile requests answered, including those for missing tiles. */
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /** Returns the number of tile requests answered without reading from the TileSource. */
+    public long getCacheHitCount() {
+        return cacheHitCount.get();
+    }
+
+    /** Returns the total size of the tile data sent to clients. */
+    public long getServedBytes() {
+        return servedBytes.get();
+    }
+
+    /** Returns the number of connections waiting for a worker to become free. */
+    public int getQueuedConnectionCount() {
+        return queuedConnections.get();
+    }
+
+    /** Returns the average time from reading a request to having its response ready to send. */
+    public double getAverageLatencyMillis() {
+        long count = requestCount.get();
+        return count == 0 ? 0 : totalLatencyNanos.get() / 1e6 / count;
     }
 
     /** Finds an available port and binds a ServerSocket to it. */
@@ -96,8 +173,13 @@ class TileHttpServer {
                 Timber.i("Ready for requests on port %d", socket.getLocalPort());
                 while (!isInterrupted()) {
                     Socket connection = socket.accept();
-                    Timber.i("Accepted a client connection");
-                    new ResponseThread(connection).start();
+                    queuedConnections.incrementAndGet();
+                    try {
+                        workers.execute(new ConnectionHandler(connection));
+                    } catch (RejectedExecutionException e) {
+                        queuedConnections.decrementAndGet();
+                        connection.close();  // the server is being destroyed
+                    }
                 }
                 Timber.i("Server thread interrupted");
             } catch (IOException e) {
@@ -106,33 +188,116 @@ class TileHttpServer {
         }
     }
 
-    class ResponseThread extends Thread {
+    /**
+     * Answers the requests on one connection, in order, until the client closes it, it's idle for
+     * too long or another connection is waiting for a worker.
+     */
+    class ConnectionHandler implements Runnable {
         final Socket connection;
 
-        ResponseThread(Socket connection) {
+        ConnectionHandler(Socket connection) {
             this.connection = connection;
         }
 
         public void run() {
+            queuedConnections.decrementAndGet();
+            connections.add(connection);
             try (Socket connection = this.connection) {
-                InputStreamReader reader = new InputStreamReader(connection.getInputStream());
-                String request = new BufferedReader(reader).readLine();
-                Timber.i("Received request: %s", request);
-                if (request == null) {
-                    return;
-                }
-                long start = System.currentTimeMillis();
-                Response response = getResponse(request);
-                if (response == null) {
-                    Timber.i("%s: No tile at these coordinates", request);
-                    return;
+                connection.setSoTimeout(KEEP_ALIVE_TIMEOUT_MS);
+                connection.setTcpNoDelay(true);
+                BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream(), "US-ASCII"));
+                OutputStream output = new BufferedOutputStream(connection.getOutputStream());
+
+                boolean keepAlive = true;
+                boolean firstRequest = true;
+                while (keepAlive && !Thread.currentThread().isInterrupted()) {
+                    if (!firstRequest && !awaitNextRequest(connection, reader)) {
+                        return;
+                    }
+                    firstRequest = false;
+
+                    String request = reader.readLine();
+                    if (request == null) {
+                        return;  // the client closed the connection
+                    }
+                    if (request.isEmpty()) {
+                        continue;  // tolerate stray line breaks between requests
+                    }
+                    long start = System.nanoTime();
+                    // let the client know the connection won't be reused if others are waiting
+                    keepAlive = readHeaders(reader, request.endsWith("HTTP/1.1")) && queuedConnections.get() == 0;
+
+                    Response response = getResponse(request);
+                    sendResponse(output, response, keepAlive);
+                    recordRequest(response, System.nanoTime() - start);
+                    // only flush once there are no more pipelined requests to answer
+                    if (!keepAlive || !reader.ready()) {
+                        output.flush();
+                    }
                 }
-                sendResponse(connection, response);
-                long finish = System.currentTimeMillis();
-                Timber.i("%s: Served %d bytes in %d ms", request, response.data.length, finish - start);
+                output.flush();
+            } catch (SocketTimeoutException e) {
+                Timber.d("Closing idle connection");
             } catch (IOException e) {
-                Timber.e(e, "Unable to read request from socket");
+                Timber.d(e, "Connection closed");
+            } finally {
+                connections.remove(connection);
+            }
+        }
+
+        /**
+         * Waits for the client to start sending its next request. Only the first character is
+         * read (and put back) so a timeout can't lose part of a request.
+         *
+         * @return false if the connection should be closed because it was idle for too long or
+         * another connection is waiting for a worker
+         */
+        private boolean awaitNextRequest(Socket connection, BufferedReader reader) throws IOException {
+            connection.setSoTimeout(IDLE_POLL_MS);
+            try {
+                for (int idleMs = 0; !reader.ready(); idleMs += IDLE_POLL_MS) {
+                    if (queuedConnections.get() > 0 || idleMs >= KEEP_ALIVE_TIMEOUT_MS) {
+                        Timber.d("Closing idle connection");
+                        return false;
+                    }
+
+                    reader.mark(1);
+                    try {
+                        if (reader.read() == -1) {
+                            return false;  // the client closed the connection
+                        }
+                        reader.reset();
+                        return true;
+                    } catch (SocketTimeoutException e) {
+                        // nothing yet so check again
+                    }
+                }
+                return true;
+            } finally {
+                connection.setSoTimeout(KEEP_ALIVE_TIMEOUT_MS);
+            }
+        }
+
+        /**
+         * Skips the request headers.
+         *
+         * @return whether the connection should be kept open after the response
+         */
+        protected boolean readHeaders(BufferedReader reader, boolean keepAliveByDefault) throws IOException {
+            boolean keepAlive = keepAliveByDefault;
+            String header;
+            while ((header = reader.readLine()) != null && !header.isEmpty()) {
+                String lowerCase = header.toLowerCase(Locale.US);
+                if (lowerCase.startsWith("connection:")) {
+                    String value = lowerCase.substring("connection:".length()).trim();
+                    if (value.equals("close")) {
+                        keepAlive = false;
+                    } else if (value.equals("keep-alive")) {
+                        keepAlive = true;
+                    }
+                }
             }
+            return keepAlive && header != null;
         }
 
         protected Response getResponse(String request) {
@@ -147,10 +312,12 @@ class TileHttpServer {
                         int y = Integer.parseInt(parts[3]);
                         TileSource source = sources.get(key);
                         if (source != null) {
-                            byte[] data = source.getTileBlob(zoom, x, y);
+                            byte[] data = getTile(key, source, zoom, x, y);
                             if (data != null) {
                                 return new Response(data, source.getContentType(), source.getContentEncoding());
                             }
+                            Timber.d("%s: No tile at these coordinates", request);
+                            return Response.NOT_FOUND;
                         }
                     } catch (NumberFormatException e) {
                         Timber.w(e, "Bad request %s", request);
@@ -158,33 +325,113 @@ class TileHttpServer {
                 }
             }
             Timber.w("Ignoring request: %s", request);
-            return null;
-        }
-
-        protected void sendResponse(Socket connection, Response response) {
-            String headers = String.format(
-                Locale.US,
-                "HTTP/1.0 200\r\n" +
-                    "Content-Type: %s\r\n" +
-                    "Content-Encoding: %s\r\n" +
-                    "Content-Length: %d\r\n" +
-                    "\r\n",
-                response.contentType,
-                response.contentEncoding,
-                response.data.length
-            );
-
-            try (OutputStream output = connection.getOutputStream()) {
-                output.write(headers.getBytes());
+            return Response.NOT_FOUND;
+        }
+
+        protected void sendResponse(OutputStream output, Response response, boolean keepAlive) throws IOException {
+            StringBuilder headers = new StringBuilder();
+            headers.append(response.data != null ? "HTTP/1.1 200 OK\r\n" : "HTTP/1.1 404 Not Found\r\n");
+            if (response.contentType != null) {
+                headers.append("Content-Type: ").append(response.contentType).append("\r\n");
+            }
+            if (response.contentEncoding != null) {
+                headers.append("Content-Encoding: ").append(response.contentEncoding).append("\r\n");
+            }
+            headers.append("Content-Length: ").append(response.data != null ? response.data.length : 0).append("\r\n");
+            headers.append(keepAlive ? "Connection: keep-alive\r\n" : "Connection: close\r\n");
+            headers.append("\r\n");
+
+            output.write(headers.toString().getBytes("US-ASCII"));
+            if (response.data != null) {
                 output.write(response.data);
-                output.flush();
-            } catch (IOException e) {
-                Timber.e(e, "Unable to write response to socket");
             }
         }
     }
 
+    /** Returns the tile from the source's cache, reading it from the source if needed. */
+    private byte[] getTile(String key, TileSource source, int zoom, int x, int y) {
+        TileCache cache = caches.get(key);
+        String tileKey = zoom + "/" + x + "/" + y;
+        if (cache != null) {
+            byte[] cached = cache.get(tileKey);
+            if (cached != null) {
+                cacheHitCount.incrementAndGet();
+                return cached == TileCache.MISSING ? null : cached;
+            }
+        }
+
+        byte[] data = source.getTileBlob(zoom, x, y);
+        if (cache != null) {
+            cache.put(tileKey, data != null ? data : TileCache.MISSING);
+        }
+        return data;
+    }
+
+    private void recordRequest(Response response, long latencyNanos) {
+        requestCount.incrementAndGet();
+        if (response.data != null) {
+            servedBytes.addAndGet(response.data.length);
+        }
+        totalLatencyNanos.addAndGet(latencyNanos);
+
+        long max;
+        do {
+            max = maxLatencyNanos.get();
+        } while (latencyNanos > max && !maxLatencyNanos.compareAndSet(max, latencyNanos));
+    }
+
+    /**
+     * A least-recently-used cache of tiles that is bounded by the total size of the tiles
+     * rather than their number. Tiles that don't exist are remembered too.
+     */
+    static class TileCache {
+        static final byte[] MISSING = new byte[0];
+
+        /** Roughly what each entry costs besides its data. */
+        private static final int ENTRY_OVERHEAD_BYTES = 64;
+
+        private final long maxBytes;
+        private long bytes;
+        private final LinkedHashMap<String, byte[]> tiles = new LinkedHashMap<>(16, 0.75f, true);
+
+        TileCache(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        synchronized byte[] get(String key) {
+            return tiles.get(key);
+        }
+
+        synchronized void put(String key, byte[] data) {
+            if (cost(data) > maxBytes) {
+                return;
+            }
+
+            byte[] previous = tiles.put(key, data);
+            if (previous != null) {
+                bytes -= cost(previous);
+            }
+            bytes += cost(data);
+
+            Iterator<byte[]> eldest = tiles.values().iterator();
+            while (bytes > maxBytes && eldest.hasNext()) {
+                bytes -= cost(eldest.next());
+                eldest.remove();
+            }
+        }
+
+        synchronized long getSizeBytes() {
+            return bytes;
+        }
+
+        private static long cost(byte[] data) {
+            return data.length + ENTRY_OVERHEAD_BYTES;
+        }
+    }
+
     public static class Response {
+        static final Response NOT_FOUND = new Response(null, null, null);
+
         byte[] data;
         String contentType;
         String contentEncoding;
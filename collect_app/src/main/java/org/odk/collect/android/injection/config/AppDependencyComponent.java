@@ -24,6 +24,8 @@ import org.odk.collect.android.audio.AudioRecordingControllerFragment;
 import org.odk.collect.android.audio.AudioRecordingErrorDialogFragment;
 import org.odk.collect.android.backgroundwork.AutoSendTaskSpec;
 import org.odk.collect.android.backgroundwork.AutoUpdateTaskSpec;
+import org.odk.collect.android.backgroundwork.FormPrewarmManager;
+import org.odk.collect.android.backgroundwork.PrewarmFormsTaskSpec;
 import org.odk.collect.android.backgroundwork.SyncFormsTaskSpec;
 import org.odk.collect.android.configure.SettingsImporter;
 import org.odk.collect.android.configure.qr.QRCodeScannerFragment;
@@ -38,6 +40,7 @@ import org.odk.collect.android.fragments.BlankFormListFragment;
 import org.odk.collect.android.fragments.MapBoxInitializationFragment;
 import org.odk.collect.android.fragments.SavedFormListFragment;
 import org.odk.collect.android.fragments.dialogs.SelectMinimalDialog;
+import org.odk.collect.android.forms.FormMediaLock;
 import org.odk.collect.android.gdrive.GoogleDriveActivity;
 import org.odk.collect.android.gdrive.GoogleSheetsUploaderActivity;
 import org.odk.collect.android.geo.GoogleMapFragment;
@@ -68,6 +71,7 @@ import org.odk.collect.android.storage.migration.StorageMigrationService;
 import org.odk.collect.android.tasks.InstanceServerUploaderTask;
 import org.odk.collect.android.utilities.ApplicationResetter;
 import org.odk.collect.android.utilities.AuthDialogUtility;
+import org.odk.collect.android.utilities.FormDefMemoryCache;
 import org.odk.collect.android.widgets.ExStringWidget;
 import org.odk.collect.android.widgets.QuestionWidget;
 
@@ -204,6 +208,8 @@ public interface AppDependencyComponent {
 
     void inject(AutoUpdateTaskSpec autoUpdateTaskSpec);
 
+    void inject(PrewarmFormsTaskSpec prewarmFormsTaskSpec);
+
     void inject(ServerAuthDialogFragment serverAuthDialogFragment);
 
     void inject(BasePreferenceFragment basePreferenceFragment);
@@ -247,4 +253,10 @@ public interface AppDependencyComponent {
     ApplicationInitializer applicationInitializer();
 
     SettingsImporter settingsImporter();
+
+    FormDefMemoryCache formDefMemoryCache();
+
+    FormPrewarmManager formPrewarmManager();
+
+    FormMediaLock formMediaLock();
 }
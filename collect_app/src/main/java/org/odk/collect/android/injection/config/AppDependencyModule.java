@@ -29,9 +29,11 @@ import org.odk.collect.android.application.initialization.ApplicationInitializer
 import org.odk.collect.android.application.initialization.CollectSettingsPreferenceMigrator;
 import org.odk.collect.android.application.initialization.SettingsPreferenceMigrator;
 import org.odk.collect.android.backgroundwork.ChangeLock;
+import org.odk.collect.android.backgroundwork.FormPrewarmManager;
 import org.odk.collect.android.backgroundwork.FormSubmitManager;
 import org.odk.collect.android.backgroundwork.FormUpdateManager;
 import org.odk.collect.android.backgroundwork.ReentrantLockChangeLock;
+import org.odk.collect.android.backgroundwork.SchedulerFormPrewarmManager;
 import org.odk.collect.android.backgroundwork.SchedulerFormUpdateAndSubmitManager;
 import org.odk.collect.android.configure.ServerRepository;
 import org.odk.collect.android.configure.SettingsChangeHandler;
@@ -59,6 +61,7 @@ import org.odk.collect.android.formmanagement.ServerFormDownloader;
 import org.odk.collect.android.formmanagement.ServerFormsDetailsFetcher;
 import org.odk.collect.android.formmanagement.matchexactly.ServerFormsSynchronizer;
 import org.odk.collect.android.formmanagement.matchexactly.SyncStatusRepository;
+import org.odk.collect.android.forms.FormMediaLock;
 import org.odk.collect.android.forms.FormSource;
 import org.odk.collect.android.forms.FormsRepository;
 import org.odk.collect.android.forms.MediaFileRepository;
@@ -101,6 +104,7 @@ import org.odk.collect.android.utilities.DeviceDetailsProvider;
 import org.odk.collect.android.utilities.ExternalAppIntentProvider;
 import org.odk.collect.android.utilities.FileProvider;
 import org.odk.collect.android.utilities.FileUtil;
+import org.odk.collect.android.utilities.FormDefMemoryCache;
 import org.odk.collect.android.utilities.FormsDirDiskFormsSynchronizer;
 import org.odk.collect.android.utilities.MediaUtils;
 import org.odk.collect.android.permissions.PermissionsProvider;
@@ -187,8 +191,8 @@ public class AppDependencyModule {
     }
 
     @Provides
-    public FormDownloader providesFormDownloader(FormSource formSource, FormsRepository formsRepository, StoragePathProvider storagePathProvider, Analytics analytics) {
-        return new ServerFormDownloader(formSource, formsRepository, new File(storagePathProvider.getDirPath(StorageSubdirectory.CACHE)), storagePathProvider.getDirPath(StorageSubdirectory.FORMS), new FormMetadataParser(ReferenceManager.instance()), analytics);
+    public FormDownloader providesFormDownloader(FormSource formSource, FormsRepository formsRepository, StoragePathProvider storagePathProvider, Analytics analytics, FormPrewarmManager formPrewarmManager) {
+        return new ServerFormDownloader(formSource, formsRepository, new File(storagePathProvider.getDirPath(StorageSubdirectory.CACHE)), storagePathProvider.getDirPath(StorageSubdirectory.FORMS), new FormMetadataParser(ReferenceManager.instance()), analytics, formPrewarmManager);
     }
 
     @Provides
@@ -310,6 +314,11 @@ public class AppDependencyModule {
         return new SchedulerFormUpdateAndSubmitManager(scheduler, preferencesProvider.getGeneralSharedPreferences(), application);
     }
 
+    @Provides
+    public FormPrewarmManager providesFormPrewarmManager(Scheduler scheduler) {
+        return new SchedulerFormPrewarmManager(scheduler);
+    }
+
     @Provides
     public NetworkStateProvider providesConnectivityProvider() {
         return new ConnectivityProvider();
@@ -412,8 +421,8 @@ public class AppDependencyModule {
     }
 
     @Provides
-    public DiskFormsSynchronizer providesDiskFormSynchronizer() {
-        return new FormsDirDiskFormsSynchronizer();
+    public DiskFormsSynchronizer providesDiskFormSynchronizer(FormPrewarmManager formPrewarmManager) {
+        return new FormsDirDiskFormsSynchronizer(formPrewarmManager);
     }
 
     @Provides
@@ -451,6 +460,12 @@ public class AppDependencyModule {
         return new ReentrantLockChangeLock();
     }
 
+    @Provides
+    @Singleton
+    public FormMediaLock providesFormMediaLock() {
+        return new FormMediaLock();
+    }
+
     @Provides
     public InstancesRepository providesInstancesRepository() {
         return new DatabaseInstancesRepository();
@@ -522,4 +537,10 @@ public class AppDependencyModule {
     public ExternalAppIntentProvider providesExternalAppIntentProvider() {
         return new ExternalAppIntentProvider();
     }
+
+    @Provides
+    @Singleton
+    public FormDefMemoryCache providesFormDefMemoryCache(Context context) {
+        return new FormDefMemoryCache(FormDefMemoryCache.getDefaultSize(context));
+    }
 }
@@ -24,6 +24,7 @@ import org.odk.collect.android.preferences.GeneralSharedPreferences;
 import org.odk.collect.android.provider.InstanceProviderAPI;
 import org.odk.collect.android.upload.InstanceServerUploader;
 import org.odk.collect.android.upload.InstanceUploader;
+import org.odk.collect.android.upload.SubmissionUploadState;
 import org.odk.collect.android.upload.UploadException;
 import org.odk.collect.android.utilities.FileUtils;
 import org.odk.collect.android.utilities.InstanceUploaderUtils;
@@ -31,10 +32,15 @@ import org.odk.collect.android.utilities.TranslationHandler;
 import org.odk.collect.android.utilities.WebCredentialsUtils;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import timber.log.Timber;
 
@@ -44,6 +50,8 @@ import static org.odk.collect.android.utilities.InstanceUploaderUtils.SPREADSHEE
 
 public class InstanceSubmitter {
 
+    private static final int MAX_CONCURRENT_UPLOADS = 4;
+
     private final Analytics analytics;
     private final FormsRepository formsRepository;
     private final InstancesRepository instancesRepository;
@@ -98,58 +106,119 @@ public class InstanceSubmitter {
                     .getSingularProperty(PropertyManager.PROPMGR_DEVICE_ID);
         }
 
-        for (Instance instance : toUpload) {
-            try {
+        // Server submissions are independent so several are sent at once. Results are handled
+        // here in the original order so statuses, deletes and messages are the same as sending
+        // them one by one.
+        int threads = uploader instanceof InstanceServerUploader ? Math.min(toUpload.size(), MAX_CONCURRENT_UPLOADS) : 1;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<String>> uploads = new ArrayList<>();
+            for (Instance instance : toUpload) {
                 String destinationUrl = uploader.getUrlToSubmitTo(instance, deviceId, null);
                 if (protocol.equals(TranslationHandler.getString(Collect.getInstance(), R.string.protocol_google_sheets))
                         && !InstanceUploaderUtils.doesUrlRefersToGoogleSheetsFile(destinationUrl)) {
+                    uploads.add(null);
+                    continue;
+                }
+
+                uploads.add(executor.submit(() -> uploader.uploadOneSubmission(instance, destinationUrl)));
+            }
+
+            for (int i = 0; i < toUpload.size(); i++) {
+                Instance instance = toUpload.get(i);
+                if (uploads.get(i) == null) {
                     anyFailure = true;
                     resultMessagesByInstanceId.put(instance.getId().toString(), SPREADSHEET_UPLOADED_TO_GOOGLE_DRIVE);
                     continue;
                 }
-                String customMessage = uploader.uploadOneSubmission(instance, destinationUrl);
-                resultMessagesByInstanceId.put(instance.getId().toString(), customMessage != null ? customMessage : TranslationHandler.getString(Collect.getInstance(), R.string.success));
-
-                // If the submission was successful, delete the instance if either the app-level
-                // delete preference is set or the form definition requests auto-deletion.
-                // TODO: this could take some time so might be better to do in a separate process,
-                // perhaps another worker. It also feels like this could fail and if so should be
-                // communicated to the user. Maybe successful delete should also be communicated?
-                if (InstanceUploaderUtils.shouldFormBeDeleted(formsRepository, instance.getJrFormId(), instance.getJrVersion(),
-                        (boolean) GeneralSharedPreferences.getInstance().get(GeneralKeys.KEY_DELETE_AFTER_SEND))) {
-                    Uri deleteForm = Uri.withAppendedPath(InstanceProviderAPI.InstanceColumns.CONTENT_URI, instance.getId().toString());
-                    Collect.getInstance().getContentResolver().delete(deleteForm, null, null);
-                }
 
-                String action = protocol.equals(TranslationHandler.getString(Collect.getInstance(), R.string.protocol_google_sheets)) ?
-                        "HTTP-Sheets auto" : "HTTP auto";
-                String label = Collect.getFormIdentifierHash(instance.getJrFormId(), instance.getJrVersion());
-                analytics.logEvent(SUBMISSION, action, label);
-
-                String submissionEndpoint = (String) settings.get(GeneralKeys.KEY_SUBMISSION_URL);
-                if (!submissionEndpoint.equals(TranslationHandler.getString(Collect.getInstance(), R.string.default_odk_submission))) {
-                    String submissionEndpointHash = FileUtils.getMd5Hash(new ByteArrayInputStream(submissionEndpoint.getBytes()));
-                    analytics.logEvent(CUSTOM_ENDPOINT_SUB, submissionEndpointHash);
+                try {
+                    String customMessage = getUploadResult(uploads.get(i));
+                    resultMessagesByInstanceId.put(instance.getId().toString(), customMessage != null ? customMessage : TranslationHandler.getString(Collect.getInstance(), R.string.success));
+
+                    // If the submission was successful, delete the instance if either the app-level
+                    // delete preference is set or the form definition requests auto-deletion.
+                    // TODO: this could take some time so might be better to do in a separate process,
+                    // perhaps another worker. It also feels like this could fail and if so should be
+                    // communicated to the user. Maybe successful delete should also be communicated?
+                    if (InstanceUploaderUtils.shouldFormBeDeleted(formsRepository, instance.getJrFormId(), instance.getJrVersion(),
+                            (boolean) GeneralSharedPreferences.getInstance().get(GeneralKeys.KEY_DELETE_AFTER_SEND))) {
+                        Uri deleteForm = Uri.withAppendedPath(InstanceProviderAPI.InstanceColumns.CONTENT_URI, instance.getId().toString());
+                        Collect.getInstance().getContentResolver().delete(deleteForm, null, null);
+                    }
+
+                    String action = protocol.equals(TranslationHandler.getString(Collect.getInstance(), R.string.protocol_google_sheets)) ?
+                            "HTTP-Sheets auto" : "HTTP auto";
+                    String label = Collect.getFormIdentifierHash(instance.getJrFormId(), instance.getJrVersion());
+                    analytics.logEvent(SUBMISSION, action, label);
+
+                    String submissionEndpoint = (String) settings.get(GeneralKeys.KEY_SUBMISSION_URL);
+                    if (!submissionEndpoint.equals(TranslationHandler.getString(Collect.getInstance(), R.string.default_odk_submission))) {
+                        String submissionEndpointHash = FileUtils.getMd5Hash(new ByteArrayInputStream(submissionEndpoint.getBytes()));
+                        analytics.logEvent(CUSTOM_ENDPOINT_SUB, submissionEndpointHash);
+                    }
+                } catch (UploadException e) {
+                    Timber.d(e);
+                    anyFailure = true;
+                    resultMessagesByInstanceId.put(instance.getId().toString(),
+                            e.getDisplayMessage());
                 }
-            } catch (UploadException e) {
-                Timber.d(e);
-                anyFailure = true;
-                resultMessagesByInstanceId.put(instance.getId().toString(),
-                        e.getDisplayMessage());
             }
+        } finally {
+            executor.shutdownNow();
         }
 
         return new Pair<>(anyFailure, InstanceUploaderUtils.getUploadResultMessage(instancesRepository, Collect.getInstance(), resultMessagesByInstanceId));
     }
 
+    private static String getUploadResult(Future<String> upload) throws UploadException {
+        try {
+            return upload.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UploadException) {
+                throw (UploadException) e.getCause();
+            } else if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else {
+                throw new UploadException(e.getCause());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UploadException(e);
+        }
+    }
+
     /**
-     * Returns instances that need to be auto-sent.
+     * Returns whether auto-send should run again later because an instance that should be
+     * auto-sent failed to upload and hasn't used up its retries.
+     */
+    public boolean shouldRetryAutoSend() {
+        for (Instance instance : instancesRepository.getAllFinalized()) {
+            if (shouldFormBeSent(formsRepository, instance.getJrFormId(), instance.getJrVersion(), GeneralSharedPreferences.isAutoSendEnabled())
+                    && getUploadState(instance).shouldRetryAutoSend()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns instances that need to be auto-sent. Instances that failed to upload are left out
+     * until their backoff has passed.
      */
     @NonNull
     private List<Instance> getInstancesToAutoSend(boolean isAutoSendAppSettingEnabled) {
+        long now = System.currentTimeMillis();
+
         List<Instance> toUpload = new ArrayList<>();
         for (Instance instance : instancesRepository.getAllFinalized()) {
             if (shouldFormBeSent(formsRepository, instance.getJrFormId(), instance.getJrVersion(), isAutoSendAppSettingEnabled)) {
+                if (getUploadState(instance).isBackingOff(now)) {
+                    Timber.i("Not auto-sending instance %d yet after a failed upload", instance.getId());
+                    continue;
+                }
+
                 toUpload.add(instance);
             }
         }
@@ -157,6 +226,10 @@ public class InstanceSubmitter {
         return toUpload;
     }
 
+    private static SubmissionUploadState getUploadState(Instance instance) {
+        return SubmissionUploadState.forInstanceFile(new File(instance.getAbsoluteInstanceFilePath()));
+    }
+
     /**
      * Returns whether a form with the specified form_id should be auto-sent given the current
      * app-level auto-send settings. Returns false if there is no form with the specified form_id.
@@ -41,10 +41,14 @@ import org.javarosa.model.xform.XFormSerializingVisitor;
 import org.javarosa.model.xform.XPathReference;
 import org.javarosa.xform.parse.XFormParser;
 import org.javarosa.xpath.XPathParseTool;
+import org.javarosa.xpath.XPathConditional;
+import org.javarosa.xpath.XPathNodeset;
 import org.javarosa.xpath.expr.XPathExpression;
+import org.javarosa.xpath.expr.XPathPathExpr;
+import org.javarosa.xpath.parser.XPathSyntaxException;
 import org.odk.collect.android.exception.JavaRosaException;
 import org.odk.collect.android.external.ExternalDataUtil;
-import org.odk.collect.android.formentry.audit.AsyncTaskAuditEventWriter;
+import org.odk.collect.android.formentry.audit.BufferedAuditEventWriter;
 import org.odk.collect.android.formentry.audit.AuditConfig;
 import org.odk.collect.android.formentry.audit.AuditEventLogger;
 import org.odk.collect.android.forms.FormDesignException;
@@ -57,8 +61,14 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
 
 import timber.log.Timber;
 
@@ -96,6 +106,20 @@ public class FormController {
      */
     private AuditEventLogger auditEventLogger;
 
+    private final Set<TreeReference> answersChangedSinceSavepoint = new LinkedHashSet<>();
+    private boolean structureChangedSinceSavepoint = true;
+    private final Set<TreeReference> repeatsInSavepoint = new HashSet<>();
+
+    /*
+     * Incremented whenever anything that is displayed for the instance could have changed.
+     */
+    private int instanceVersion;
+
+    /*
+     * Lazily built lookup used by getIndexFromXPath. Cleared when repeats are added or removed.
+     */
+    private Map<String, FormIndex> indexesByXPath;
+
     /**
      * OpenRosa metadata of a form instance.
      * <p>
@@ -168,7 +192,7 @@ public class FormController {
             AuditConfig auditConfig = getSubmissionMetadata().auditConfig;
 
             if (auditConfig != null) {
-                auditEventLogger = new AuditEventLogger(auditConfig, new AsyncTaskAuditEventWriter(new File(instanceFile.getParentFile().getPath() + File.separator + AUDIT_FILE_NAME), auditConfig.isLocationEnabled(), auditConfig.isTrackingChangesEnabled(), auditConfig.isIdentifyUserEnabled(), auditConfig.isTrackChangesReasonEnabled()), this);
+                auditEventLogger = new AuditEventLogger(auditConfig, new BufferedAuditEventWriter(new File(instanceFile.getParentFile().getPath() + File.separator + AUDIT_FILE_NAME), auditConfig.isLocationEnabled(), auditConfig.isTrackingChangesEnabled(), auditConfig.isIdentifyUserEnabled(), auditConfig.isTrackChangesReasonEnabled()), this);
             } else {
                 auditEventLogger = new AuditEventLogger(null, null, this);
             }
@@ -223,29 +247,53 @@ public class FormController {
                 Timber.e("Unexpected string from XPath");
                 throw new IllegalArgumentException("unexpected string from XPath");
             default:
-                FormIndex returned = null;
-                FormIndex saved = getFormIndex();
-                // the only way I know how to do this is to step through the entire form
-                // until the XPath of a form entry matches that of the supplied XPath
-                try {
-                    jumpToIndex(FormIndex.createBeginningOfFormIndex());
-                    int event = stepToNextEvent(true);
-                    while (event != FormEntryController.EVENT_END_OF_FORM) {
-                        String candidateXPath = getXPath(getFormIndex());
-                        // Log.i(t, "xpath: " + candidateXPath);
-                        if (candidateXPath.equals(xpath)) {
-                            returned = getFormIndex();
-                            break;
-                        }
-                        event = stepToNextEvent(true);
-                    }
-                } finally {
-                    jumpToIndex(saved);
+                if (indexesByXPath == null) {
+                    indexesByXPath = buildIndexesByXPath();
+                }
+
+                FormIndex returned = indexesByXPath.get(xpath);
+                if (returned == null || !isIndexForXPath(returned, xpath)) {
+                    // the form might have changed in a way that isn't tracked so start over
+                    indexesByXPath = buildIndexesByXPath();
+                    returned = indexesByXPath.get(xpath);
+                }
+
+                // like stepping through the form, don't return questions that aren't relevant
+                if (returned != null && !formEntryController.getModel().isIndexRelevant(returned)) {
+                    return null;
                 }
                 return returned;
         }
     }
 
+    /**
+     * Walks through every index in the form once and records it against its XPath so that
+     * {@link #getIndexFromXPath(String)} doesn't need to step through the form for each lookup.
+     */
+    private Map<String, FormIndex> buildIndexesByXPath() {
+        Map<String, FormIndex> indexes = new HashMap<>();
+        FormEntryModel model = formEntryController.getModel();
+
+        FormIndex index = model.incrementIndex(FormIndex.createBeginningOfFormIndex(), true);
+        while (!index.isEndOfFormIndex()) {
+            String xpath = getXPath(index);
+            if (!indexes.containsKey(xpath)) {
+                indexes.put(xpath, index);
+            }
+            index = model.incrementIndex(index, true);
+        }
+
+        return indexes;
+    }
+
+    private boolean isIndexForXPath(FormIndex index, String xpath) {
+        try {
+            return xpath.equals(getXPath(index));
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
     /**
      * returns the event for the current FormIndex.
      */
@@ -410,6 +458,56 @@ public class FormController {
                 || queryAttribute != null && queryAttribute.length() > 0;
     }
 
+    /**
+     * Returns the current values of the main instance fields that the search() appearance or "fast
+     * itemset" query of the question at the given FormIndex depends on so that callers can tell
+     * whether its choices could have changed since the values were last read. The dependencies
+     * are the triggers JavaRosa would derive from the parsed expression. Returns null if the
+     * expression can't be parsed or evaluated, in which case the choices have to be assumed to
+     * change.
+     * <p>
+     * Precondition: {@link #usesDatabaseExternalDataFeature(FormIndex)} is true for the index.
+     */
+    @Nullable
+    public String getExternalDataDependencyValues(@NonNull FormIndex index) {
+        String expression = getFormDef().getChild(index).getAdditionalAttribute(null, "query");
+        if (expression == null || expression.length() == 0) {
+            String appearance = getAppearanceAttr(index);
+            Matcher matcher = ExternalDataUtil.SEARCH_FUNCTION_REGEX.matcher(appearance != null ? appearance : "");
+            if (!matcher.find()) {
+                return null;
+            }
+            expression = matcher.group(0);
+        }
+
+        try {
+            FormDef form = getFormDef();
+            TreeReference contextRef = index.getReference();
+            EvaluationContext ec = new EvaluationContext(form.getEvaluationContext(), contextRef);
+
+            // Sorted so that values read at different times can be compared as strings
+            Map<String, List<String>> values = new TreeMap<>();
+            for (TreeReference trigger : new XPathConditional(expression).getTriggers(contextRef)) {
+                // Secondary instances (the choices themselves) can't change while filling the form
+                if (trigger.getInstanceName() != null) {
+                    continue;
+                }
+
+                XPathNodeset nodeset = XPathPathExpr.fromRef(trigger).eval(form.getMainInstance(), ec);
+                List<String> nodeValues = new ArrayList<>();
+                for (int i = 0; i < nodeset.size(); i++) {
+                    nodeValues.add(String.valueOf(nodeset.getValAt(i)));
+                }
+                values.put(trigger.toString(), nodeValues);
+            }
+
+            return values.toString();
+        } catch (XPathSyntaxException | RuntimeException e) {
+            Timber.w(e);
+            return null;
+        }
+    }
+
     /**
      * Tests if the FormIndex 'index' is located inside a group that is marked as a "field-list"
      *
@@ -477,6 +575,7 @@ public class FormController {
      */
     public int answerQuestion(FormIndex index, IAnswerData data) throws JavaRosaException {
         try {
+            onAnswerChanged(index);
             return formEntryController.answerQuestion(index, data, true);
         } catch (Exception e) {
             throw new JavaRosaException(e);
@@ -513,6 +612,7 @@ public class FormController {
      */
     public boolean saveAnswer(FormIndex index, IAnswerData data) throws JavaRosaException {
         try {
+            onAnswerChanged(index);
             return formEntryController.saveAnswer(index, data, true);
         } catch (Exception e) {
             String dataType = data != null ? data.getClass().toString() : null;
@@ -554,6 +654,22 @@ public class FormController {
         return stepToNextEvent(STEP_OVER_GROUP);
     }
 
+    /**
+     * Moves to the next relevant event after the current one without stepping into it. For a
+     * repeat instance that is the next instance of the same repeat (or the prompt to add one).
+     *
+     * @return the event at the new index
+     */
+    public int stepOverCurrentIndex() {
+        FormEntryModel model = formEntryController.getModel();
+        FormIndex index = model.incrementIndex(getFormIndex(), false);
+        while (index.isInForm() && !model.isIndexRelevant(index)) {
+            index = model.incrementIndex(index, true);
+        }
+
+        return formEntryController.jumpToIndex(index);
+    }
+
     /**
      * Move the current form index to the index of the previous question in the form.
      * Step backward out of repeats and groups as needed. If the resulting question
@@ -875,6 +991,7 @@ public class FormController {
      */
     public void newRepeat() {
         formEntryController.newRepeat();
+        onStructureChanged();
     }
 
     /**
@@ -886,6 +1003,80 @@ public class FormController {
     public void deleteRepeat() {
         FormIndex fi = formEntryController.deleteRepeat();
         formEntryController.jumpToIndex(fi);
+        onStructureChanged();
+    }
+
+    /**
+     * @return the references of the answers changed since this was last called or null if repeats
+     * were added or removed, an answer is in a repeat instance that wasn't there when the whole
+     * instance was last saved (or nothing has been written yet) and the whole instance needs to
+     * be saved
+     */
+    @Nullable
+    public synchronized List<TreeReference> takeAnswersChangedSinceSavepoint() {
+        FormInstance mainInstance = getFormDef().getMainInstance();
+
+        // JavaRosa creates some repeat instances (e.g. for jr:count) without newRepeat being
+        // called. Answers in those can't be replayed on top of a savepoint that doesn't have them.
+        List<TreeReference> changed = null;
+        if (!structureChangedSinceSavepoint && !isInRepeatMissingFromSavepoint(answersChangedSinceSavepoint, mainInstance)) {
+            changed = new ArrayList<>(answersChangedSinceSavepoint);
+        } else {
+            repeatsInSavepoint.clear();
+            addRepeatInstances(mainInstance.getRoot(), repeatsInSavepoint);
+        }
+
+        answersChangedSinceSavepoint.clear();
+        structureChangedSinceSavepoint = false;
+        return changed;
+    }
+
+    private boolean isInRepeatMissingFromSavepoint(Set<TreeReference> references, FormInstance mainInstance) {
+        for (TreeReference reference : references) {
+            TreeElement element = mainInstance.resolveReference(reference);
+            for (TreeElement ancestor = element; ancestor != null; ancestor = (TreeElement) ancestor.getParent()) {
+                if (ancestor.isRepeatable() && !repeatsInSavepoint.contains(ancestor.getRef())) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private static void addRepeatInstances(TreeElement element, Set<TreeReference> repeats) {
+        for (int i = 0; i < element.getNumChildren(); i++) {
+            TreeElement child = element.getChildAt(i);
+            if (child.getMult() == TreeReference.INDEX_TEMPLATE) {
+                continue;
+            }
+
+            if (child.isRepeatable()) {
+                repeats.add(child.getRef());
+            }
+            addRepeatInstances(child, repeats);
+        }
+    }
+
+    /**
+     * Makes sure the next savepoint contains the whole instance. Used when writing a savepoint
+     * fails so that the changes taken for it aren't lost.
+     */
+    public synchronized void requireFullSavepoint() {
+        structureChangedSinceSavepoint = true;
+    }
+
+    private synchronized void onAnswerChanged(FormIndex index) {
+        instanceVersion++;
+        if (index != null && index.getReference() != null) {
+            answersChangedSinceSavepoint.add(index.getReference());
+        }
+    }
+
+    private synchronized void onStructureChanged() {
+        instanceVersion++;
+        structureChangedSinceSavepoint = true;
+        indexesByXPath = null;
     }
 
     /**
@@ -893,6 +1084,18 @@ public class FormController {
      */
     public void setLanguage(String language) {
         formEntryController.setLanguage(language);
+        synchronized (this) {
+            instanceVersion++;
+        }
+    }
+
+    /**
+     * @return a number that changes whenever answers are saved, repeats are added or removed or
+     * the language is changed so that callers can tell whether what they read from the form is
+     * still current
+     */
+    public synchronized int getInstanceVersion() {
+        return instanceVersion;
     }
 
     /**
@@ -47,7 +47,7 @@ public class HierarchyElement {
      * The secondary text this element should be displayed with.
      */
     @Nullable
-    private final String secondaryText;
+    private String secondaryText;
 
     /**
      * An optional icon.
@@ -74,6 +74,10 @@ public class HierarchyElement {
         return secondaryText;
     }
 
+    public void setSecondaryText(@Nullable String secondaryText) {
+        this.secondaryText = secondaryText;
+    }
+
     @Nullable
     public Drawable getIcon() {
         return icon;
@@ -0,0 +1,272 @@
+package org.odk.collect.android.logic;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.javarosa.core.model.FormIndex;
+import org.javarosa.core.model.GroupDef;
+import org.javarosa.core.model.instance.TreeReference;
+import org.javarosa.form.api.FormEntryCaption;
+import org.javarosa.form.api.FormEntryController;
+import org.javarosa.form.api.FormEntryPrompt;
+import org.odk.collect.android.R;
+import org.odk.collect.android.javarosawrapper.FormController;
+import org.odk.collect.android.utilities.FormEntryPromptUtils;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The questions and repeats shown on one screen of
+ * {@link org.odk.collect.android.activities.FormHierarchyActivity}. Elements are read from the
+ * form a page at a time as they are scrolled to and the answers of questions are only turned into
+ * text when they are about to be displayed.
+ *
+ * Snapshots are cached until the instance changes so that going back to a screen (or opening the
+ * hierarchy again without having changed anything) doesn't walk the form again. They only hold
+ * on to form indexes and text (not to the FormController or prompts) and the cache is cleared
+ * when a different FormController is used so that it doesn't keep a closed form in memory.
+ *
+ * Everything here has to be called from the thread that uses the FormController (the UI thread).
+ */
+public class HierarchySnapshot {
+
+    public static final int PAGE_SIZE = 50;
+
+    private static final int MAX_CACHED_SNAPSHOTS = 8;
+
+    private static final Map<String, HierarchySnapshot> CACHE = new LinkedHashMap<String, HierarchySnapshot>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, HierarchySnapshot> eldest) {
+            return size() > MAX_CACHED_SNAPSHOTS;
+        }
+    };
+
+    private static WeakReference<FormController> cachedFormController = new WeakReference<>(null);
+
+    private final int instanceVersion;
+
+    /**
+     * Only elements inside this group are part of the snapshot. Null at the root of the form.
+     */
+    @Nullable
+    private final TreeReference contextGroupRef;
+
+    /**
+     * If non-null, the snapshot is of the instances of this repeat rather than of the questions
+     * and groups of the screen.
+     */
+    @Nullable
+    private final FormIndex repeatGroupPickerIndex;
+
+    private final List<HierarchyElement> elements = new ArrayList<>();
+    private final Set<HierarchyElement> unansweredQuestions = new HashSet<>();
+
+    /**
+     * Where reading the next page starts or null once the end of the screen has been reached.
+     */
+    @Nullable
+    private FormIndex nextIndex;
+
+    private HierarchySnapshot(int instanceVersion, @Nullable TreeReference contextGroupRef,
+                              @Nullable FormIndex repeatGroupPickerIndex, FormIndex firstIndex) {
+        this.instanceVersion = instanceVersion;
+        this.contextGroupRef = contextGroupRef;
+        this.repeatGroupPickerIndex = repeatGroupPickerIndex;
+        this.nextIndex = firstIndex;
+    }
+
+    /**
+     * Returns the cached snapshot for the screen that starts at the FormController's current index
+     * if the instance hasn't changed since it was taken or a new, empty snapshot otherwise.
+     */
+    public static HierarchySnapshot get(@NonNull FormController formController,
+                                        @Nullable TreeReference contextGroupRef,
+                                        @Nullable FormIndex repeatGroupPickerIndex) {
+        if (cachedFormController.get() != formController) {
+            clearCache();
+            cachedFormController = new WeakReference<>(formController);
+        }
+
+        FormIndex firstIndex = formController.getFormIndex();
+        String key = firstIndex + "|" + repeatGroupPickerIndex;
+
+        HierarchySnapshot snapshot = CACHE.get(key);
+        if (snapshot == null || snapshot.instanceVersion != formController.getInstanceVersion()) {
+            snapshot = new HierarchySnapshot(formController.getInstanceVersion(), contextGroupRef, repeatGroupPickerIndex, firstIndex);
+            CACHE.put(key, snapshot);
+        }
+
+        return snapshot;
+    }
+
+    /**
+     * Drops every cached snapshot. Called when a different form is loaded.
+     */
+    public static void clearCache() {
+        CACHE.clear();
+        cachedFormController = new WeakReference<>(null);
+    }
+
+    /**
+     * The elements read so far. More are added by {@link #loadNextPage(Context)}.
+     */
+    public List<HierarchyElement> getElements() {
+        return elements;
+    }
+
+    public boolean isComplete() {
+        return nextIndex == null;
+    }
+
+    /**
+     * Reads up to {@link #PAGE_SIZE} more elements from the form. The FormController is left at
+     * the index it was at.
+     *
+     * @return the number of elements added
+     */
+    public int loadNextPage(Context context, FormController formController) {
+        if (isComplete()) {
+            return 0;
+        }
+
+        FormIndex originalIndex = formController.getFormIndex();
+        int sizeBefore = elements.size();
+
+        try {
+            int event = formController.jumpToIndex(nextIndex);
+            while (event != FormEntryController.EVENT_END_OF_FORM && elements.size() - sizeBefore < PAGE_SIZE) {
+                TreeReference currentRef = formController.getFormIndex().getReference();
+
+                if (contextGroupRef != null && !contextGroupRef.isParentOf(currentRef, false)) {
+                    // We have left the group being listed.
+                    break;
+                }
+
+                event = readCurrentEvent(context, formController, event, currentRef);
+            }
+
+            nextIndex = event == FormEntryController.EVENT_END_OF_FORM || elements.size() - sizeBefore < PAGE_SIZE
+                    ? null : formController.getFormIndex();
+        } finally {
+            formController.jumpToIndex(originalIndex);
+        }
+
+        return elements.size() - sizeBefore;
+    }
+
+    /**
+     * Adds the element for the current event (if it should be displayed) and moves to the next
+     * event that could be.
+     *
+     * @return the next event
+     */
+    private int readCurrentEvent(Context context, FormController formController, int event, TreeReference currentRef) {
+        switch (event) {
+            case FormEntryController.EVENT_QUESTION: {
+                // Nothing but repeat group instances should show up in the picker.
+                if (repeatGroupPickerIndex != null) {
+                    break;
+                }
+
+                FormEntryPrompt fp = formController.getQuestionPrompt();
+                HierarchyElement question = new HierarchyElement(
+                        FormEntryPromptUtils.markQuestionIfIsRequired(fp.getShortText(), fp.isRequired()), null, null,
+                        HierarchyElement.Type.QUESTION, fp.getIndex());
+                elements.add(question);
+                unansweredQuestions.add(question);
+                break;
+            }
+            case FormEntryController.EVENT_GROUP: {
+                // Nothing but repeat group instances should show up in the picker and only groups
+                // with a specific appearance attribute are displayed.
+                if (!formController.isGroupRelevant() || repeatGroupPickerIndex != null
+                        || !formController.isDisplayableGroup(formController.getFormIndex())) {
+                    break;
+                }
+
+                FormEntryCaption caption = formController.getCaptionPrompt();
+                elements.add(new HierarchyElement(
+                        caption.getShortText(), context.getString(R.string.group_label), null,
+                        HierarchyElement.Type.VISIBLE_GROUP, caption.getIndex()));
+
+                // Skip to the next item outside the group.
+                return formController.stepOverGroup();
+            }
+            case FormEntryController.EVENT_REPEAT: {
+                if (!formController.isGroupRelevant()) {
+                    break;
+                }
+
+                FormEntryCaption fc = formController.getCaptionPrompt();
+
+                if (repeatGroupPickerIndex != null) {
+                    // Don't render other groups' instances.
+                    if (currentRef.toString(false).equals(repeatGroupPickerIndex.getReference().toString(false))) {
+                        elements.add(new HierarchyElement(
+                                getRepeatInstanceLabel(fc, formController), null,
+                                null, HierarchyElement.Type.REPEAT_INSTANCE, fc.getIndex()));
+                        formController.jumpToIndex(fc.getIndex());
+                    }
+                } else if (fc.getMultiplicity() == 0) {
+                    // Display the repeat header for the group.
+                    elements.add(new HierarchyElement(
+                            fc.getShortText(), context.getString(R.string.repeatable_group_label), null,
+                            HierarchyElement.Type.REPEATABLE_GROUP, fc.getIndex()));
+                }
+
+                // The contents of repeat instances are never listed with the repeat.
+                return formController.stepOverCurrentIndex();
+            }
+        }
+
+        return formController.stepToNextEvent(FormController.STEP_INTO_GROUP);
+    }
+
+    private String getRepeatInstanceLabel(FormEntryCaption fc, FormController formController) {
+        int itemNumber = fc.getMultiplicity() + 1;
+
+        // If the child of the group has a more descriptive label, use that instead.
+        if (fc.getFormElement().getChildren().size() == 1 && fc.getFormElement().getChild(0) instanceof GroupDef) {
+            formController.stepToNextEvent(FormController.STEP_INTO_GROUP);
+            String itemLabel = formController.getCaptionPrompt().getShortText();
+            if (itemLabel != null) {
+                // e.g. `1. Alice`
+                return itemNumber + ".\u200E " + itemLabel;
+            }
+        }
+
+        // e.g. `friends > 1`
+        return fc.getShortText() + " > " + itemNumber;
+    }
+
+    /**
+     * @return true if the answer text of the element hasn't been computed yet
+     */
+    public boolean needsAnswerText(HierarchyElement element) {
+        return unansweredQuestions.contains(element);
+    }
+
+    /**
+     * Computes the text for the answer of a question element and stores it as the element's
+     * secondary text. Getting the answer text can evaluate XPath (for dynamic choices for
+     * instance) so this has to be called from the thread that uses the FormController.
+     */
+    public String loadAnswerText(HierarchyElement element, Context context, FormController formController) {
+        if (!unansweredQuestions.remove(element)) {
+            return element.getSecondaryText();
+        }
+
+        FormEntryPrompt prompt = formController.getQuestionPrompt(element.getFormIndex());
+        String answerText = FormEntryPromptUtils.getAnswerText(prompt, context, formController);
+        element.setSecondaryText(answerText);
+        return answerText;
+    }
+}
@@ -22,6 +22,7 @@ import org.javarosa.form.api.FormEntryPrompt;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 
 /**
  * Represents all the user-visible aspects of a question at a particular point in time. This
@@ -109,6 +110,22 @@ public class ImmutableDisplayableQuestion {
                 && selectChoiceListsEqual(question.getSelectChoices(), selectChoices);
     }
 
+    /**
+     * Returns {@code true} if the provided snapshot has the same user-visible aspects,
+     * {@code false} otherwise. Unlike {@link #sameAs(FormEntryPrompt)} this doesn't evaluate any
+     * of the question's text or choices again.
+     */
+    public boolean sameAs(ImmutableDisplayableQuestion question) {
+        return question != null
+                && question.index.equals(index)
+                && Objects.equals(question.questionText, questionText)
+                && Objects.equals(question.helpText, helpText)
+                && Objects.equals(question.guidanceText, guidanceText)
+                && Objects.equals(question.answerText, answerText)
+                && question.isReadOnly == isReadOnly
+                && selectChoiceListsEqual(question.selectChoices, selectChoices);
+    }
+
     private static boolean selectChoiceListsEqual(List<SelectChoice> selectChoiceList1, List<SelectChoice> selectChoiceList2) {
         if (selectChoiceList1 == null) {
             return selectChoiceList2 == null;
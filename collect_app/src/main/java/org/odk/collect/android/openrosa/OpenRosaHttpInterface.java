@@ -56,6 +56,8 @@ public interface OpenRosaHttpInterface {
      * @param submissionFile The main file to be uploaded (Form file)
      * @param uri where to send the submissionFile and fileList
      * @param contentLength contentLength requested by the server
+     * @param batchListener notified each time the server accepts a post when the files are split
+     *                      over several posts
      * @return ResponseMessageParser object that contains the response XML
      * @throws IOException can be thrown if files do not exist
      */
@@ -64,7 +66,16 @@ public interface OpenRosaHttpInterface {
                                         @NonNull File submissionFile,
                                         @NonNull URI uri,
                                         @Nullable HttpCredentialsInterface credentials,
-                                        @NonNull long contentLength) throws Exception;
+                                        @NonNull long contentLength,
+                                        @Nullable SubmissionBatchListener batchListener) throws Exception;
+
+    interface SubmissionBatchListener {
+
+        /**
+         * Called with the attachments that were part of a post the server accepted.
+         */
+        void onBatchAccepted(List<File> files);
+    }
 
     interface FileToContentTypeMapper {
 
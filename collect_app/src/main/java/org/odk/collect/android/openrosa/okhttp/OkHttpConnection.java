@@ -138,7 +138,7 @@ public class OkHttpConnection implements OpenRosaHttpInterface {
 
     @NonNull
     @Override
-    public HttpPostResult uploadSubmissionFile(@NonNull List<File> fileList, @NonNull File submissionFile, @NonNull URI uri, @Nullable HttpCredentialsInterface credentials, @NonNull long contentLength) throws Exception {
+    public HttpPostResult uploadSubmissionFile(@NonNull List<File> fileList, @NonNull File submissionFile, @NonNull URI uri, @Nullable HttpCredentialsInterface credentials, @NonNull long contentLength, @Nullable SubmissionBatchListener batchListener) throws Exception {
         HttpPostResult postResult = null;
 
         boolean first = true;
@@ -190,6 +190,10 @@ public class OkHttpConnection implements OpenRosaHttpInterface {
                 return postResult;
             }
 
+            if (batchListener != null) {
+                batchListener.onBatchAccepted(fileList.subList(lastFileIndex, fileIndex));
+            }
+
         }
 
         return postResult;
@@ -220,6 +220,7 @@ public class FormsProvider extends ContentProvider {
             }
             String md5 = FileUtils.getMd5Hash(form);
             values.put(FormsColumns.MD5_HASH, md5);
+            putFileInfo(values, form);
 
             if (!values.containsKey(FormsColumns.JRCACHE_FILE_PATH)) {
                 values.put(FormsColumns.JRCACHE_FILE_PATH, storagePathProvider.getCacheDbPath(md5 + ".formdef"));
@@ -412,6 +413,7 @@ public class FormsProvider extends ContentProvider {
                                 .getAsString(FormsColumns.FORM_FILE_PATH));
                         values.put(FormsColumns.MD5_HASH,
                                 FileUtils.getMd5Hash(new File(formFile)));
+                        putFileInfo(values, new File(formFile));
                     }
 
                     Cursor c = null;
@@ -494,6 +496,7 @@ public class FormsProvider extends ContentProvider {
                                 String newMd5 = FileUtils
                                         .getMd5Hash(new File(formFile));
                                 values.put(FormsColumns.MD5_HASH, newMd5);
+                                putFileInfo(values, new File(formFile));
                                 values.put(FormsColumns.JRCACHE_FILE_PATH,
                                         storagePathProvider.getCacheDbPath(newMd5 + ".formdef"));
                             }
@@ -539,6 +542,15 @@ public class FormsProvider extends ContentProvider {
         return newWhereArgs;
     }
 
+    /**
+     * Records the size and modification time of the form file alongside its md5 so that disk
+     * syncs can tell the file hasn't changed without hashing it again.
+     */
+    private static void putFileInfo(ContentValues values, File formFile) {
+        values.put(FormsColumns.FORM_FILE_SIZE, formFile.length());
+        values.put(FormsColumns.FORM_FILE_LAST_MODIFIED, formFile.lastModified());
+    }
+
     static {
         URI_MATCHER = new UriMatcher(UriMatcher.NO_MATCH);
         URI_MATCHER.addURI(FormsProviderAPI.AUTHORITY, FormsColumns.CONTENT_URI.getPath(), FORMS);
@@ -564,5 +576,7 @@ public class FormsProvider extends ContentProvider {
         sFormsProjectionMap.put(FormsColumns.AUTO_SEND, FormsColumns.AUTO_SEND);
         sFormsProjectionMap.put(FormsColumns.GEOMETRY_XPATH, FormsColumns.GEOMETRY_XPATH);
         sFormsProjectionMap.put(FormsColumns.DELETED_DATE, FormsColumns.DELETED_DATE);
+        sFormsProjectionMap.put(FormsColumns.FORM_FILE_SIZE, FormsColumns.FORM_FILE_SIZE);
+        sFormsProjectionMap.put(FormsColumns.FORM_FILE_LAST_MODIFIED, FormsColumns.FORM_FILE_LAST_MODIFIED);
     }
 }
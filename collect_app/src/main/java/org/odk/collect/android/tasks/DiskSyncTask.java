@@ -16,6 +16,7 @@ package org.odk.collect.android.tasks;
 
 import android.os.AsyncTask;
 
+import org.odk.collect.android.application.Collect;
 import org.odk.collect.android.listeners.DiskSyncListener;
 import org.odk.collect.android.utilities.FormsDirDiskFormsSynchronizer;
 
@@ -32,7 +33,7 @@ public class DiskSyncTask extends AsyncTask<Void, String, String> {
 
     @Override
     protected String doInBackground(Void... params) {
-        return new FormsDirDiskFormsSynchronizer().synchronizeAndReturnError();
+        return new FormsDirDiskFormsSynchronizer(Collect.getInstance().getComponent().formPrewarmManager()).synchronizeAndReturnError();
     }
 
     public void setDiskSyncListener(DiskSyncListener listener) {
@@ -15,8 +15,6 @@
 package org.odk.collect.android.tasks;
 
 import android.content.Intent;
-import android.database.Cursor;
-import android.database.SQLException;
 import android.os.AsyncTask;
 
 import org.javarosa.core.model.FormDef;
@@ -25,7 +23,6 @@ import org.javarosa.core.model.instance.InstanceInitializationFactory;
 import org.javarosa.core.model.instance.TreeElement;
 import org.javarosa.core.model.instance.TreeReference;
 import org.javarosa.core.model.instance.utils.DefaultAnswerResolver;
-import org.javarosa.core.reference.ReferenceManager;
 import org.javarosa.form.api.FormEntryController;
 import org.javarosa.form.api.FormEntryModel;
 import org.javarosa.xform.parse.XFormParser;
@@ -33,34 +30,25 @@ import org.javarosa.xform.util.XFormUtils;
 import org.javarosa.xpath.XPathTypeMismatchException;
 import org.odk.collect.android.R;
 import org.odk.collect.android.application.Collect;
-import org.odk.collect.android.fastexternalitemset.ItemsetDbAdapter;
 import org.odk.collect.android.external.ExternalAnswerResolver;
 import org.odk.collect.android.external.ExternalDataHandler;
+import org.odk.collect.android.external.ExternalDataImporter;
 import org.odk.collect.android.external.ExternalDataManager;
 import org.odk.collect.android.external.ExternalDataManagerImpl;
-import org.odk.collect.android.external.ExternalDataReader;
-import org.odk.collect.android.external.ExternalDataReaderImpl;
 import org.odk.collect.android.external.handler.ExternalDataHandlerPull;
+import org.odk.collect.android.forms.FormMediaLock;
 import org.odk.collect.android.listeners.FormLoaderListener;
 import org.odk.collect.android.javarosawrapper.FormController;
 import org.odk.collect.android.utilities.FileUtils;
 import org.odk.collect.android.utilities.FormDefCache;
+import org.odk.collect.android.utilities.FormDefMemoryCache;
 import org.odk.collect.android.utilities.TranslationHandler;
-import org.odk.collect.android.utilities.ZipUtils;
 
 import java.io.File;
-import java.io.FileFilter;
-import java.io.FileReader;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Locale;
-import java.util.Map;
 
-import au.com.bytecode.opencsv.CSVReader;
 import timber.log.Timber;
 
-import static org.odk.collect.android.forms.FormUtils.setupReferenceManagerForForm;
-
 /**
  * Background task for loading a form.
  *
@@ -68,8 +56,6 @@ import static org.odk.collect.android.forms.FormUtils.setupReferenceManagerForFo
  * @author Yaw Anokwa (yanokwa@gmail.com)
  */
 public class FormLoaderTask extends AsyncTask<String, String, FormLoaderTask.FECWrapper> {
-    private static final String ITEMSETS_CSV = "itemsets.csv";
-
     private FormLoaderListener stateListener;
     private String errorMsg;
     private String warningMsg;
@@ -131,7 +117,19 @@ public class FormLoaderTask extends AsyncTask<String, String, FormLoaderTask.FEC
         final File formXml = new File(formPath);
         final File formMediaDir = FileUtils.getFormMediaDir(formXml);
 
-        setupReferenceManagerForForm(ReferenceManager.instance(), formMediaDir);
+        // Pre-warming forms in the background also points the ReferenceManager at media folders
+        // and imports external data so it can't happen while the form loads
+        final FormMediaLock formMediaLock = Collect.getInstance().getComponent().formMediaLock();
+        formMediaLock.lock();
+        try {
+            return loadForm(formPath, formXml, formMediaDir, formMediaLock);
+        } finally {
+            formMediaLock.unlock();
+        }
+    }
+
+    private FECWrapper loadForm(String formPath, File formXml, File formMediaDir, FormMediaLock formMediaLock) {
+        formMediaLock.setupReferenceManagerForFormEntry(formMediaDir);
 
         FormDef formDef = null;
         try {
@@ -157,8 +155,10 @@ public class FormLoaderTask extends AsyncTask<String, String, FormLoaderTask.FEC
                 externalDataManager);
         formDef.getEvaluationContext().addFunctionHandler(externalDataHandlerPull);
 
+        ExternalDataImporter externalDataImporter = new ExternalDataImporter(this);
+
         try {
-            loadExternalData(formMediaDir);
+            externalDataImporter.importExternalData(formMediaDir);
         } catch (Exception e) {
             Timber.e(e, "Exception thrown while loading external data");
             errorMsg = e.getMessage();
@@ -197,7 +197,10 @@ public class FormLoaderTask extends AsyncTask<String, String, FormLoaderTask.FEC
             }
         }
 
-        processItemSets(formMediaDir);
+        String itemsetsWarning = externalDataImporter.importItemsets(formMediaDir);
+        if (itemsetsWarning != null) {
+            warningMsg = itemsetsWarning;
+        }
 
         final FormController fc = new FormController(formMediaDir, fec, instancePath == null ? null
                 : new File(instancePath));
@@ -219,7 +222,8 @@ public class FormLoaderTask extends AsyncTask<String, String, FormLoaderTask.FEC
         publishProgress(
                 TranslationHandler.getString(Collect.getInstance(), R.string.survey_loading_reading_form_message));
 
-        final FormDef formDefFromCache = FormDefCache.readCache(formXml);
+        final FormDefMemoryCache formDefMemoryCache = Collect.getInstance().getComponent().formDefMemoryCache();
+        final FormDef formDefFromCache = FormDefCache.readCache(formXml, formDefMemoryCache);
         if (formDefFromCache != null) {
             return formDefFromCache;
         }
@@ -238,7 +242,7 @@ public class FormLoaderTask extends AsyncTask<String, String, FormLoaderTask.FEC
             formDef = formDefFromXml;
 
             try {
-                FormDefCache.writeCache(formDef, formXml.getPath());
+                FormDefCache.writeCache(formDef, formXml.getPath(), formDefMemoryCache);
             } catch (IOException e) {
                 Timber.e(e);
             }
@@ -249,45 +253,6 @@ public class FormLoaderTask extends AsyncTask<String, String, FormLoaderTask.FEC
         return null;
     }
 
-    private void processItemSets(File formMediaDir) {
-        // for itemsets.csv, we only check to see if the itemset file has been
-        // updated
-        final File csv = new File(formMediaDir.getAbsolutePath() + "/" + ITEMSETS_CSV);
-        String csvmd5 = null;
-        if (csv.exists()) {
-            csvmd5 = FileUtils.getMd5Hash(csv);
-            boolean readFile = false;
-            final ItemsetDbAdapter ida = new ItemsetDbAdapter();
-            ida.open();
-            // get the database entry (if exists) for this itemsets.csv, based
-            // on the path
-            final Cursor c = ida.getItemsets(csv.getAbsolutePath());
-            if (c != null) {
-                if (c.getCount() == 1) {
-                    c.moveToFirst(); // should be only one, ever, if any
-                    final String oldmd5 = c.getString(c.getColumnIndex("hash"));
-                    if (oldmd5.equals(csvmd5)) {
-                        // they're equal, do nothing
-                    } else {
-                        // the csv has been updated, delete the old entries
-                        ida.dropTable(ItemsetDbAdapter.getMd5FromString(csv.getAbsolutePath()),
-                                csv.getAbsolutePath());
-                        // and read the new
-                        readFile = true;
-                    }
-                } else {
-                    // new csv, add it
-                    readFile = true;
-                }
-                c.close();
-            }
-            ida.close();
-            if (readFile) {
-                readCSV(csv, csvmd5, ItemsetDbAdapter.getMd5FromString(csv.getAbsolutePath()));
-            }
-        }
-    }
-
     private boolean initializeForm(FormDef formDef, FormEntryController fec) throws IOException {
         final InstanceInitializationFactory instanceInit = new InstanceInitializationFactory();
         boolean usedSavepoint = false;
@@ -312,6 +277,13 @@ public class FormLoaderTask extends AsyncTask<String, String, FormLoaderTask.FEC
                     publishProgress(TranslationHandler.getString(Collect.getInstance(), R.string.survey_loading_reading_data_message));
                     importData(instanceXml, fec);
                     formDef.initialize(false, instanceInit);
+
+                    if (usedSavepoint) {
+                        // apply the answers changed after the savepoint was written
+                        File journalFile = SaveFormToDisk.getSavepointJournalFile(new File(instancePath).getName());
+                        int replayed = new SavepointJournal(savepointFile, journalFile).replay(formDef);
+                        Timber.i("Replayed %d answers from savepoint journal", replayed);
+                    }
                 } catch (IOException | RuntimeException e) {
                     // Skip a savepoint file that is corrupted or 0-sized
                     if (usedSavepoint && !(e.getCause() instanceof XPathTypeMismatchException)) {
@@ -335,56 +307,6 @@ public class FormLoaderTask extends AsyncTask<String, String, FormLoaderTask.FEC
         return usedSavepoint;
     }
 
-    @SuppressWarnings("unchecked")
-    private void loadExternalData(File mediaFolder) {
-        // SCTO-594
-        File[] zipFiles = mediaFolder.listFiles(new FileFilter() {
-            @Override
-            public boolean accept(File file) {
-                return file.getName().toLowerCase(Locale.US).endsWith(".zip");
-            }
-        });
-
-        if (zipFiles != null) {
-            ZipUtils.unzip(zipFiles);
-            for (File zipFile : zipFiles) {
-                boolean deleted = zipFile.delete();
-                if (!deleted) {
-                    Timber.w("Cannot delete %s. It will be re-unzipped next time. :(", zipFile.toString());
-                }
-            }
-        }
-
-        File[] csvFiles = mediaFolder.listFiles(new FileFilter() {
-            @Override
-            public boolean accept(File file) {
-                String lowerCaseName = file.getName().toLowerCase(Locale.US);
-                return lowerCaseName.endsWith(".csv") && !lowerCaseName.equalsIgnoreCase(
-                        ITEMSETS_CSV);
-            }
-        });
-
-        Map<String, File> externalDataMap = new HashMap<>();
-
-        if (csvFiles != null) {
-
-            for (File csvFile : csvFiles) {
-                String dataSetName = csvFile.getName().substring(0,
-                        csvFile.getName().lastIndexOf("."));
-                externalDataMap.put(dataSetName, csvFile);
-            }
-
-            if (!externalDataMap.isEmpty()) {
-
-                publishProgress(Collect.getInstance()
-                        .getString(R.string.survey_loading_reading_csv_message));
-
-                ExternalDataReader externalDataReader = new ExternalDataReaderImpl(this);
-                externalDataReader.doImport(externalDataMap);
-            }
-        }
-    }
-
     public void publishExternalDataLoadingProgress(String message) {
         publishProgress(message);
     }
@@ -518,49 +440,6 @@ public class FormLoaderTask extends AsyncTask<String, String, FormLoaderTask.FEC
         this.intent = intent;
     }
 
-    private void readCSV(File csv, String formHash, String pathHash) {
-
-        CSVReader reader;
-        ItemsetDbAdapter ida = new ItemsetDbAdapter();
-        ida.open();
-        boolean withinTransaction = false;
-
-        try {
-            reader = new CSVReader(new FileReader(csv));
-
-            String[] nextLine;
-            String[] columnHeaders = null;
-            int lineNumber = 0;
-            while ((nextLine = reader.readNext()) != null) {
-                lineNumber++;
-                if (lineNumber == 1) {
-                    // first line of csv is column headers
-                    columnHeaders = nextLine;
-                    ida.createTable(formHash, pathHash, columnHeaders,
-                            csv.getAbsolutePath());
-                    continue;
-                }
-                // add the rest of the lines to the specified database
-                // nextLine[] is an array of values from the line
-                // System.out.println(nextLine[4] + "etc...");
-                if (lineNumber == 2) {
-                    // start a transaction for the inserts
-                    withinTransaction = true;
-                    ida.beginTransaction();
-                }
-                ida.addRow(pathHash, columnHeaders, nextLine);
-
-            }
-        } catch (IOException | SQLException e) {
-            warningMsg = e.getMessage();
-        } finally {
-            if (withinTransaction) {
-                ida.commit();
-            }
-            ida.close();
-        }
-    }
-
     public FormDef getFormDef() {
         return formDef;
     }
@@ -345,6 +345,14 @@ public class SaveFormToDisk {
         return new File(tempDir, instanceName + ".save");
     }
 
+    /**
+     * Return the file that answers changed since the savepoint was written are appended to.
+     */
+    static File getSavepointJournalFile(String instanceName) {
+        File tempDir = new File(new StoragePathProvider().getDirPath(StorageSubdirectory.CACHE));
+        return new File(tempDir, instanceName + ".save.journal");
+    }
+
     /**
      * Return the formIndex file for a given instance.
      */
@@ -355,8 +363,10 @@ public class SaveFormToDisk {
 
     public static void removeSavepointFiles(String instanceName) {
         File savepointFile = getSavepointFile(instanceName);
+        File savepointJournalFile = getSavepointJournalFile(instanceName);
         File formIndexFile = getFormIndexFile(instanceName);
         FileUtils.deleteAndReport(savepointFile);
+        FileUtils.deleteAndReport(savepointJournalFile);
         FileUtils.deleteAndReport(formIndexFile);
     }
 
@@ -20,12 +20,14 @@ package org.odk.collect.android.tasks;
 
 import android.os.AsyncTask;
 
+import org.javarosa.core.model.instance.TreeReference;
 import org.javarosa.core.services.transport.payload.ByteArrayPayload;
 import org.odk.collect.android.application.Collect;
 import org.odk.collect.android.listeners.SavePointListener;
 import org.odk.collect.android.javarosawrapper.FormController;
 
 import java.io.File;
+import java.util.List;
 
 import timber.log.Timber;
 
@@ -57,24 +59,42 @@ public class SavePointTask extends AsyncTask<Void, Void, String> {
 
             long start = System.currentTimeMillis();
 
+            FormController formController = Collect.getInstance().getFormController();
             try {
-                FormController formController = Collect.getInstance().getFormController();
-                File temp = SaveFormToDisk.getSavepointFile(formController.getInstanceFile().getName());
+                String instanceName = formController.getInstanceFile().getName();
+                File temp = SaveFormToDisk.getSavepointFile(instanceName);
+                SavepointJournal journal = new SavepointJournal(temp, SaveFormToDisk.getSavepointJournalFile(instanceName));
+
+                // only append the changed answers unless the whole instance needs to be written
+                List<TreeReference> changedAnswers = formController.takeAnswersChangedSinceSavepoint();
+                if (changedAnswers != null && journal.canAppend()) {
+                    journal.append(changedAnswers, formController.getFormDef().getMainInstance());
+
+                    long end = System.currentTimeMillis();
+                    Timber.i("Savepoint journal ms: %s for %d answers", Long.toString(end - start), changedAnswers.size());
+                    return null;
+                }
+
                 ByteArrayPayload payload = formController.getFilledInFormXml();
 
                 if (priority < lastPriorityUsed) {
                     Timber.w("Savepoint thread (p=%d) was cancelled (b) because another one is waiting (p=%d)", priority, lastPriorityUsed);
+                    formController.requireFullSavepoint();
                     return null;
                 }
 
                 // write out xml
                 SaveFormToDisk.writeFile(payload, temp.getAbsolutePath());
+                journal.delete();
 
                 long end = System.currentTimeMillis();
                 Timber.i("Savepoint ms: %s to %s", Long.toString(end - start), temp.toString());
 
                 return null;
             } catch (Exception e) {
+                if (formController != null) {
+                    formController.requireFullSavepoint();
+                }
                 String msg = e.getMessage();
                 Timber.e(e);
                 return msg;
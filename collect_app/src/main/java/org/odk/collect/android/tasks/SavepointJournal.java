@@ -0,0 +1,172 @@
+package org.odk.collect.android.tasks;
+
+import org.javarosa.core.model.FormDef;
+import org.javarosa.core.model.data.IAnswerData;
+import org.javarosa.core.model.instance.FormInstance;
+import org.javarosa.core.model.instance.TreeElement;
+import org.javarosa.core.model.instance.TreeReference;
+import org.javarosa.core.util.externalizable.DeserializationException;
+import org.javarosa.core.util.externalizable.ExtUtil;
+import org.javarosa.xform.util.XFormAnswerDataParser;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import timber.log.Timber;
+
+/**
+ * An append-only log of the answers that changed since the savepoint file was last written.
+ * Writing the whole instance on every swipe is slow for large forms so in between full
+ * savepoints only the changed answers are appended here and then replayed on top of the
+ * savepoint when the form is recovered.
+ *
+ * The journal starts with the size and modification time of the savepoint it applies to so that
+ * entries are never replayed on top of a newer savepoint.
+ */
+class SavepointJournal {
+
+    private static final int MAGIC = 0x4f444b4a;
+
+    /** Once the journal grows past this a full savepoint is written instead. */
+    private static final long MAX_JOURNAL_SIZE = 256 * 1024;
+
+    private final File savepointFile;
+    private final File journalFile;
+
+    SavepointJournal(File savepointFile, File journalFile) {
+        this.savepointFile = savepointFile;
+        this.journalFile = journalFile;
+    }
+
+    /**
+     * @return true if there is a savepoint this journal applies to and it isn't due to be
+     * compacted into a new savepoint
+     */
+    boolean canAppend() {
+        if (!savepointFile.exists()) {
+            return false;
+        }
+
+        if (!journalFile.exists()) {
+            return true;
+        }
+
+        return journalFile.length() < MAX_JOURNAL_SIZE && appliesToSavepoint();
+    }
+
+    /**
+     * Records the current values of the given answers.
+     */
+    void append(List<TreeReference> changedAnswers, FormInstance mainInstance) throws IOException {
+        boolean isNew = !journalFile.exists();
+
+        try (FileOutputStream fout = new FileOutputStream(journalFile, true)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fout));
+            if (isNew) {
+                out.writeInt(MAGIC);
+                out.writeLong(savepointFile.length());
+                out.writeLong(savepointFile.lastModified());
+            }
+
+            for (TreeReference reference : changedAnswers) {
+                TreeElement element = mainInstance.resolveReference(reference);
+                if (element == null) {
+                    continue;
+                }
+
+                ExtUtil.write(out, reference);
+                IAnswerData value = element.getValue();
+                if (value != null) {
+                    byte[] text = value.uncast().getString().getBytes(StandardCharsets.UTF_8);
+                    out.writeBoolean(true);
+                    out.writeInt(text.length);
+                    out.write(text);
+                } else {
+                    out.writeBoolean(false);
+                }
+            }
+
+            out.flush();
+            fout.getFD().sync();
+        }
+    }
+
+    void delete() {
+        if (journalFile.exists() && !journalFile.delete()) {
+            Timber.w("Could not delete savepoint journal %s", journalFile.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Applies the recorded answers to a form that has just been loaded from the savepoint. An
+     * entry that was only partly written (if the app was killed while appending) and anything
+     * after it is ignored.
+     *
+     * @return the number of answers that were applied
+     */
+    int replay(FormDef formDef) {
+        if (!journalFile.exists()) {
+            return 0;
+        }
+
+        int count = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(journalFile)))) {
+            if (!readHeader(in)) {
+                Timber.w("Ignoring savepoint journal for a different savepoint");
+                return 0;
+            }
+
+            while (true) {
+                TreeReference reference;
+                String text = null;
+                try {
+                    reference = (TreeReference) ExtUtil.read(in, TreeReference.class, ExtUtil.defaultPrototypes());
+                    if (in.readBoolean()) {
+                        byte[] bytes = new byte[in.readInt()];
+                        in.readFully(bytes);
+                        text = new String(bytes, StandardCharsets.UTF_8);
+                    }
+                } catch (EOFException e) {
+                    break;
+                }
+
+                TreeElement element = formDef.getMainInstance().resolveReference(reference);
+                if (element == null) {
+                    Timber.w("Skipping savepoint journal entry for missing node %s", reference);
+                    continue;
+                }
+
+                IAnswerData value = text != null ? XFormAnswerDataParser.getAnswerData(text, element.getDataType()) : null;
+                formDef.setValue(value, reference, true);
+                count++;
+            }
+        } catch (IOException | DeserializationException | RuntimeException e) {
+            Timber.e(e, "Stopped replaying savepoint journal %s", journalFile.getAbsolutePath());
+        }
+
+        return count;
+    }
+
+    private boolean appliesToSavepoint() {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(journalFile))) {
+            return readHeader(in);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private boolean readHeader(DataInputStream in) throws IOException {
+        return in.readInt() == MAGIC
+                && in.readLong() == savepointFile.length()
+                && in.readLong() == savepointFile.lastModified();
+    }
+}
@@ -38,6 +38,7 @@ import java.net.URI;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -52,6 +53,9 @@ public class InstanceServerUploader extends InstanceUploader {
     private final WebCredentialsUtils webCredentialsUtils;
     private final Map<Uri, Uri> uriRemap;
 
+    // Guarded by uriRemap
+    private final Map<Uri, Long> acceptContentLengths = new HashMap<>();
+
     public InstanceServerUploader(OpenRosaHttpInterface httpInterface,
                                   WebCredentialsUtils webCredentialsUtils,
                                   Map<Uri, Uri> uriRemap) {
@@ -68,15 +72,42 @@ public class InstanceServerUploader extends InstanceUploader {
      */
     @Override
     public String uploadOneSubmission(Instance instance, String urlString) throws UploadException {
+        SubmissionUploadState uploadState = SubmissionUploadState.forInstanceFile(new File(instance.getAbsoluteInstanceFilePath()));
+
+        try {
+            String message = uploadOneSubmission(instance, urlString, uploadState);
+            uploadState.onSuccess();
+            return message;
+        } catch (UploadException e) {
+            uploadState.onFailure(System.currentTimeMillis());
+            throw e;
+        }
+    }
+
+    private String uploadOneSubmission(Instance instance, String urlString, SubmissionUploadState uploadState) throws UploadException {
         Uri submissionUri = Uri.parse(urlString);
 
         long contentLength = 10000000L;
 
-        // We already issued a head request and got a response, so we know it was an
-        // OpenRosa-compliant server. We also know the proper URL to send the submission to and
-        // the proper scheme.
-        if (uriRemap.containsKey(submissionUri)) {
-            submissionUri = uriRemap.get(submissionUri);
+        // Submissions to the same endpoint share the result of the HEAD request. The lock is only
+        // held while reading or updating the remap so concurrent submissions aren't held up by the
+        // network. Submissions that start before the first HEAD has finished make their own.
+        Uri requestedUri = submissionUri;
+        Uri remappedUri;
+        Long acceptContentLength;
+        synchronized (uriRemap) {
+            remappedUri = uriRemap.get(requestedUri);
+            acceptContentLength = acceptContentLengths.get(requestedUri);
+        }
+
+        if (remappedUri != null) {
+            // We already issued a head request and got a response, so we know it was an
+            // OpenRosa-compliant server. We also know the proper URL to send the submission to and
+            // the proper scheme.
+            submissionUri = remappedUri;
+            if (acceptContentLength != null) {
+                contentLength = acceptContentLength;
+            }
             Timber.i("Using Uri remap for submission %s. Now: %s", instance.getId(),
                     submissionUri.toString());
         } else {
@@ -132,7 +163,6 @@ public class InstanceServerUploader extends InstanceUploader {
                                         .encodedQuery(submissionUri.getEncodedQuery())
                                         .build();
                             }
-                            uriRemap.put(submissionUri, newURI);
                             submissionUri = newURI;
                         } else {
                             // Don't follow a redirection attempt to a different host.
@@ -156,6 +186,13 @@ public class InstanceServerUploader extends InstanceUploader {
                             "your network.\n\nHEAD request result status code: " + headResult.getStatusCode());
                 }
             }
+
+            if (headResult.getStatusCode() == HttpsURLConnection.HTTP_NO_CONTENT) {
+                synchronized (uriRemap) {
+                    uriRemap.put(requestedUri, submissionUri);
+                    acceptContentLengths.put(requestedUri, contentLength);
+                }
+            }
         }
 
         // When encrypting submissions, there is a failure window that may mark the submission as
@@ -189,8 +226,11 @@ public class InstanceServerUploader extends InstanceUploader {
         try {
             URI uri = URI.create(submissionUri.toString());
 
-            postResult = httpInterface.uploadSubmissionFile(files, submissionFile, uri,
-                    webCredentialsUtils.getCredentials(uri), contentLength);
+            // Attachments the server accepted in an earlier attempt aren't sent again
+            List<File> remainingFiles = uploadState.getRemainingAttachments(uri.toString(), submissionFile, files);
+
+            postResult = httpInterface.uploadSubmissionFile(remainingFiles, submissionFile, uri,
+                    webCredentialsUtils.getCredentials(uri), contentLength, uploadState::onBatchAccepted);
 
             int responseCode = postResult.getResponseCode();
             messageParser.setMessageResponse(postResult.getHttpResponse());
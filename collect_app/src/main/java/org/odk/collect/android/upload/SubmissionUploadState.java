@@ -0,0 +1,203 @@
+package org.odk.collect.android.upload;
+
+import androidx.annotation.NonNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import timber.log.Timber;
+
+/**
+ * Remembers which attachments of a submission the server has already accepted so that a failed
+ * upload can be resumed from the batch that failed rather than from the first attachment. Also
+ * counts the failed attempts so that auto-send can back off from an instance that keeps failing.
+ *
+ * The state is kept in a hidden file in the instance directory which means it isn't sent as an
+ * attachment and is deleted along with the instance.
+ */
+public class SubmissionUploadState {
+
+    static final String STATE_FILE_NAME = ".upload-state";
+
+    static final long MIN_BACKOFF_MILLIS = 30 * 1000L;
+    static final long MAX_BACKOFF_MILLIS = 60 * 60 * 1000L;
+
+    /** After this many failures auto-send stops asking to be retried for the instance. */
+    static final int MAX_AUTO_SEND_RETRIES = 8;
+
+    private static final int VERSION = 1;
+
+    private final File stateFile;
+
+    private String submissionUri = "";
+    private long submissionLength;
+    private long submissionLastModified;
+    private final Map<String, long[]> acceptedAttachments = new HashMap<>();
+
+    private int failedAttempts;
+    private long lastFailureTime;
+
+    SubmissionUploadState(File stateFile) {
+        this.stateFile = stateFile;
+        read();
+    }
+
+    public static SubmissionUploadState forInstanceFile(File instanceFile) {
+        return new SubmissionUploadState(new File(instanceFile.getParentFile(), STATE_FILE_NAME));
+    }
+
+    /**
+     * Returns the attachments that still have to be sent. Attachments are only skipped if the
+     * server accepted them for the same submission at the same URI and they haven't changed since.
+     */
+    public List<File> getRemainingAttachments(@NonNull String uri, @NonNull File submissionFile, @NonNull List<File> attachments) {
+        if (!uri.equals(submissionUri) || submissionFile.length() != submissionLength
+                || submissionFile.lastModified() != submissionLastModified) {
+            submissionUri = uri;
+            submissionLength = submissionFile.length();
+            submissionLastModified = submissionFile.lastModified();
+            acceptedAttachments.clear();
+        }
+
+        List<File> remaining = new ArrayList<>();
+        for (File attachment : attachments) {
+            if (!isAccepted(attachment)) {
+                remaining.add(attachment);
+            }
+        }
+
+        if (remaining.size() < attachments.size()) {
+            Timber.i("Resuming upload of %s with %d of %d attachments remaining",
+                    submissionFile.getName(), remaining.size(), attachments.size());
+        }
+
+        return remaining;
+    }
+
+    public void onBatchAccepted(List<File> attachments) {
+        for (File attachment : attachments) {
+            acceptedAttachments.put(attachment.getName(), new long[]{attachment.length(), attachment.lastModified()});
+        }
+
+        write();
+    }
+
+    public void onFailure(long now) {
+        failedAttempts++;
+        lastFailureTime = now;
+        write();
+    }
+
+    public void onSuccess() {
+        if (stateFile.exists() && !stateFile.delete()) {
+            Timber.w("Could not delete upload state %s", stateFile.getAbsolutePath());
+        }
+    }
+
+    public int getFailedAttempts() {
+        return failedAttempts;
+    }
+
+    /**
+     * @return true if the last attempt failed too recently for auto-send to try again
+     */
+    public boolean isBackingOff(long now) {
+        return failedAttempts > 0 && now < lastFailureTime + getBackoffMillis(failedAttempts);
+    }
+
+    /**
+     * @return true if auto-send should be rescheduled to try the instance again
+     */
+    public boolean shouldRetryAutoSend() {
+        return failedAttempts > 0 && failedAttempts <= MAX_AUTO_SEND_RETRIES;
+    }
+
+    /**
+     * Doubles from {@link #MIN_BACKOFF_MILLIS} with each failure up to {@link #MAX_BACKOFF_MILLIS}.
+     */
+    static long getBackoffMillis(int failedAttempts) {
+        long backoff = MIN_BACKOFF_MILLIS;
+        for (int i = 1; i < failedAttempts && backoff < MAX_BACKOFF_MILLIS; i++) {
+            backoff *= 2;
+        }
+
+        return Math.min(backoff, MAX_BACKOFF_MILLIS);
+    }
+
+    private boolean isAccepted(File attachment) {
+        long[] accepted = acceptedAttachments.get(attachment.getName());
+        return accepted != null && accepted[0] == attachment.length() && accepted[1] == attachment.lastModified();
+    }
+
+    private void read() {
+        if (!stateFile.exists()) {
+            return;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(stateFile)))) {
+            if (in.readInt() != VERSION) {
+                return;
+            }
+
+            submissionUri = in.readUTF();
+            submissionLength = in.readLong();
+            submissionLastModified = in.readLong();
+            failedAttempts = in.readInt();
+            lastFailureTime = in.readLong();
+
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                acceptedAttachments.put(in.readUTF(), new long[]{in.readLong(), in.readLong()});
+            }
+        } catch (IOException e) {
+            Timber.w(e, "Ignoring unreadable upload state %s", stateFile.getAbsolutePath());
+            submissionUri = "";
+            acceptedAttachments.clear();
+        }
+    }
+
+    /**
+     * Writes to a temporary file first so that a crash while writing never leaves a state that
+     * claims attachments were accepted when they weren't.
+     */
+    private void write() {
+        File tempFile = new File(stateFile.getParentFile(), stateFile.getName() + ".tmp");
+
+        try (FileOutputStream fout = new FileOutputStream(tempFile)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fout));
+            out.writeInt(VERSION);
+            out.writeUTF(submissionUri);
+            out.writeLong(submissionLength);
+            out.writeLong(submissionLastModified);
+            out.writeInt(failedAttempts);
+            out.writeLong(lastFailureTime);
+
+            out.writeInt(acceptedAttachments.size());
+            for (Map.Entry<String, long[]> entry : acceptedAttachments.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeLong(entry.getValue()[0]);
+                out.writeLong(entry.getValue()[1]);
+            }
+
+            out.flush();
+            fout.getFD().sync();
+        } catch (IOException e) {
+            Timber.w(e, "Could not write upload state %s", stateFile.getAbsolutePath());
+            return;
+        }
+
+        if (!tempFile.renameTo(stateFile)) {
+            Timber.w("Could not replace upload state %s", stateFile.getAbsolutePath());
+        }
+    }
+}
@@ -35,15 +35,16 @@ import org.odk.collect.android.javarosawrapper.FormController.InstanceMetadata;
 import org.odk.collect.android.provider.FormsProviderAPI.FormsColumns;
 import org.odk.collect.android.provider.InstanceProviderAPI.InstanceColumns;
 
-import java.io.ByteArrayOutputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
-import java.io.RandomAccessFile;
 import java.io.UnsupportedEncodingException;
+import java.security.DigestInputStream;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.KeyFactory;
@@ -56,10 +57,13 @@ import java.security.spec.InvalidKeySpecException;
 import java.security.spec.X509EncodedKeySpec;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
-import javax.crypto.CipherOutputStream;
 import javax.crypto.IllegalBlockSizeException;
 import javax.crypto.NoSuchPaddingException;
 import javax.crypto.spec.IvParameterSpec;
@@ -101,6 +105,8 @@ public class EncryptionUtils {
             "base64EncryptedElementSignature";
     private static final String NEW_LINE = "\n";
     private static final String ENCRYPTION_PROVIDER = "BC";
+    private static final int ENCRYPTION_BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_ENCRYPTION_THREADS = 4;
 
     private EncryptionUtils() {
     }
@@ -177,8 +183,7 @@ public class EncryptionUtils {
             elementSignatureSource.append(value).append('\n');
         }
 
-        public void appendFileSignatureSource(File file) {
-            String md5Hash = FileUtils.getMd5Hash(file);
+        public void appendFileSignatureSource(File file, String md5Hash) {
             appendElementSignatureSource(file.getName() + "::" + md5Hash);
         }
 
@@ -378,55 +383,73 @@ public class EncryptionUtils {
         return new EncryptedFormInformation(formId, formVersion, instanceMetadata, pk);
     }
 
-    private static void encryptFile(File file, EncryptedFormInformation formInfo)
+    private static Cipher getCipher(File file, EncryptedFormInformation formInfo)
             throws IOException, EncryptionException {
-        File encryptedFile = new File(file.getParentFile(), file.getName()
-                + ".enc");
+        File encryptedFile = getEncryptedFile(file);
 
         if (encryptedFile.exists() && !encryptedFile.delete()) {
             throw new IOException("Cannot overwrite " + encryptedFile.getAbsolutePath()
                     + ". Perhaps the file is locked?");
         }
 
-        // add elementSignatureSource for this file...
-        formInfo.appendFileSignatureSource(file);
+        try {
+            return formInfo.getCipher();
+        } catch (Exception e) {
+            String msg = "Error encrypting: " + file.getName() + " -> "
+                    + encryptedFile.getName();
+            Timber.e(e, "%s due to %s ", msg, e.getMessage());
+            throw new EncryptionException(msg, e);
+        }
+    }
+
+    /**
+     * Encrypts the file straight to its .enc counterpart and computes the md5 of the
+     * unencrypted contents on the way.
+     *
+     * @return the md5 hash of the unencrypted file
+     */
+    private static String encryptFile(File file, Cipher cipher) throws EncryptionException {
+        File encryptedFile = getEncryptedFile(file);
 
-        RandomAccessFile randomAccessFile = null;
-        CipherOutputStream cipherOutputStream = null;
+        InputStream fin = null;
+        FileOutputStream fout = null;
         try {
-            Cipher c = formInfo.getCipher();
+            MessageDigest md = MessageDigest.getInstance("MD5");
+            fin = new DigestInputStream(new FileInputStream(file), md);
+            fout = new FileOutputStream(encryptedFile);
+            OutputStream out = new BufferedOutputStream(fout, ENCRYPTION_BUFFER_SIZE);
 
-            randomAccessFile = new RandomAccessFile(encryptedFile, "rws");
-            ByteArrayOutputStream encryptedData = new ByteArrayOutputStream();
-            cipherOutputStream = new CipherOutputStream(encryptedData, c);
-            InputStream fin = new FileInputStream(file);
-            byte[] buffer = new byte[2048];
+            byte[] buffer = new byte[ENCRYPTION_BUFFER_SIZE];
             int len = fin.read(buffer);
             while (len != -1) {
-                cipherOutputStream.write(buffer, 0, len);
+                byte[] encrypted = cipher.update(buffer, 0, len);
+                if (encrypted != null) {
+                    out.write(encrypted);
+                }
                 len = fin.read(buffer);
             }
-            fin.close();
-            cipherOutputStream.flush();
-            cipherOutputStream.close();
-
-            randomAccessFile.write(encryptedData.toByteArray());
+            out.write(cipher.doFinal());
+            out.flush();
+            fout.getChannel().force(true);
 
             Timber.i("Encrpyted:%s -> %s", file.getName(), encryptedFile.getName());
+
+            return FileUtils.toMd5Hash(md.digest());
         } catch (Exception e) {
             String msg = "Error encrypting: " + file.getName() + " -> "
                     + encryptedFile.getName();
             Timber.e(e, "%s due to %s ", msg, e.getMessage());
             throw new EncryptionException(msg, e);
         } finally {
-            IOUtils.closeQuietly(cipherOutputStream);
-
-            if (randomAccessFile != null) {
-                randomAccessFile.close();
-            }
+            IOUtils.closeQuietly(fin);
+            IOUtils.closeQuietly(fout);
         }
     }
 
+    private static File getEncryptedFile(File file) {
+        return new File(file.getParentFile(), file.getName() + ".enc");
+    }
+
     public static boolean deletePlaintextFiles(File instanceXml, @Nullable File lastSaved) {
         // NOTE: assume the directory containing the instanceXml contains ONLY
         // files related to this one instance.
@@ -489,17 +512,70 @@ public class EncryptionUtils {
                 filesToProcess.add(f);
             }
         }
-        // encrypt here...
-        for (File f : filesToProcess) {
-            encryptFile(f, formInfo);
+        // encrypt the submission.xml as the last file...
+        List<File> filesToEncrypt = new ArrayList<>(filesToProcess);
+        filesToEncrypt.add(submissionXml);
+
+        // the iv of each file depends on its position so the ciphers are created in order
+        List<Cipher> ciphers = new ArrayList<>();
+        for (File f : filesToEncrypt) {
+            ciphers.add(getCipher(f, formInfo));
         }
 
-        // encrypt the submission.xml as the last file...
-        encryptFile(submissionXml, formInfo);
+        // encrypt here...
+        List<String> md5Hashes = encryptFiles(filesToEncrypt, ciphers);
+
+        // add elementSignatureSource for each file...
+        for (int i = 0; i < filesToEncrypt.size(); i++) {
+            formInfo.appendFileSignatureSource(filesToEncrypt.get(i), md5Hashes.get(i));
+        }
 
         return filesToProcess;
     }
 
+    /**
+     * Encrypts several files at once so that forms with large attachments aren't held up
+     * encrypting them one after another.
+     *
+     * @return the md5 hash of each unencrypted file, in the same order as the files
+     */
+    private static List<String> encryptFiles(List<File> files, List<Cipher> ciphers)
+            throws EncryptionException {
+        int threads = Math.min(files.size(), Math.min(MAX_ENCRYPTION_THREADS, Runtime.getRuntime().availableProcessors()));
+        List<String> md5Hashes = new ArrayList<>();
+        if (threads <= 1) {
+            for (int i = 0; i < files.size(); i++) {
+                md5Hashes.add(encryptFile(files.get(i), ciphers.get(i)));
+            }
+            return md5Hashes;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < files.size(); i++) {
+                File file = files.get(i);
+                Cipher cipher = ciphers.get(i);
+                futures.add(executor.submit(() -> encryptFile(file, cipher)));
+            }
+
+            for (Future<String> future : futures) {
+                md5Hashes.add(future.get());
+            }
+            return md5Hashes;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof EncryptionException) {
+                throw (EncryptionException) e.getCause();
+            }
+            throw new EncryptionException("Error encrypting submission files", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new EncryptionException("Interrupted while encrypting submission files", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
     /**
      * Constructs the encrypted attachments, encrypted form xml, and the
      * plaintext submission manifest (with signature) for the form submission.
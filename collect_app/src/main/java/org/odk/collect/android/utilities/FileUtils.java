@@ -36,6 +36,7 @@ import org.odk.collect.android.R;
 import org.odk.collect.android.application.Collect;
 import org.odk.collect.android.storage.StorageStateProvider;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -99,12 +100,17 @@ public class FileUtils {
     private FileUtils() {
     }
 
-    public static void saveAnswerFileFromUri(Uri uri, File destFile, Context context) {
+    /**
+     * @return whether the content at uri could be copied to destFile
+     */
+    public static boolean saveAnswerFileFromUri(Uri uri, File destFile, Context context) {
         try (InputStream fileInputStream = context.getContentResolver().openInputStream(uri);
              OutputStream fileOutputStream = new FileOutputStream(destFile)) {
             IOUtils.copy(fileInputStream, fileOutputStream);
+            return true;
         } catch (IOException e) {
             Timber.e(e);
+            return false;
         }
     }
 
@@ -148,13 +154,8 @@ public class FileUtils {
                 md.update(buffer, 0, result);
             }
 
-            StringBuilder md5 = new StringBuilder(new BigInteger(1, md.digest()).toString(16));
-            while (md5.length() < 32) {
-                md5.insert(0, "0");
-            }
-
             is.close();
-            return md5.toString();
+            return toMd5Hash(md.digest());
 
         } catch (NoSuchAlgorithmException e) {
             Timber.e(e);
@@ -166,6 +167,18 @@ public class FileUtils {
         }
     }
 
+    /**
+     * Formats an MD5 digest as the zero-padded, lower case hex string used for md5 hashes
+     * everywhere else (form manifests and submission signatures for instance).
+     */
+    public static String toMd5Hash(byte[] digest) {
+        StringBuilder md5 = new StringBuilder(new BigInteger(1, digest).toString(16));
+        while (md5.length() < 32) {
+            md5.insert(0, "0");
+        }
+        return md5.toString();
+    }
+
     public static Bitmap getBitmapScaledToDisplay(File file, int screenHeight, int screenWidth) {
         return getBitmapScaledToDisplay(file, screenHeight, screenWidth, false);
     }
@@ -510,11 +523,19 @@ public class FileUtils {
     }
 
     public static void saveBitmapToFile(Bitmap bitmap, String path) {
+        saveBitmapToFile(bitmap, path, 100);
+    }
+
+    /**
+     * @param quality the quality (0-100) used for JPEG images. PNG images are lossless so it's
+     *                ignored for them.
+     */
+    public static void saveBitmapToFile(Bitmap bitmap, String path, int quality) {
         final Bitmap.CompressFormat compressFormat = path.toLowerCase(Locale.getDefault()).endsWith(".png") ?
                 Bitmap.CompressFormat.PNG : Bitmap.CompressFormat.JPEG;
 
-        try (FileOutputStream out = new FileOutputStream(path)) {
-            bitmap.compress(compressFormat, 100, out);
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(path))) {
+            bitmap.compress(compressFormat, quality, out);
         } catch (Exception e) {
             Timber.e(e);
         }
@@ -1,22 +1,52 @@
 package org.odk.collect.android.utilities;
 
+import androidx.annotation.Nullable;
+
 import org.javarosa.core.model.FormDef;
 import org.javarosa.core.util.externalizable.ExtUtil;
+import org.odk.collect.android.BuildConfig;
 import org.odk.collect.android.storage.StoragePathProvider;
 import org.odk.collect.android.storage.StorageSubdirectory;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
 
 import timber.log.Timber;
 
-/** Methods for reading from and writing to the FormDef cache */
+/**
+ * Methods for reading from and writing to the FormDef cache.
+ *
+ * Cache files start with a fixed header (magic number, cache format version, payload length
+ * and CRC32) followed by the JavaRosa version and the MD5 of the form the payload was built
+ * from. The serialized FormDef follows the header. Files that don't match the running app or
+ * the form on disk are discarded and rebuilt from XML.
+ */
 public class FormDefCache {
 
+    static final int MAGIC = 0x4f444b46; // "ODKF"
+    static final int FORMAT_VERSION = 2;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** Offset of the payload length in the header. The payload CRC immediately follows it. */
+    private static final int PAYLOAD_INFO_OFFSET = 8;
+
+    private static final Map<String, HashedFile> FORM_HASHES = new ConcurrentHashMap<>();
+
     private FormDefCache() {
         // Private constructor
     }
@@ -30,8 +60,19 @@ public class FormDefCache {
      * @param formPath - The form XML file
      */
     public static void writeCache(FormDef formDef, String formPath) throws IOException {
+        writeCache(formDef, formPath, null);
+    }
+
+    /**
+     * Serializes a FormDef and saves it in the cache as {@link #writeCache(FormDef, String)}
+     * does, also keeping the serialized form in the given memory cache if it fits. The form is
+     * streamed to the file and only read back for the memory cache once it is known to fit.
+     */
+    public static void writeCache(FormDef formDef, String formPath, @Nullable FormDefMemoryCache memoryCache) throws IOException {
         final long formSaveStart = System.currentTimeMillis();
-        File cachedFormDefFile = FormDefCache.getCacheFile(new File(formPath));
+        File formXml = new File(formPath);
+        String formMd5 = getFormMd5(formXml);
+        File cachedFormDefFile = getCacheFile(formMd5);
         final File tempCacheFile = File.createTempFile("cache", null,
                 new File(new StoragePathProvider().getDirPath(StorageSubdirectory.CACHE)));
         Timber.i("Started saving %s to the cache via temp file %s",
@@ -39,9 +80,11 @@ public class FormDefCache {
 
         Exception caughtException = null;
         try {
-            DataOutputStream dos = new DataOutputStream(new FileOutputStream(tempCacheFile));
-            formDef.writeExternal(dos);
-            dos.close();
+            long payloadLength = writeCacheFile(formDef, formMd5, tempCacheFile);
+
+            if (memoryCache != null && memoryCache.canHold(payloadLength)) {
+                memoryCache.put(formMd5, readPayload(tempCacheFile, payloadLength));
+            }
         } catch (IOException exception) {
             caughtException = exception;
         }
@@ -78,13 +121,32 @@ public class FormDefCache {
      * @return a FormDef, or null if the form is not present in the cache
      */
     public static FormDef readCache(File formXml) {
-        final File cachedForm = getCacheFile(formXml);
+        return readCache(formXml, null);
+    }
+
+    /**
+     * Returns a FormDef for the form from the given memory cache if it has one, otherwise
+     * reads it from the cache on disk as {@link #readCache(File)} does and adds it to the
+     * memory cache.
+     */
+    public static FormDef readCache(File formXml, @Nullable FormDefMemoryCache memoryCache) {
+        final String formMd5 = getFormMd5(formXml);
+
+        if (memoryCache != null) {
+            final FormDef formDefFromMemory = memoryCache.get(formMd5);
+            if (formDefFromMemory != null) {
+                Timber.i("Loaded %s from memory cache.", formXml.getName());
+                return formDefFromMemory;
+            }
+        }
+
+        final File cachedForm = getCacheFile(formMd5);
         if (cachedForm.exists()) {
             Timber.i("Attempting to load %s from cached file: %s.", formXml.getName(), cachedForm.getName());
             final long start = System.currentTimeMillis();
 
             try {
-                final FormDef deserializedFormDef = deserializeFormDef(cachedForm);
+                final FormDef deserializedFormDef = deserializeFormDef(cachedForm, formMd5, memoryCache);
                 if (deserializedFormDef != null) {
                     Timber.i("Loaded in %.3f seconds.", (System.currentTimeMillis() - start) / 1000F);
                     return deserializedFormDef;
@@ -93,29 +155,214 @@ public class FormDefCache {
                 // New .formdef will be created from XML
                 Timber.w("Deserialization FAILED! Deleting cache file: %s", cachedForm.getAbsolutePath());
                 Timber.w(e);
-                cachedForm.delete();
             }
+
+            cachedForm.delete();
         }
         return null;
     }
 
+    /**
+     * Returns the MD5 of a form file. Hashes are remembered for as long as the file's size and
+     * modification time don't change so that repeatedly opening the same form doesn't re-read
+     * the whole XML file just to locate its cache entry.
+     */
+    static String getFormMd5(File formXml) {
+        String path = formXml.getAbsolutePath();
+        long length = formXml.length();
+        long lastModified = formXml.lastModified();
+
+        HashedFile hashedFile = FORM_HASHES.get(path);
+        if (hashedFile != null && hashedFile.length == length && hashedFile.lastModified == lastModified) {
+            return hashedFile.md5;
+        }
+
+        String md5 = FileUtils.getMd5Hash(formXml);
+        if (md5 != null) {
+            FORM_HASHES.put(path, new HashedFile(length, lastModified, md5));
+        }
+        return md5;
+    }
+
     /**
      * Builds and returns a File object for the cached version of a form.
-     * @param formXml the File containing the XML form
+     * @param formMd5 the MD5 of the XML form
      * @return a File object
      */
-    private static File getCacheFile(File formXml) {
+    private static File getCacheFile(String formMd5) {
         return new File(new StoragePathProvider().getDirPath(StorageSubdirectory.CACHE) + File.separator +
-                FileUtils.getMd5Hash(formXml) + ".formdef");
+                formMd5 + ".formdef");
+    }
+
+    /**
+     * Streams the FormDef to the cache file without holding the serialized form in memory. The
+     * payload length and CRC32 aren't known until the whole payload has been written so they
+     * are patched into the header afterwards.
+     *
+     * @return the length of the payload
+     */
+    static long writeCacheFile(FormDef formDef, String formMd5, File cacheFile) throws IOException {
+        CRC32 crc = new CRC32();
+        long headerLength;
+        long payloadLength;
+
+        try (FileOutputStream fos = new FileOutputStream(cacheFile)) {
+            DataOutputStream header = new DataOutputStream(new BufferedOutputStream(fos, BUFFER_SIZE));
+            header.writeInt(MAGIC);
+            header.writeInt(FORMAT_VERSION);
+            header.writeLong(0); // payload length, filled in below
+            header.writeLong(0); // payload CRC32, filled in below
+            header.writeUTF(BuildConfig.JAVAROSA_VERSION);
+            header.writeUTF(formMd5);
+            header.flush();
+            headerLength = header.size();
+
+            DataOutputStream payload = new DataOutputStream(new CheckedOutputStream(
+                    new BufferedOutputStream(fos, BUFFER_SIZE), crc));
+            formDef.writeExternal(payload);
+            payload.flush();
+            payloadLength = payload.size();
+        }
+
+        try (RandomAccessFile raf = new RandomAccessFile(cacheFile, "rw")) {
+            if (raf.length() != headerLength + payloadLength) {
+                throw new IOException("Unexpected cache file length for " + cacheFile.getName());
+            }
+
+            raf.seek(PAYLOAD_INFO_OFFSET);
+            raf.writeLong(payloadLength);
+            raf.writeLong(crc.getValue());
+        }
+
+        return payloadLength;
+    }
+
+    /**
+     * Reads back the payload of a cache file that has just been written so that it can be kept
+     * in the memory cache.
+     */
+    private static byte[] readPayload(File cacheFile, long payloadLength) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(cacheFile, "r")) {
+            byte[] payload = new byte[(int) payloadLength];
+            raf.seek(raf.length() - payloadLength);
+            raf.readFully(payload);
+            return payload;
+        }
     }
 
-    private static FormDef deserializeFormDef(File serializedFormDef) throws Exception {
-        FormDef fd;
-        try (DataInputStream dis = new DataInputStream(new FileInputStream(serializedFormDef))) {
-            fd = new FormDef();
-            fd.readExternal(dis, ExtUtil.defaultPrototypes());
+    /**
+     * Validates the header of the given cache file and deserializes its payload. If the
+     * payload fits in the given memory cache it is copied there.
+     *
+     * @return the deserialized FormDef, or null if the cache file is stale
+     */
+    static FormDef deserializeFormDef(File serializedFormDef, String formMd5, @Nullable FormDefMemoryCache memoryCache) throws Exception {
+        try (RandomAccessFile raf = new RandomAccessFile(serializedFormDef, "r");
+             FileChannel channel = raf.getChannel()) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            DataInputStream header = new DataInputStream(new ByteBufferInputStream(buffer));
+
+            if (header.readInt() != MAGIC || header.readInt() != FORMAT_VERSION) {
+                Timber.i("Cache file %s uses an older format", serializedFormDef.getName());
+                return null;
+            }
+
+            long payloadLength = header.readLong();
+            long payloadCrc = header.readLong();
+            String javaRosaVersion = header.readUTF();
+            String cachedFormMd5 = header.readUTF();
+
+            if (!BuildConfig.JAVAROSA_VERSION.equals(javaRosaVersion)) {
+                Timber.i("Cache file %s was written by JavaRosa %s", serializedFormDef.getName(), javaRosaVersion);
+                return null;
+            }
+
+            if (!cachedFormMd5.equals(formMd5)) {
+                Timber.i("Cache file %s doesn't match its form", serializedFormDef.getName());
+                return null;
+            }
+
+            if (payloadLength != buffer.remaining()) {
+                throw new IOException("Truncated cache file " + serializedFormDef.getName());
+            }
+
+            if (memoryCache != null && memoryCache.canHold(payloadLength)) {
+                byte[] payload = new byte[(int) payloadLength];
+                buffer.get(payload);
+
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+                if (crc.getValue() != payloadCrc) {
+                    throw new IOException("Corrupt cache file " + serializedFormDef.getName());
+                }
+
+                FormDef fd = new FormDef();
+                fd.readExternal(new DataInputStream(new ByteArrayInputStream(payload)), ExtUtil.defaultPrototypes());
+                memoryCache.put(formMd5, payload);
+                return fd;
+            }
+
+            CheckedInputStream payload = new CheckedInputStream(new ByteBufferInputStream(buffer), new CRC32());
+            FormDef fd = new FormDef();
+            fd.readExternal(new DataInputStream(payload), ExtUtil.defaultPrototypes());
+
+            if (buffer.hasRemaining() || payload.getChecksum().getValue() != payloadCrc) {
+                throw new IOException("Corrupt cache file " + serializedFormDef.getName());
+            }
+
+            return fd;
         }
+    }
 
-        return fd;
+    private static class HashedFile {
+        final long length;
+        final long lastModified;
+        final String md5;
+
+        HashedFile(long length, long lastModified, String md5) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.md5 = md5;
+        }
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public long skip(long n) {
+            int count = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
     }
 }
@@ -0,0 +1,115 @@
+package org.odk.collect.android.utilities;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.javarosa.core.model.FormDef;
+import org.javarosa.core.util.externalizable.ExtUtil;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+
+import timber.log.Timber;
+
+/**
+ * Keeps the serialized form of recently opened FormDefs in memory, keyed by the MD5 of their
+ * form XML. Every {@link #get} deserializes a fresh FormDef so callers can initialize and fill
+ * it without affecting the cached prototype.
+ *
+ * The cache is bounded in bytes (a fraction of the app's heap class) and is trimmed or cleared
+ * when the system reports memory pressure.
+ */
+public class FormDefMemoryCache implements ComponentCallbacks2 {
+
+    /** Fraction of the heap class the cache is allowed to use. */
+    private static final int HEAP_FRACTION = 8;
+
+    private final LruCache<String, byte[]> cache;
+
+    public FormDefMemoryCache(int maxBytes) {
+        cache = new LruCache<String, byte[]>(maxBytes) {
+            @Override
+            protected int sizeOf(String key, byte[] value) {
+                return value.length;
+            }
+        };
+    }
+
+    public static int getDefaultSize(Context context) {
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        int memoryClass = activityManager != null ? activityManager.getMemoryClass() : 32;
+        return memoryClass * 1024 * 1024 / HEAP_FRACTION;
+    }
+
+    /**
+     * @return a new FormDef deserialized from the cached prototype, or null if the form isn't
+     * cached
+     */
+    @Nullable
+    public FormDef get(String formMd5) {
+        byte[] serializedFormDef = cache.get(formMd5);
+        if (serializedFormDef == null) {
+            return null;
+        }
+
+        try {
+            FormDef formDef = new FormDef();
+            formDef.readExternal(new DataInputStream(new ByteArrayInputStream(serializedFormDef)), ExtUtil.defaultPrototypes());
+            return formDef;
+        } catch (Exception e) {
+            Timber.w(e);
+            cache.remove(formMd5);
+            return null;
+        }
+    }
+
+    public void put(String formMd5, byte[] serializedFormDef) {
+        if (canHold(serializedFormDef.length)) {
+            cache.put(formMd5, serializedFormDef);
+        }
+    }
+
+    /**
+     * @return true if a serialized FormDef of the given size is small enough to be cached
+     */
+    public boolean canHold(long size) {
+        return size <= cache.maxSize() / 2;
+    }
+
+    public void clear() {
+        cache.evictAll();
+    }
+
+    public int getHitCount() {
+        return cache.hitCount();
+    }
+
+    public int getMissCount() {
+        return cache.missCount();
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        if (level == TRIM_MEMORY_UI_HIDDEN) {
+            cache.trimToSize(cache.maxSize() / 2);
+        } else if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            clear();
+        }
+    }
+
+    @Override
+    public void onConfigurationChanged(@NonNull Configuration newConfig) {
+        // Nothing to do
+    }
+
+    @Override
+    public void onLowMemory() {
+        clear();
+    }
+}
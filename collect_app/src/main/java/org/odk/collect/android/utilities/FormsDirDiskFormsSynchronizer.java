@@ -8,6 +8,7 @@ import android.net.Uri;
 import org.javarosa.core.reference.ReferenceManager;
 import org.odk.collect.android.R;
 import org.odk.collect.android.application.Collect;
+import org.odk.collect.android.backgroundwork.FormPrewarmManager;
 import org.odk.collect.android.dao.FormsDao;
 import org.odk.collect.android.formmanagement.DiskFormsSynchronizer;
 import org.odk.collect.android.provider.FormsProviderAPI;
@@ -20,6 +21,10 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import timber.log.Timber;
 
@@ -28,8 +33,16 @@ import static org.odk.collect.utilities.PathUtils.getAbsoluteFilePath;
 
 public class FormsDirDiskFormsSynchronizer implements DiskFormsSynchronizer {
 
+    private static final int MAX_HASHING_THREADS = 4;
+
     private static int counter;
 
+    private final FormPrewarmManager formPrewarmManager;
+
+    public FormsDirDiskFormsSynchronizer(FormPrewarmManager formPrewarmManager) {
+        this.formPrewarmManager = formPrewarmManager;
+    }
+
     @Override
     public void synchronize() {
         synchronizeAndReturnError();
@@ -58,9 +71,11 @@ public class FormsDirDiskFormsSynchronizer implements DiskFormsSynchronizer {
                 List<File> formsToAdd = filterFormsToAdd(formDefs, instance);
 
                 // Step 2: quickly run through and figure out what files we need to
-                // parse and update; this is quick, as we only calculate the md5
-                // and see if it has changed.
+                // parse and update; this is quick, as we only calculate the md5 of files
+                // whose size or modification time has changed and see if it has changed.
                 List<UriFile> uriToUpdate = new ArrayList<>();
+                List<UriFile> uriToCheck = new ArrayList<>();
+                List<String> md5sToCheck = new ArrayList<>();
                 Cursor cursor = null;
                 // open the cursor within a try-catch block so it can always be closed.
                 try {
@@ -85,14 +100,13 @@ public class FormsDirDiskFormsSynchronizer implements DiskFormsSynchronizer {
                             // remove it from the list of forms (we only want forms
                             // we haven't added at the end)
                             formsToAdd.remove(sqlFile);
-                            String md5Computed = FileUtils.getMd5Hash(sqlFile);
-                            if (md5Computed == null || md5 == null || !md5Computed.equals(md5)) {
-                                // Probably someone overwrite the file on the sdcard
-                                // So re-parse it and update it's information
+                            if (!hasSameFileInfo(cursor, sqlFile)) {
+                                // The file might have changed, hash it below to find out
                                 String id = cursor.getString(
                                         cursor.getColumnIndex(FormsProviderAPI.FormsColumns._ID));
                                 Uri updateUri = Uri.withAppendedPath(FormsProviderAPI.FormsColumns.CONTENT_URI, id);
-                                uriToUpdate.add(new UriFile(updateUri, sqlFile));
+                                uriToCheck.add(new UriFile(updateUri, sqlFile));
+                                md5sToCheck.add(md5);
                             }
                         } else {
                             //File not found in sdcard but file path found in database
@@ -116,6 +130,25 @@ public class FormsDirDiskFormsSynchronizer implements DiskFormsSynchronizer {
                     formsDao.deleteFormsFromIDs(idsToDelete.toArray(new String[idsToDelete.size()]));
                 }
 
+                List<String> md5sComputed = getMd5Hashes(uriToCheck);
+                for (int i = 0; i < uriToCheck.size(); i++) {
+                    UriFile entry = uriToCheck.get(i);
+                    String md5 = md5sToCheck.get(i);
+                    String md5Computed = md5sComputed.get(i);
+                    if (md5Computed == null || md5 == null || !md5Computed.equals(md5)) {
+                        // Probably someone overwrite the file on the sdcard
+                        // So re-parse it and update it's information
+                        uriToUpdate.add(entry);
+                    } else {
+                        // Only the modification time changed so remember it to avoid hashing
+                        // the file next time
+                        ContentValues values = new ContentValues();
+                        values.put(FormsProviderAPI.FormsColumns.FORM_FILE_SIZE, entry.file.length());
+                        values.put(FormsProviderAPI.FormsColumns.FORM_FILE_LAST_MODIFIED, entry.file.lastModified());
+                        Collect.getInstance().getContentResolver().update(entry.uri, values, null, null);
+                    }
+                }
+
                 // Step3: go through uriToUpdate to parse and update each in turn.
                 // Note: buildContentValues calls getMetadataFromFormDefinition which parses the
                 // form XML. This takes time for large forms and/or slow devices.
@@ -144,6 +177,7 @@ public class FormsDirDiskFormsSynchronizer implements DiskFormsSynchronizer {
                                     .update(updateUri, values, null, null);
                     Timber.i("[%d] %d records successfully updated", instance, count);
                 }
+                boolean formsChanged = !uriToUpdate.isEmpty();
                 uriToUpdate.clear();
 
                 // Step 4: go through the newly-discovered files in xFormsToAdd and add them.
@@ -181,10 +215,15 @@ public class FormsDirDiskFormsSynchronizer implements DiskFormsSynchronizer {
                         // insert failures are OK and expected if multiple
                         // DiskSync scanners are active.
                         formsDao.saveForm(values);
+                        formsChanged = true;
                     } catch (SQLException e) {
                         Timber.i("[%d] %s", instance, e.toString());
                     }
                 }
+
+                if (formsChanged) {
+                    formPrewarmManager.schedulePrewarm();
+                }
             }
             if (errors.length() != 0) {
                 statusMessage = errors.toString();
@@ -220,6 +259,64 @@ public class FormsDirDiskFormsSynchronizer implements DiskFormsSynchronizer {
         return !ignoredFile && (xmlFile || xhtmlFile);
     }
 
+    /**
+     * @return true if the size and modification time recorded when the form's md5 was last
+     * computed match the file on disk
+     */
+    private static boolean hasSameFileInfo(Cursor cursor, File formFile) {
+        int sizeColumn = cursor.getColumnIndex(FormsProviderAPI.FormsColumns.FORM_FILE_SIZE);
+        int lastModifiedColumn = cursor.getColumnIndex(FormsProviderAPI.FormsColumns.FORM_FILE_LAST_MODIFIED);
+        if (sizeColumn == -1 || lastModifiedColumn == -1 || cursor.isNull(sizeColumn) || cursor.isNull(lastModifiedColumn)) {
+            return false;
+        }
+
+        return cursor.getLong(sizeColumn) == formFile.length()
+                && cursor.getLong(lastModifiedColumn) == formFile.lastModified();
+    }
+
+    /**
+     * Hashes the given files, several at once since this is mostly waiting on storage.
+     *
+     * @return the md5 of each file in the same order, null where the file couldn't be read
+     */
+    private static List<String> getMd5Hashes(List<UriFile> entries) {
+        List<String> md5s = new ArrayList<>();
+        int threads = Math.min(entries.size(), Math.min(MAX_HASHING_THREADS, Runtime.getRuntime().availableProcessors()));
+        if (threads <= 1) {
+            for (UriFile entry : entries) {
+                md5s.add(FileUtils.getMd5Hash(entry.file));
+            }
+            return md5s;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<String>> futures = new ArrayList<>();
+            for (UriFile entry : entries) {
+                futures.add(executor.submit(() -> FileUtils.getMd5Hash(entry.file)));
+            }
+
+            for (Future<String> future : futures) {
+                try {
+                    md5s.add(future.get());
+                } catch (ExecutionException e) {
+                    Timber.e(e);
+                    md5s.add(null);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            // treat the files that weren't hashed as changed
+            while (md5s.size() < entries.size()) {
+                md5s.add(null);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        return md5s;
+    }
+
     private boolean isAlreadyDefined(FormsDao formsDao, File formDefFile) {
         // first try to see if a record with this filename already exists...
         Cursor c = null;
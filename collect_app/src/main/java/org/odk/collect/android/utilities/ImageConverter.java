@@ -20,6 +20,8 @@ import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.graphics.Matrix;
+
+import androidx.annotation.Nullable;
 import androidx.exifinterface.media.ExifInterface;
 
 import org.javarosa.core.model.instance.TreeElement;
@@ -36,6 +38,9 @@ import static org.odk.collect.android.utilities.ApplicationConstants.Namespaces.
 
 public class ImageConverter {
 
+    /** Images are re-encoded at full quality unless a lower one is asked for. */
+    public static final int DEFAULT_QUALITY = 100;
+
     private ImageConverter() {
     }
 
@@ -44,6 +49,36 @@ public class ImageConverter {
      * @author Khuong Ninh (khuong.ninh@it-development.com)
      */
     public static void execute(String imagePath, QuestionWidget questionWidget, Context context) {
+        scaleDownAndRotateImage(imagePath, getMaxPixels(questionWidget, context), DEFAULT_QUALITY);
+    }
+
+    /**
+     * @return the max pixels of the long edge of images for the given widget, defined by the form
+     * or in the settings, or null if images should be kept at their original size
+     */
+    @Nullable
+    public static Integer getMaxPixels(QuestionWidget questionWidget, Context context) {
+        if (questionWidget == null) {
+            return null;
+        }
+
+        Integer maxPixels = getMaxPixelsFromFormIfDefined(questionWidget);
+        if (maxPixels == null) {
+            maxPixels = getMaxPixelsFromSettings(context);
+        }
+        return maxPixels;
+    }
+
+    /**
+     * Rotates the image according to its exif orientation and scales it down so that its long
+     * edge is at most maxPixels, both in a single decode and encode. Only the bounds of the image
+     * are read first so that the image can be decoded at the smallest size that is still at
+     * least as big as the result, instead of always decoding it at full resolution.
+     *
+     * @param maxPixels the max pixels of the long edge or null/0 to keep the original size
+     * @param quality   the quality (0-100) to re-encode JPEG images with
+     */
+    public static void scaleDownAndRotateImage(String imagePath, Integer maxPixels, int quality) {
         ExifInterface exif = null;
         try {
             exif = new ExifInterface(imagePath);
@@ -51,11 +86,70 @@ public class ImageConverter {
             Timber.w(e);
         }
 
-        rotateImageIfNeeded(imagePath);
-        scaleDownImageIfNeeded(imagePath, questionWidget, context);
-        
+        int degrees = exif != null ? getRotationDegrees(exif) : 0;
+
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(imagePath, bounds);
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+            return;
+        }
+
+        // the size of the image as it's displayed, after it has been rotated
+        boolean sideways = degrees == 90 || degrees == 270;
+        int width = sideways ? bounds.outHeight : bounds.outWidth;
+        int height = sideways ? bounds.outWidth : bounds.outHeight;
+
+        int newWidth = width;
+        int newHeight = height;
+        if (maxPixels != null && maxPixels > 0) {
+            if (width > height && width > maxPixels) {
+                newWidth = maxPixels;
+                newHeight = (int) (height / ((double) width / maxPixels));
+            } else if (height > maxPixels) {
+                newWidth = (int) (width / ((double) height / maxPixels));
+                newHeight = maxPixels;
+            }
+        }
+
+        if (degrees == 0 && newWidth == width && newHeight == height) {
+            return;
+        }
+
+        // the size to scale the stored (not yet rotated) image to
+        int targetWidth = sideways ? newHeight : newWidth;
+        int targetHeight = sideways ? newWidth : newHeight;
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = getSampleSize(bounds.outWidth, bounds.outHeight, targetWidth, targetHeight);
+        Bitmap image = FileUtils.getBitmap(imagePath, options);
+        if (image == null) {
+            return;
+        }
+
+        Bitmap result;
+        try {
+            Matrix matrix = new Matrix();
+            matrix.postScale((float) targetWidth / image.getWidth(), (float) targetHeight / image.getHeight());
+            matrix.postRotate(degrees);
+            result = Bitmap.createBitmap(image, 0, 0, image.getWidth(), image.getHeight(), matrix, true);
+        } catch (OutOfMemoryError e) {
+            Timber.w(e);
+            image.recycle();
+            return;
+        }
+
+        if (result != image) {
+            image.recycle();
+        }
+
+        FileUtils.saveBitmapToFile(result, imagePath, quality);
+        result.recycle();
+
         if (exif != null) {
             try {
+                // the rotation has been applied to the pixels so it mustn't be applied again
+                exif.setAttribute(ExifInterface.TAG_ORIENTATION, String.valueOf(ExifInterface.ORIENTATION_NORMAL));
                 exif.saveAttributes();
             } catch (IOException e) {
                 Timber.w(e);
@@ -63,20 +157,16 @@ public class ImageConverter {
         }
     }
 
-    private static void scaleDownImageIfNeeded(String imagePath, QuestionWidget questionWidget, Context context) {
-        Integer maxPixels;
-
-        if (questionWidget != null) {
-            maxPixels = getMaxPixelsFromFormIfDefined(questionWidget);
-
-            if (maxPixels == null) {
-                maxPixels = getMaxPixelsFromSettings(context);
-            }
-
-            if (maxPixels != null && maxPixels > 0) {
-                scaleDownImage(imagePath, maxPixels);
-            }
+    /**
+     * @return the largest power of two the image can be subsampled by while still being at least
+     * as big as the target size
+     */
+    static int getSampleSize(int width, int height, int targetWidth, int targetHeight) {
+        int sampleSize = 1;
+        while (width / (sampleSize * 2) >= targetWidth && height / (sampleSize * 2) >= targetHeight) {
+            sampleSize *= 2;
         }
+        return sampleSize;
     }
 
     private static Integer getMaxPixelsFromFormIfDefined(QuestionWidget questionWidget) {
@@ -111,71 +201,22 @@ public class ImageConverter {
         return maxPixels;
     }
 
-    /**
-     * This method is used to reduce an original picture size.
-     * maxPixels refers to the max pixels of the long edge, the short edge is scaled proportionately.
-     */
-    private static void scaleDownImage(String imagePath, int maxPixels) {
-        Bitmap image = FileUtils.getBitmap(imagePath, new BitmapFactory.Options());
-
-        if (image != null) {
-            double originalWidth = image.getWidth();
-            double originalHeight = image.getHeight();
-
-            if (originalWidth > originalHeight && originalWidth > maxPixels) {
-                int newHeight = (int) (originalHeight / (originalWidth / maxPixels));
-
-                image = Bitmap.createScaledBitmap(image, maxPixels, newHeight, false);
-                FileUtils.saveBitmapToFile(image, imagePath);
-            } else if (originalHeight > maxPixels) {
-                int newWidth = (int) (originalWidth / (originalHeight / maxPixels));
-
-                image = Bitmap.createScaledBitmap(image, newWidth, maxPixels, false);
-                FileUtils.saveBitmapToFile(image, imagePath);
-            }
-        }
-    }
-
     /**
      * Sometimes an image might be taken up sideways.
      * https://github.com/getodk/collect/issues/36
      */
-    private static void rotateImageIfNeeded(String imagePath) {
-        ExifInterface exif = null;
-        try {
-            exif = new ExifInterface(imagePath);
-        } catch (IOException e) {
-            Timber.w(e);
-        }
-
-        if (exif != null) {
-            Bitmap image = FileUtils.getBitmap(imagePath, new BitmapFactory.Options());
-
-            int orientation = exif.getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
-            switch (orientation) {
-                case ExifInterface.ORIENTATION_ROTATE_90:
-                    rotateBitmap(image, 90, imagePath);
-                    break;
-                case ExifInterface.ORIENTATION_ROTATE_180:
-                    rotateBitmap(image, 180, imagePath);
-                    break;
-
-                case ExifInterface.ORIENTATION_ROTATE_270:
-                    rotateBitmap(image, 270, imagePath);
-                    break;
-            }
-        }
-    }
-
-    private static void rotateBitmap(Bitmap image, int degrees, String imagePath) {
-        try {
-            Matrix matrix = new Matrix();
-            matrix.postRotate(degrees);
-            image = Bitmap.createBitmap(image, 0, 0, image.getWidth(), image.getHeight(), matrix, true);
-        } catch (OutOfMemoryError e) {
-            Timber.w(e);
+    private static int getRotationDegrees(ExifInterface exif) {
+        int orientation = exif.getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
+        switch (orientation) {
+            case ExifInterface.ORIENTATION_ROTATE_90:
+                return 90;
+            case ExifInterface.ORIENTATION_ROTATE_180:
+                return 180;
+            case ExifInterface.ORIENTATION_ROTATE_270:
+                return 270;
+            default:
+                return 0;
         }
-        FileUtils.saveBitmapToFile(image, imagePath);
     }
 
     public static Bitmap scaleImageToNewWidth(Bitmap bitmap, int newWidth) {
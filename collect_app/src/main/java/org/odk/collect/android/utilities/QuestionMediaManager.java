@@ -22,4 +22,15 @@ public interface QuestionMediaManager {
     void deleteAnswerFile(String questionIndex, String fileName);
 
     void replaceAnswerFile(String questionIndex, String fileName);
+
+    /**
+     * @return true if the answer file is still being copied or converted in the background
+     */
+    boolean isAnswerFilePending(File file);
+
+    /**
+     * Runs onReady on the UI thread once the answer file has been processed. Runs it straight
+     * away if the file isn't pending. If processing failed the file won't exist.
+     */
+    void whenAnswerFileReady(File file, Runnable onReady);
 }
@@ -61,6 +61,7 @@ public abstract class BaseImageWidget extends QuestionWidget implements FileWidg
     protected ImageView imageView;
     protected String binaryName;
     protected TextView errorTextView;
+    protected TextView pendingTextView;
     protected LinearLayout answerLayout;
 
     protected ImageClickHandler imageClickHandler;
@@ -109,7 +110,7 @@ public abstract class BaseImageWidget extends QuestionWidget implements FileWidg
 
         if (object instanceof File) {
             File newImage = (File) object;
-            if (newImage.exists()) {
+            if (newImage.exists() || questionMediaManager.isAnswerFilePending(newImage)) {
                 questionMediaManager.replaceAnswerFile(getFormEntryPrompt().getIndex().toString(), newImage.getAbsolutePath());
                 binaryName = newImage.getName();
                 addCurrentImageToLayout();
@@ -139,6 +140,7 @@ public abstract class BaseImageWidget extends QuestionWidget implements FileWidg
 
     protected void addCurrentImageToLayout() {
         answerLayout.removeView(imageView);
+        answerLayout.removeView(pendingTextView);
 
         if (binaryName != null) {
             DisplayMetrics metrics = getContext().getResources().getDisplayMetrics();
@@ -146,7 +148,22 @@ public abstract class BaseImageWidget extends QuestionWidget implements FileWidg
             int screenHeight = metrics.heightPixels;
 
             File f = getFile();
-            if (f.exists()) {
+            if (questionMediaManager.isAnswerFilePending(f)) {
+                // the image is still being copied or scaled down so show it once it's ready
+                answerLayout.addView(pendingTextView);
+                questionMediaManager.whenAnswerFileReady(f, () -> {
+                    if (!f.getName().equals(binaryName)) {
+                        return;
+                    }
+
+                    if (f.exists()) {
+                        addCurrentImageToLayout();
+                    } else {
+                        answerLayout.removeView(pendingTextView);
+                        clearAnswer();
+                    }
+                });
+            } else if (f.exists()) {
                 Bitmap bmp = FileUtils.getBitmapScaledToDisplay(f, screenHeight, screenWidth);
                 if (bmp == null) {
                     errorTextView.setVisibility(View.VISIBLE);
@@ -169,6 +186,10 @@ public abstract class BaseImageWidget extends QuestionWidget implements FileWidg
         errorTextView.setId(View.generateViewId());
         errorTextView.setText(R.string.selected_invalid_image);
 
+        pendingTextView = new TextView(getContext());
+        pendingTextView.setId(View.generateViewId());
+        pendingTextView.setText(R.string.processing_image);
+
         answerLayout = new LinearLayout(getContext());
         answerLayout.setOrientation(LinearLayout.VERTICAL);
 
@@ -285,7 +306,7 @@ public abstract class BaseImageWidget extends QuestionWidget implements FileWidg
 
     private File getFile() {
         File file = new File(getInstanceFolder() + File.separator + binaryName);
-        if (!file.exists() && doesSupportDefaultValues()) {
+        if (!file.exists() && !questionMediaManager.isAnswerFilePending(file) && doesSupportDefaultValues()) {
             file = new File(getDefaultFilePath());
         }
 
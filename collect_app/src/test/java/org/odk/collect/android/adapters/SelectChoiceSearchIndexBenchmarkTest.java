@@ -0,0 +1,71 @@
+package org.odk.collect.android.adapters;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Compares filtering large choice lists by lowercasing every label on every keystroke (as the
+ * adapter used to) with filtering through {@link SelectChoiceSearchIndex}. Each run types a query
+ * one character at a time.
+ */
+@Ignore("Run manually when changing how choices are filtered.")
+public class SelectChoiceSearchIndexBenchmarkTest {
+
+    private static final String[] WORDS = {"Kibera", "Mathare", "Kawangware", "Embakasi", "Kasarani", "Langata", "Ruaraka", "Njiru"};
+    private static final String[] QUERIES = {"kawangware 12", "north 4", "embakasi"};
+
+    @Test
+    public void compareScanAndIndex() {
+        for (int size : new int[]{10_000, 50_000}) {
+            List<String> labels = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                labels.add(WORDS[i % WORDS.length] + (i % 3 == 0 ? " North " : " Sóuth ") + i);
+            }
+
+            long start = System.nanoTime();
+            SelectChoiceSearchIndex index = new SelectChoiceSearchIndex(labels);
+            long indexTime = System.nanoTime() - start;
+
+            long scanTime = 0;
+            long searchTime = 0;
+            int keystrokes = 0;
+            for (String query : QUERIES) {
+                for (int length = 1; length <= query.length(); length++) {
+                    String typed = query.substring(0, length);
+
+                    start = System.nanoTime();
+                    int scanResults = scan(labels, typed);
+                    scanTime += System.nanoTime() - start;
+
+                    start = System.nanoTime();
+                    int indexResults = index.search(typed).length;
+                    searchTime += System.nanoTime() - start;
+
+                    assertThat(indexResults, is(scanResults));
+                    keystrokes++;
+                }
+            }
+
+            System.out.printf("%d choices: building index %.1f ms, scan %.2f ms/keystroke, index %.2f ms/keystroke%n", size,
+                    indexTime / 1e6, scanTime / 1e6 / keystrokes, searchTime / 1e6 / keystrokes);
+        }
+    }
+
+    private static int scan(List<String> labels, String query) {
+        String searchStr = query.toLowerCase(Locale.US);
+        int count = 0;
+        for (String label : labels) {
+            if (label.toLowerCase(Locale.US).contains(searchStr)) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
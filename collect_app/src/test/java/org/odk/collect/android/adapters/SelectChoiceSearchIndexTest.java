@@ -0,0 +1,46 @@
+package org.odk.collect.android.adapters;
+
+import org.junit.Test;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class SelectChoiceSearchIndexTest {
+
+    @Test
+    public void search_findsLabelsContainingQuery_ignoringCase() {
+        SelectChoiceSearchIndex index = new SelectChoiceSearchIndex(asList("Nairobi", "Mombasa", "Kisumu", "Nakuru"));
+
+        assertThat(index.search("na"), is(new int[]{0, 3}));
+        assertThat(index.search("MBA"), is(new int[]{1}));
+        assertThat(index.search("x"), is(new int[]{}));
+    }
+
+    @Test
+    public void search_ignoresAccents_inLabelsAndQuery() {
+        SelectChoiceSearchIndex index = new SelectChoiceSearchIndex(asList("São Tomé", "Sao Paulo", "Bogotá"));
+
+        assertThat(index.search("sao"), is(new int[]{0, 1}));
+        assertThat(index.search("TOMÉ"), is(new int[]{0}));
+        assertThat(index.search("bogota"), is(new int[]{2}));
+    }
+
+    @Test
+    public void search_returnsSameResults_whenQueryIsExtendedOrShortened() {
+        SelectChoiceSearchIndex index = new SelectChoiceSearchIndex(asList("AAA", "BBB", "ABB"));
+
+        assertThat(index.search("b"), is(new int[]{1, 2}));
+        assertThat(index.search("bb"), is(new int[]{1, 2}));
+        assertThat(index.search("bbb"), is(new int[]{1}));
+        assertThat(index.search("a"), is(new int[]{0, 2}));
+        assertThat(index.search(""), is(new int[]{0, 1, 2}));
+    }
+
+    @Test
+    public void nullLabels_neverMatch() {
+        SelectChoiceSearchIndex index = new SelectChoiceSearchIndex(asList(null, "null"));
+
+        assertThat(index.search("nu"), is(new int[]{1}));
+    }
+}
@@ -0,0 +1,157 @@
+package org.odk.collect.android.backgroundwork;
+
+import android.app.Application;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.os.Environment;
+import android.webkit.MimeTypeMap;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.odk.collect.android.forms.Form;
+import org.odk.collect.android.forms.FormsRepository;
+import org.odk.collect.android.injection.config.AppDependencyModule;
+import org.odk.collect.android.instances.Instance;
+import org.odk.collect.android.instances.InstancesRepository;
+import org.odk.collect.android.network.NetworkStateProvider;
+import org.odk.collect.android.notifications.Notifier;
+import org.odk.collect.android.openrosa.OpenRosaHttpInterface;
+import org.odk.collect.android.preferences.GeneralKeys;
+import org.odk.collect.android.preferences.GeneralSharedPreferences;
+import org.odk.collect.android.preferences.PreferencesProvider;
+import org.odk.collect.android.storage.StoragePathProvider;
+import org.odk.collect.android.storage.StorageSubdirectory;
+import org.odk.collect.android.support.BooleanChangeLock;
+import org.odk.collect.android.support.FakeOpenRosaHttpInterface;
+import org.odk.collect.android.support.InMemFormsRepository;
+import org.odk.collect.android.support.InMemInstancesRepository;
+import org.odk.collect.android.support.RobolectricHelpers;
+import org.odk.collect.android.upload.SubmissionUploadState;
+import org.odk.collect.android.utilities.FileUtils;
+import org.odk.collect.utilities.UserAgentProvider;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowEnvironment;
+
+import java.io.File;
+
+import static java.util.Collections.singletonList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@RunWith(RobolectricTestRunner.class)
+public class AutoSendTaskSpecTest {
+
+    private final InMemFormsRepository formsRepository = new InMemFormsRepository();
+    private final BooleanChangeLock changeLock = new BooleanChangeLock();
+    private final FakeOpenRosaHttpInterface httpInterface = new FakeOpenRosaHttpInterface();
+    private InMemInstancesRepository instancesRepository;
+    private File instanceFile;
+
+    @Before
+    public void setup() {
+        ShadowEnvironment.setExternalStorageState(Environment.MEDIA_MOUNTED);
+        GeneralSharedPreferences.getInstance().save(GeneralKeys.KEY_AUTOSEND, "wifi_and_cellular");
+
+        formsRepository.save(new Form.Builder()
+                .id(1L)
+                .jrFormId("one")
+                .jrVersion("1")
+                .build());
+
+        File instanceDir = new File(new StoragePathProvider().getDirPath(StorageSubdirectory.INSTANCES), "one");
+        instanceDir.mkdirs();
+        instanceFile = new File(instanceDir, "one.xml");
+        FileUtils.write(instanceFile, "<data/>".getBytes());
+
+        instancesRepository = new InMemInstancesRepository(singletonList(new Instance.Builder()
+                .id(1L)
+                .jrFormId("one")
+                .jrVersion("1")
+                .displayName("one")
+                .instanceFilePath(instanceFile.getAbsolutePath())
+                .status(Instance.STATUS_COMPLETE)
+                .build()));
+
+        NetworkInfo networkInfo = mock(NetworkInfo.class);
+        when(networkInfo.getType()).thenReturn(ConnectivityManager.TYPE_WIFI);
+        NetworkStateProvider networkStateProvider = mock(NetworkStateProvider.class);
+        when(networkStateProvider.getNetworkInfo()).thenReturn(networkInfo);
+
+        RobolectricHelpers.overrideAppDependencyModule(new AppDependencyModule() {
+            @Override
+            public FormsRepository providesFormRepository() {
+                return formsRepository;
+            }
+
+            @Override
+            public InstancesRepository providesInstancesRepository() {
+                return instancesRepository;
+            }
+
+            @Override
+            public ChangeLock providesInstancesChangeLock() {
+                return changeLock;
+            }
+
+            @Override
+            public NetworkStateProvider providesConnectivityProvider() {
+                return networkStateProvider;
+            }
+
+            @Override
+            public OpenRosaHttpInterface provideHttpInterface(MimeTypeMap mimeTypeMap, UserAgentProvider userAgentProvider) {
+                return httpInterface;
+            }
+
+            @Override
+            public Notifier providesNotifier(Application application, PreferencesProvider preferencesProvider) {
+                return mock(Notifier.class);
+            }
+        });
+    }
+
+    @Test
+    public void whenSubmissionSucceeds_returnsTrue() {
+        httpInterface.setSubmissionResponseCode(201);
+
+        assertThat(runTask(), equalTo(true));
+        assertThat(httpInterface.getSubmissionUris().size(), equalTo(1));
+    }
+
+    @Test
+    public void whenSubmissionFails_returnsFalse_soItIsRetried() {
+        httpInterface.setSubmissionResponseCode(500);
+
+        assertThat(runTask(), equalTo(false));
+        assertThat(httpInterface.getSubmissionUris().size(), equalTo(1));
+    }
+
+    @Test
+    public void whenSubmissionFails_andInstanceHasUsedUpItsRetries_returnsTrue() {
+        SubmissionUploadState uploadState = SubmissionUploadState.forInstanceFile(instanceFile);
+        while (uploadState.getFailedAttempts() == 0 || uploadState.shouldRetryAutoSend()) {
+            uploadState.onFailure(0);
+        }
+        httpInterface.setSubmissionResponseCode(500);
+
+        assertThat(runTask(), equalTo(true));
+        assertThat(httpInterface.getSubmissionUris().size(), equalTo(1));
+    }
+
+    @Test
+    public void whenChangeLockIsLocked_doesNotSubmit_andReturnsFalse() {
+        changeLock.lock();
+
+        assertThat(runTask(), equalTo(false));
+        assertThat(httpInterface.getSubmissionUris().size(), equalTo(0));
+    }
+
+    private boolean runTask() {
+        return new AutoSendTaskSpec().getTask(ApplicationProvider.getApplicationContext()).get();
+    }
+}
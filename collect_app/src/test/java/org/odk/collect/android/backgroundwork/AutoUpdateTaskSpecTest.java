@@ -64,7 +64,7 @@ public class AutoUpdateTaskSpecTest {
             }
 
             @Override
-            public FormDownloader providesFormDownloader(FormSource formSource, FormsRepository formsRepository, StoragePathProvider storagePathProvider, Analytics analytics) {
+            public FormDownloader providesFormDownloader(FormSource formSource, FormsRepository formsRepository, StoragePathProvider storagePathProvider, Analytics analytics, FormPrewarmManager formPrewarmManager) {
                 return formDownloader;
             }
 
@@ -0,0 +1,198 @@
+package org.odk.collect.android.backgroundwork;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.odk.collect.android.forms.Form;
+import org.odk.collect.android.forms.FormMediaLock;
+import org.odk.collect.android.forms.FormsRepository;
+import org.odk.collect.android.injection.config.AppDependencyModule;
+import org.odk.collect.android.storage.StoragePathProvider;
+import org.odk.collect.android.storage.StorageSubdirectory;
+import org.odk.collect.android.support.BooleanChangeLock;
+import org.odk.collect.android.support.FormUtils;
+import org.odk.collect.android.support.InMemFormsRepository;
+import org.odk.collect.android.support.RobolectricHelpers;
+import org.odk.collect.android.utilities.FileUtils;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+@RunWith(RobolectricTestRunner.class)
+public class PrewarmFormsTaskSpecTest {
+
+    private final InMemFormsRepository formsRepository = new InMemFormsRepository();
+    private final CountingFormMediaLock formMediaLock = new CountingFormMediaLock();
+    private final BooleanChangeLock changeLock = new BooleanChangeLock();
+    private final StoragePathProvider storagePathProvider = new StoragePathProvider();
+
+    @Before
+    public void setup() {
+        new File(storagePathProvider.getDirPath(StorageSubdirectory.FORMS)).mkdirs();
+        new File(storagePathProvider.getDirPath(StorageSubdirectory.CACHE)).mkdirs();
+
+        RobolectricHelpers.overrideAppDependencyModule(new AppDependencyModule() {
+            @Override
+            public FormsRepository providesFormRepository() {
+                return formsRepository;
+            }
+
+            @Override
+            public FormMediaLock providesFormMediaLock() {
+                return formMediaLock;
+            }
+
+            @Override
+            public ChangeLock providesFormsChangeLock() {
+                return changeLock;
+            }
+        });
+    }
+
+    @Test
+    public void whenFormDefIsCached_andThereIsNoMediaToImport_doesNotPrewarm() {
+        saveFormWithCache(FormUtils.createXForm("one", "1"));
+
+        assertThat(runTask(), equalTo(true));
+        assertThat(formMediaLock.timesLocked, equalTo(0));
+    }
+
+    @Test
+    public void whenMediaHasNotBeenImported_importsIt_andNotAgainUntilItChanges() {
+        saveFormWithCache(FormUtils.createXForm("one", "1"));
+        File mediaDir = getMediaDir(formsRepository.getAll().get(0));
+        writeCsv(new File(mediaDir, "fruits.csv"), "name,label\napple,Apple\n", 1_600_000_000_000L);
+
+        assertThat(runTask(), equalTo(true));
+        assertThat(formMediaLock.timesLocked, equalTo(1));
+
+        // opening the form writes databases to the media folder
+        mediaDir.setLastModified(System.currentTimeMillis() + 10_000);
+
+        assertThat(runTask(), equalTo(true));
+        assertThat(formMediaLock.timesLocked, equalTo(1));
+    }
+
+    @Test
+    public void whenCsvIsReplacedInPlace_importsMediaAgain() {
+        saveFormWithCache(FormUtils.createXForm("one", "1"));
+        File mediaDir = getMediaDir(formsRepository.getAll().get(0));
+        File csv = new File(mediaDir, "fruits.csv");
+        writeCsv(csv, "name,label\napple,Apple\n", 1_600_000_000_000L);
+        assertThat(runTask(), equalTo(true));
+
+        long mediaDirLastModified = mediaDir.lastModified();
+        writeCsv(csv, "name,label\npear,Pear\n", 1_600_000_010_000L);
+        mediaDir.setLastModified(mediaDirLastModified);
+
+        assertThat(runTask(), equalTo(true));
+        assertThat(formMediaLock.timesLocked, equalTo(2));
+    }
+
+    @Test
+    public void whenFormCantBeParsed_onlyTriesOnce() {
+        saveFormWithoutCache("not a form");
+
+        assertThat(runTask(), equalTo(true));
+        assertThat(formMediaLock.timesLocked, equalTo(1));
+
+        assertThat(runTask(), equalTo(true));
+        assertThat(formMediaLock.timesLocked, equalTo(1));
+    }
+
+    @Test
+    public void whenAFormIsBeingLoaded_doesNotPrewarm_andReturnsFalse() throws Exception {
+        saveFormWithCache(FormUtils.createXForm("one", "1"));
+        File mediaDir = getMediaDir(formsRepository.getAll().get(0));
+        writeCsv(new File(mediaDir, "fruits.csv"), "name,label\napple,Apple\n", 1_600_000_000_000L);
+        File mediaState = new File(mediaDir, ImportedMediaState.STATE_FILE_NAME);
+
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(1);
+        Thread formLoader = new Thread(() -> {
+            formMediaLock.lock();
+            locked.countDown();
+            try {
+                finished.await();
+            } catch (InterruptedException ignored) {
+                // Ignored
+            } finally {
+                formMediaLock.unlock();
+            }
+        });
+        formLoader.start();
+        locked.await();
+
+        try {
+            assertThat(runTask(), equalTo(false));
+            assertThat(mediaState.exists(), equalTo(false));
+        } finally {
+            finished.countDown();
+            formLoader.join();
+        }
+
+        assertThat(runTask(), equalTo(true));
+        assertThat(mediaState.exists(), equalTo(true));
+    }
+
+    @Test
+    public void whenChangeLockIsLocked_doesNotPrewarm_andReturnsFalse() {
+        saveFormWithCache(FormUtils.createXForm("one", "1"));
+        File mediaDir = getMediaDir(formsRepository.getAll().get(0));
+        writeCsv(new File(mediaDir, "fruits.csv"), "name,label\napple,Apple\n", 1_600_000_000_000L);
+        changeLock.lock();
+
+        assertThat(runTask(), equalTo(false));
+        assertThat(formMediaLock.timesLocked, equalTo(0));
+    }
+
+    private boolean runTask() {
+        return new PrewarmFormsTaskSpec().getTask(ApplicationProvider.getApplicationContext()).get();
+    }
+
+    private void saveFormWithCache(String xform) {
+        Form form = saveFormWithoutCache(xform);
+        File cacheFile = new File(storagePathProvider.getAbsoluteCacheFilePath(form.getJrCacheFilePath()));
+        FileUtils.write(cacheFile, "cached".getBytes());
+    }
+
+    private Form saveFormWithoutCache(String xform) {
+        Form.Builder builder = FormUtils.buildForm("one", "1", storagePathProvider.getDirPath(StorageSubdirectory.FORMS), xform);
+        Form form = builder.build();
+        getMediaDir(form).mkdirs();
+
+        formsRepository.save(builder
+                .jrCacheFilePath(new File(form.getFormFilePath()).getName() + ".formdef")
+                .build());
+        return formsRepository.getAll().get(0);
+    }
+
+    private static void writeCsv(File csv, String contents, long lastModified) {
+        FileUtils.write(csv, contents.getBytes());
+        csv.setLastModified(lastModified);
+    }
+
+    private File getMediaDir(Form form) {
+        return FileUtils.getFormMediaDir(new File(form.getFormFilePath()));
+    }
+
+    private static class CountingFormMediaLock extends FormMediaLock {
+
+        int timesLocked;
+
+        @Override
+        public boolean tryLock() {
+            boolean locked = super.tryLock();
+            if (locked) {
+                timesLocked++;
+            }
+            return locked;
+        }
+    }
+}
@@ -25,7 +25,9 @@ import static org.odk.collect.android.provider.FormsProviderAPI.FormsColumns.DAT
 import static org.odk.collect.android.provider.FormsProviderAPI.FormsColumns.DELETED_DATE;
 import static org.odk.collect.android.provider.FormsProviderAPI.FormsColumns.DESCRIPTION;
 import static org.odk.collect.android.provider.FormsProviderAPI.FormsColumns.DISPLAY_NAME;
+import static org.odk.collect.android.provider.FormsProviderAPI.FormsColumns.FORM_FILE_LAST_MODIFIED;
 import static org.odk.collect.android.provider.FormsProviderAPI.FormsColumns.FORM_FILE_PATH;
+import static org.odk.collect.android.provider.FormsProviderAPI.FormsColumns.FORM_FILE_SIZE;
 import static org.odk.collect.android.provider.FormsProviderAPI.FormsColumns.FORM_MEDIA_PATH;
 import static org.odk.collect.android.provider.FormsProviderAPI.FormsColumns.GEOMETRY_XPATH;
 import static org.odk.collect.android.provider.FormsProviderAPI.FormsColumns.JRCACHE_FILE_PATH;
@@ -42,13 +44,13 @@ public class FormDatabaseMigratorTest {
     public static final List<String> CURRENT_VERSION_COLUMNS = asList(_ID, DISPLAY_NAME, DESCRIPTION,
             JR_FORM_ID, JR_VERSION, MD5_HASH, DATE, FORM_MEDIA_PATH, FORM_FILE_PATH, LANGUAGE,
             SUBMISSION_URI, BASE64_RSA_PUBLIC_KEY, JRCACHE_FILE_PATH, AUTO_SEND, AUTO_DELETE,
-            GEOMETRY_XPATH, DELETED_DATE);
+            GEOMETRY_XPATH, DELETED_DATE, FORM_FILE_SIZE, FORM_FILE_LAST_MODIFIED);
 
     private SQLiteDatabase database;
 
     @Before
     public void setup() {
-        assertThat("Test expects different Forms DB version", DatabaseConstants.FORMS_DATABASE_VERSION, is(10));
+        assertThat("Test expects different Forms DB version", DatabaseConstants.FORMS_DATABASE_VERSION, is(11));
         database = SQLiteDatabase.create(null);
     }
 
@@ -57,6 +59,31 @@ public class FormDatabaseMigratorTest {
         database.close();
     }
 
+    @Test
+    public void onUpgrade_fromVersion10() {
+        createVersion10Database(database);
+        ContentValues contentValues = createVersion8Form();
+        contentValues.remove("lastDetectedFormVersionHash");
+        contentValues.put(DELETED_DATE, 123L);
+        database.insert(FORMS_TABLE_NAME, null, contentValues);
+
+        new FormDatabaseMigrator().onUpgrade(database, 10);
+
+        try (Cursor cursor = database.rawQuery("SELECT * FROM " + FORMS_TABLE_NAME + ";", new String[]{})) {
+            assertThat(cursor.getColumnCount(), is(19));
+            assertThat(cursor.getCount(), is(1));
+            assertThat(asList(cursor.getColumnNames()), is(CURRENT_VERSION_COLUMNS));
+
+            cursor.moveToFirst();
+            assertThat(cursor.getString(cursor.getColumnIndex(DISPLAY_NAME)), is(contentValues.getAsString(DISPLAY_NAME)));
+            assertThat(cursor.getString(cursor.getColumnIndex(MD5_HASH)), is(contentValues.getAsString(MD5_HASH)));
+            assertThat(cursor.getString(cursor.getColumnIndex(FORM_FILE_PATH)), is(contentValues.getAsString(FORM_FILE_PATH)));
+            assertThat(cursor.getLong(cursor.getColumnIndex(DELETED_DATE)), is(123L));
+            assertThat(cursor.isNull(cursor.getColumnIndex(FORM_FILE_SIZE)), is(true));
+            assertThat(cursor.isNull(cursor.getColumnIndex(FORM_FILE_LAST_MODIFIED)), is(true));
+        }
+    }
+
     @Test
     public void onUpgrade_fromVersion9() {
         createVersion9Database(database);
@@ -66,7 +93,7 @@ public class FormDatabaseMigratorTest {
         new FormDatabaseMigrator().onUpgrade(database, 9);
 
         try (Cursor cursor = database.rawQuery("SELECT * FROM " + FORMS_TABLE_NAME + ";", new String[]{})) {
-            assertThat(cursor.getColumnCount(), is(17));
+            assertThat(cursor.getColumnCount(), is(19));
             assertThat(cursor.getCount(), is(1));
 
             cursor.moveToFirst();
@@ -98,7 +125,7 @@ public class FormDatabaseMigratorTest {
         new FormDatabaseMigrator().onUpgrade(database, 8);
 
         try (Cursor cursor = database.rawQuery("SELECT * FROM " + FORMS_TABLE_NAME + ";", new String[]{})) {
-            assertThat(cursor.getColumnCount(), is(17));
+            assertThat(cursor.getColumnCount(), is(19));
             assertThat(cursor.getCount(), is(1));
 
             cursor.moveToFirst();
@@ -130,7 +157,7 @@ public class FormDatabaseMigratorTest {
         new FormDatabaseMigrator().onUpgrade(database, 7);
 
         try (Cursor cursor = database.rawQuery("SELECT * FROM " + FORMS_TABLE_NAME + ";", new String[]{})) {
-            assertThat(cursor.getColumnCount(), is(17));
+            assertThat(cursor.getColumnCount(), is(19));
             assertThat(cursor.getCount(), is(1));
 
             cursor.moveToFirst();
@@ -165,7 +192,7 @@ public class FormDatabaseMigratorTest {
         formDatabaseMigrator.onDowngrade(database);
 
         try (Cursor cursor = database.rawQuery("SELECT * FROM " + FORMS_TABLE_NAME + ";", new String[]{})) {
-            assertThat(cursor.getColumnCount(), is(17));
+            assertThat(cursor.getColumnCount(), is(19));
             assertThat(cursor.getCount(), is(0));
             assertThat(asList(cursor.getColumnNames()), is(CURRENT_VERSION_COLUMNS));
         }
@@ -200,7 +227,7 @@ public class FormDatabaseMigratorTest {
         formDatabaseMigrator.onDowngrade(database);
 
         try (Cursor cursor = database.rawQuery("SELECT * FROM " + FORMS_TABLE_NAME + ";", new String[]{})) {
-            assertThat(cursor.getColumnCount(), is(17));
+            assertThat(cursor.getColumnCount(), is(19));
             assertThat(cursor.getCount(), is(0));
             assertThat(asList(cursor.getColumnNames()), is(CURRENT_VERSION_COLUMNS));
         }
@@ -329,4 +356,25 @@ public class FormDatabaseMigratorTest {
                 + GEOMETRY_XPATH + " text, "
                 + "deleted" + " boolean default(0));");
     }
-}
\ No newline at end of file
+
+    private void createVersion10Database(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + FORMS_TABLE_NAME + " ("
+                + _ID + " integer primary key, "
+                + DISPLAY_NAME + " text not null, "
+                + DESCRIPTION + " text, "
+                + JR_FORM_ID + " text not null, "
+                + JR_VERSION + " text, "
+                + MD5_HASH + " text not null, "
+                + DATE + " integer not null, " // milliseconds
+                + FORM_MEDIA_PATH + " text not null, "
+                + FORM_FILE_PATH + " text not null, "
+                + LANGUAGE + " text, "
+                + SUBMISSION_URI + " text, "
+                + BASE64_RSA_PUBLIC_KEY + " text, "
+                + JRCACHE_FILE_PATH + " text not null, "
+                + AUTO_SEND + " text, "
+                + AUTO_DELETE + " text, "
+                + GEOMETRY_XPATH + " text, "
+                + DELETED_DATE + " integer);");
+    }
+}
@@ -0,0 +1,87 @@
+package org.odk.collect.android.external;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Environment;
+
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.odk.collect.android.storage.StorageInitializer;
+import org.odk.collect.android.storage.StoragePathProvider;
+import org.odk.collect.android.storage.StorageSubdirectory;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowEnvironment;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.odk.collect.android.external.ExternalDataUtil.EXTERNAL_DATA_TABLE_NAME;
+import static org.odk.collect.android.external.ExternalDataUtil.SORT_COLUMN_NAME;
+
+/**
+ * Imports a generated choices CSV and reports the import rate. Robolectric's SQLite is slower
+ * than a device's so the numbers are only useful for comparing changes to the import path.
+ */
+@Ignore("Imports 50k rows so it takes a while. Run manually when changing how external data is imported.")
+@RunWith(RobolectricTestRunner.class)
+public class ExternalDataImportBenchmarkTest {
+
+    private static final int ROWS = 50_000;
+
+    private File csvFile;
+    private File dbFile;
+
+    @Before
+    public void setUp() throws IOException {
+        ShadowEnvironment.setExternalStorageState(Environment.MEDIA_MOUNTED);
+        new StorageInitializer().createOdkDirsOnStorage();
+
+        File mediaDir = new File(new StoragePathProvider().getDirPath(StorageSubdirectory.FORMS) + File.separator + "benchmark-media");
+        mediaDir.mkdir();
+        csvFile = new File(mediaDir, "fe-choices.csv");
+        dbFile = new File(mediaDir, "fe-choices.db");
+
+        try (Writer out = new BufferedWriter(new FileWriter(csvFile))) {
+            out.write("name,label,district_key,region\n");
+            for (int i = 0; i < ROWS; i++) {
+                out.write("choice" + i + ",\"Choice " + i + ", label\"," + (i % 100) + ",region" + (i % 7) + "\n");
+            }
+        }
+    }
+
+    @Test
+    public void doImport_importsEveryRowInOrder() {
+        Map<String, File> externalDataMap = new HashMap<>();
+        externalDataMap.put("fe-choices", csvFile);
+
+        long start = System.currentTimeMillis();
+        new ExternalDataReaderImpl(null).doImport(externalDataMap);
+        long elapsed = Math.max(1, System.currentTimeMillis() - start);
+        System.out.printf("Imported %d rows in %d ms (%d rows/second)%n", ROWS, elapsed, ROWS * 1000L / elapsed);
+
+        SQLiteDatabase db = SQLiteDatabase.openDatabase(dbFile.getAbsolutePath(), null, SQLiteDatabase.OPEN_READONLY);
+        try (Cursor cursor = db.rawQuery("SELECT c_name, c_label, " + SORT_COLUMN_NAME + " FROM " + EXTERNAL_DATA_TABLE_NAME
+                + " ORDER BY " + SORT_COLUMN_NAME, null)) {
+            assertThat(cursor.getCount(), is(ROWS));
+
+            cursor.moveToLast();
+            assertThat(cursor.getString(0), is("choice" + (ROWS - 1)));
+            assertThat(cursor.getString(1), is("Choice " + (ROWS - 1) + ", label"));
+            assertThat(cursor.getInt(2), is(ROWS));
+        }
+
+        try (Cursor cursor = db.rawQuery("SELECT name FROM sqlite_master WHERE type = 'index' AND name = 'district_key_idx'", null)) {
+            assertThat(cursor.getCount(), is(1));
+        }
+        db.close();
+    }
+}
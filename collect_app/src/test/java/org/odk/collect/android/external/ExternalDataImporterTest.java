@@ -0,0 +1,120 @@
+package org.odk.collect.android.external;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Environment;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.odk.collect.android.fastexternalitemset.ItemsetDbAdapter;
+import org.odk.collect.android.storage.StorageInitializer;
+import org.odk.collect.android.storage.StoragePathProvider;
+import org.odk.collect.android.storage.StorageSubdirectory;
+import org.odk.collect.android.utilities.FileUtils;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowEnvironment;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+public class ExternalDataImporterTest {
+
+    private File mediaDir;
+    private File itemsetsCsv;
+    private String pathHash;
+    private ItemsetDbAdapter ida;
+
+    @Before
+    public void setUp() throws IOException {
+        ShadowEnvironment.setExternalStorageState(Environment.MEDIA_MOUNTED);
+        new StorageInitializer().createOdkDirsOnStorage();
+
+        mediaDir = new File(new StoragePathProvider().getDirPath(StorageSubdirectory.FORMS) + File.separator + "itemsets-media");
+        mediaDir.mkdir();
+        itemsetsCsv = new File(mediaDir, ExternalDataImporter.ITEMSETS_CSV);
+        pathHash = ItemsetDbAdapter.getMd5FromString(itemsetsCsv.getAbsolutePath());
+        writeItemsets("list_name,name,label\nstates,al,Alabama\nstates,ak,Alaska\n");
+
+        ida = new ItemsetDbAdapter().open();
+    }
+
+    @After
+    public void tearDown() {
+        ida.close();
+    }
+
+    @Test
+    public void importItemsets_addsEveryRow() {
+        assertThat(new ExternalDataImporter(null).importItemsets(mediaDir), is(nullValue()));
+        assertThat(countRows(), is(2));
+    }
+
+    @Test
+    public void importItemsets_recordsFileHash() {
+        new ExternalDataImporter(null).importItemsets(mediaDir);
+
+        try (Cursor cursor = ida.getItemsets(itemsetsCsv.getAbsolutePath())) {
+            cursor.moveToFirst();
+            assertThat(cursor.getString(cursor.getColumnIndex(ItemsetDbAdapter.KEY_ITEMSET_HASH)),
+                    is(FileUtils.getMd5Hash(itemsetsCsv)));
+        }
+    }
+
+    @Test
+    public void importItemsets_doesNotReimport_whenFileIsUnchanged() {
+        new ExternalDataImporter(null).importItemsets(mediaDir);
+        purgeRows();
+
+        new ExternalDataImporter(null).importItemsets(mediaDir);
+        assertThat(countRows(), is(0));
+    }
+
+    @Test
+    public void importItemsets_doesNotReimport_whenFileIsOnlyTouched() {
+        new ExternalDataImporter(null).importItemsets(mediaDir);
+        purgeRows();
+
+        itemsetsCsv.setLastModified(itemsetsCsv.lastModified() + 10_000);
+        new ExternalDataImporter(null).importItemsets(mediaDir);
+        assertThat(countRows(), is(0));
+    }
+
+    @Test
+    public void importItemsets_reimports_whenFileChanges() throws IOException {
+        new ExternalDataImporter(null).importItemsets(mediaDir);
+
+        writeItemsets("list_name,name,label\nstates,al,Alabama\nstates,ak,Alaska\nstates,az,Arizona\n");
+        new ExternalDataImporter(null).importItemsets(mediaDir);
+        assertThat(countRows(), is(3));
+    }
+
+    private void writeItemsets(String contents) throws IOException {
+        try (Writer out = new BufferedWriter(new FileWriter(itemsetsCsv))) {
+            out.write(contents);
+        }
+    }
+
+    private int countRows() {
+        try (Cursor cursor = ida.query(pathHash, null, null)) {
+            return cursor.getCount();
+        }
+    }
+
+    private void purgeRows() {
+        String dbPath = new StoragePathProvider().getDirPath(StorageSubdirectory.METADATA) + File.separator + ItemsetDbAdapter.DATABASE_NAME;
+        SQLiteDatabase db = SQLiteDatabase.openDatabase(dbPath, null, SQLiteDatabase.OPEN_READWRITE);
+        db.delete("itemset_" + pathHash, null, null);
+        db.close();
+        assertThat(countRows(), is(0));
+    }
+}
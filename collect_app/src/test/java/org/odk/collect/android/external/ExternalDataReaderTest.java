@@ -8,6 +8,7 @@ import org.apache.commons.io.IOUtils;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.odk.collect.android.exception.ExternalDataException;
 import org.odk.collect.android.storage.StorageInitializer;
 import org.odk.collect.android.storage.StoragePathProvider;
 import org.odk.collect.android.storage.StorageSubdirectory;
@@ -32,6 +33,7 @@ import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
 import static org.odk.collect.android.external.ExternalDataUtil.COLUMN_DATASET_FILENAME;
 import static org.odk.collect.android.external.ExternalDataUtil.COLUMN_MD5_HASH;
 import static org.odk.collect.android.external.ExternalDataUtil.EXTERNAL_DATA_TABLE_NAME;
@@ -215,6 +217,51 @@ public class ExternalDataReaderTest {
         assertThat("expected zero rows of data after reimporting unchanged file", cursor.getCount(), is(0));
     }
 
+    @Test
+    public void doImport_importsEveryDataSet_whenThereAreSeveral() throws IOException {
+        Map<String, File> externalDataMap = new HashMap<>(formDefToCsvMedia);
+        File[] otherDbFiles = new File[5];
+        for (int i = 0; i < otherDbFiles.length; i++) {
+            File otherCsvFile = new File(csvFile.getParentFile(), "dataset" + i + ".csv");
+            try (Writer out = new BufferedWriter(new FileWriter(otherCsvFile))) {
+                out.write("name,label\na,A\nb,B");
+            }
+            externalDataMap.put("dataset" + i, otherCsvFile);
+            otherDbFiles[i] = new File(csvFile.getParentFile(), "dataset" + i + ".db");
+        }
+
+        new ExternalDataReaderImpl(null).doImport(externalDataMap);
+
+        SQLiteDatabase db = SQLiteDatabase.openDatabase(dbFile.getAbsolutePath(), null, SQLiteDatabase.OPEN_READONLY);
+        assertThat(db.rawQuery(SELECT_ALL_DATA_QUERY, null).getCount(), is(3));
+        db.close();
+
+        for (File otherDbFile : otherDbFiles) {
+            db = SQLiteDatabase.openDatabase(otherDbFile.getAbsolutePath(), null, SQLiteDatabase.OPEN_READONLY);
+            assertThat(db.rawQuery(SELECT_ALL_DATA_QUERY, null).getCount(), is(2));
+            db.close();
+        }
+    }
+
+    @Test
+    public void doImport_deletesDatabaseAndThrows_whenDataSetCannotBeImported() throws IOException {
+        File badCsvFile = new File(csvFile.getParentFile(), "bad.csv");
+        try (Writer out = new BufferedWriter(new FileWriter(badCsvFile))) {
+            out.write("name,sortby\na,1\nb,not a number");
+        }
+        File badDbFile = new File(csvFile.getParentFile(), "bad.db");
+
+        Map<String, File> externalDataMap = new HashMap<>(formDefToCsvMedia);
+        externalDataMap.put("bad", badCsvFile);
+
+        try {
+            new ExternalDataReaderImpl(null).doImport(externalDataMap);
+            fail("Expected ExternalDataException");
+        } catch (ExternalDataException e) {
+            assertThat(badDbFile.exists(), is(false));
+        }
+    }
+
     private static Map<String, File> makeExternalDataMap() {
         Map<String, File> externalDataMap = new HashMap<>();
         externalDataMap.put(SIMPLE_SEARCH_EXTERNAL_CSV_NAME, csvFile);
@@ -0,0 +1,99 @@
+package org.odk.collect.android.external.handler;
+
+import android.os.Environment;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.odk.collect.android.external.ExternalDataManager;
+import org.odk.collect.android.external.ExternalDataManagerImpl;
+import org.odk.collect.android.external.ExternalDataReaderImpl;
+import org.odk.collect.android.storage.StorageInitializer;
+import org.odk.collect.android.storage.StoragePathProvider;
+import org.odk.collect.android.storage.StorageSubdirectory;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowEnvironment;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+public class ExternalDataHandlerPullTest {
+
+    private File csvFile;
+    private File dbFile;
+    private ExternalDataManager externalDataManager;
+    private ExternalDataHandlerPull handler;
+
+    @Before
+    public void setUp() throws IOException {
+        ShadowEnvironment.setExternalStorageState(Environment.MEDIA_MOUNTED);
+        new StorageInitializer().createOdkDirsOnStorage();
+
+        File mediaDir = new File(new StoragePathProvider().getDirPath(StorageSubdirectory.FORMS) + File.separator + "pulldata-media");
+        mediaDir.mkdir();
+        csvFile = new File(mediaDir, "fruits.csv");
+        dbFile = new File(mediaDir, "fruits.db");
+        importFruits("name_key,name\nmango,Mango\noranges,Oranges\n");
+
+        externalDataManager = new ExternalDataManagerImpl(mediaDir);
+        handler = new ExternalDataHandlerPull(externalDataManager);
+    }
+
+    @After
+    public void tearDown() {
+        externalDataManager.close();
+    }
+
+    @Test
+    public void eval_returnsMatchingValue() {
+        assertThat(pull("mango"), is("Mango"));
+        assertThat(pull("durian"), is(""));
+    }
+
+    @Test
+    public void eval_onlyQueriesDatabaseOnce_forRepeatedLookups() {
+        pull("mango");
+        pull("mango");
+        pull("mango");
+        pull("durian");
+        pull("durian");
+
+        assertThat(handler.getCacheMissCount(), is(2));
+        assertThat(handler.getCacheHitCount(), is(3));
+    }
+
+    @Test
+    public void eval_returnsNewValue_afterDatabaseIsRebuilt() throws IOException {
+        assertThat(pull("mango"), is("Mango"));
+
+        externalDataManager.close();
+        importFruits("name_key,name\nmango,Ripe mango\noranges,Oranges\n");
+        dbFile.setLastModified(dbFile.lastModified() + 10_000);
+
+        assertThat(pull("mango"), is("Ripe mango"));
+    }
+
+    private String pull(String key) {
+        return (String) handler.eval(new Object[]{"fruits", "name", "name_key", key}, null);
+    }
+
+    private void importFruits(String contents) throws IOException {
+        try (Writer out = new BufferedWriter(new FileWriter(csvFile))) {
+            out.write(contents);
+        }
+
+        Map<String, File> externalDataMap = new HashMap<>();
+        externalDataMap.put("fruits", csvFile);
+        new ExternalDataReaderImpl(null).doImport(externalDataMap);
+    }
+}
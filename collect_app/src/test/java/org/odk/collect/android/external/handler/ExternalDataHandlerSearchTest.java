@@ -0,0 +1,119 @@
+package org.odk.collect.android.external.handler;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Environment;
+
+import org.javarosa.core.model.SelectChoice;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.odk.collect.android.external.ExternalDataManager;
+import org.odk.collect.android.external.ExternalDataManagerImpl;
+import org.odk.collect.android.external.ExternalDataReaderImpl;
+import org.odk.collect.android.external.ExternalDataUtil;
+import org.odk.collect.android.storage.StorageInitializer;
+import org.odk.collect.android.storage.StoragePathProvider;
+import org.odk.collect.android.storage.StorageSubdirectory;
+import org.odk.collect.android.utilities.SQLiteUtils;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowEnvironment;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+public class ExternalDataHandlerSearchTest {
+
+    private File mediaDir;
+    private ExternalDataManager externalDataManager;
+
+    @Before
+    public void setUp() throws IOException {
+        ShadowEnvironment.setExternalStorageState(Environment.MEDIA_MOUNTED);
+        new StorageInitializer().createOdkDirsOnStorage();
+
+        mediaDir = new File(new StoragePathProvider().getDirPath(StorageSubdirectory.FORMS) + File.separator + "search-media");
+        mediaDir.mkdir();
+        importDataSet("fruits", "name_key,name,name_search\n"
+                + "mango,Mango,Mango\n"
+                + "green_mango,Green mango,Green mango\n"
+                + "orange,Orange,Orange\n"
+                + "blood_orange,Blood orange,Blood orange\n");
+
+        externalDataManager = new ExternalDataManagerImpl(mediaDir);
+    }
+
+    @After
+    public void tearDown() {
+        externalDataManager.close();
+    }
+
+    @Test
+    public void import_buildsFullTextIndex_forSearchColumns() {
+        SQLiteDatabase db = SQLiteDatabase.openDatabase(new File(mediaDir, "fruits.db").getAbsolutePath(), null, SQLiteDatabase.OPEN_READONLY);
+        assertThat(SQLiteUtils.getColumnNames(db, ExternalDataUtil.EXTERNAL_DATA_FULL_TEXT_TABLE_NAME), is(asList("c_name_search")));
+        db.close();
+    }
+
+    @Test
+    public void containsSearch_onIndexedColumn_matchesWordsStartingWithValue() {
+        assertThat(search("contains", "name_search", "mang"), is(asList("mango", "green_mango")));
+        assertThat(search("contains", "name_search", "ORANGE"), is(asList("orange", "blood_orange")));
+    }
+
+    @Test
+    public void startsWithSearch_onIndexedColumn_matchesFirstWordOnly() {
+        assertThat(search("startsWith", "name_search", "mang"), is(asList("mango")));
+    }
+
+    @Test
+    public void searches_thatCannotUseIndex_fallBackToLike() {
+        assertThat(search("contains", "name", "ang"), is(asList("mango", "green_mango", "orange", "blood_orange")));
+        assertThat(search("contains", "name_search", "n man"), is(asList("green_mango")));
+        assertThat(search("endsWith", "name_search", "orange"), is(asList("orange", "blood_orange")));
+    }
+
+    @Test
+    public void import_doesNotBuildFullTextIndex_whenThereAreNoSearchColumns() throws IOException {
+        importDataSet("plain", "name_key,name\nmango,Mango\n");
+
+        SQLiteDatabase db = SQLiteDatabase.openDatabase(new File(mediaDir, "plain.db").getAbsolutePath(), null, SQLiteDatabase.OPEN_READONLY);
+        assertThat(SQLiteUtils.doesTableExist(db, ExternalDataUtil.EXTERNAL_DATA_FULL_TEXT_TABLE_NAME), is(false));
+        db.close();
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> search(String searchType, String queriedColumn, String value) {
+        ExternalDataHandlerSearch handler = new ExternalDataHandlerSearch(externalDataManager, "name", "name_key", null);
+        List<SelectChoice> choices = (List<SelectChoice>) handler.eval(new Object[]{"fruits", searchType, queriedColumn, value}, null);
+
+        List<String> values = new ArrayList<>();
+        for (SelectChoice choice : choices) {
+            values.add(choice.getValue());
+        }
+        return values;
+    }
+
+    private void importDataSet(String name, String contents) throws IOException {
+        File csvFile = new File(mediaDir, name + ".csv");
+        try (Writer out = new BufferedWriter(new FileWriter(csvFile))) {
+            out.write(contents);
+        }
+
+        Map<String, File> externalDataMap = new HashMap<>();
+        externalDataMap.put(name, csvFile);
+        new ExternalDataReaderImpl(null).doImport(externalDataMap);
+    }
+}
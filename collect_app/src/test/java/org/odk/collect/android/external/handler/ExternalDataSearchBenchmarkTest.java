@@ -0,0 +1,110 @@
+package org.odk.collect.android.external.handler;
+
+import android.os.Environment;
+
+import org.javarosa.core.model.SelectChoice;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.odk.collect.android.external.ExternalDataManager;
+import org.odk.collect.android.external.ExternalDataManagerImpl;
+import org.odk.collect.android.external.ExternalDataReaderImpl;
+import org.odk.collect.android.storage.StorageInitializer;
+import org.odk.collect.android.storage.StoragePathProvider;
+import org.odk.collect.android.storage.StorageSubdirectory;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowEnvironment;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Compares search() over a 500k-row data set with LIKE and with the full-text index. The same
+ * values are imported into a plain column and an indexed (_search) column.
+ */
+@Ignore("Imports 500k rows so it takes minutes. Run manually when changing how search() queries.")
+@RunWith(RobolectricTestRunner.class)
+public class ExternalDataSearchBenchmarkTest {
+
+    private static final int ROWS = 500_000;
+    private static final int SEARCHES = 20;
+    private static final String[] WORDS = {"alpha", "bravo", "charlie", "delta", "echo", "foxtrot", "golf", "hotel"};
+
+    private ExternalDataManager externalDataManager;
+
+    @Before
+    public void setUp() throws IOException {
+        ShadowEnvironment.setExternalStorageState(Environment.MEDIA_MOUNTED);
+        new StorageInitializer().createOdkDirsOnStorage();
+
+        File mediaDir = new File(new StoragePathProvider().getDirPath(StorageSubdirectory.FORMS) + File.separator + "search-benchmark-media");
+        mediaDir.mkdir();
+        File csvFile = new File(mediaDir, "places.csv");
+
+        try (Writer out = new BufferedWriter(new FileWriter(csvFile))) {
+            out.write("name_key,name,name_search\n");
+            for (int i = 0; i < ROWS; i++) {
+                String name = WORDS[i % WORDS.length] + " " + WORDS[(i / WORDS.length) % WORDS.length] + " " + i;
+                out.write("place" + i + "," + name + "," + name + "\n");
+            }
+        }
+
+        Map<String, File> externalDataMap = new HashMap<>();
+        externalDataMap.put("places", csvFile);
+        new ExternalDataReaderImpl(null).doImport(externalDataMap);
+
+        externalDataManager = new ExternalDataManagerImpl(mediaDir);
+    }
+
+    @After
+    public void tearDown() {
+        externalDataManager.close();
+    }
+
+    @Test
+    public void compareLikeAndFullTextSearch() {
+        for (String searchType : new String[]{"contains", "startsWith"}) {
+            int likeResults = 0;
+            int fullTextResults = 0;
+
+            long likeTime = 0;
+            long fullTextTime = 0;
+            for (int i = 0; i < SEARCHES; i++) {
+                String value = "12345" + (i % 10);
+
+                long start = System.nanoTime();
+                likeResults += search(searchType, "name", value).size();
+                likeTime += System.nanoTime() - start;
+
+                start = System.nanoTime();
+                fullTextResults += search(searchType, "name_search", value).size();
+                fullTextTime += System.nanoTime() - start;
+            }
+
+            System.out.printf("%s over %d rows: LIKE %.1f ms/search, full-text %.1f ms/search%n", searchType, ROWS,
+                    likeTime / 1e6 / SEARCHES, fullTextTime / 1e6 / SEARCHES);
+
+            if (searchType.equals("contains")) {
+                // each value is a whole word so both find the same rows
+                assertThat(fullTextResults, is(likeResults));
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<SelectChoice> search(String searchType, String queriedColumn, String value) {
+        ExternalDataHandlerSearch handler = new ExternalDataHandlerSearch(externalDataManager, "name", "name_key", null);
+        return (List<SelectChoice>) handler.eval(new Object[]{"places", searchType, queriedColumn, value}, null);
+    }
+}
@@ -0,0 +1,204 @@
+package org.odk.collect.android.formentry;
+
+import com.google.common.io.Files;
+
+import org.javarosa.core.model.FormIndex;
+import org.javarosa.core.model.data.IntegerData;
+import org.javarosa.core.model.data.StringData;
+import org.javarosa.form.api.FormEntryController;
+import org.javarosa.form.api.FormEntryModel;
+import org.javarosa.form.api.FormEntryPrompt;
+import org.javarosa.xform.util.XFormUtils;
+import org.junit.Test;
+import org.odk.collect.android.javarosawrapper.FormController;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+
+public class FieldListSnapshotTest {
+
+    @Test
+    public void whenNothingChanges_noQuestionsAreChanged() throws Exception {
+        FormController formController = createFieldListFormController(FIELD_LIST);
+
+        FieldListSnapshot before = FieldListSnapshot.take(formController);
+        FieldListSnapshot after = FieldListSnapshot.take(formController);
+
+        assertThat(before.getQuestionsChangedIn(after), empty());
+    }
+
+    @Test
+    public void whenAnswerChanges_onlyQuestionsThatDependOnItAreChanged() throws Exception {
+        FormController formController = createFieldListFormController(FIELD_LIST);
+        Map<String, FormIndex> indexes = getIndexes(formController);
+
+        FieldListSnapshot before = FieldListSnapshot.take(formController);
+        formController.answerQuestion(indexes.get("age"), new IntegerData(20));
+        FieldListSnapshot after = FieldListSnapshot.take(formController);
+
+        assertThat(before.getQuestionsChangedIn(after), containsInAnyOrder(indexes.get("age"), indexes.get("age_label")));
+    }
+
+    @Test
+    public void whenQuestionBecomesIrrelevant_itIsChanged() throws Exception {
+        FormController formController = createFieldListFormController(FIELD_LIST);
+        Map<String, FormIndex> indexes = getIndexes(formController);
+
+        FieldListSnapshot before = FieldListSnapshot.take(formController);
+        formController.answerQuestion(indexes.get("age"), new IntegerData(10));
+        FieldListSnapshot after = FieldListSnapshot.take(formController);
+
+        assertThat(before.getQuestionsChangedIn(after), containsInAnyOrder(indexes.get("age"),
+                indexes.get("age_label"), indexes.get("occupation")));
+    }
+
+    @Test
+    public void whenValueReferencedByQueryChanges_questionWithQueryIsChanged() throws Exception {
+        FormController formController = createFieldListFormController(FIELD_LIST);
+        Map<String, FormIndex> indexes = getIndexes(formController);
+
+        FieldListSnapshot before = FieldListSnapshot.take(formController);
+        formController.answerQuestion(indexes.get("state"), new StringData("texas"));
+        FieldListSnapshot after = FieldListSnapshot.take(formController);
+
+        assertThat(before.getQuestionsChangedIn(after), containsInAnyOrder(indexes.get("state"), indexes.get("city")));
+    }
+
+    @Test
+    public void whenValueNotReferencedByQueryChanges_questionWithQueryIsNotChanged() throws Exception {
+        FormController formController = createFieldListFormController(FIELD_LIST);
+        Map<String, FormIndex> indexes = getIndexes(formController);
+
+        FieldListSnapshot before = FieldListSnapshot.take(formController);
+        formController.answerQuestion(indexes.get("name"), new StringData("Bob"));
+        FieldListSnapshot after = FieldListSnapshot.take(formController);
+
+        assertThat(before.getQuestionsChangedIn(after), containsInAnyOrder(indexes.get("name")));
+    }
+
+    @Test
+    public void whenQueryCantBeParsed_questionWithQueryIsChanged_andOtherQuestionsAreComparedAsUsual() throws Exception {
+        FormController formController = createFieldListFormController(FIELD_LIST_WITH_BROKEN_QUERY);
+        Map<String, FormIndex> indexes = getIndexes(formController);
+
+        FieldListSnapshot before = FieldListSnapshot.take(formController);
+        formController.answerQuestion(indexes.get("name"), new StringData("Bob"));
+        FieldListSnapshot after = FieldListSnapshot.take(formController);
+
+        assertThat(before.getQuestionsChangedIn(after), containsInAnyOrder(indexes.get("name"), indexes.get("city")));
+    }
+
+    @Test
+    public void whenQueryCantBeParsed_andNothingChanges_onlyQuestionWithQueryIsChanged() throws Exception {
+        FormController formController = createFieldListFormController(FIELD_LIST_WITH_BROKEN_QUERY);
+        Map<String, FormIndex> indexes = getIndexes(formController);
+
+        FieldListSnapshot before = FieldListSnapshot.take(formController);
+        FieldListSnapshot after = FieldListSnapshot.take(formController);
+
+        assertThat(before.getQuestionsChangedIn(after), containsInAnyOrder(indexes.get("city")));
+    }
+
+    private static FormController createFieldListFormController(String xform) throws Exception {
+        ByteArrayInputStream inputStream = new ByteArrayInputStream(xform.getBytes());
+        FormEntryModel fem = new FormEntryModel(XFormUtils.getFormFromInputStream(inputStream));
+        FormController formController = new FormController(Files.createTempDir(), new FormEntryController(fem), File.createTempFile("instance", ""));
+
+        formController.stepToNextScreenEvent();
+        assertThat(formController.getEvent(), equalTo(FormEntryController.EVENT_GROUP));
+        return formController;
+    }
+
+    private static Map<String, FormIndex> getIndexes(FormController formController) throws Exception {
+        Map<String, FormIndex> indexes = new HashMap<>();
+        for (FormEntryPrompt question : formController.getQuestionPrompts()) {
+            indexes.put(question.getIndex().getReference().getNameLast(), question.getIndex());
+        }
+        return indexes;
+    }
+
+    private static final String FIELD_LIST = "<?xml version=\"1.0\"?>\n" +
+            "<h:html xmlns=\"http://www.w3.org/2002/xforms\" xmlns:h=\"http://www.w3.org/1999/xhtml\">\n" +
+            "    <h:head>\n" +
+            "        <h:title>Field list</h:title>\n" +
+            "        <model>\n" +
+            "            <instance>\n" +
+            "                <data id=\"field-list\">\n" +
+            "                    <group>\n" +
+            "                        <name/>\n" +
+            "                        <age/>\n" +
+            "                        <age_label/>\n" +
+            "                        <occupation/>\n" +
+            "                        <state/>\n" +
+            "                        <city/>\n" +
+            "                    </group>\n" +
+            "                </data>\n" +
+            "            </instance>\n" +
+            "            <bind nodeset=\"/data/group/name\" type=\"string\"/>\n" +
+            "            <bind nodeset=\"/data/group/age\" type=\"int\"/>\n" +
+            "            <bind nodeset=\"/data/group/age_label\" type=\"string\" readonly=\"true()\"/>\n" +
+            "            <bind nodeset=\"/data/group/occupation\" type=\"string\" relevant=\"not(/data/group/age &lt; 16)\"/>\n" +
+            "            <bind nodeset=\"/data/group/state\" type=\"string\"/>\n" +
+            "            <bind nodeset=\"/data/group/city\" type=\"string\"/>\n" +
+            "        </model>\n" +
+            "    </h:head>\n" +
+            "    <h:body>\n" +
+            "        <group ref=\"/data/group\" appearance=\"field-list\">\n" +
+            "            <input ref=\"/data/group/name\">\n" +
+            "                <label>Name</label>\n" +
+            "            </input>\n" +
+            "            <input ref=\"/data/group/age\">\n" +
+            "                <label>Age</label>\n" +
+            "            </input>\n" +
+            "            <input ref=\"/data/group/age_label\">\n" +
+            "                <label>You are <output value=\"/data/group/age\"/></label>\n" +
+            "            </input>\n" +
+            "            <input ref=\"/data/group/occupation\">\n" +
+            "                <label>Occupation</label>\n" +
+            "            </input>\n" +
+            "            <input ref=\"/data/group/state\">\n" +
+            "                <label>State</label>\n" +
+            "            </input>\n" +
+            "            <input ref=\"/data/group/city\" query=\"instance('cities')/root/item[state= /data/group/state ]\">\n" +
+            "                <label>City</label>\n" +
+            "            </input>\n" +
+            "        </group>\n" +
+            "    </h:body>\n" +
+            "</h:html>\n";
+
+    private static final String FIELD_LIST_WITH_BROKEN_QUERY = "<?xml version=\"1.0\"?>\n" +
+            "<h:html xmlns=\"http://www.w3.org/2002/xforms\" xmlns:h=\"http://www.w3.org/1999/xhtml\">\n" +
+            "    <h:head>\n" +
+            "        <h:title>Field list</h:title>\n" +
+            "        <model>\n" +
+            "            <instance>\n" +
+            "                <data id=\"field-list\">\n" +
+            "                    <group>\n" +
+            "                        <name/>\n" +
+            "                        <city/>\n" +
+            "                    </group>\n" +
+            "                </data>\n" +
+            "            </instance>\n" +
+            "            <bind nodeset=\"/data/group/name\" type=\"string\"/>\n" +
+            "            <bind nodeset=\"/data/group/city\" type=\"string\"/>\n" +
+            "        </model>\n" +
+            "    </h:head>\n" +
+            "    <h:body>\n" +
+            "        <group ref=\"/data/group\" appearance=\"field-list\">\n" +
+            "            <input ref=\"/data/group/name\">\n" +
+            "                <label>Name</label>\n" +
+            "            </input>\n" +
+            "            <input ref=\"/data/group/city\" query=\"instance('cities')/root/item[state=\">\n" +
+            "                <label>City</label>\n" +
+            "            </input>\n" +
+            "        </group>\n" +
+            "    </h:body>\n" +
+            "</h:html>\n";
+}
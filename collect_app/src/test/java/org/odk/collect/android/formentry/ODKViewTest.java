@@ -0,0 +1,127 @@
+package org.odk.collect.android.formentry;
+
+import androidx.lifecycle.MutableLiveData;
+
+import org.javarosa.core.model.Constants;
+import org.javarosa.form.api.FormEntryPrompt;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.odk.collect.android.audio.AudioHelper;
+import org.odk.collect.android.formentry.media.AudioHelperFactory;
+import org.odk.collect.android.injection.config.AppDependencyModule;
+import org.odk.collect.android.support.MockFormEntryPromptBuilder;
+import org.odk.collect.android.support.RobolectricHelpers;
+import org.odk.collect.android.support.TestScreenContextActivity;
+import org.odk.collect.android.utilities.QuestionMediaManager;
+import org.odk.collect.android.widgets.BarcodeWidget;
+import org.odk.collect.android.widgets.QuestionWidget;
+import org.odk.collect.android.widgets.support.FakeWaitingForDataRegistry;
+import org.odk.collect.android.widgets.utilities.AudioPlayer;
+import org.odk.collect.android.widgets.utilities.ExternalAppRecordingRequester;
+import org.odk.collect.android.widgets.utilities.InternalRecordingRequester;
+import org.odk.collect.async.Scheduler;
+import org.odk.collect.audiorecorder.recording.AudioRecorder;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@RunWith(RobolectricTestRunner.class)
+public class ODKViewTest {
+
+    private final FakeWaitingForDataRegistry waitingForDataRegistry = new FakeWaitingForDataRegistry();
+    private TestScreenContextActivity activity;
+
+    @Before
+    public void setup() {
+        AudioHelper audioHelper = mock(AudioHelper.class);
+        when(audioHelper.getError()).thenReturn(new MutableLiveData<>());
+
+        RobolectricHelpers.overrideAppDependencyModule(new AppDependencyModule() {
+            @Override
+            public AudioHelperFactory providesAudioHelperFactory(Scheduler scheduler) {
+                return context -> audioHelper;
+            }
+        });
+
+        activity = RobolectricHelpers.buildThemedActivity(TestScreenContextActivity.class).get();
+    }
+
+    @Test
+    public void whenFieldListIsLarge_onlyBuildsWidgetsForFirstQuestions() {
+        FormEntryPrompt[] prompts = createFieldList();
+        ODKView odkView = createView(prompts);
+
+        assertThat(odkView.getWidgets().size(), lessThan(prompts.length));
+        assertThat(odkView.getAnswers().size(), equalTo(prompts.length));
+    }
+
+    @Test
+    public void getWidgetWaitingForData_whenWaitingWidgetHasNotBeenBuilt_buildsIt() {
+        FormEntryPrompt[] prompts = createFieldList();
+        ODKView odkView = createView(prompts);
+        FormEntryPrompt lastPrompt = prompts[prompts.length - 1];
+        int widgetsBuilt = odkView.getWidgets().size();
+
+        waitingForDataRegistry.waitForData(lastPrompt.getIndex());
+        QuestionWidget widget = odkView.getWidgetWaitingForData();
+
+        assertThat(widget, instanceOf(BarcodeWidget.class));
+        assertThat(widget.getFormEntryPrompt(), equalTo(lastPrompt));
+        assertThat(odkView.getWidgets().size(), equalTo(widgetsBuilt + 1));
+    }
+
+    @Test
+    public void getWidgetWaitingForData_whenNothingIsWaiting_returnsNull() {
+        ODKView odkView = createView(createFieldList());
+        assertThat(odkView.getWidgetWaitingForData(), nullValue());
+    }
+
+    @Test
+    public void whenDataIsSetOnWidgetThatWasNotBuilt_isIncludedInAnswers() {
+        FormEntryPrompt[] prompts = createFieldList();
+        ODKView odkView = createView(prompts);
+        FormEntryPrompt lastPrompt = prompts[prompts.length - 1];
+
+        waitingForDataRegistry.waitForData(lastPrompt.getIndex());
+        ((BarcodeWidget) odkView.getWidgetWaitingForData()).setData("blah");
+
+        assertThat(odkView.getAnswers().get(lastPrompt.getIndex()).getDisplayText(), equalTo("blah"));
+    }
+
+    private FormEntryPrompt[] createFieldList() {
+        FormEntryPrompt[] prompts = new FormEntryPrompt[ODKView.VIRTUALIZATION_THRESHOLD + 5];
+        for (int i = 0; i < prompts.length - 1; i++) {
+            prompts[i] = new MockFormEntryPromptBuilder()
+                    .withIndex(String.valueOf(i))
+                    .withControlType(Constants.CONTROL_INPUT)
+                    .build();
+        }
+
+        FormEntryPrompt barcodePrompt = new MockFormEntryPromptBuilder()
+                .withIndex(String.valueOf(prompts.length - 1))
+                .withControlType(Constants.CONTROL_INPUT)
+                .build();
+        when(barcodePrompt.getDataType()).thenReturn(Constants.DATATYPE_BARCODE);
+        prompts[prompts.length - 1] = barcodePrompt;
+
+        return prompts;
+    }
+
+    private ODKView createView(FormEntryPrompt[] prompts) {
+        return new ODKView(activity, prompts, null, false,
+                mock(QuestionMediaManager.class),
+                waitingForDataRegistry,
+                mock(AudioPlayer.class),
+                mock(AudioRecorder.class),
+                mock(FormEntryViewModel.class),
+                mock(InternalRecordingRequester.class),
+                mock(ExternalAppRecordingRequester.class));
+    }
+}
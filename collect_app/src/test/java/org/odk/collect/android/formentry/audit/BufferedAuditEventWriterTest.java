@@ -16,12 +16,15 @@
 
 package org.odk.collect.android.formentry.audit;
 
+import com.google.common.io.Files;
+
 import org.apache.commons.io.FileUtils;
 import org.javarosa.core.model.FormIndex;
 import org.javarosa.core.model.instance.TreeReference;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.odk.collect.android.utilities.EncryptionUtils;
 import org.robolectric.RobolectricTestRunner;
 
 import java.io.File;
@@ -30,7 +33,10 @@ import java.util.Arrays;
 import java.util.List;
 
 import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.odk.collect.android.formentry.audit.AuditEvent.AuditEventType.CHANGE_REASON;
 import static org.odk.collect.android.formentry.audit.AuditEvent.AuditEventType.END_OF_FORM;
 import static org.odk.collect.android.formentry.audit.AuditEvent.AuditEventType.FORM_EXIT;
@@ -46,7 +52,7 @@ import static org.odk.collect.android.formentry.audit.AuditEvent.AuditEventType.
 import static org.odk.collect.android.formentry.audit.AuditEvent.AuditEventType.QUESTION;
 
 @RunWith(RobolectricTestRunner.class)
-public class AsyncTaskAuditEventWriterTest {
+public class BufferedAuditEventWriterTest {
 
     private File auditFile;
 
@@ -57,8 +63,9 @@ public class AsyncTaskAuditEventWriterTest {
 
     @Test
     public void saveAuditWithLocation() throws Exception {
-        AsyncTaskAuditEventWriter writer = new AsyncTaskAuditEventWriter(auditFile, true, false, false, false);
+        BufferedAuditEventWriter writer = new BufferedAuditEventWriter(auditFile, true, false, false, false);
         writer.writeEvents(getSampleAuditEventsWithLocations());
+        writer.waitForWrites();
 
         String expectedAuditContent = FileUtils.readFileToString(auditFile);
         String expectedData = "event,node,start,end,latitude,longitude,accuracy\n" +
@@ -81,8 +88,9 @@ public class AsyncTaskAuditEventWriterTest {
 
     @Test
     public void saveAuditWithLocationAndTrackingChanges() throws Exception {
-        AsyncTaskAuditEventWriter writer = new AsyncTaskAuditEventWriter(auditFile, true, true, false, false);
+        BufferedAuditEventWriter writer = new BufferedAuditEventWriter(auditFile, true, true, false, false);
         writer.writeEvents(getSampleAuditEventsWithLocationsAndTrackingChanges());
+        writer.waitForWrites();
 
         String expectedAuditContent = FileUtils.readFileToString(auditFile);
         String expectedData = "event,node,start,end,latitude,longitude,accuracy,old-value,new-value\n" +
@@ -101,8 +109,9 @@ public class AsyncTaskAuditEventWriterTest {
 
     @Test
     public void saveAuditWithUser() throws Exception {
-        AsyncTaskAuditEventWriter writer = new AsyncTaskAuditEventWriter(auditFile, false, false, true, false);
+        BufferedAuditEventWriter writer = new BufferedAuditEventWriter(auditFile, false, false, true, false);
         writer.writeEvents(getSampleAuditEventsWithUser());
+        writer.waitForWrites();
 
         String expectedAuditContent = FileUtils.readFileToString(auditFile);
         String expectedData = "event,node,start,end,user\n" +
@@ -123,11 +132,12 @@ public class AsyncTaskAuditEventWriterTest {
 
     @Test
     public void saveAuditWithChangeReason() throws Exception {
-        AsyncTaskAuditEventWriter writer = new AsyncTaskAuditEventWriter(auditFile, false, false, false, true);
+        BufferedAuditEventWriter writer = new BufferedAuditEventWriter(auditFile, false, false, false, true);
         writer.writeEvents(asList(
                 new AuditEvent(1548108900606L, FORM_RESUME, null, null, null, null),
                 new AuditEvent(1548108900606L, CHANGE_REASON, null, null, null, "A good reason")
         ));
+        writer.waitForWrites();
 
         String auditContent = FileUtils.readFileToString(auditFile);
         String expectedData =  "event,node,start,end,change-reason\n" +
@@ -138,11 +148,12 @@ public class AsyncTaskAuditEventWriterTest {
 
     @Test
     public void whenChangeReasonHasCommaOrQuotes_escapesThem() throws Exception {
-        AsyncTaskAuditEventWriter writer = new AsyncTaskAuditEventWriter(auditFile, false, false, false, true);
+        BufferedAuditEventWriter writer = new BufferedAuditEventWriter(auditFile, false, false, false, true);
         writer.writeEvents(asList(
                 new AuditEvent(1548108900606L, FORM_RESUME, null, null, null, null),
                 new AuditEvent(1548108900606L, CHANGE_REASON, null, null, null, "A \"good\", reason")
         ));
+        writer.waitForWrites();
 
         String auditContent = FileUtils.readFileToString(auditFile);
         String expectedData =  "event,node,start,end,change-reason\n" +
@@ -153,11 +164,12 @@ public class AsyncTaskAuditEventWriterTest {
 
     @Test
     public void whenUserHasCommaOrQuotes_escapesThem() throws Exception {
-        AsyncTaskAuditEventWriter writer = new AsyncTaskAuditEventWriter(auditFile, false, false, true, false);
+        BufferedAuditEventWriter writer = new BufferedAuditEventWriter(auditFile, false, false, true, false);
 
         List<AuditEvent> auditEvents = getSampleAuditEventsWithUser().subList(0, 1);
         auditEvents.get(0).setUser("User,\"1\"");
         writer.writeEvents(auditEvents);
+        writer.waitForWrites();
 
         String expectedAuditContent = FileUtils.readFileToString(auditFile);
         String expectedData = "event,node,start,end,user\n" +
@@ -165,6 +177,79 @@ public class AsyncTaskAuditEventWriterTest {
         assertEquals(expectedData, expectedAuditContent);
     }
 
+    @Test
+    public void whenManyEventsAreWrittenQuickly_writesAllOfThemInOrder() throws Exception {
+        BufferedAuditEventWriter writer = new BufferedAuditEventWriter(auditFile, false, false, false, false);
+        int batches = BufferedAuditEventWriter.MAX_QUEUED_BATCHES * 4;
+        for (int i = 0; i < batches; i++) {
+            writer.writeEvents(asList(
+                    new AuditEvent(2 * i, FORM_SAVE, null, null, null, null),
+                    new AuditEvent(2 * i + 1, FORM_RESUME, null, null, null, null)
+            ));
+        }
+        writer.waitForWrites();
+
+        StringBuilder expectedData = new StringBuilder("event,node,start,end\n");
+        for (int i = 0; i < batches; i++) {
+            expectedData.append("form save,,").append(2 * i).append(",\n");
+            expectedData.append("form resume,,").append(2 * i + 1).append(",\n");
+        }
+        assertEquals(expectedData.toString(), FileUtils.readFileToString(auditFile));
+    }
+
+    @Test
+    public void whenWriterThreadIsBehind_writeEventsDoesNotBlock_andIsWritingIsTrue() throws Exception {
+        BufferedAuditEventWriter writer = new BufferedAuditEventWriter(auditFile, false, false, false, false);
+        int batches = BufferedAuditEventWriter.MAX_QUEUED_BATCHES * 2;
+
+        // the writer thread can't record that a batch has been written while this holds its lock
+        synchronized (writer) {
+            for (int i = 0; i < batches; i++) {
+                writer.writeEvents(singletonList(new AuditEvent(i, FORM_SAVE, null, null, null, null)));
+            }
+            assertTrue(writer.isWriting());
+        }
+        writer.waitForWrites();
+
+        StringBuilder expectedData = new StringBuilder("event,node,start,end\n");
+        for (int i = 0; i < batches; i++) {
+            expectedData.append("form save,,").append(i).append(",\n");
+        }
+        assertEquals(expectedData.toString(), FileUtils.readFileToString(auditFile));
+        assertFalse(writer.isWriting());
+    }
+
+    @Test
+    public void whenInstanceIsSavedAndEncryptedRightAfterWriting_fileHasAllEvents_andLaterEventsGoToNewFile() throws Exception {
+        File instanceDir = Files.createTempDir();
+        File instanceXml = new File(instanceDir, "instance.xml");
+        FileUtils.writeStringToFile(instanceXml, "<data/>");
+        File instanceAuditFile = new File(instanceDir, "audit.csv");
+
+        BufferedAuditEventWriter writer = new BufferedAuditEventWriter(instanceAuditFile, false, false, false, false);
+        for (int i = 0; i < 10; i++) {
+            writer.writeEvents(asList(new AuditEvent(i, FORM_SAVE, null, null, null, null)));
+        }
+
+        // What saving does before encrypting the instance and deleting the plaintext files
+        writer.waitForWrites();
+        String savedAudit = FileUtils.readFileToString(instanceAuditFile);
+        EncryptionUtils.deletePlaintextFiles(instanceXml, null);
+
+        StringBuilder expectedSavedAudit = new StringBuilder("event,node,start,end\n");
+        for (int i = 0; i < 10; i++) {
+            expectedSavedAudit.append("form save,,").append(i).append(",\n");
+        }
+        assertEquals(expectedSavedAudit.toString(), savedAudit);
+        assertFalse(instanceAuditFile.exists());
+
+        writer.writeEvents(asList(new AuditEvent(10, FORM_EXIT, null, null, null, null)));
+        writer.waitForWrites();
+
+        assertEquals("event,node,start,end\n" +
+                "form exit,,10,\n", FileUtils.readFileToString(instanceAuditFile));
+    }
+
     /**
      * A user could update the app and then resume form entry. In this case it would be possible
      * for the form to have an audit config that wasn't supported by the old app. In this case
@@ -173,8 +258,9 @@ public class AsyncTaskAuditEventWriterTest {
     @Test
     public void whenAppUpdatedBetweenInstances_updatesHeader() throws Exception {
         // Use a form with enabled audit but without location
-        AsyncTaskAuditEventWriter writer = new AsyncTaskAuditEventWriter(auditFile, false, false, false, false);
+        BufferedAuditEventWriter writer = new BufferedAuditEventWriter(auditFile, false, false, false, false);
         writer.writeEvents(getSampleAuditEventsWithoutLocations());
+        writer.waitForWrites();
 
         String expectedAuditContent = FileUtils.readFileToString(auditFile);
         String expectedData = "event,node,start,end\n" +
@@ -192,8 +278,9 @@ public class AsyncTaskAuditEventWriterTest {
         assertEquals(expectedData, expectedAuditContent);
 
         // Upgrade a form to use location
-        writer = new AsyncTaskAuditEventWriter(auditFile, true, false, false, false);
+        writer = new BufferedAuditEventWriter(auditFile, true, false, false, false);
         writer.writeEvents(getMoreSampleAuditEventsWithLocations());
+        writer.waitForWrites();
 
         expectedAuditContent = FileUtils.readFileToString(auditFile);
         String expectedData2 = "event,node,start,end,latitude,longitude,accuracy\n" +
@@ -220,8 +307,9 @@ public class AsyncTaskAuditEventWriterTest {
         assertEquals(expectedData2, expectedAuditContent);
 
         // Upgrade a form to use location and tracking changes
-        writer = new AsyncTaskAuditEventWriter(auditFile, true, true, false, false);
+        writer = new BufferedAuditEventWriter(auditFile, true, true, false, false);
         writer.writeEvents(getMoreSampleAuditEventsWithLocationsAndTrackingChanges());
+        writer.waitForWrites();
 
         expectedAuditContent = FileUtils.readFileToString(auditFile);
         String expectedData3 = "event,node,start,end,latitude,longitude,accuracy,old-value,new-value\n" +
@@ -256,8 +344,9 @@ public class AsyncTaskAuditEventWriterTest {
         assertEquals(expectedData3, expectedAuditContent);
 
         // Upgrade a form to use location and tracking changes and user
-        writer = new AsyncTaskAuditEventWriter(auditFile, true, true, true, false);
+        writer = new BufferedAuditEventWriter(auditFile, true, true, true, false);
         writer.writeEvents(getMoreSampleAuditEventsWithLocationsAndTrackingChangesAndUser());
+        writer.waitForWrites();
 
         expectedAuditContent = FileUtils.readFileToString(auditFile);
         String expectedData4 = "event,node,start,end,latitude,longitude,accuracy,old-value,new-value,user\n" +
@@ -31,6 +31,7 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
@@ -41,6 +42,7 @@ import static org.javarosa.form.api.FormEntryController.EVENT_QUESTION;
 import static org.javarosa.form.api.FormEntryController.EVENT_REPEAT;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
@@ -98,6 +100,24 @@ public class FormSaveViewModelTest {
         assertThat(saveResult1.getState(), equalTo(SAVING));
     }
 
+    @Test
+    public void saveForm_waitsForAuditEventsToBeWrittenBeforeSaving() throws Exception {
+        List<Integer> savesWhenWaited = new ArrayList<>();
+        doAnswer(invocation -> {
+            savesWhenWaited.add(formSaver.numberOfTimesCalled);
+            return null;
+        }).when(logger).waitForWrites();
+
+        viewModel.saveForm(Uri.parse("file://form"), true, "", false);
+        whenFormSaverFinishes(SaveFormToDisk.SAVED);
+
+        InOrder verifier = inOrder(logger);
+        verifier.verify(logger).flush();
+        verifier.verify(logger).waitForWrites();
+        assertThat(savesWhenWaited, equalTo(Arrays.asList(0)));
+        assertThat(formSaver.numberOfTimesCalled, equalTo(1));
+    }
+
     @Test
     public void saveForm_wontRunMultipleSavesAtOnce() {
         viewModel.saveForm(Uri.parse("file://form"), true, "", false);
@@ -504,6 +524,51 @@ public class FormSaveViewModelTest {
         assertThat(fileName1.getValue().getOrNull(), is(fileName2.getValue().getOrNull()));
     }
 
+    @Test
+    public void processImageAnswerFile_isPendingUntilProcessed_andThenNotifiesListeners() throws Exception {
+        File answerFile = File.createTempFile("answer", ".jpg");
+        viewModel.processImageAnswerFile(answerFile, null, null);
+        assertThat(viewModel.isAnswerFilePending(answerFile), is(true));
+
+        boolean[] ready = {false};
+        viewModel.whenAnswerFileReady(answerFile, () -> ready[0] = true);
+        assertThat(ready[0], is(false));
+
+        scheduler.runBackground();
+        assertThat(viewModel.isAnswerFilePending(answerFile), is(false));
+        assertThat(ready[0], is(true));
+    }
+
+    @Test
+    public void processImageAnswerFile_whenFileCantBeProcessed_setsAnswerFileError_andNotifiesListeners() throws Exception {
+        File answerFile = new File(Files.createTempDir(), "missing.jpg");
+        viewModel.processImageAnswerFile(answerFile, null, null);
+
+        boolean[] ready = {false};
+        viewModel.whenAnswerFileReady(answerFile, () -> ready[0] = true);
+
+        scheduler.runBackground();
+        assertThat(viewModel.isAnswerFilePending(answerFile), is(false));
+        assertThat(ready[0], is(true));
+        assertThat(viewModel.getAnswerFileError().getValue(), equalTo(answerFile.getAbsolutePath()));
+    }
+
+    @Test
+    public void processImageAnswerFile_whenFileIsProcessed_doesNotSetAnswerFileError() throws Exception {
+        File answerFile = File.createTempFile("answer", ".jpg");
+        viewModel.processImageAnswerFile(answerFile, null, null);
+
+        scheduler.runBackground();
+        assertThat(viewModel.getAnswerFileError().getValue(), nullValue());
+    }
+
+    @Test
+    public void whenAnswerFileReady_whenFileIsNotPending_runsStraightAway() throws Exception {
+        boolean[] ready = {false};
+        viewModel.whenAnswerFileReady(File.createTempFile("answer", ".jpg"), () -> ready[0] = true);
+        assertThat(ready[0], is(true));
+    }
+
     //endregion
 
     @Test
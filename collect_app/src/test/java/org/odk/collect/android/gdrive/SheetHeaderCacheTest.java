@@ -0,0 +1,73 @@
+package org.odk.collect.android.gdrive;
+
+import com.google.api.services.sheets.v4.model.ValueRange;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.odk.collect.android.gdrive.sheets.SheetsApi;
+import org.odk.collect.android.gdrive.sheets.SheetsHelper;
+
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class SheetHeaderCacheTest {
+
+    private final SheetsApi sheetsApi = mock(SheetsApi.class);
+    private final SheetHeaderCache cache = new SheetHeaderCache(new SheetsHelper(sheetsApi));
+    private final List<Object> header = asList("a", "b");
+
+    @Before
+    public void setup() throws Exception {
+        when(sheetsApi.getSpreadsheet(anyString(), anyString())).thenReturn(new ValueRange().setValues(singletonList(header)));
+    }
+
+    @Test
+    public void get_onlyReadsFirstRowOfSheet_once() throws Exception {
+        assertThat(cache.get("spreadsheet", "sheet"), equalTo(header));
+        assertThat(cache.get("spreadsheet", "sheet"), equalTo(header));
+
+        verify(sheetsApi, times(1)).getSpreadsheet("spreadsheet", "'sheet'!1:1");
+    }
+
+    @Test
+    public void get_escapesQuotesInSheetTitle() throws Exception {
+        cache.get("spreadsheet", "it's");
+        verify(sheetsApi).getSpreadsheet("spreadsheet", "'it''s'!1:1");
+    }
+
+    @Test
+    public void get_whenSheetIsEmpty_returnsEmptyHeader() throws Exception {
+        when(sheetsApi.getSpreadsheet("spreadsheet", "'empty'!1:1")).thenReturn(new ValueRange());
+        assertThat(cache.get("spreadsheet", "empty"), empty());
+    }
+
+    @Test
+    public void get_afterPut_returnsHeaderWithoutReadingSheet() throws Exception {
+        List<Object> newHeader = asList("c");
+        cache.put("sheet", newHeader);
+
+        assertThat(cache.get("spreadsheet", "sheet"), equalTo(newHeader));
+        verify(sheetsApi, times(0)).getSpreadsheet("spreadsheet", "'sheet'!1:1");
+    }
+
+    @Test
+    public void get_afterRemoveOrClear_readsSheetAgain() throws Exception {
+        cache.get("spreadsheet", "sheet");
+        cache.remove("sheet");
+        cache.get("spreadsheet", "sheet");
+        cache.clear();
+        cache.get("spreadsheet", "sheet");
+
+        verify(sheetsApi, times(3)).getSpreadsheet("spreadsheet", "'sheet'!1:1");
+    }
+}
@@ -0,0 +1,148 @@
+package org.odk.collect.android.gdrive;
+
+import com.google.api.services.sheets.v4.model.ValueRange;
+import com.google.common.io.Files;
+
+import org.junit.Test;
+import org.odk.collect.android.gdrive.sheets.SheetsApi;
+import org.odk.collect.android.gdrive.sheets.SheetsHelper;
+import org.odk.collect.android.instances.Instance;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+public class SheetRowsBatchTest {
+
+    private final SheetsApi sheetsApi = mock(SheetsApi.class);
+    private final SheetsHelper sheetsHelper = new SheetsHelper(sheetsApi);
+    private final SheetRowsBatch batch = new SheetRowsBatch();
+    private final File instancesDir = Files.createTempDir();
+
+    @Test
+    public void append_appendsRowsOfAllInstancesWithOneRequestPerSheet() throws Exception {
+        batch.add(instance(1), rows("main", "1", "repeat", "1.1"), uploadState(1));
+        batch.add(instance(2), rows("main", "2", "repeat", "2.1"), uploadState(2));
+
+        assertThat(batch.append(sheetsHelper, "spreadsheet").isEmpty(), equalTo(true));
+
+        verify(sheetsApi).insertRow("spreadsheet", "main", new ValueRange().setValues(asList(row("1"), row("2"))));
+        verify(sheetsApi).insertRow("spreadsheet", "repeat", new ValueRange().setValues(asList(row("1.1"), row("2.1"))));
+        verifyNoMoreInteractions(sheetsApi);
+    }
+
+    @Test
+    public void append_whenOneSheetFails_stillAppendsToOtherSheets_andReturnsFailedSheet() throws Exception {
+        IOException exception = new IOException();
+        doThrow(exception).when(sheetsApi).insertRow(eq("spreadsheet"), eq("repeat"), any());
+
+        batch.add(instance(1), rows("main", "1", "repeat", "1.1"), uploadState(1));
+        batch.add(instance(2), rows("main", "2", "other", "2.1"), uploadState(2));
+
+        Map<String, IOException> failures = batch.append(sheetsHelper, "spreadsheet");
+        assertThat(failures.keySet(), contains("repeat"));
+        assertThat(failures.get("repeat"), equalTo(exception));
+
+        verify(sheetsApi).insertRow("spreadsheet", "main", new ValueRange().setValues(asList(row("1"), row("2"))));
+        verify(sheetsApi).insertRow("spreadsheet", "other", new ValueRange().setValues(singletonList(row("2.1"))));
+    }
+
+    @Test
+    public void whenOneSheetOfAnInstanceFails_retryingOnlyAppendsItsRowsToThatSheet() throws Exception {
+        doThrow(new IOException()).doNothing().when(sheetsApi).insertRow(eq("spreadsheet"), eq("repeat"), any());
+
+        batch.add(instance(1), rows("main", "1", "repeat", "1.1"), uploadState(1));
+        assertThat(batch.append(sheetsHelper, "spreadsheet").keySet(), contains("repeat"));
+        batch.clear();
+
+        batch.add(instance(1), rows("main", "1", "repeat", "1.1"), uploadState(1));
+        assertThat(batch.append(sheetsHelper, "spreadsheet").isEmpty(), equalTo(true));
+
+        verify(sheetsApi, times(1)).insertRow("spreadsheet", "main", new ValueRange().setValues(singletonList(row("1"))));
+        verify(sheetsApi, times(2)).insertRow("spreadsheet", "repeat", new ValueRange().setValues(singletonList(row("1.1"))));
+    }
+
+    @Test
+    public void whenAllSheetsOfAnInstanceAreAppendedTo_itsUploadStateIsForgotten() throws Exception {
+        doThrow(new IOException()).doNothing().when(sheetsApi).insertRow(eq("spreadsheet"), eq("repeat"), any());
+
+        batch.add(instance(1), rows("main", "1", "repeat", "1.1"), uploadState(1));
+        batch.append(sheetsHelper, "spreadsheet");
+        batch.clear();
+        batch.add(instance(1), rows("main", "1", "repeat", "1.1"), uploadState(1));
+        batch.append(sheetsHelper, "spreadsheet");
+
+        assertThat(uploadState(1).getAppendedSheets(), empty());
+    }
+
+    @Test
+    public void getInstancesInSheet_onlyReturnsInstancesWithRowsInThatSheet() throws Exception {
+        batch.add(instance(1), rows("main", "1", "repeat", "1.1"), uploadState(1));
+        batch.add(instance(2), rows("main", "2"), uploadState(2));
+
+        assertThat(batch.getInstancesInSheet("main"), containsInAnyOrder(instance(1), instance(2)));
+        assertThat(batch.getInstancesInSheet("repeat"), contains(instance(1)));
+        assertThat(batch.getInstancesInSheet("other"), empty());
+    }
+
+    @Test
+    public void clear_removesInstancesAndRows() throws Exception {
+        batch.add(instance(1), rows("main", "1"), uploadState(1));
+        batch.clear();
+
+        assertThat(batch.isEmpty(), equalTo(true));
+        assertThat(batch.getInstances(), empty());
+        assertThat(batch.append(sheetsHelper, "spreadsheet").isEmpty(), equalTo(true));
+        verifyNoMoreInteractions(sheetsApi);
+    }
+
+    private static Instance instance(long id) {
+        return new Instance.Builder()
+                .id(id)
+                .instanceFilePath(id + ".xml")
+                .build();
+    }
+
+    private SheetsUploadState uploadState(long id) throws IOException {
+        File instanceDir = new File(instancesDir, "instance" + id);
+        File instanceFile = new File(instanceDir, id + ".xml");
+        if (!instanceFile.exists()) {
+            instanceDir.mkdirs();
+            Files.write("<data/>".getBytes(), instanceFile);
+        }
+
+        return SheetsUploadState.forInstanceFile(instanceFile, "spreadsheet");
+    }
+
+    /**
+     * @param sheetsAndValues pairs of sheet title and the value for the single row in that sheet
+     */
+    private static Map<String, List<List<Object>>> rows(String... sheetsAndValues) {
+        Map<String, List<List<Object>>> rows = new LinkedHashMap<>();
+        for (int i = 0; i < sheetsAndValues.length; i += 2) {
+            rows.put(sheetsAndValues[i], singletonList(row(sheetsAndValues[i + 1])));
+        }
+        return rows;
+    }
+
+    private static List<Object> row(String value) {
+        return singletonList(value);
+    }
+}
@@ -0,0 +1,115 @@
+package org.odk.collect.android.geo;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * Measures tiles/second read from a raster and a vector .mbtiles file with getTileBlob and with
+ * the formatted selection it used to run for every tile. A third of the requests are for tiles
+ * that don't exist, like the ones around the edges of an offline layer.
+ */
+@Ignore("Writes two .mbtiles files with tens of thousands of tiles. Run manually when changing how tiles are read.")
+@RunWith(RobolectricTestRunner.class)
+public class MbtilesFileBenchmarkTest {
+
+    private static final int MAX_ZOOM = 7;
+    private static final int WARMUP_READS = 2_000;
+    private static final int READS = 20_000;
+
+    @Test
+    public void compareTileReads() throws Exception {
+        benchmark("raster", "png", new byte[] {(byte) 0x89, 'P', 'N', 'G'}, 20 * 1024);
+        benchmark("vector", "pbf", new byte[] {0x1f, (byte) 0x8b}, 60 * 1024);
+    }
+
+    private void benchmark(String name, String format, byte[] header, int tileSize) throws Exception {
+        File file = createMbtiles(name, format, header, tileSize);
+
+        try (SQLiteDatabase db = SQLiteDatabase.openDatabase(file.getPath(), null, SQLiteDatabase.OPEN_READONLY)) {
+            MbtilesFile mbtiles = new MbtilesFile(file);
+
+            readTiles(mbtiles, db, WARMUP_READS, true);
+            readTiles(mbtiles, db, WARMUP_READS, false);
+
+            long start = System.nanoTime();
+            int formattedFound = readTiles(mbtiles, db, READS, false);
+            double formattedSeconds = (System.nanoTime() - start) / 1e9;
+
+            start = System.nanoTime();
+            int found = readTiles(mbtiles, db, READS, true);
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            System.out.printf("%s (%d KB tiles): formatted query %.0f tiles/s, getTileBlob %.0f tiles/s%n",
+                name, tileSize / 1024, READS / formattedSeconds, READS / seconds);
+            assertThat(found, is(formattedFound));
+            mbtiles.close();
+        }
+    }
+
+    /** Reads the same pseudo-random sequence of tiles every time and returns how many exist. */
+    private static int readTiles(MbtilesFile mbtiles, SQLiteDatabase db, int count, boolean useGetTileBlob) {
+        Random random = new Random(1);
+        int found = 0;
+        for (int i = 0; i < count; i++) {
+            int zoom = random.nextInt(MAX_ZOOM + 1);
+            int x = random.nextInt(1 << zoom);
+            int y = random.nextInt(1 << zoom);
+            byte[] data = useGetTileBlob ? mbtiles.getTileBlob(zoom, x, y) : readTileWithFormattedQuery(db, zoom, x, y);
+            if (data != null) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    /** How tiles used to be read. */
+    private static byte[] readTileWithFormattedQuery(SQLiteDatabase db, int zoom, int x, int y) {
+        y = (1 << zoom) - 1 - y;
+        String selection = String.format(Locale.US, "zoom_level = %d and tile_column = %d and tile_row = %d", zoom, x, y);
+        try (Cursor results = db.query("tiles", new String[] {"tile_data"}, selection, null, null, null, null)) {
+            return results.moveToFirst() ? results.getBlob(0) : null;
+        }
+    }
+
+    private static File createMbtiles(String name, String format, byte[] header, int tileSize) throws Exception {
+        File file = File.createTempFile(name, ".mbtiles");
+        file.delete();
+
+        Random random = new Random(2);
+        try (SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(file, null)) {
+            db.execSQL("CREATE TABLE metadata (name text, value text)");
+            db.execSQL("INSERT INTO metadata VALUES ('name', ?), ('format', ?)", new Object[] {name, format});
+            db.execSQL("CREATE TABLE tiles (zoom_level integer, tile_column integer, tile_row integer, tile_data blob)");
+            db.execSQL("CREATE UNIQUE INDEX tile_index ON tiles (zoom_level, tile_column, tile_row)");
+
+            db.beginTransaction();
+            for (int zoom = 0; zoom <= MAX_ZOOM; zoom++) {
+                int size = 1 << zoom;
+                for (int x = 0; x < size; x++) {
+                    // TMS rows count from the bottom so these are the top two thirds
+                    for (int row = size / 3; row < size; row++) {
+                        byte[] data = new byte[tileSize];
+                        random.nextBytes(data);
+                        System.arraycopy(header, 0, data, 0, header.length);
+                        db.execSQL("INSERT INTO tiles VALUES (?, ?, ?, ?)", new Object[] {zoom, x, row, data});
+                    }
+                }
+            }
+            db.setTransactionSuccessful();
+            db.endTransaction();
+        }
+        return file;
+    }
+}
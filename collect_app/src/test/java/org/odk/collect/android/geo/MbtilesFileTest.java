@@ -0,0 +1,106 @@
+package org.odk.collect.android.geo;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+@RunWith(RobolectricTestRunner.class)
+public class MbtilesFileTest {
+
+    private File dir;
+
+    @Before
+    public void setup() throws IOException {
+        dir = File.createTempFile("mbtiles", "");
+        dir.delete();
+        dir.mkdir();
+    }
+
+    @Test
+    public void getTileBlob_returnsTile_withFlippedY() throws Exception {
+        File file = createMbtiles("tiles.mbtiles", false);
+        insertTile(file, false, 2, 1, 3, new byte[] {1, 2, 3});
+
+        MbtilesFile mbtiles = new MbtilesFile(file);
+        assertThat(mbtiles.getTileBlob(2, 1, 0), is(new byte[] {1, 2, 3}));
+        mbtiles.close();
+    }
+
+    @Test
+    public void getTileBlob_returnsNull_whenThereIsNoTile() throws Exception {
+        File file = createMbtiles("tiles.mbtiles", false);
+        insertTile(file, false, 2, 1, 3, new byte[] {1, 2, 3});
+
+        MbtilesFile mbtiles = new MbtilesFile(file);
+        assertThat(mbtiles.getTileBlob(2, 1, 1), is(nullValue()));
+        assertThat(mbtiles.getTileBlob(3, 1, 0), is(nullValue()));
+        mbtiles.close();
+    }
+
+    @Test
+    public void getTileBlob_readsTilesBiggerThanACursorWindow() throws Exception {
+        byte[] data = new byte[5 * 1024 * 1024 / 2];
+        new Random(1).nextBytes(data);
+
+        File file = createMbtiles("tiles.mbtiles", false);
+        insertTile(file, false, 0, 0, 0, data);
+
+        MbtilesFile mbtiles = new MbtilesFile(file);
+        assertThat(mbtiles.getTileBlob(0, 0, 0), is(data));
+        assertThat(mbtiles.getTileBlob(0, 0, 0), is(data));
+        mbtiles.close();
+    }
+
+    @Test
+    public void getTileBlob_whenTilesIsAView_returnsTile() throws Exception {
+        File file = createMbtiles("tiles.mbtiles", true);
+        insertTile(file, true, 4, 5, 6, new byte[] {4, 5, 6});
+
+        MbtilesFile mbtiles = new MbtilesFile(file);
+        assertThat(mbtiles.getTileBlob(4, 5, 9), is(new byte[] {4, 5, 6}));
+        mbtiles.close();
+    }
+
+    private File createMbtiles(String name, boolean tilesView) {
+        File file = new File(dir, name);
+        try (SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(file, null)) {
+            db.execSQL("CREATE TABLE metadata (name text, value text)");
+            db.execSQL("INSERT INTO metadata VALUES ('name', 'test'), ('format', 'png')");
+            if (tilesView) {
+                // the deduplicating layout written by tools like mb-util and TileMill
+                db.execSQL("CREATE TABLE map (zoom_level integer, tile_column integer, tile_row integer, tile_id text)");
+                db.execSQL("CREATE UNIQUE INDEX map_index ON map (zoom_level, tile_column, tile_row)");
+                db.execSQL("CREATE TABLE images (tile_data blob, tile_id text)");
+                db.execSQL("CREATE VIEW tiles AS SELECT map.zoom_level AS zoom_level, map.tile_column AS tile_column, "
+                    + "map.tile_row AS tile_row, images.tile_data AS tile_data FROM map JOIN images ON images.tile_id = map.tile_id");
+            } else {
+                db.execSQL("CREATE TABLE tiles (zoom_level integer, tile_column integer, tile_row integer, tile_data blob)");
+                db.execSQL("CREATE UNIQUE INDEX tile_index ON tiles (zoom_level, tile_column, tile_row)");
+            }
+        }
+        return file;
+    }
+
+    private static void insertTile(File file, boolean tilesView, int zoom, int x, int y, byte[] data) {
+        try (SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(file, null)) {
+            if (tilesView) {
+                String id = zoom + "/" + x + "/" + y;
+                db.execSQL("INSERT INTO map VALUES (?, ?, ?, ?)", new Object[] {zoom, x, y, id});
+                db.execSQL("INSERT INTO images VALUES (?, ?)", new Object[] {data, id});
+            } else {
+                db.execSQL("INSERT INTO tiles VALUES (?, ?, ?, ?)", new Object[] {zoom, x, y, data});
+            }
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package org.odk.collect.android.geo;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+
+public class TileHttpServerTest {
+
+    private final FakeTileSource source = new FakeTileSource();
+    private TileHttpServer server;
+    private int port;
+
+    @Before
+    public void setup() throws IOException {
+        server = new TileHttpServer();
+        server.addSource("tiles", source);
+        server.start();
+        port = new URL(server.getUrlTemplate("tiles").replace("{z}/{x}/{y}", "")).getPort();
+    }
+
+    @After
+    public void teardown() {
+        server.destroy();
+    }
+
+    @Test
+    public void answersPipelinedRequests_inOrder_onOneConnection() throws IOException {
+        try (Socket socket = new Socket("localhost", port)) {
+            OutputStream output = socket.getOutputStream();
+            output.write(("GET /tiles/1/2/3 HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                + "GET /tiles/4/5/6 HTTP/1.1\r\nHost: localhost\r\n\r\n").getBytes("US-ASCII"));
+            output.flush();
+
+            InputStream input = socket.getInputStream();
+            assertThat(readResponse(input), is("1/2/3"));
+            assertThat(readResponse(input), is("4/5/6"));
+        }
+    }
+
+    @Test
+    public void answersMissingTiles_withNotFound_andKeepsConnectionOpen() throws IOException {
+        try (Socket socket = new Socket("localhost", port)) {
+            OutputStream output = socket.getOutputStream();
+            output.write("GET /tiles/0/0/0 HTTP/1.1\r\n\r\n".getBytes("US-ASCII"));
+            output.flush();
+            String headers = readHeaders(socket.getInputStream());
+            assertThat(headers, startsWith("HTTP/1.1 404"));
+            assertThat(headers, containsString("Content-Length: 0"));
+
+            output.write("GET /tiles/1/1/1 HTTP/1.1\r\n\r\n".getBytes("US-ASCII"));
+            output.flush();
+            assertThat(readResponse(socket.getInputStream()), is("1/1/1"));
+        }
+    }
+
+    @Test
+    public void servesRepeatedRequests_fromCache() throws IOException {
+        try (Socket socket = new Socket("localhost", port)) {
+            for (int i = 0; i < 3; i++) {
+                socket.getOutputStream().write("GET /tiles/1/2/3 HTTP/1.1\r\n\r\n".getBytes("US-ASCII"));
+                assertThat(readResponse(socket.getInputStream()), is("1/2/3"));
+            }
+        }
+
+        assertThat(source.reads.get(), is(1));
+        assertThat(server.getRequestCount(), is(3L));
+        assertThat(server.getCacheHitCount(), is(2L));
+        assertThat(server.getServedBytes(), is(15L));
+    }
+
+    @Test
+    public void whenAllWorkersAreHeldByIdleConnections_newConnectionIsAnsweredWithoutWaitingForThemToTimeOut() throws IOException {
+        List<Socket> idleConnections = new ArrayList<>();
+        try {
+            for (int i = 0; i < TileHttpServer.MAX_WORKERS; i++) {
+                Socket socket = new Socket("localhost", port);
+                idleConnections.add(socket);
+                socket.getOutputStream().write("GET /tiles/1/1/1 HTTP/1.1\r\n\r\n".getBytes("US-ASCII"));
+                assertThat(readResponse(socket.getInputStream()), is("1/1/1"));
+            }
+
+            try (Socket socket = new Socket("localhost", port)) {
+                // well under the keep-alive timeout
+                socket.setSoTimeout(1000);
+                socket.getOutputStream().write("GET /tiles/2/2/2 HTTP/1.1\r\n\r\n".getBytes("US-ASCII"));
+                assertThat(readResponse(socket.getInputStream()), is("2/2/2"));
+            }
+        } finally {
+            for (Socket socket : idleConnections) {
+                socket.close();
+            }
+        }
+    }
+
+    @Test
+    public void whenConnectionsAreWaitingForAWorker_respondsWithConnectionClose() throws Exception {
+        List<Socket> connections = new ArrayList<>();
+        try {
+            for (int i = 0; i < TileHttpServer.MAX_WORKERS + 1; i++) {
+                connections.add(new Socket("localhost", port));
+            }
+
+            // every worker is busy so the last connection has to wait for one
+            while (server.getQueuedConnectionCount() == 0) {
+                Thread.sleep(10);
+            }
+
+            Socket first = connections.get(0);
+            first.getOutputStream().write("GET /tiles/1/1/1 HTTP/1.1\r\n\r\n".getBytes("US-ASCII"));
+            String headers = readHeaders(first.getInputStream());
+            assertThat(headers, startsWith("HTTP/1.1 200"));
+            assertThat(headers, containsString("Connection: close"));
+        } finally {
+            for (Socket socket : connections) {
+                socket.close();
+            }
+        }
+    }
+
+    @Test
+    public void tileCache_evictsLeastRecentlyUsedTiles_whenFull() {
+        TileHttpServer.TileCache cache = new TileHttpServer.TileCache(3 * (100 + 64));
+        cache.put("a", new byte[100]);
+        cache.put("b", new byte[100]);
+        cache.put("c", new byte[100]);
+        cache.get("a");
+        cache.put("d", new byte[100]);
+
+        assertThat(cache.get("a") != null, is(true));
+        assertThat(cache.get("b") == null, is(true));
+        assertThat(cache.getSizeBytes(), is(3L * (100 + 64)));
+    }
+
+    private static String readResponse(InputStream input) throws IOException {
+        String headers = readHeaders(input);
+        assertThat(headers, startsWith("HTTP/1.1 200"));
+
+        int length = Integer.parseInt(headers.split("Content-Length: ")[1].split("\r\n")[0]);
+        byte[] body = new byte[length];
+        int read = 0;
+        while (read < length) {
+            read += input.read(body, read, length - read);
+        }
+        return new String(body, "US-ASCII");
+    }
+
+    private static String readHeaders(InputStream input) throws IOException {
+        ByteArrayOutputStream headers = new ByteArrayOutputStream();
+        while (!headers.toString("US-ASCII").endsWith("\r\n\r\n")) {
+            headers.write(input.read());
+        }
+        return headers.toString("US-ASCII");
+    }
+
+    private static class FakeTileSource implements TileSource {
+        final AtomicInteger reads = new AtomicInteger();
+
+        @Override
+        public byte[] getTileBlob(int zoom, int x, int y) {
+            reads.incrementAndGet();
+            return zoom == 0 ? null : (zoom + "/" + x + "/" + y).getBytes();
+        }
+
+        @Override
+        public String getContentType() {
+            return "image/png";
+        }
+
+        @Override
+        public String getContentEncoding() {
+            return "identity";
+        }
+    }
+}
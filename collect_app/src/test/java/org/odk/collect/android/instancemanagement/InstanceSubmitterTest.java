@@ -1,13 +1,76 @@
 package org.odk.collect.android.instancemanagement;
 
+import android.util.Pair;
+import android.webkit.MimeTypeMap;
+
 import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InOrder;
+import org.odk.collect.android.analytics.Analytics;
+import org.odk.collect.android.application.Collect;
+import org.odk.collect.android.gdrive.GoogleAccountsManager;
+import org.odk.collect.android.gdrive.GoogleApiProvider;
+import org.odk.collect.android.injection.config.AppDependencyModule;
+import org.odk.collect.android.instances.Instance;
+import org.odk.collect.android.openrosa.OpenRosaHttpInterface;
+import org.odk.collect.android.permissions.PermissionsProvider;
+import org.odk.collect.android.storage.StoragePathProvider;
+import org.odk.collect.android.storage.StorageSubdirectory;
+import org.odk.collect.android.support.FakeOpenRosaHttpInterface;
 import org.odk.collect.android.support.InMemFormsRepository;
 import org.odk.collect.android.forms.Form;
+import org.odk.collect.android.support.InMemInstancesRepository;
+import org.odk.collect.android.support.RobolectricHelpers;
+import org.odk.collect.android.utilities.FileUtils;
+import org.odk.collect.utilities.UserAgentProvider;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.util.List;
 
+import static java.util.Arrays.asList;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.odk.collect.android.analytics.AnalyticsEvents.SUBMISSION;
 
+@RunWith(RobolectricTestRunner.class)
 public class InstanceSubmitterTest {
+
+    @Test
+    public void submitSelectedInstances_whenEarlierSubmissionFinishesLast_handlesResultsInSubmissionOrder() throws Exception {
+        Instance first = createInstance(1L, "one");
+        Instance second = createInstance(2L, "two");
+        Instance third = createInstance(3L, "three");
+
+        // The first upload waits until the last one has been sent
+        FakeOpenRosaHttpInterface httpInterface = new FakeOpenRosaHttpInterface();
+        httpInterface.delaySubmissionUntilAfter("one.xml", "three.xml");
+        RobolectricHelpers.overrideAppDependencyModule(new AppDependencyModule() {
+            @Override
+            public OpenRosaHttpInterface provideHttpInterface(MimeTypeMap mimeTypeMap, UserAgentProvider userAgentProvider) {
+                return httpInterface;
+            }
+        });
+
+        Analytics analytics = mock(Analytics.class);
+        InstanceSubmitter instanceSubmitter = new InstanceSubmitter(analytics, new InMemFormsRepository(),
+                new InMemInstancesRepository(asList(first, second, third)),
+                mock(GoogleAccountsManager.class), mock(GoogleApiProvider.class), mock(PermissionsProvider.class));
+
+        Pair<Boolean, String> result = instanceSubmitter.submitSelectedInstances(asList(first, second, third));
+
+        assertThat(result.first, is(false));
+        List<String> submittedFiles = httpInterface.getSubmittedFiles();
+        assertThat(submittedFiles.get(submittedFiles.size() - 1), is("one.xml"));
+
+        InOrder inOrder = inOrder(analytics);
+        inOrder.verify(analytics).logEvent(SUBMISSION, "HTTP auto", Collect.getFormIdentifierHash("one", "1"));
+        inOrder.verify(analytics).logEvent(SUBMISSION, "HTTP auto", Collect.getFormIdentifierHash("two", "1"));
+        inOrder.verify(analytics).logEvent(SUBMISSION, "HTTP auto", Collect.getFormIdentifierHash("three", "1"));
+    }
+
     @Test
     public void shouldFormBeSentFunction_shouldReturnFalseIfAutoSendNotSpecifiedOnFormLevelAndDisabledInSettings() {
         InMemFormsRepository formsRepository = new InMemFormsRepository();
@@ -62,4 +125,19 @@ public class InstanceSubmitterTest {
         assertThat(InstanceSubmitter.shouldFormBeSent(formsRepository, "1", "1", false), is(true));
     }
 
+    private static Instance createInstance(long id, String formId) {
+        File instanceDir = new File(new StoragePathProvider().getDirPath(StorageSubdirectory.INSTANCES), formId);
+        instanceDir.mkdirs();
+        File instanceFile = new File(instanceDir, formId + ".xml");
+        FileUtils.write(instanceFile, "<data/>".getBytes());
+
+        return new Instance.Builder()
+                .id(id)
+                .jrFormId(formId)
+                .jrVersion("1")
+                .displayName(formId)
+                .instanceFilePath(instanceFile.getAbsolutePath())
+                .status(Instance.STATUS_COMPLETE)
+                .build();
+    }
 }
@@ -2,8 +2,12 @@ package org.odk.collect.android.javarosawrapper;
 
 import com.google.common.io.Files;
 
+import org.javarosa.core.model.FormIndex;
+import org.javarosa.core.model.data.IntegerData;
+import org.javarosa.core.model.data.StringData;
 import org.javarosa.form.api.FormEntryController;
 import org.javarosa.form.api.FormEntryModel;
+import org.javarosa.form.api.FormEntryPrompt;
 import org.javarosa.xform.util.XFormUtils;
 import org.jetbrains.annotations.NotNull;
 import org.junit.Test;
@@ -13,8 +17,11 @@ import java.io.File;
 import java.io.IOException;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.hamcrest.Matchers.nullValue;
 
@@ -90,6 +97,103 @@ public class FormControllerTest {
     }
 
 
+    @Test
+    public void takeAnswersChangedSinceSavepoint_returnsAnsweredQuestions_untilRepeatIsAdded() throws Exception {
+        FormController formController = createFormController(ONE_QUESTION_REPEAT);
+        assertThat(formController.takeAnswersChangedSinceSavepoint(), is(nullValue()));
+
+        formController.stepToNextScreenEvent();
+        formController.answerQuestion(formController.getFormIndex(), new IntegerData(20));
+        assertThat(formController.takeAnswersChangedSinceSavepoint(), contains(formController.getFormIndex().getReference()));
+        assertThat(formController.takeAnswersChangedSinceSavepoint(), is(empty()));
+
+        formController.jumpToNewRepeatPrompt();
+        formController.newRepeat();
+        assertThat(formController.takeAnswersChangedSinceSavepoint(), is(nullValue()));
+    }
+
+    @Test
+    public void getIndexFromXPath_findsIndexes_afterRepeatIsAdded() throws Exception {
+        FormController formController = createFormController(ONE_QUESTION_REPEAT);
+
+        formController.stepToNextScreenEvent();
+        FormIndex firstAge = formController.getFormIndex();
+        String firstAgeXPath = formController.getXPath(firstAge);
+        assertThat(formController.getIndexFromXPath(firstAgeXPath), equalTo(firstAge));
+
+        formController.jumpToNewRepeatPrompt();
+        formController.newRepeat();
+        formController.stepToNextScreenEvent();
+        FormIndex secondAge = formController.getFormIndex();
+        assertThat(secondAge.toString(), equalTo("0_1, 0, "));
+
+        formController.jumpToIndex(FormIndex.createBeginningOfFormIndex());
+        assertThat(formController.getIndexFromXPath(formController.getXPath(secondAge)), equalTo(secondAge));
+        assertThat(formController.getIndexFromXPath(firstAgeXPath), equalTo(firstAge));
+        assertThat(formController.getFormIndex(), equalTo(FormIndex.createBeginningOfFormIndex()));
+    }
+
+    @Test
+    public void getIndexFromXPath_returnsNull_whenXPathIsNotInForm() throws Exception {
+        FormController formController = createFormController(ONE_QUESTION_REPEAT);
+        assertThat(formController.getIndexFromXPath("question./data/missing[1]"), is(nullValue()));
+    }
+
+    @Test
+    public void stepOverCurrentIndex_whenIndexIsRepeatInstance_stepsToNextInstanceWithoutEnteringIt() throws Exception {
+        FormController formController = createFormController(ONE_QUESTION_REPEAT);
+        formController.stepToNextScreenEvent();
+        formController.jumpToNewRepeatPrompt();
+        formController.newRepeat();
+
+        formController.jumpToIndex(FormIndex.createBeginningOfFormIndex());
+        formController.stepToNextEvent(FormController.STEP_INTO_GROUP);
+        assertThat(formController.getEvent(), equalTo(FormEntryController.EVENT_REPEAT));
+        assertThat(formController.getFormIndex().toString(), equalTo("0_0, "));
+
+        assertThat(formController.stepOverCurrentIndex(), equalTo(FormEntryController.EVENT_REPEAT));
+        assertThat(formController.getFormIndex().toString(), equalTo("0_1, "));
+
+        assertThat(formController.stepOverCurrentIndex(), equalTo(FormEntryController.EVENT_PROMPT_NEW_REPEAT));
+        assertThat(formController.getFormIndex().toString(), equalTo("0_2, "));
+    }
+
+    @Test
+    public void getInstanceVersion_changes_whenAnswerIsSavedOrRepeatIsAdded() throws Exception {
+        FormController formController = createFormController(ONE_QUESTION_REPEAT);
+        int initialVersion = formController.getInstanceVersion();
+
+        formController.stepToNextScreenEvent();
+        assertThat(formController.getInstanceVersion(), equalTo(initialVersion));
+
+        formController.answerQuestion(formController.getFormIndex(), new IntegerData(20));
+        int answeredVersion = formController.getInstanceVersion();
+        assertThat(answeredVersion, not(equalTo(initialVersion)));
+
+        formController.jumpToNewRepeatPrompt();
+        formController.newRepeat();
+        assertThat(formController.getInstanceVersion(), not(equalTo(answeredVersion)));
+    }
+
+    @Test
+    public void getExternalDataDependencyValues_forSearchAppearance_onlyChangesWhenReferencedValueChanges() throws Exception {
+        FormController formController = createFormController(SEARCH_APPEARANCE);
+        formController.stepToNextScreenEvent();
+        FormEntryPrompt[] questions = formController.getQuestionPrompts();
+        FormIndex state = questions[0].getIndex();
+        FormIndex name = questions[1].getIndex();
+        FormIndex city = questions[2].getIndex();
+
+        String initialValues = formController.getExternalDataDependencyValues(city);
+        assertThat(initialValues, notNullValue());
+
+        formController.answerQuestion(name, new StringData("Bob"));
+        assertThat(formController.getExternalDataDependencyValues(city), equalTo(initialValues));
+
+        formController.answerQuestion(state, new StringData("texas"));
+        assertThat(formController.getExternalDataDependencyValues(city), not(equalTo(initialValues)));
+    }
+
     //region indexIsInFieldList
     @Test
     public void questionInGroupWithoutFieldListAppearance_isNotInFieldList() throws IOException {
@@ -261,4 +365,38 @@ public class FormControllerTest {
             "        </group>\n" +
             "    </h:body>\n" +
             "</h:html>\n";
-}
\ No newline at end of file
+
+    private static final String SEARCH_APPEARANCE = "<?xml version=\"1.0\"?>\n" +
+            "<h:html xmlns=\"http://www.w3.org/2002/xforms\" xmlns:h=\"http://www.w3.org/1999/xhtml\">\n" +
+            "    <h:head>\n" +
+            "        <h:title>Search appearance</h:title>\n" +
+            "        <model>\n" +
+            "            <instance>\n" +
+            "                <data id=\"search-appearance\">\n" +
+            "                    <group>\n" +
+            "                        <state/>\n" +
+            "                        <name/>\n" +
+            "                        <city/>\n" +
+            "                    </group>\n" +
+            "                </data>\n" +
+            "            </instance>\n" +
+            "            <bind nodeset=\"/data/group/state\" type=\"string\"/>\n" +
+            "            <bind nodeset=\"/data/group/name\" type=\"string\"/>\n" +
+            "            <bind nodeset=\"/data/group/city\" type=\"string\"/>\n" +
+            "        </model>\n" +
+            "    </h:head>\n" +
+            "    <h:body>\n" +
+            "        <group ref=\"/data/group\" appearance=\"field-list\">\n" +
+            "            <input ref=\"/data/group/state\">\n" +
+            "                <label>State</label>\n" +
+            "            </input>\n" +
+            "            <input ref=\"/data/group/name\">\n" +
+            "                <label>Name</label>\n" +
+            "            </input>\n" +
+            "            <input ref=\"/data/group/city\" appearance=\"minimal search('cities', 'matches', 'state', /data/group/state)\">\n" +
+            "                <label>City</label>\n" +
+            "            </input>\n" +
+            "        </group>\n" +
+            "    </h:body>\n" +
+            "</h:html>\n";
+}
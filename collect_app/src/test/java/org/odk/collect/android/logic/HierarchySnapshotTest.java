@@ -0,0 +1,132 @@
+package org.odk.collect.android.logic;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.google.common.io.Files;
+
+import org.javarosa.core.model.FormIndex;
+import org.javarosa.core.model.data.StringData;
+import org.javarosa.form.api.FormEntryController;
+import org.javarosa.form.api.FormEntryModel;
+import org.javarosa.xform.util.XFormUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.odk.collect.android.javarosawrapper.FormController;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+
+@RunWith(RobolectricTestRunner.class)
+public class HierarchySnapshotTest {
+
+    private final Context context = ApplicationProvider.getApplicationContext();
+
+    @Before
+    public void setup() {
+        HierarchySnapshot.clearCache();
+    }
+
+    @Test
+    public void loadNextPage_readsAPageAtATime_andLeavesFormControllerAtItsIndex() throws Exception {
+        FormController formController = createFormController(HierarchySnapshot.PAGE_SIZE + 10);
+        FormIndex startIndex = formController.getFormIndex();
+        HierarchySnapshot snapshot = HierarchySnapshot.get(formController, null, null);
+
+        assertThat(snapshot.loadNextPage(context, formController), equalTo(HierarchySnapshot.PAGE_SIZE));
+        assertThat(snapshot.isComplete(), equalTo(false));
+        assertThat(formController.getFormIndex(), equalTo(startIndex));
+
+        assertThat(snapshot.loadNextPage(context, formController), equalTo(10));
+        assertThat(snapshot.isComplete(), equalTo(true));
+        assertThat(snapshot.getElements().size(), equalTo(HierarchySnapshot.PAGE_SIZE + 10));
+        assertThat(snapshot.getElements().get(0).getPrimaryText(), equalTo("Question 0"));
+        assertThat(formController.getFormIndex(), equalTo(startIndex));
+    }
+
+    @Test
+    public void loadAnswerText_readsTheCurrentAnswer_onlyOnce() throws Exception {
+        FormController formController = createFormController(2);
+        HierarchySnapshot snapshot = HierarchySnapshot.get(formController, null, null);
+        snapshot.loadNextPage(context, formController);
+        HierarchyElement question = snapshot.getElements().get(0);
+
+        formController.answerQuestion(question.getFormIndex(), new StringData("Alice"));
+
+        assertThat(snapshot.needsAnswerText(question), equalTo(true));
+        assertThat(snapshot.loadAnswerText(question, context, formController), equalTo("Alice"));
+        assertThat(question.getSecondaryText(), equalTo("Alice"));
+        assertThat(snapshot.needsAnswerText(question), equalTo(false));
+
+        formController.answerQuestion(question.getFormIndex(), new StringData("Bob"));
+        assertThat(snapshot.loadAnswerText(question, context, formController), equalTo("Alice"));
+    }
+
+    @Test
+    public void get_returnsCachedSnapshot_untilInstanceChanges() throws Exception {
+        FormController formController = createFormController(2);
+        HierarchySnapshot snapshot = HierarchySnapshot.get(formController, null, null);
+        snapshot.loadNextPage(context, formController);
+
+        assertThat(HierarchySnapshot.get(formController, null, null), sameInstance(snapshot));
+
+        formController.answerQuestion(snapshot.getElements().get(0).getFormIndex(), new StringData("Alice"));
+        HierarchySnapshot newSnapshot = HierarchySnapshot.get(formController, null, null);
+        assertThat(newSnapshot, not(sameInstance(snapshot)));
+        assertThat(newSnapshot.getElements().isEmpty(), equalTo(true));
+    }
+
+    @Test
+    public void get_withDifferentFormController_clearsCache() throws Exception {
+        FormController formController = createFormController(2);
+        HierarchySnapshot snapshot = HierarchySnapshot.get(formController, null, null);
+
+        FormController otherFormController = createFormController(2);
+        assertThat(HierarchySnapshot.get(otherFormController, null, null), not(sameInstance(snapshot)));
+        assertThat(HierarchySnapshot.get(formController, null, null), not(sameInstance(snapshot)));
+    }
+
+    private FormController createFormController(int questions) throws IOException {
+        ByteArrayInputStream inputStream = new ByteArrayInputStream(createXForm(questions).getBytes());
+        final FormEntryModel fem = new FormEntryModel(XFormUtils.getFormFromInputStream(inputStream));
+        final FormEntryController formEntryController = new FormEntryController(fem);
+        return new FormController(Files.createTempDir(), formEntryController, File.createTempFile("instance", ""));
+    }
+
+    private static String createXForm(int questions) {
+        StringBuilder instance = new StringBuilder();
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < questions; i++) {
+            instance.append("                    <q").append(i).append("/>\n");
+            body.append("        <input ref=\"/data/q").append(i).append("\">\n")
+                    .append("            <label>Question ").append(i).append("</label>\n")
+                    .append("        </input>\n");
+        }
+
+        return "<?xml version=\"1.0\"?>\n" +
+                "<h:html xmlns=\"http://www.w3.org/2002/xforms\" xmlns:h=\"http://www.w3.org/1999/xhtml\" xmlns:jr=\"http://openrosa.org/javarosa\">\n" +
+                "    <h:head>\n" +
+                "        <h:title>Questions</h:title>\n" +
+                "        <model>\n" +
+                "            <instance>\n" +
+                "                <data id=\"questions\">\n" +
+                instance +
+                "                </data>\n" +
+                "            </instance>\n" +
+                "        </model>\n" +
+                "    </h:head>\n" +
+                "    <h:body>\n" +
+                body +
+                "    </h:body>\n" +
+                "</h:html>\n";
+    }
+}
@@ -55,7 +55,7 @@ public abstract class OpenRosaPostRequestTest {
         mockWebServer.enqueue(new MockResponse().setResponseCode(201));
 
         URI uri = mockWebServer.url("/blah").uri();
-        subject.uploadSubmissionFile(new ArrayList<>(), File.createTempFile("blah", "blah"), uri, null, 0);
+        subject.uploadSubmissionFile(new ArrayList<>(), File.createTempFile("blah", "blah"), uri, null, 0, null);
 
         assertThat(mockWebServer.getRequestCount(), equalTo(1));
 
@@ -71,7 +71,7 @@ public abstract class OpenRosaPostRequestTest {
                 .setBody("I AM BODY"));
 
         URI uri = mockWebServer.url("/blah").uri();
-        HttpPostResult response = subject.uploadSubmissionFile(new ArrayList<>(), File.createTempFile("blah", "blah"), uri, null, 0);
+        HttpPostResult response = subject.uploadSubmissionFile(new ArrayList<>(), File.createTempFile("blah", "blah"), uri, null, 0, null);
 
         assertThat(response.getResponseCode(), equalTo(200));
         assertThat(response.getHttpResponse(), equalTo("I AM BODY"));
@@ -85,7 +85,7 @@ public abstract class OpenRosaPostRequestTest {
                 .setBody(new Buffer().write(gzip("I AM BODY"))));
 
         URI uri = mockWebServer.url("/blah").uri();
-        HttpPostResult response = subject.uploadSubmissionFile(new ArrayList<>(), File.createTempFile("blah", "blah"), uri, null, 0);
+        HttpPostResult response = subject.uploadSubmissionFile(new ArrayList<>(), File.createTempFile("blah", "blah"), uri, null, 0, null);
 
         assertThat(response.getHttpResponse(), equalTo("I AM BODY"));
     }
@@ -96,7 +96,7 @@ public abstract class OpenRosaPostRequestTest {
                 .setResponseCode(204));
 
         URI uri = mockWebServer.url("/blah").uri();
-        subject.uploadSubmissionFile(new ArrayList<>(), File.createTempFile("blah", "blah"), uri, null, 0);
+        subject.uploadSubmissionFile(new ArrayList<>(), File.createTempFile("blah", "blah"), uri, null, 0, null);
     }
 
     @Test
@@ -106,7 +106,7 @@ public abstract class OpenRosaPostRequestTest {
                 .setBody("blah"));
 
         URI uri = mockWebServer.url("/blah").uri();
-        HttpPostResult response = subject.uploadSubmissionFile(new ArrayList<>(), File.createTempFile("blah", "blah"), uri, null, 0);
+        HttpPostResult response = subject.uploadSubmissionFile(new ArrayList<>(), File.createTempFile("blah", "blah"), uri, null, 0, null);
 
         assertThat(response, notNullValue());
         assertThat(response.getResponseCode(), equalTo(500));
@@ -116,7 +116,7 @@ public abstract class OpenRosaPostRequestTest {
     public void whenRequestFails_throwsExceptionWithMessage() {
         try {
             URI uri = new URI("http://localhost:8443");
-            subject.uploadSubmissionFile(new ArrayList<>(), File.createTempFile("blah", "blah"), uri, null, 0);
+            subject.uploadSubmissionFile(new ArrayList<>(), File.createTempFile("blah", "blah"), uri, null, 0, null);
             fail();
         } catch (Exception e) {
             assertThat(e, isA(Exception.class));
@@ -131,7 +131,7 @@ public abstract class OpenRosaPostRequestTest {
         URI uri = mockWebServer.url("/blah").uri();
         String submissionContent = "<node>content</node>";
         File tempFile = createTempFile(submissionContent);
-        subject.uploadSubmissionFile(new ArrayList<>(), tempFile, uri, null, 0);
+        subject.uploadSubmissionFile(new ArrayList<>(), tempFile, uri, null, 0, null);
 
         RecordedRequest request = mockWebServer.takeRequest();
         String[] firstPartLines = splitMultiPart(request).get(0);
@@ -148,7 +148,7 @@ public abstract class OpenRosaPostRequestTest {
         URI uri = mockWebServer.url("/blah").uri();
         File attachment1 = createTempFile("blah blah blah");
         File attachment2 = createTempFile("blah2 blah2 blah2");
-        subject.uploadSubmissionFile(asList(attachment1, attachment2), createTempFile("<node>content</node>"), uri, null, 1024);
+        subject.uploadSubmissionFile(asList(attachment1, attachment2), createTempFile("<node>content</node>"), uri, null, 1024, null);
 
         RecordedRequest request = mockWebServer.takeRequest();
         List<String[]> parts = splitMultiPart(request);
@@ -172,7 +172,7 @@ public abstract class OpenRosaPostRequestTest {
         File xmlAttachment = createTempFile("<node>blah blah blah</node>", ".xml");
         File plainAttachment = createTempFile("blah", ".blah");
 
-        subject.uploadSubmissionFile(asList(xmlAttachment, plainAttachment), createTempFile("<node>content</node>"), uri, null, 1024);
+        subject.uploadSubmissionFile(asList(xmlAttachment, plainAttachment), createTempFile("<node>content</node>"), uri, null, 1024, null);
 
         RecordedRequest request = mockWebServer.takeRequest();
         List<String[]> parts = splitMultiPart(request);
@@ -188,7 +188,7 @@ public abstract class OpenRosaPostRequestTest {
         URI uri = mockWebServer.url("/blah").uri();
         File attachment1 = createTempFile("blah blah blah");
         File attachment2 = createTempFile("blah2 blah2 blah2");
-        subject.uploadSubmissionFile(asList(attachment1, attachment2), createTempFile("<node>content</node>"), uri, null, 0);
+        subject.uploadSubmissionFile(asList(attachment1, attachment2), createTempFile("<node>content</node>"), uri, null, 0, null);
 
         RecordedRequest request = mockWebServer.takeRequest();
         List<String[]> parts = splitMultiPart(request);
@@ -221,7 +221,7 @@ public abstract class OpenRosaPostRequestTest {
         URI uri = mockWebServer.url("/blah").uri();
         File attachment1 = createTempFile("blah blah blah");
         File attachment2 = createTempFile("blah2 blah2 blah2");
-        HttpPostResult response = subject.uploadSubmissionFile(asList(attachment1, attachment2), createTempFile("<node>content</node>"), uri, null, 0);
+        HttpPostResult response = subject.uploadSubmissionFile(asList(attachment1, attachment2), createTempFile("<node>content</node>"), uri, null, 0, null);
 
         assertThat(mockWebServer.getRequestCount(), equalTo(1));
         assertThat(response, notNullValue());
@@ -236,13 +236,27 @@ public abstract class OpenRosaPostRequestTest {
         URI uri = mockWebServer.url("/blah").uri();
         File attachment1 = createTempFile("blah blah blah");
         File attachment2 = createTempFile("blah2 blah2 blah2");
-        HttpPostResult response = subject.uploadSubmissionFile(asList(attachment1, attachment2), createTempFile("<node>content</node>"), uri, null, 0);
+        HttpPostResult response = subject.uploadSubmissionFile(asList(attachment1, attachment2), createTempFile("<node>content</node>"), uri, null, 0, null);
 
         assertThat(mockWebServer.getRequestCount(), equalTo(2));
         assertThat(response, notNullValue());
         assertThat(response.getResponseCode(), equalTo(500));
     }
 
+    @Test
+    public void whenRequestIsSplit_notifiesListenerOfAttachmentsInEachAcceptedRequest() throws Exception {
+        mockWebServer.enqueue(new MockResponse().setResponseCode(201));
+        mockWebServer.enqueue(new MockResponse().setResponseCode(500));
+
+        URI uri = mockWebServer.url("/blah").uri();
+        File attachment1 = createTempFile("blah blah blah");
+        File attachment2 = createTempFile("blah2 blah2 blah2");
+        List<File> accepted = new ArrayList<>();
+        subject.uploadSubmissionFile(asList(attachment1, attachment2), createTempFile("<node>content</node>"), uri, null, 0, accepted::addAll);
+
+        assertThat(accepted, equalTo(asList(attachment1)));
+    }
+
     private File createTempFile(String content) throws Exception {
         return createTempFile(content, ".tmp");
     }
@@ -0,0 +1,165 @@
+package org.odk.collect.android.support;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.odk.collect.android.openrosa.CaseInsensitiveHeaders;
+import org.odk.collect.android.openrosa.HttpCredentialsInterface;
+import org.odk.collect.android.openrosa.HttpGetResult;
+import org.odk.collect.android.openrosa.HttpHeadResult;
+import org.odk.collect.android.openrosa.HttpPostResult;
+import org.odk.collect.android.openrosa.OpenRosaHttpInterface;
+
+import java.io.File;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Answers HEAD requests and accepts submissions without a server and records the requests it
+ * gets. Requests can be held up to test uploads that run concurrently.
+ */
+public class FakeOpenRosaHttpInterface implements OpenRosaHttpInterface {
+
+    private final Map<String, String> headHeaders = Collections.synchronizedMap(new TreeMap<>(String.CASE_INSENSITIVE_ORDER));
+    private final List<URI> headRequests = Collections.synchronizedList(new ArrayList<>());
+    private final List<URI> submissionUris = Collections.synchronizedList(new ArrayList<>());
+    private final List<Long> contentLengths = Collections.synchronizedList(new ArrayList<>());
+    private final List<String> submittedFiles = Collections.synchronizedList(new ArrayList<>());
+
+    private volatile int submissionResponseCode = 201;
+
+    private volatile URI blockedHeadUri;
+    private volatile CountDownLatch headStarted;
+    private volatile CountDownLatch finishHead;
+
+    private volatile String delayedSubmission;
+    private volatile String releasingSubmission;
+    private final CountDownLatch released = new CountDownLatch(1);
+
+    public void setHeadHeader(String name, String value) {
+        headHeaders.put(name, value);
+    }
+
+    public void setSubmissionResponseCode(int responseCode) {
+        submissionResponseCode = responseCode;
+    }
+
+    /**
+     * Makes HEAD requests to the given URI count down headStarted and then wait for finishHead.
+     */
+    public void blockHeadRequest(URI uri, CountDownLatch headStarted, CountDownLatch finishHead) {
+        this.headStarted = headStarted;
+        this.finishHead = finishHead;
+        this.blockedHeadUri = uri;
+    }
+
+    /**
+     * Holds up the submission of the delayed instance file until the releasing one has been
+     * submitted (or for five seconds at most).
+     */
+    public void delaySubmissionUntilAfter(String delayedFileName, String releasingFileName) {
+        this.delayedSubmission = delayedFileName;
+        this.releasingSubmission = releasingFileName;
+    }
+
+    public List<URI> getHeadRequests() {
+        return copy(headRequests);
+    }
+
+    public List<URI> getSubmissionUris() {
+        return copy(submissionUris);
+    }
+
+    public List<Long> getContentLengths() {
+        return copy(contentLengths);
+    }
+
+    /**
+     * @return the names of the submitted instance files in the order the submissions finished
+     */
+    public List<String> getSubmittedFiles() {
+        return copy(submittedFiles);
+    }
+
+    @NonNull
+    @Override
+    public HttpGetResult executeGetRequest(@NonNull URI uri, @Nullable String contentType, @Nullable HttpCredentialsInterface credentials) {
+        throw new UnsupportedOperationException();
+    }
+
+    @NonNull
+    @Override
+    public HttpHeadResult executeHeadRequest(@NonNull URI uri, @Nullable HttpCredentialsInterface credentials) throws Exception {
+        headRequests.add(uri);
+        if (uri.equals(blockedHeadUri)) {
+            headStarted.countDown();
+            finishHead.await();
+        }
+
+        return new HttpHeadResult(204, new MapHeaders(headHeaders));
+    }
+
+    @NonNull
+    @Override
+    public HttpPostResult uploadSubmissionFile(@NonNull List<File> fileList, @NonNull File submissionFile, @NonNull URI uri,
+                                               @Nullable HttpCredentialsInterface credentials, long contentLength,
+                                               @Nullable SubmissionBatchListener batchListener) throws Exception {
+        submissionUris.add(uri);
+        contentLengths.add(contentLength);
+
+        if (submissionFile.getName().equals(delayedSubmission)) {
+            released.await(5, TimeUnit.SECONDS);
+        }
+
+        submittedFiles.add(submissionFile.getName());
+        if (submissionFile.getName().equals(releasingSubmission)) {
+            released.countDown();
+        }
+
+        return new HttpPostResult("", submissionResponseCode, "");
+    }
+
+    private static <T> List<T> copy(List<T> synchronizedList) {
+        synchronized (synchronizedList) {
+            return new ArrayList<>(synchronizedList);
+        }
+    }
+
+    private static class MapHeaders implements CaseInsensitiveHeaders {
+
+        private final Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+        MapHeaders(Map<String, String> headers) {
+            synchronized (headers) {
+                this.headers.putAll(headers);
+            }
+        }
+
+        @Override
+        public Set<String> getHeaders() {
+            return headers.keySet();
+        }
+
+        @Override
+        public boolean containsHeader(String header) {
+            return headers.containsKey(header);
+        }
+
+        @Override
+        public String getAnyValue(String header) {
+            return headers.get(header);
+        }
+
+        @Override
+        public List<String> getValues(String header) {
+            return headers.containsKey(header) ? Collections.singletonList(headers.get(header)) : null;
+        }
+    }
+}
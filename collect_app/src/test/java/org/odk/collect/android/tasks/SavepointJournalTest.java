@@ -0,0 +1,232 @@
+package org.odk.collect.android.tasks;
+
+import com.google.common.io.Files;
+
+import org.apache.commons.io.IOUtils;
+import org.javarosa.core.model.FormDef;
+import org.javarosa.core.model.FormIndex;
+import org.javarosa.core.model.data.IntegerData;
+import org.javarosa.core.model.data.StringData;
+import org.javarosa.core.model.instance.InstanceInitializationFactory;
+import org.javarosa.core.model.instance.TreeReference;
+import org.javarosa.form.api.FormEntryController;
+import org.javarosa.form.api.FormEntryModel;
+import org.javarosa.xform.util.XFormUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.odk.collect.android.javarosawrapper.FormController;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class SavepointJournalTest {
+
+    private File savepointFile;
+    private File journalFile;
+    private SavepointJournal journal;
+
+    @Before
+    public void setup() throws IOException {
+        savepointFile = File.createTempFile("instance", ".xml.save");
+        journalFile = new File(savepointFile.getAbsolutePath() + ".journal");
+        writeSavepoint("<data/>");
+        journal = new SavepointJournal(savepointFile, journalFile);
+    }
+
+    @Test
+    public void replay_appliesAppendedAnswers() throws IOException {
+        FormDef formDef = createFormDef();
+        formDef.setValue(new IntegerData(5), getRef(formDef, 0), true);
+        formDef.setValue(new StringData("Mango"), getRef(formDef, 1), true);
+        journal.append(asList(getRef(formDef, 0), getRef(formDef, 1)), formDef.getMainInstance());
+
+        FormDef recovered = createFormDef();
+        assertThat(journal.replay(recovered), is(2));
+        assertThat(getValue(recovered, 0), is("5"));
+        assertThat(getValue(recovered, 1), is("Mango"));
+    }
+
+    @Test
+    public void replay_appliesLatestValue_whenAnswerChangedSeveralTimes() throws IOException {
+        FormDef formDef = createFormDef();
+        formDef.setValue(new IntegerData(5), getRef(formDef, 0), true);
+        journal.append(asList(getRef(formDef, 0)), formDef.getMainInstance());
+        formDef.setValue(null, getRef(formDef, 0), true);
+        journal.append(asList(getRef(formDef, 0)), formDef.getMainInstance());
+
+        FormDef recovered = createFormDef();
+        journal.replay(recovered);
+        assertThat(recovered.getMainInstance().resolveReference(getRef(recovered, 0)).getValue(), is(nullValue()));
+    }
+
+    @Test
+    public void replay_ignoresJournal_whenSavepointWasRewritten() throws IOException {
+        FormDef formDef = createFormDef();
+        formDef.setValue(new IntegerData(5), getRef(formDef, 0), true);
+        journal.append(asList(getRef(formDef, 0)), formDef.getMainInstance());
+
+        writeSavepoint("<data><age>5</age></data>");
+
+        assertThat(journal.canAppend(), is(false));
+        assertThat(journal.replay(createFormDef()), is(0));
+    }
+
+    @Test
+    public void replay_ignoresPartlyWrittenEntry() throws IOException {
+        FormDef formDef = createFormDef();
+        formDef.setValue(new IntegerData(5), getRef(formDef, 0), true);
+        journal.append(asList(getRef(formDef, 0)), formDef.getMainInstance());
+        long complete = journalFile.length();
+
+        formDef.setValue(new StringData("Mango"), getRef(formDef, 1), true);
+        journal.append(asList(getRef(formDef, 1)), formDef.getMainInstance());
+        try (RandomAccessFile file = new RandomAccessFile(journalFile, "rw")) {
+            file.setLength(complete + 3);
+        }
+
+        FormDef recovered = createFormDef();
+        assertThat(journal.replay(recovered), is(1));
+        assertThat(getValue(recovered, 0), is("5"));
+    }
+
+    @Test
+    public void recovery_keepsAnswers_inRepeatInstancesCreatedForJrCount() throws Exception {
+        FormController formController = createFormController(JR_COUNT_FORM);
+        formController.stepToNextScreenEvent();
+        formController.answerQuestion(formController.getFormIndex(), new IntegerData(2));
+        writeSavepointOrJournal(formController);
+
+        // JavaRosa creates the second repeat instance when it's navigated to
+        formController.stepToNextScreenEvent();
+        formController.stepToNextScreenEvent();
+        FormIndex secondRepeatQuestion = formController.getFormIndex();
+        assertThat(secondRepeatQuestion.getReference().getMultiplicity(1), is(1));
+        formController.answerQuestion(secondRepeatQuestion, new StringData("Mango"));
+        writeSavepointOrJournal(formController);
+
+        FormEntryController recovered = new FormEntryController(new FormEntryModel(
+                XFormUtils.getFormFromInputStream(new ByteArrayInputStream(JR_COUNT_FORM.getBytes()))));
+        FormLoaderTask.importData(savepointFile, recovered);
+        FormDef recoveredFormDef = recovered.getModel().getForm();
+        recoveredFormDef.initialize(false, new InstanceInitializationFactory());
+        journal.replay(recoveredFormDef);
+
+        assertThat(recoveredFormDef.getMainInstance().resolveReference(secondRepeatQuestion.getReference())
+                .getValue().uncast().getString(), is("Mango"));
+    }
+
+    @Test
+    public void canAppend_isFalse_whenThereIsNoSavepoint() {
+        savepointFile.delete();
+        assertThat(journal.canAppend(), is(false));
+    }
+
+    private void writeSavepoint(String contents) throws IOException {
+        writeSavepoint(contents.getBytes());
+    }
+
+    private void writeSavepoint(byte[] contents) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(savepointFile)) {
+            out.write(contents);
+        }
+        savepointFile.setLastModified(savepointFile.lastModified() + 1000);
+    }
+
+    /**
+     * Does what {@link SavePointTask} does.
+     */
+    private void writeSavepointOrJournal(FormController formController) throws IOException {
+        List<TreeReference> changedAnswers = formController.takeAnswersChangedSinceSavepoint();
+        if (changedAnswers != null && journal.canAppend()) {
+            journal.append(changedAnswers, formController.getFormDef().getMainInstance());
+        } else {
+            writeSavepoint(IOUtils.toByteArray(formController.getFilledInFormXml().getPayloadStream()));
+            journal.delete();
+        }
+    }
+
+    private static FormController createFormController(String xform) throws IOException {
+        FormEntryModel fem = new FormEntryModel(XFormUtils.getFormFromInputStream(new ByteArrayInputStream(xform.getBytes())));
+        return new FormController(Files.createTempDir(), new FormEntryController(fem), File.createTempFile("instance", ""));
+    }
+
+    private static FormDef createFormDef() {
+        FormDef formDef = XFormUtils.getFormFromInputStream(new ByteArrayInputStream(FORM.getBytes()));
+        formDef.initialize(true, new InstanceInitializationFactory());
+        return formDef;
+    }
+
+    private static TreeReference getRef(FormDef formDef, int question) {
+        return formDef.getMainInstance().getRoot().getChildAt(question).getRef();
+    }
+
+    private static String getValue(FormDef formDef, int question) {
+        return formDef.getMainInstance().resolveReference(getRef(formDef, question)).getValue().uncast().getString();
+    }
+
+    private static final String FORM = "<?xml version=\"1.0\"?>\n" +
+            "<h:html xmlns=\"http://www.w3.org/2002/xforms\" xmlns:h=\"http://www.w3.org/1999/xhtml\">\n" +
+            "    <h:head>\n" +
+            "        <h:title>Journal</h:title>\n" +
+            "        <model>\n" +
+            "            <instance>\n" +
+            "                <data id=\"journal\">\n" +
+            "                    <age/>\n" +
+            "                    <fruit/>\n" +
+            "                </data>\n" +
+            "            </instance>\n" +
+            "            <bind nodeset=\"/data/age\" type=\"int\"/>\n" +
+            "            <bind nodeset=\"/data/fruit\" type=\"string\"/>\n" +
+            "        </model>\n" +
+            "    </h:head>\n" +
+            "    <h:body>\n" +
+            "        <input ref=\"/data/age\">\n" +
+            "            <label>Age</label>\n" +
+            "        </input>\n" +
+            "        <input ref=\"/data/fruit\">\n" +
+            "            <label>Fruit</label>\n" +
+            "        </input>\n" +
+            "    </h:body>\n" +
+            "</h:html>\n";
+
+    private static final String JR_COUNT_FORM = "<?xml version=\"1.0\"?>\n" +
+            "<h:html xmlns=\"http://www.w3.org/2002/xforms\" xmlns:h=\"http://www.w3.org/1999/xhtml\" xmlns:jr=\"http://openrosa.org/javarosa\">\n" +
+            "    <h:head>\n" +
+            "        <h:title>Journal jr:count</h:title>\n" +
+            "        <model>\n" +
+            "            <instance>\n" +
+            "                <data id=\"journal-jr-count\">\n" +
+            "                    <count/>\n" +
+            "                    <rep>\n" +
+            "                        <fruit/>\n" +
+            "                    </rep>\n" +
+            "                </data>\n" +
+            "            </instance>\n" +
+            "            <bind nodeset=\"/data/count\" type=\"int\"/>\n" +
+            "            <bind nodeset=\"/data/rep/fruit\" type=\"string\"/>\n" +
+            "        </model>\n" +
+            "    </h:head>\n" +
+            "    <h:body>\n" +
+            "        <input ref=\"/data/count\">\n" +
+            "            <label>Count</label>\n" +
+            "        </input>\n" +
+            "        <group ref=\"/data/rep\">\n" +
+            "            <label>Rep</label>\n" +
+            "            <repeat nodeset=\"/data/rep\" jr:count=\"/data/count\">\n" +
+            "                <input ref=\"/data/rep/fruit\">\n" +
+            "                    <label>Fruit</label>\n" +
+            "                </input>\n" +
+            "            </repeat>\n" +
+            "        </group>\n" +
+            "    </h:body>\n" +
+            "</h:html>\n";
+}
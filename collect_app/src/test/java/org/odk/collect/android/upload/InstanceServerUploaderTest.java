@@ -0,0 +1,122 @@
+package org.odk.collect.android.upload;
+
+import android.net.Uri;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.odk.collect.android.instances.Instance;
+import org.odk.collect.android.openrosa.OpenRosaConstants;
+import org.odk.collect.android.storage.StoragePathProvider;
+import org.odk.collect.android.storage.StorageSubdirectory;
+import org.odk.collect.android.support.FakeOpenRosaHttpInterface;
+import org.odk.collect.android.utilities.FileUtils;
+import org.odk.collect.android.utilities.WebCredentialsUtils;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.Mockito.mock;
+
+@RunWith(RobolectricTestRunner.class)
+public class InstanceServerUploaderTest {
+
+    private final FakeOpenRosaHttpInterface httpInterface = new FakeOpenRosaHttpInterface();
+    private final Map<Uri, Uri> uriRemap = new HashMap<>();
+    private InstanceServerUploader uploader;
+
+    @Before
+    public void setup() {
+        uploader = new InstanceServerUploader(httpInterface, mock(WebCredentialsUtils.class), uriRemap);
+    }
+
+    @Test
+    public void submissionsToTheSameEndpoint_shareOneHeadRequest() throws Exception {
+        uploader.uploadOneSubmission(createInstance(1), "https://example.com/submission");
+        uploader.uploadOneSubmission(createInstance(2), "https://example.com/submission");
+
+        assertThat(httpInterface.getHeadRequests(), contains(URI.create("https://example.com/submission")));
+        assertThat(httpInterface.getSubmissionUris().size(), equalTo(2));
+    }
+
+    @Test
+    public void submissionsToDifferentEndpoints_eachMakeAHeadRequest() throws Exception {
+        uploader.uploadOneSubmission(createInstance(1), "https://example.com/submission");
+        uploader.uploadOneSubmission(createInstance(2), "https://example.com/other");
+
+        assertThat(httpInterface.getHeadRequests(), contains(
+                URI.create("https://example.com/submission"),
+                URI.create("https://example.com/other")));
+    }
+
+    @Test
+    public void whenHeadRequestRedirects_laterSubmissionsGoToRedirectWithoutAnotherHeadRequest() throws Exception {
+        httpInterface.setHeadHeader("Location", "https://example.com/redirected");
+
+        uploader.uploadOneSubmission(createInstance(1), "https://example.com/submission");
+        uploader.uploadOneSubmission(createInstance(2), "https://example.com/submission");
+
+        assertThat(httpInterface.getHeadRequests().size(), equalTo(1));
+        assertThat(httpInterface.getSubmissionUris(), contains(
+                URI.create("https://example.com/redirected"),
+                URI.create("https://example.com/redirected")));
+    }
+
+    @Test
+    public void acceptContentLength_fromHeadRequest_isUsedForLaterSubmissionsToTheSameEndpoint() throws Exception {
+        httpInterface.setHeadHeader(OpenRosaConstants.ACCEPT_CONTENT_LENGTH_HEADER, "1234");
+
+        uploader.uploadOneSubmission(createInstance(1), "https://example.com/submission");
+        uploader.uploadOneSubmission(createInstance(2), "https://example.com/submission");
+
+        assertThat(httpInterface.getContentLengths(), contains(1234L, 1234L));
+    }
+
+    @Test
+    public void whenHeadRequestIsNotAnswered_submissionsToOtherEndpointsAreNotHeldUp() throws Exception {
+        CountDownLatch headStarted = new CountDownLatch(1);
+        CountDownLatch finishHead = new CountDownLatch(1);
+        httpInterface.blockHeadRequest(URI.create("https://slow.example.com/submission"), headStarted, finishHead);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Instance slowInstance = createInstance(1);
+            Future<String> slowUpload = executor.submit(() -> uploader.uploadOneSubmission(slowInstance, "https://slow.example.com/submission"));
+            assertThat(headStarted.await(5, TimeUnit.SECONDS), equalTo(true));
+
+            // would block on the lock if the HEAD request held it
+            uploader.uploadOneSubmission(createInstance(2), "https://example.com/submission");
+            assertThat(httpInterface.getSubmissionUris(), contains(URI.create("https://example.com/submission")));
+
+            finishHead.countDown();
+            slowUpload.get(5, TimeUnit.SECONDS);
+            assertThat(httpInterface.getSubmissionUris().size(), equalTo(2));
+        } finally {
+            finishHead.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    private static Instance createInstance(long id) {
+        File instanceDir = new File(new StoragePathProvider().getDirPath(StorageSubdirectory.INSTANCES), "instance" + id);
+        instanceDir.mkdirs();
+        File instanceFile = new File(instanceDir, "instance" + id + ".xml");
+        FileUtils.write(instanceFile, "<data/>".getBytes());
+
+        return new Instance.Builder()
+                .id(id)
+                .instanceFilePath(instanceFile.getAbsolutePath())
+                .build();
+    }
+}
@@ -0,0 +1,122 @@
+package org.odk.collect.android.upload;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class SubmissionUploadStateTest {
+
+    private static final String URI = "https://example.com/submission";
+
+    private File instanceFile;
+    private File attachment1;
+    private File attachment2;
+
+    @Before
+    public void setup() throws IOException {
+        File instanceDir = Files.createTempDirectory("instance").toFile();
+        instanceFile = createFile(instanceDir, "instance.xml", "<data/>");
+        attachment1 = createFile(instanceDir, "1.jpg", "blah");
+        attachment2 = createFile(instanceDir, "2.jpg", "blah blah");
+    }
+
+    @Test
+    public void getRemainingAttachments_skipsAttachmentsAcceptedInAnEarlierAttempt() {
+        SubmissionUploadState state = SubmissionUploadState.forInstanceFile(instanceFile);
+        state.getRemainingAttachments(URI, instanceFile, asList(attachment1, attachment2));
+        state.onBatchAccepted(asList(attachment1));
+        state.onFailure(0);
+
+        List<File> remaining = SubmissionUploadState.forInstanceFile(instanceFile)
+                .getRemainingAttachments(URI, instanceFile, asList(attachment1, attachment2));
+        assertThat(remaining, is(asList(attachment2)));
+    }
+
+    @Test
+    public void getRemainingAttachments_sendsEverything_whenUriChanged() {
+        SubmissionUploadState state = SubmissionUploadState.forInstanceFile(instanceFile);
+        state.getRemainingAttachments(URI, instanceFile, asList(attachment1, attachment2));
+        state.onBatchAccepted(asList(attachment1));
+
+        List<File> remaining = SubmissionUploadState.forInstanceFile(instanceFile)
+                .getRemainingAttachments("https://other.example.com/submission", instanceFile, asList(attachment1, attachment2));
+        assertThat(remaining, is(asList(attachment1, attachment2)));
+    }
+
+    @Test
+    public void getRemainingAttachments_sendsAttachmentAgain_whenItChanged() throws IOException {
+        SubmissionUploadState state = SubmissionUploadState.forInstanceFile(instanceFile);
+        state.getRemainingAttachments(URI, instanceFile, asList(attachment1, attachment2));
+        state.onBatchAccepted(asList(attachment1));
+
+        try (FileWriter writer = new FileWriter(attachment1, true)) {
+            writer.write(" more");
+        }
+
+        List<File> remaining = SubmissionUploadState.forInstanceFile(instanceFile)
+                .getRemainingAttachments(URI, instanceFile, asList(attachment1, attachment2));
+        assertThat(remaining, is(asList(attachment1, attachment2)));
+    }
+
+    @Test
+    public void onSuccess_forgetsState() {
+        SubmissionUploadState state = SubmissionUploadState.forInstanceFile(instanceFile);
+        state.getRemainingAttachments(URI, instanceFile, asList(attachment1, attachment2));
+        state.onBatchAccepted(asList(attachment1));
+        state.onFailure(0);
+        state.onSuccess();
+
+        SubmissionUploadState reloaded = SubmissionUploadState.forInstanceFile(instanceFile);
+        assertThat(reloaded.getFailedAttempts(), is(0));
+        assertThat(reloaded.getRemainingAttachments(URI, instanceFile, asList(attachment1, attachment2)), is(asList(attachment1, attachment2)));
+    }
+
+    @Test
+    public void isBackingOff_untilBackoffForFailedAttemptsHasPassed() {
+        SubmissionUploadState state = SubmissionUploadState.forInstanceFile(instanceFile);
+        assertThat(state.isBackingOff(0), is(false));
+
+        state.onFailure(1000);
+        state.onFailure(1000);
+        assertThat(state.isBackingOff(1000 + SubmissionUploadState.MIN_BACKOFF_MILLIS), is(true));
+        assertThat(state.isBackingOff(1000 + 2 * SubmissionUploadState.MIN_BACKOFF_MILLIS), is(false));
+    }
+
+    @Test
+    public void getBackoffMillis_doublesUpToMax() {
+        assertThat(SubmissionUploadState.getBackoffMillis(1), is(SubmissionUploadState.MIN_BACKOFF_MILLIS));
+        assertThat(SubmissionUploadState.getBackoffMillis(3), is(4 * SubmissionUploadState.MIN_BACKOFF_MILLIS));
+        assertThat(SubmissionUploadState.getBackoffMillis(50), is(SubmissionUploadState.MAX_BACKOFF_MILLIS));
+    }
+
+    @Test
+    public void shouldRetryAutoSend_untilRetriesAreUsedUp() {
+        SubmissionUploadState state = SubmissionUploadState.forInstanceFile(instanceFile);
+        assertThat(state.shouldRetryAutoSend(), is(false));
+
+        for (int i = 0; i < SubmissionUploadState.MAX_AUTO_SEND_RETRIES; i++) {
+            state.onFailure(0);
+        }
+        assertThat(state.shouldRetryAutoSend(), is(true));
+
+        state.onFailure(0);
+        assertThat(state.shouldRetryAutoSend(), is(false));
+    }
+
+    private static File createFile(File dir, String name, String contents) throws IOException {
+        File file = new File(dir, name);
+        try (FileWriter writer = new FileWriter(file)) {
+            writer.write(contents);
+        }
+        return file;
+    }
+}
@@ -0,0 +1,206 @@
+package org.odk.collect.android.utilities;
+
+import android.util.Base64;
+
+import com.google.common.io.Files;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.odk.collect.android.javarosawrapper.FormController.InstanceMetadata;
+import org.odk.collect.android.utilities.EncryptionUtils.EncryptedFormInformation;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.odk.collect.android.utilities.EncryptionUtils.ASYMMETRIC_ALGORITHM;
+import static org.odk.collect.android.utilities.EncryptionUtils.IV_BYTE_LENGTH;
+import static org.odk.collect.android.utilities.EncryptionUtils.SYMMETRIC_ALGORITHM;
+
+@RunWith(RobolectricTestRunner.class)
+public class EncryptionUtilsTest {
+
+    private static final String INSTANCE_ID = "uuid:1234";
+
+    private KeyPair keyPair;
+    private File instanceDir;
+    private File instanceXml;
+    private File submissionXml;
+    private final Map<String, byte[]> plaintexts = new HashMap<>();
+
+    @Before
+    public void setup() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        keyPair = generator.generateKeyPair();
+
+        instanceDir = Files.createTempDir();
+        instanceXml = new File(instanceDir, "instance.xml");
+        Files.write("<data/>".getBytes(StandardCharsets.UTF_8), instanceXml);
+        submissionXml = new File(instanceDir, "submission.xml");
+        writePlaintext(submissionXml, "<data><name>Ludwig</name></data>".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void generateEncryptedSubmission_withSeveralAttachments_canBeDecrypted() throws Exception {
+        writeAttachments();
+        EncryptedFormInformation formInfo = createFormInformation("1");
+
+        EncryptionUtils.generateEncryptedSubmission(instanceXml, submissionXml, formInfo);
+
+        String manifest = new String(Files.toByteArray(submissionXml), StandardCharsets.UTF_8);
+        SecretKeySpec symmetricKey = decryptSymmetricKey(getElement(manifest, "base64EncryptedKey"));
+
+        List<String> encryptedFiles = getEncryptedFiles(manifest);
+        assertThat(encryptedFiles, containsInAnyOrder("a.jpg.enc", "b.m4a.enc", "c.csv.enc", "d.txt.enc", "submission.xml.enc"));
+        assertThat(encryptedFiles.get(encryptedFiles.size() - 1), equalTo("submission.xml.enc"));
+
+        byte[] ivSeed = getIvSeed(symmetricKey);
+        for (int i = 0; i < encryptedFiles.size(); i++) {
+            // each file's iv is the seed with one more byte incremented
+            ++ivSeed[i % ivSeed.length];
+
+            String encryptedFile = encryptedFiles.get(i);
+            byte[] decrypted = decrypt(new File(instanceDir, encryptedFile), symmetricKey, ivSeed);
+            String plaintextName = encryptedFile.substring(0, encryptedFile.length() - ".enc".length());
+            assertThat(plaintextName, Arrays.equals(decrypted, plaintexts.get(plaintextName)), equalTo(true));
+        }
+    }
+
+    @Test
+    public void generateEncryptedSubmission_withSeveralAttachments_signsMd5OfEveryFileInManifestOrder() throws Exception {
+        writeAttachments();
+        EncryptedFormInformation formInfo = createFormInformation("1");
+
+        EncryptionUtils.generateEncryptedSubmission(instanceXml, submissionXml, formInfo);
+
+        String manifest = new String(Files.toByteArray(submissionXml), StandardCharsets.UTF_8);
+        StringBuilder signatureSource = new StringBuilder()
+                .append("form\n")
+                .append("1\n")
+                .append(getElement(manifest, "base64EncryptedKey")).append('\n')
+                .append(INSTANCE_ID).append('\n');
+        for (String encryptedFile : getEncryptedFiles(manifest)) {
+            String plaintextName = encryptedFile.substring(0, encryptedFile.length() - ".enc".length());
+            signatureSource.append(plaintextName).append("::")
+                    .append(FileUtils.toMd5Hash(MessageDigest.getInstance("MD5").digest(plaintexts.get(plaintextName))))
+                    .append('\n');
+        }
+        byte[] expectedDigest = MessageDigest.getInstance("MD5").digest(signatureSource.toString().getBytes(StandardCharsets.UTF_8));
+
+        Cipher cipher = Cipher.getInstance(ASYMMETRIC_ALGORITHM);
+        cipher.init(Cipher.DECRYPT_MODE, keyPair.getPrivate());
+        byte[] signature = cipher.doFinal(Base64.decode(getElement(manifest, "base64EncryptedElementSignature"), Base64.NO_WRAP));
+
+        assertThat(Arrays.equals(signature, expectedDigest), equalTo(true));
+    }
+
+    @Test
+    public void generateEncryptedSubmission_withoutAttachments_canBeDecrypted() throws Exception {
+        EncryptedFormInformation formInfo = createFormInformation(null);
+
+        EncryptionUtils.generateEncryptedSubmission(instanceXml, submissionXml, formInfo);
+
+        String manifest = new String(Files.toByteArray(submissionXml), StandardCharsets.UTF_8);
+        SecretKeySpec symmetricKey = decryptSymmetricKey(getElement(manifest, "base64EncryptedKey"));
+        byte[] iv = getIvSeed(symmetricKey);
+        ++iv[0];
+
+        byte[] decrypted = decrypt(new File(instanceDir, "submission.xml.enc"), symmetricKey, iv);
+        assertThat(Arrays.equals(decrypted, plaintexts.get("submission.xml")), equalTo(true));
+    }
+
+    private void writeAttachments() throws Exception {
+        Random random = new Random(42);
+
+        // bigger than the encryption buffer so it takes several reads
+        byte[] large = new byte[200 * 1024 + 7];
+        random.nextBytes(large);
+        writePlaintext(new File(instanceDir, "a.jpg"), large);
+
+        byte[] small = new byte[10];
+        random.nextBytes(small);
+        writePlaintext(new File(instanceDir, "b.m4a"), small);
+
+        writePlaintext(new File(instanceDir, "c.csv"), new byte[0]);
+        writePlaintext(new File(instanceDir, "d.txt"), "hello".getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void writePlaintext(File file, byte[] contents) throws Exception {
+        Files.write(contents, file);
+        plaintexts.put(file.getName(), contents);
+    }
+
+    private EncryptedFormInformation createFormInformation(String formVersion) {
+        return new EncryptedFormInformation("form", formVersion,
+                new InstanceMetadata(INSTANCE_ID, null, null), keyPair.getPublic());
+    }
+
+    private SecretKeySpec decryptSymmetricKey(String base64EncryptedKey) throws Exception {
+        Cipher cipher = Cipher.getInstance(ASYMMETRIC_ALGORITHM);
+        cipher.init(Cipher.DECRYPT_MODE, keyPair.getPrivate());
+        byte[] key = cipher.doFinal(Base64.decode(base64EncryptedKey, Base64.NO_WRAP));
+        return new SecretKeySpec(key, SYMMETRIC_ALGORITHM);
+    }
+
+    /**
+     * The md5 of the instance id and the symmetric key repeated to fill the iv.
+     */
+    private static byte[] getIvSeed(SecretKeySpec symmetricKey) throws Exception {
+        MessageDigest md = MessageDigest.getInstance("MD5");
+        md.update(INSTANCE_ID.getBytes(StandardCharsets.UTF_8));
+        md.update(symmetricKey.getEncoded());
+        byte[] digest = md.digest();
+
+        byte[] ivSeed = new byte[IV_BYTE_LENGTH];
+        for (int i = 0; i < IV_BYTE_LENGTH; i++) {
+            ivSeed[i] = digest[i % digest.length];
+        }
+        return ivSeed;
+    }
+
+    private static byte[] decrypt(File file, SecretKeySpec symmetricKey, byte[] iv) throws Exception {
+        Cipher cipher = Cipher.getInstance(SYMMETRIC_ALGORITHM);
+        cipher.init(Cipher.DECRYPT_MODE, symmetricKey, new IvParameterSpec(iv));
+        return cipher.doFinal(Files.toByteArray(file));
+    }
+
+    private static String getElement(String xml, String name) {
+        Matcher matcher = Pattern.compile("<" + name + "[^>]*>([^<]*)</" + name + ">").matcher(xml);
+        matcher.find();
+        return matcher.group(1);
+    }
+
+    /**
+     * @return the encrypted media files followed by the encrypted submission in the order they
+     * appear in the manifest (which is the order they were encrypted in)
+     */
+    private static List<String> getEncryptedFiles(String manifest) {
+        List<String> files = new ArrayList<>();
+        Matcher matcher = Pattern.compile("<file[^>]*>([^<]*)</file>").matcher(manifest);
+        while (matcher.find()) {
+            files.add(matcher.group(1));
+        }
+        files.add(getElement(manifest, "encryptedXmlFile"));
+        return files;
+    }
+}
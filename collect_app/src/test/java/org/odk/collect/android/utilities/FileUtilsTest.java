@@ -30,6 +30,14 @@ public class FileUtilsTest {
         }
     }
 
+    @Test
+    public void toMd5Hash_zeroPadsTo32Characters() {
+        byte[] digest = new byte[16];
+        digest[15] = 0x0f;
+
+        assertEquals("0000000000000000000000000000000f", FileUtils.toMd5Hash(digest));
+    }
+
     @Test
     public void mediaDirNameIsCorrect() {
         String expected = "sample-file-media";
@@ -0,0 +1,144 @@
+package org.odk.collect.android.utilities;
+
+import android.os.Environment;
+
+import org.apache.commons.io.IOUtils;
+import org.javarosa.core.model.FormDef;
+import org.javarosa.xform.util.XFormUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.odk.collect.android.storage.StorageInitializer;
+import org.odk.collect.android.storage.StoragePathProvider;
+import org.odk.collect.android.storage.StorageSubdirectory;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowEnvironment;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+public class FormDefCacheTest {
+    private static final String FORM_FILENAME = "simple-search-external-csv.xml";
+
+    private File formFile;
+    private File cacheFile;
+
+    @Before
+    public void setUp() throws IOException {
+        ShadowEnvironment.setExternalStorageState(Environment.MEDIA_MOUNTED);
+        new StorageInitializer().createOdkDirsOnStorage();
+
+        formFile = new File(new StoragePathProvider().getDirPath(StorageSubdirectory.FORMS) + File.separator + FORM_FILENAME);
+        try (InputStream input = Thread.currentThread().getContextClassLoader().getResourceAsStream("forms" + File.separator + FORM_FILENAME);
+             OutputStream output = new FileOutputStream(formFile)) {
+            IOUtils.copy(input, output);
+        }
+
+        cacheFile = new File(new StoragePathProvider().getDirPath(StorageSubdirectory.CACHE) + File.separator
+                + FileUtils.getMd5Hash(formFile) + ".formdef");
+    }
+
+    @Test
+    public void readCache_returnsNull_whenFormHasNotBeenCached() {
+        assertThat(FormDefCache.readCache(formFile), is(nullValue()));
+    }
+
+    @Test
+    public void readCache_returnsCachedFormDef_afterWriteCache() throws IOException {
+        FormDefCache.writeCache(parseForm(), formFile.getAbsolutePath());
+        assertThat(cacheFile.exists(), is(true));
+
+        FormDef formDef = FormDefCache.readCache(formFile);
+        assertThat(formDef, is(notNullValue()));
+        assertThat(formDef.getTitle(), is(parseForm().getTitle()));
+    }
+
+    @Test
+    public void readCache_withMemoryCache_returnsFormDefWithoutReadingDisk_afterWriteCache() throws IOException {
+        FormDefMemoryCache memoryCache = new FormDefMemoryCache(10 * 1024 * 1024);
+        FormDefCache.writeCache(parseForm(), formFile.getAbsolutePath(), memoryCache);
+        cacheFile.delete();
+
+        FormDef formDef = FormDefCache.readCache(formFile, memoryCache);
+        assertThat(formDef, is(notNullValue()));
+        assertThat(memoryCache.getHitCount(), is(1));
+    }
+
+    @Test
+    public void writeCache_withMemoryCacheTooSmallForForm_onlyWritesCacheFile() throws IOException {
+        FormDefMemoryCache memoryCache = new FormDefMemoryCache(16);
+        FormDefCache.writeCache(parseForm(), formFile.getAbsolutePath(), memoryCache);
+        assertThat(cacheFile.exists(), is(true));
+
+        FormDef formDef = FormDefCache.readCache(formFile, memoryCache);
+        assertThat(formDef, is(notNullValue()));
+        assertThat(memoryCache.getHitCount(), is(0));
+    }
+
+    @Test
+    public void readCache_withMemoryCache_returnsNewFormDefEachTime() throws IOException {
+        FormDefMemoryCache memoryCache = new FormDefMemoryCache(10 * 1024 * 1024);
+        FormDefCache.writeCache(parseForm(), formFile.getAbsolutePath());
+
+        FormDef first = FormDefCache.readCache(formFile, memoryCache);
+        FormDef second = FormDefCache.readCache(formFile, memoryCache);
+        assertThat(first, is(notNullValue()));
+        assertThat(second, is(notNullValue()));
+        assertThat(first == second, is(false));
+        assertThat(memoryCache.getHitCount(), is(1));
+    }
+
+    @Test
+    public void readCache_returnsNullAndDeletesCacheFile_whenCacheFileIsTruncated() throws IOException {
+        FormDefCache.writeCache(parseForm(), formFile.getAbsolutePath());
+
+        try (RandomAccessFile raf = new RandomAccessFile(cacheFile, "rw")) {
+            raf.setLength(raf.length() - 10);
+        }
+
+        assertThat(FormDefCache.readCache(formFile), is(nullValue()));
+        assertThat(cacheFile.exists(), is(false));
+    }
+
+    @Test
+    public void readCache_returnsNullAndDeletesCacheFile_whenPayloadIsCorrupt() throws IOException {
+        FormDefCache.writeCache(parseForm(), formFile.getAbsolutePath());
+
+        try (RandomAccessFile raf = new RandomAccessFile(cacheFile, "rw")) {
+            raf.seek(raf.length() - 1);
+            int lastByte = raf.read();
+            raf.seek(raf.length() - 1);
+            raf.write(lastByte ^ 0xff);
+        }
+
+        assertThat(FormDefCache.readCache(formFile), is(nullValue()));
+        assertThat(cacheFile.exists(), is(false));
+    }
+
+    @Test
+    public void readCache_returnsNullAndDeletesCacheFile_whenCacheFileHasNoHeader() throws IOException {
+        try (OutputStream output = new FileOutputStream(cacheFile)) {
+            output.write(new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+        }
+
+        assertThat(FormDefCache.readCache(formFile), is(nullValue()));
+        assertThat(cacheFile.exists(), is(false));
+    }
+
+    private FormDef parseForm() throws IOException {
+        try (InputStream input = new FileInputStream(formFile)) {
+            return XFormUtils.getFormFromInputStream(input);
+        }
+    }
+}
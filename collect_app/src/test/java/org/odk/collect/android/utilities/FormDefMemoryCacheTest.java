@@ -0,0 +1,48 @@
+package org.odk.collect.android.utilities;
+
+import android.content.ComponentCallbacks2;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+public class FormDefMemoryCacheTest {
+
+    @Test
+    public void get_returnsNull_whenFormIsNotCached() {
+        FormDefMemoryCache memoryCache = new FormDefMemoryCache(1024);
+        assertThat(memoryCache.get("md5"), is(nullValue()));
+        assertThat(memoryCache.getMissCount(), is(1));
+    }
+
+    @Test
+    public void put_ignoresEntriesLargerThanHalfTheCache() {
+        FormDefMemoryCache memoryCache = new FormDefMemoryCache(1024);
+        assertThat(memoryCache.canHold(512), is(true));
+        assertThat(memoryCache.canHold(513), is(false));
+    }
+
+    @Test
+    public void onTrimMemory_whenRunningLow_clearsCache() {
+        FormDefMemoryCache memoryCache = new FormDefMemoryCache(1024);
+        memoryCache.put("md5", new byte[]{1, 2, 3});
+
+        memoryCache.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+        assertThat(memoryCache.get("md5"), is(nullValue()));
+    }
+
+    @Test
+    public void get_removesEntry_whenItCannotBeDeserialized() {
+        FormDefMemoryCache memoryCache = new FormDefMemoryCache(1024);
+        memoryCache.put("md5", new byte[]{1, 2, 3});
+
+        assertThat(memoryCache.get("md5"), is(nullValue()));
+        assertThat(memoryCache.get("md5"), is(nullValue()));
+        assertThat(memoryCache.getHitCount(), is(1));
+    }
+}
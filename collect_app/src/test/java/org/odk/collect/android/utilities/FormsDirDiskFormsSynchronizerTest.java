@@ -0,0 +1,118 @@
+package org.odk.collect.android.utilities;
+
+import android.database.Cursor;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.odk.collect.android.backgroundwork.FormPrewarmManager;
+import org.odk.collect.android.dao.FormsDao;
+import org.odk.collect.android.storage.StorageInitializer;
+import org.odk.collect.android.storage.StoragePathProvider;
+import org.odk.collect.android.storage.StorageSubdirectory;
+import org.odk.collect.android.support.RobolectricHelpers;
+
+import java.io.File;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.verify;
+import static org.odk.collect.android.provider.FormsProviderAPI.FormsColumns.DATE;
+import static org.odk.collect.android.provider.FormsProviderAPI.FormsColumns.DISPLAY_NAME;
+import static org.odk.collect.android.provider.FormsProviderAPI.FormsColumns.FORM_FILE_LAST_MODIFIED;
+import static org.odk.collect.android.provider.FormsProviderAPI.FormsColumns.FORM_FILE_SIZE;
+import static org.odk.collect.android.provider.FormsProviderAPI.FormsColumns.MD5_HASH;
+
+@RunWith(AndroidJUnit4.class)
+public class FormsDirDiskFormsSynchronizerTest {
+
+    private static final long LAST_MODIFIED = 1_600_000_000_000L;
+
+    private final FormPrewarmManager formPrewarmManager = mock(FormPrewarmManager.class);
+    private FormsDirDiskFormsSynchronizer synchronizer;
+    private File formFile;
+
+    @Before
+    public void setup() {
+        RobolectricHelpers.mountExternalStorage();
+        new StorageInitializer().createOdkDirsOnStorage();
+
+        formFile = new File(new StoragePathProvider().getDirPath(StorageSubdirectory.FORMS), "form.xml");
+        writeForm("One", LAST_MODIFIED);
+
+        synchronizer = new FormsDirDiskFormsSynchronizer(formPrewarmManager);
+        synchronizer.synchronize();
+        assertThat(getFormColumn(DISPLAY_NAME), is("One"));
+        reset(formPrewarmManager);
+    }
+
+    @Test
+    public void whenSizeAndLastModifiedAreUnchanged_fileIsNotHashed() {
+        String md5 = getFormColumn(MD5_HASH);
+
+        // same size and modification time so a changed file can only be noticed by hashing it
+        writeForm("Two", LAST_MODIFIED);
+        synchronizer.synchronize();
+
+        assertThat(getFormColumn(MD5_HASH), is(md5));
+        assertThat(getFormColumn(DISPLAY_NAME), is("One"));
+        verify(formPrewarmManager, never()).schedulePrewarm();
+    }
+
+    @Test
+    public void whenLastModifiedChanges_andContentChanges_formIsUpdated() {
+        writeForm("Two", LAST_MODIFIED + 10_000);
+        synchronizer.synchronize();
+
+        assertThat(getFormColumn(MD5_HASH), is(FileUtils.getMd5Hash(formFile)));
+        assertThat(getFormColumn(DISPLAY_NAME), is("Two"));
+        assertThat(getFormColumn(FORM_FILE_LAST_MODIFIED), is(String.valueOf(LAST_MODIFIED + 10_000)));
+        verify(formPrewarmManager).schedulePrewarm();
+    }
+
+    @Test
+    public void whenSizeChanges_andContentChanges_formIsUpdated() {
+        writeForm("A longer title", LAST_MODIFIED);
+        synchronizer.synchronize();
+
+        assertThat(getFormColumn(MD5_HASH), is(FileUtils.getMd5Hash(formFile)));
+        assertThat(getFormColumn(DISPLAY_NAME), is("A longer title"));
+        assertThat(getFormColumn(FORM_FILE_SIZE), is(String.valueOf(formFile.length())));
+        verify(formPrewarmManager).schedulePrewarm();
+    }
+
+    @Test
+    public void whenLastModifiedChanges_butContentIsTheSame_onlyLastModifiedIsRecorded() {
+        String md5 = getFormColumn(MD5_HASH);
+        String date = getFormColumn(DATE);
+
+        formFile.setLastModified(LAST_MODIFIED + 10_000);
+        synchronizer.synchronize();
+
+        assertThat(getFormColumn(FORM_FILE_LAST_MODIFIED), is(String.valueOf(LAST_MODIFIED + 10_000)));
+        assertThat(getFormColumn(MD5_HASH), is(md5));
+        assertThat(getFormColumn(DATE), is(date));
+        verify(formPrewarmManager, never()).schedulePrewarm();
+    }
+
+    private void writeForm(String title, long lastModified) {
+        FileUtils.write(formFile, ("<h:html xmlns=\"http://www.w3.org/2002/xforms\" xmlns:h=\"http://www.w3.org/1999/xhtml\">"
+                + "<h:head><h:title>" + title + "</h:title><model><instance><data id=\"form\"><q/></data></instance></model></h:head>"
+                + "<h:body><input ref=\"/data/q\"><label>Q</label></input></h:body></h:html>").getBytes());
+        assertThat(formFile.setLastModified(lastModified), equalTo(true));
+    }
+
+    private String getFormColumn(String column) {
+        try (Cursor cursor = new FormsDao().getFormsCursor()) {
+            assertThat(cursor.getCount(), is(1));
+            cursor.moveToFirst();
+            return cursor.getString(cursor.getColumnIndex(column));
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package org.odk.collect.android.utilities;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class ImageConverterTest {
+
+    @Test
+    public void getSampleSize_isOne_whenImageIsLessThanTwiceTheTargetSize() {
+        assertThat(ImageConverter.getSampleSize(3000, 3000, 2000, 2000), is(1));
+        assertThat(ImageConverter.getSampleSize(3000, 3000, 3000, 3000), is(1));
+    }
+
+    @Test
+    public void getSampleSize_neverDecodesSmallerThanTheTargetSize() {
+        // 48 MP camera image scaled down to 2048px
+        assertThat(ImageConverter.getSampleSize(8000, 6000, 2048, 1536), is(2));
+        assertThat(ImageConverter.getSampleSize(8000, 6000, 2000, 1500), is(4));
+        assertThat(ImageConverter.getSampleSize(8000, 6000, 640, 480), is(8));
+    }
+
+    @Test
+    public void getSampleSize_isLimitedByTheShortEdge() {
+        assertThat(ImageConverter.getSampleSize(8000, 1000, 4000, 600), is(1));
+    }
+}
@@ -37,6 +37,16 @@ public class FakeQuestionMediaManager implements QuestionMediaManager {
         recentFiles.put(questionIndex, fileName);
     }
 
+    @Override
+    public boolean isAnswerFilePending(File file) {
+        return false;
+    }
+
+    @Override
+    public void whenAnswerFileReady(File file, Runnable onReady) {
+        onReady.run();
+    }
+
     public File getDir() {
         return tempDir;
     }
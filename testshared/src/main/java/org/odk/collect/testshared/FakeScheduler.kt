@@ -21,6 +21,8 @@ class FakeScheduler : Scheduler {
         foregroundTasks.push(foreground)
     }
 
+    override fun deferred(tag: String, spec: TaskSpec) {}
+
     override fun networkDeferred(tag: String, spec: TaskSpec) {}
 
     override fun networkDeferred(tag: String, taskSpec: TaskSpec, repeatPeriod: Long) {}